@@ -0,0 +1,25 @@
+package com.openclassrooms.SafetyNet.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Clock Configuration
+ * <p>
+ * Source of the current day for the ages and the daily invalidation of the caches, replaced by a fixed clock in tests.
+ */
+@Configuration
+public class ClockConfiguration {
+
+    /**
+     * Clock of the system, in the default time zone
+     *
+     * @return Clock object
+     */
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.SafetyNet.config;
+
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson Configuration
+ * <p>
+ * The classes of the application are written through the FieldSelection filter (sparse fieldsets),
+ * which selects all the fields unless the request gives a selection.
+ * The types are written by the bean serializers of Jackson databind : the list endpoints, the largest payloads,
+ * are serialized once per list and then served as bytes (see ResponseBytesCache).
+ */
+@Configuration
+public class JacksonConfiguration {
+
+    private static final String APPLICATION_PACKAGE = "com.openclassrooms.SafetyNet";
+
+    /**
+     * Give the filter id to the classes of the application
+     *
+     * @return customizer of the ObjectMapper
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionCustomizer() {
+        return builder -> builder
+                .annotationIntrospector(new JacksonAnnotationIntrospector() {
+                    @Override
+                    public Object findFilterId(Annotated annotated) {
+                        if (annotated instanceof AnnotatedClass
+                                && annotated.getRawType().getPackageName().startsWith(APPLICATION_PACKAGE)) {
+                            return FieldSelection.FILTER_ID;
+                        }
+                        return super.findFilterId(annotated);
+                    }
+                })
+                .filters(FieldSelection.ALL.filters());
+    }
+}
@@ -1,9 +1,14 @@
 package com.openclassrooms.SafetyNet.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.openclassrooms.SafetyNet.dto.*;
 import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
 import com.openclassrooms.SafetyNet.service.EmergencyService;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -14,30 +19,46 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 /**
  * EmergencyController class
+ * <p>
+ * /flood/stations and /communityEmail can be streamed as newline-delimited JSON (Accept: application/x-ndjson) :
+ * each row is written as soon as it is built, instead of building and serializing the whole result.
  */
 @Tag(name = "URLs", description = "API")
 @Log4j2
 @RestController
 public class EmergencyController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
     private final EmergencyService emergencyService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Constructor
      *
      * @param emergencyService EmergencyService object
+     * @param objectMapper     ObjectMapper, writer of the streamed rows
      */
-    public EmergencyController(EmergencyService emergencyService) {
+    public EmergencyController(EmergencyService emergencyService, ObjectMapper objectMapper) {
         log.info("<constructor> FirestationController");
         this.emergencyService = emergencyService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -85,7 +106,7 @@ public class EmergencyController {
      * Get phone number covered by a fire stations
      *
      * @param firestation The station number
-     * @return HashSet of phone numbers
+     * @return Set of phone numbers
      */
     @Operation(summary = "Get person's phone number covered by a fire stations", description = "Returns all person's phone number covered by a fire stations")
     @Parameters({
@@ -96,11 +117,30 @@ public class EmergencyController {
             @ApiResponse(responseCode = "404", description = "Station number not found", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
     })
     @GetMapping(path = "/phoneAlert", params = "firestation", headers = "X-API-VERSION=1")
-    public HashSet<String> getPhoneNumbersCoveredByFireStation(@RequestParam Integer firestation) {
+    public Set<String> getPhoneNumbersCoveredByFireStation(@RequestParam Integer firestation) {
         log.info("<controller> **New** Request GET on /phoneAlert?firestation={}", firestation);
         return emergencyService.getPhoneNumbersCoveredByFireStation(firestation);
     }
 
+    /**
+     * Get phone numbers covered by several fire stations
+     *
+     * @param firestations The station numbers
+     * @return Set of phone numbers by station number
+     */
+    @Operation(summary = "Get person's phone number covered by several fire stations", description = "Returns all person's phone number covered by each fire station, read in one snapshot.<br>An unknown station has no phone number")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "firestations", description = "The station numbers", required = true, example = "[1,3]"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+    })
+    @GetMapping(path = "/phoneAlert", params = "firestations", headers = "X-API-VERSION=1")
+    public Map<Integer, Set<String>> getPhoneNumbersCoveredByFireStations(@RequestParam List<Integer> firestations) {
+        log.info("<controller> **New** Request GET on /phoneAlert?firestations={}", firestations);
+        return emergencyService.getPhoneNumbersCoveredByFireStations(firestations);
+    }
+
 
     /**
      * Get family by address, with fire station and medical details
@@ -121,6 +161,25 @@ public class EmergencyController {
         return emergencyService.getFamilyWithMedicalAndFirestation(address);
     }
 
+    /**
+     * Get families by address, with fire station and medical details, for several addresses
+     *
+     * @param addresses The addresses
+     * @return FamilyWithMedicalAndFirestationDTO by address
+     */
+    @Operation(summary = "Get families (persons at same address) with medical details and fire station, for several addresses", description = "Returns the family (persons at same address) with medical details and fire station of each address, read in one snapshot")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "addresses", description = "The addresses", required = true, example = "[\"112 Steppes Pl\",\"1509 Culver St\"]"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+    })
+    @GetMapping(path = "/fire", params = "addresses", headers = "X-API-VERSION=1")
+    public Map<String, FamilyWithMedicalAndFirestationDTO> getFamiliesWithMedicalAndFirestation(@RequestParam List<String> addresses) {
+        log.info("<controller> **New** Request GET on /fire?addresses={}", addresses);
+        return emergencyService.getFamiliesWithMedicalAndFirestation(addresses);
+    }
+
 
     /**
      * Get Family (persons at same address) with medical details, grouped by address
@@ -141,6 +200,53 @@ public class EmergencyController {
         return emergencyService.getFamilyWithMedicalGroupedByAddress(stations);
     }
 
+    /**
+     * Get Family (persons at same address) with medical details, grouped by address, within a distance of a point
+     *
+     * @param latitude  latitude of the point
+     * @param longitude longitude of the point
+     * @param radius    distance in meters
+     * @return FamilyWithMedicalGroupedByAddressDTO object
+     */
+    @Operation(summary = "Get family (persons at same address) with medical details grouped by address, within a distance of a point", description = "Returns families (persons at same address) with medical details grouped by address, for the geocoded addresses within the radius, nearest first")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "latitude", description = "Latitude of the point, in degrees", required = true, example = "33.9751"),
+            @Parameter(in = ParameterIn.QUERY, name = "longitude", description = "Longitude of the point, in degrees", required = true, example = "-118.3962"),
+            @Parameter(in = ParameterIn.QUERY, name = "radius", description = "Distance in meters (at most 100 km)", required = true, example = "500"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Invalid point or radius", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/flood/radius", params = {"latitude", "longitude", "radius"}, headers = "X-API-VERSION=1")
+    public FamilyWithMedicalGroupedByAddressDTO getFamilyWithMedicalWithinRadius(@RequestParam double latitude, @RequestParam double longitude,
+                                                                                 @RequestParam double radius) {
+        log.info("<controller> **New** Request GET on /flood/radius?latitude={}&longitude={}&radius={}", latitude, longitude, radius);
+        return emergencyService.getFamilyWithMedicalWithinRadius(latitude, longitude, radius);
+    }
+
+    /**
+     * Stream Family (persons at same address) with medical details, one address per line
+     *
+     * @param stations List of stations number
+     * @param fields   fields of the lines, all the fields if null
+     * @return stream of FamilyAtAddressDTO objects, as newline-delimited JSON
+     */
+    @Operation(summary = "Stream family (persons at same address) with medical details, one address per line", description = "Streams families (persons at same address) with medical details as newline-delimited JSON")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "stations", description = "List of stations number", required = true, example = "[3,1]"),
+            @Parameter(in = ParameterIn.QUERY, name = "fields", description = "Fields of the lines", example = "address,persons.firstName,persons.phone"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved", content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = FamilyAtAddressDTO.class))),
+    })
+    @GetMapping(path = "/flood/stations", params = "stations", headers = "X-API-VERSION=1", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFamilyWithMedicalGroupedByAddress(@RequestParam List<Integer> stations,
+                                                                                         @RequestParam(required = false) String fields) {
+        log.info("<controller> **New** Request GET (stream) on /flood/stations?stations={}", stations);
+        return ndjson(fields, sink -> emergencyService.streamFamilyWithMedicalGroupedByAddress(stations, sink));
+    }
+
 
     /**
      * Get persons by last name, with medical details and email
@@ -168,7 +274,7 @@ public class EmergencyController {
      * Get persons email by city name
      *
      * @param city The city
-     * @return HashSet of email
+     * @return Set of email
      */
     @Operation(summary = "Get persons email by city name", description = "Return all email of persons living in city name")
     @Parameters({
@@ -178,8 +284,129 @@ public class EmergencyController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
     })
     @GetMapping(path = "/communityEmail", params = "city", headers = "X-API-VERSION=1")
-    public HashSet<String> getPersonEmailByCity(String city) {
+    public Set<String> getPersonEmailByCity(String city) {
         log.info("<controller> **New** Request GET on /communityEmail?city={}", city);
         return emergencyService.getPersonEmailByCity(city);
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the fire stations nearest to a point
+     *
+     * @param latitude  latitude of the point
+     * @param longitude longitude of the point
+     * @param count     maximum number of stations
+     * @return List of NearestFirestationDTO objects
+     */
+    @Operation(summary = "Get the fire stations nearest to a point", description = "Returns the nearest fire stations, each with its nearest geocoded address and the distance in meters.<br>Only the geocoded fire stations are searched")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "latitude", description = "Latitude of the point, in degrees", required = true, example = "33.9751"),
+            @Parameter(in = ParameterIn.QUERY, name = "longitude", description = "Longitude of the point, in degrees", required = true, example = "-118.3962"),
+            @Parameter(in = ParameterIn.QUERY, name = "count", description = "Maximum number of stations (at most 100)", example = "3"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Invalid point or count", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/nearby/firestations", params = {"latitude", "longitude"}, headers = "X-API-VERSION=1")
+    public List<NearestFirestationDTO> getNearestFirestations(@RequestParam double latitude, @RequestParam double longitude,
+                                                              @RequestParam(defaultValue = "3") int count) {
+        log.info("<controller> **New** Request GET on /nearby/firestations?latitude={}&longitude={}&count={}", latitude, longitude, count);
+        return emergencyService.getNearestFirestations(latitude, longitude, count);
+    }
+
+    /**
+     * Get the persons living within a distance of a point
+     *
+     * @param latitude  latitude of the point
+     * @param longitude longitude of the point
+     * @param radius    distance in meters
+     * @return List of PersonNearbyDTO objects
+     */
+    @Operation(summary = "Get the persons living within a distance of a point", description = "Returns the geocoded persons living within the radius, nearest first, with the distance in meters")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "latitude", description = "Latitude of the point, in degrees", required = true, example = "33.9751"),
+            @Parameter(in = ParameterIn.QUERY, name = "longitude", description = "Longitude of the point, in degrees", required = true, example = "-118.3962"),
+            @Parameter(in = ParameterIn.QUERY, name = "radius", description = "Distance in meters (at most 100 km)", required = true, example = "500"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Invalid point or radius", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/nearby/persons", params = {"latitude", "longitude", "radius"}, headers = "X-API-VERSION=1")
+    public List<PersonNearbyDTO> getPersonsWithinRadius(@RequestParam double latitude, @RequestParam double longitude,
+                                                        @RequestParam double radius) {
+        log.info("<controller> **New** Request GET on /nearby/persons?latitude={}&longitude={}&radius={}", latitude, longitude, radius);
+        return emergencyService.getPersonsWithinRadius(latitude, longitude, radius);
+    }
+
+    /**
+     * Run several emergency queries on the same data
+     *
+     * @param queries List of EmergencyQueryDTO objects
+     * @return List of EmergencyQueryResultDTO objects
+     */
+    @Operation(summary = "Run several emergency queries in one round trip", description = "Runs named sub-queries of the emergency endpoints (firestation, childAlert, phoneAlert, fire, flood, personInfo, communityEmail) "
+            + "on one consistent state of the data.<br>Each result has the status of its sub-query : a failed sub-query does not fail the others")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully run"),
+    })
+    @PostMapping(path = "/emergency/queries", headers = "X-API-VERSION=1")
+    public List<EmergencyQueryResultDTO> runQueries(@RequestBody List<EmergencyQueryDTO> queries) {
+        log.info("<controller> **New** Request POST on /emergency/queries with {} queries", queries.size());
+        return emergencyService.runQueries(queries);
+    }
+
+    /**
+     * Stream persons email by city name, one email per line
+     *
+     * @param city The city
+     * @return stream of email, as newline-delimited JSON
+     */
+    @Operation(summary = "Stream persons email by city name, one email per line", description = "Streams all email of persons living in city name as newline-delimited JSON")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "city", description = "City name", required = true, example = "Culver"),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved", content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = String.class))),
+    })
+    @GetMapping(path = "/communityEmail", params = "city", headers = "X-API-VERSION=1", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPersonEmailByCity(String city) {
+        log.info("<controller> **New** Request GET (stream) on /communityEmail?city={}", city);
+        return ndjson(null, sink -> emergencyService.streamPersonEmailByCity(city, sink));
+    }
+
+    /**
+     * Write the rows produced by a query as newline-delimited JSON.
+     * The first row is flushed at once, the next ones when the buffers are full.
+     * The rows are filtered by the fields parameter, as the other responses (see FieldSelectionAdvice).
+     *
+     * @param fields   fields parameter of the request, null for all the fields
+     * @param producer query, handing each row to the sink
+     * @param <T>      type of the rows
+     * @return response streaming the rows
+     */
+    private <T> ResponseEntity<StreamingResponseBody> ndjson(String fields, Consumer<Consumer<T>> producer) {
+        // writeObject would flush after each row (FLUSH_AFTER_WRITE_VALUE), only the first row is flushed here
+        ObjectWriter writer = objectMapper.writer(FieldSelection.parse(fields).filters())
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                boolean[] first = {true};
+                producer.accept(row -> {
+                    try {
+                        writer.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                        if (first[0]) {
+                            generator.flush();
+                            first[0] = false;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+}
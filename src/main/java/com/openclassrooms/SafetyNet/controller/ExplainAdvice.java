@@ -0,0 +1,81 @@
+package com.openclassrooms.SafetyNet.controller;
+
+import com.openclassrooms.SafetyNet.utils.Explained;
+import com.openclassrooms.SafetyNet.utils.QueryTrace;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+/**
+ * ExplainAdvice Class
+ * <p>
+ * Explain mode of the emergency endpoints (X-Explain: true header or explain=true parameter) : the response is
+ * {"result": ..., "explain": {...}}, the explain plan lists the stages run by EmergencyService with their access path,
+ * rows and nanosecond timings. The trace is bound to the request thread by the Filter.
+ */
+@Log4j2
+@RestControllerAdvice(assignableTypes = EmergencyController.class)
+public class ExplainAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String EXPLAIN_HEADER = "X-Explain";
+    public static final String EXPLAIN_PARAMETER = "explain";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryTrace trace = QueryTrace.current();
+        if (trace == null || body instanceof StreamingResponseBody) {
+            return body;
+        }
+        if (body instanceof MappingJacksonValue container) {
+            container.setValue(new Explained(container.getValue(), trace.plan()));
+            return container;
+        }
+        return new Explained(body, trace.plan());
+    }
+
+    /**
+     * Bind a trace to the thread of the requests in explain mode
+     */
+    @Component
+    public static class Filter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                throws ServletException, IOException {
+            if (!"true".equalsIgnoreCase(request.getHeader(EXPLAIN_HEADER))
+                    && !"true".equalsIgnoreCase(request.getParameter(EXPLAIN_PARAMETER))) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            log.debug("Explain mode for {}", request.getRequestURI());
+            QueryTrace.start();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                QueryTrace.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.SafetyNet.controller;
+
+import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * FieldSelectionAdvice Class
+ * <p>
+ * Apply the fields parameter (?fields=firstName,phone) of any request to its Json response. Errors are never filtered.
+ */
+@Log4j2
+@RestControllerAdvice
+public class FieldSelectionAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    public static final String FIELDS_PARAMETER = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest servletRequest) || bodyContainer.getValue() instanceof CustomApiError) {
+            return;
+        }
+        FieldSelection selection = FieldSelection.parse(servletRequest.getServletRequest().getParameter(FIELDS_PARAMETER));
+        if (!selection.isAll()) {
+            log.debug("Response filtered on fields {}", servletRequest.getServletRequest().getParameter(FIELDS_PARAMETER));
+            bodyContainer.setFilters(selection.filters());
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.openclassrooms.SafetyNet.controller;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.StationReassignmentDTO;
 import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.service.FirestationService;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.ResponseBytesCache;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -14,6 +20,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
@@ -30,20 +37,27 @@ import java.util.List;
 public class FirestationController {
 
     private final FirestationService firestationService;
+    private final ResponseBytesCache responseBytesCache;
 
     /**
      * Constructor
      *
      * @param firestationService PersonService
+     * @param responseBytesCache ResponseBytesCache, serialized Json of all the fire stations
      */
-    public FirestationController(FirestationService firestationService) {
+    public FirestationController(FirestationService firestationService, ResponseBytesCache responseBytesCache) {
         log.info("<constructor> FirestationController");
         this.firestationService = firestationService;
+        this.responseBytesCache = responseBytesCache;
     }
 
     /**
      * Get all fire stations
+     * <p>
+     * Without selection of fields, the Json is served from the ResponseBytesCache (gzip if accepted by the client)
      *
+     * @param fields         fields parameter, null to get all the fields
+     * @param acceptEncoding Accept-Encoding header
      * @return List of Fire objects
      */
     @Operation(summary = "Get all fire stations", description = "Returns all fire stations")
@@ -51,9 +65,61 @@ public class FirestationController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
     })
     @GetMapping(path = "/firestations", headers = "X-API-VERSION=1")
-    public List<Firestation> getFirestations() {
+    public ResponseEntity<?> getFirestations(@Parameter(hidden = true) @RequestParam(name = FieldSelectionAdvice.FIELDS_PARAMETER, required = false) String fields,
+                                             @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("<controller> **New** Request GET on /firestations");
-        return firestationService.getFirestations();
+        List<Firestation> firestations = firestationService.getFirestations();
+        if (!FieldSelection.parse(fields).isAll()) {
+            return ResponseEntity.ok(firestations);
+        }
+        return responseBytesCache.response("firestations", firestations, acceptEncoding);
+    }
+
+
+    /**
+     * Get a page of fire stations
+     *
+     * @param limit  maximum number of fire stations
+     * @param cursor cursor returned with the previous page
+     * @param sort   sort of the pages
+     * @return Page of Firestation objects
+     */
+    @Operation(summary = "Get a page of fire stations", description = "Returns a page of fire stations and the cursor of the next page (null on the last page).<br>A cursor stays valid after a write : the next page starts after the last firestation sent")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "limit", description = "Maximum number of fire stations (1 to 1000)", required = true, example = "100"),
+            @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Cursor returned with the previous page"),
+            @Parameter(in = ParameterIn.QUERY, name = "sort", description = "address or station, prefixed by - for descending order (default address)", example = "address")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Bad request - Invalid limit, sort or cursor", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/firestations", params = "limit", headers = "X-API-VERSION=1")
+    public Page<Firestation> getFirestationsPage(@RequestParam int limit, @RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) String sort) {
+        log.info("<controller> **New** Request GET on /firestations?limit={}&cursor={}&sort={}", limit, cursor, sort);
+        return firestationService.getFirestationsPage(limit, cursor, sort);
+    }
+
+    /**
+     * Get a fire station by address, with its version in the ETag header
+     *
+     * @param address String address of the fire station (case-sensitive)
+     * @return Firestation object
+     */
+    @Operation(summary = "Get a fire station by his address", description = "Returns a fire station with its version in the ETag header.<br>Address is case-sensitive")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "address", description = "The address of fire station", required = true, example = "\"834 Binoc Ave\""),
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "404", description = "Not found - The fire station was not found", content = @Content)
+    })
+    @GetMapping(path = "/firestation", params = "address", headers = "X-API-VERSION=1")
+    public ResponseEntity<Firestation> getFirestation(@RequestParam String address) {
+        log.info("<controller> **New** Request GET on /firestation?address={}", address);
+        Versioned<Firestation> firestation = firestationService.getVersionedFirestation(address);
+        return ResponseEntity.ok().eTag(firestation.eTag()).body(firestation.value());
     }
 
     /**
@@ -96,7 +162,7 @@ public class FirestationController {
     public ResponseEntity<Object> createFirestation(@Valid @RequestBody Firestation firestation) {
         log.info("<controller> **New** Request POST on /firestation body {}", firestation);
 
-        firestationService.saveFirestation(firestation);
+        Versioned<Firestation> firestationSaved = firestationService.saveFirestation(firestation);
 
         // Create the location of the person object saved
         URI location = ServletUriComponentsBuilder
@@ -105,24 +171,103 @@ public class FirestationController {
                 .build()
                 .toUri();
 
-        return ResponseEntity.created(location).build();
+        return ResponseEntity.created(location).eTag(firestationSaved.eTag()).build();
     }
 
     /**
      * Update a fire station
      *
      * @param firestation Firestation object to update
+     * @param ifMatch     String ETag of the fire station read before the update, optional
      * @return Firestation object updated
      */
-    @Operation(summary = "Update a fire station", description = "Update a fire station by his address (case-sensitive)")
+    @Operation(summary = "Update a fire station", description = "Update a fire station by his address (case-sensitive)<br>"
+            + "With an If-Match header, the fire station is updated only if it was not modified since its ETag was read")
+    @Parameter(in = ParameterIn.HEADER, name = HttpHeaders.IF_MATCH, description = "ETag of the fire station", example = "\"3w5e11264sgsf-1\"")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated"),
-            @ApiResponse(responseCode = "404", description = "Not found - The fire station was not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Not found - The fire station was not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Precondition failed - The fire station was modified since its ETag was read",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
     })
     @PutMapping(path = "/firestation", headers = "X-API-VERSION=1")
-    public Firestation updateFirestation(@Valid @RequestBody Firestation firestation) {
-        log.info("<controller> **New** Request PUT on /firestation body {}", firestation);
+    public ResponseEntity<Firestation> updateFirestation(@Valid @RequestBody Firestation firestation,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("<controller> **New** Request PUT on /firestation body {} If-Match {}", firestation, ifMatch);
 
-        return firestationService.updateFirestation(firestation);
+        Versioned<Firestation> firestationUpdated = firestationService.updateFirestation(firestation, ifMatch);
+        return ResponseEntity.ok().eTag(firestationUpdated.eTag()).body(firestationUpdated.value());
+    }
+
+    /**
+     * Create a batch of fire stations
+     *
+     * @param firestations List of Firestation objects to create
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Create a batch of fire stations", description = "Add new fire stations with a single write of the file.<br>"
+            + "Each item is validated and created on its own, the status of each item is returned (201, 400 or 409)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PostMapping(path = "/firestations", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> createFirestations(@RequestBody List<Firestation> firestations) {
+        log.info("<controller> **New** Request POST on /firestations with {} items", firestations.size());
+        return firestationService.saveFirestations(firestations);
+    }
+
+    /**
+     * Update a batch of fire stations
+     *
+     * @param firestations List of Firestation objects to update
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Update a batch of fire stations", description = "Update fire stations with a single write of the file.<br>"
+            + "Each item is validated and updated on its own, the status of each item is returned (200, 400 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PutMapping(path = "/firestations", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> updateFirestations(@RequestBody List<Firestation> firestations) {
+        log.info("<controller> **New** Request PUT on /firestations with {} items", firestations.size());
+        return firestationService.updateFirestations(firestations);
+    }
+
+    /**
+     * Delete a batch of fire stations
+     *
+     * @param addresses List of addresses of the fire stations (case-sensitive)
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Delete a batch of fire stations", description = "Delete fire stations by address with a single write of the file.<br>"
+            + "The status of each item is returned (200 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @DeleteMapping(path = "/firestations", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> deleteFirestations(@RequestBody List<String> addresses) {
+        log.info("<controller> **New** Request DELETE on /firestations with {} items", addresses.size());
+        return firestationService.deleteFirestations(addresses);
+    }
+
+    /**
+     * Move addresses to another station
+     *
+     * @param reassignment StationReassignmentDTO object
+     * @return List of Firestation objects moved to the new station
+     */
+    @Operation(summary = "Move addresses to another station", description = "Move the given addresses and all the addresses of fromStation to toStation, "
+            + "with a single write of the file.<br>If an address or fromStation is not found, nothing is moved")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully moved"),
+            @ApiResponse(responseCode = "400", description = "Bad request - The request is invalid",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class))),
+            @ApiResponse(responseCode = "404", description = "Not found - An address or the station was not found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @PutMapping(path = "/firestations/reassignment", headers = "X-API-VERSION=1")
+    public List<Firestation> reassignFirestations(@RequestBody StationReassignmentDTO reassignment) {
+        log.info("<controller> **New** Request PUT on /firestations/reassignment body {}", reassignment);
+        return firestationService.reassignFirestations(reassignment);
     }
 }
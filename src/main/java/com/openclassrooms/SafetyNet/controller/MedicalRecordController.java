@@ -1,8 +1,14 @@
 package com.openclassrooms.SafetyNet.controller;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
 import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.service.MedicalRecordService;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.ResponseBytesCache;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -14,6 +20,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
@@ -30,20 +37,27 @@ import java.util.List;
 public class MedicalRecordController {
 
     private final MedicalRecordService medicalRecordService;
+    private final ResponseBytesCache responseBytesCache;
 
     /**
      * Constructor
      *
      * @param medicalRecordService MedicalRecordService
+     * @param responseBytesCache   ResponseBytesCache, serialized Json of all the medical records
      */
-    public MedicalRecordController(MedicalRecordService medicalRecordService) {
+    public MedicalRecordController(MedicalRecordService medicalRecordService, ResponseBytesCache responseBytesCache) {
         log.info("<constructor> MedicalRecordController");
         this.medicalRecordService = medicalRecordService;
+        this.responseBytesCache = responseBytesCache;
     }
 
     /**
      * Get all medical records
+     * <p>
+     * Without selection of fields, the Json is served from the ResponseBytesCache (gzip if accepted by the client)
      *
+     * @param fields         fields parameter, null to get all the fields
+     * @param acceptEncoding Accept-Encoding header
      * @return List of MedicalRecords objects
      */
     @Operation(summary = "Get all medical records", description = "Returns all medical records")
@@ -51,9 +65,63 @@ public class MedicalRecordController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
     })
     @GetMapping(path = "/medicalRecords", headers = "X-API-VERSION=1")
-    public List<MedicalRecord> getMedicalRecords() {
+    public ResponseEntity<?> getMedicalRecords(@Parameter(hidden = true) @RequestParam(name = FieldSelectionAdvice.FIELDS_PARAMETER, required = false) String fields,
+                                               @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("<controller> **New** Request GET on /medicalRecords");
-        return medicalRecordService.getMedicalRecords();
+        List<MedicalRecord> medicalRecords = medicalRecordService.getMedicalRecords();
+        if (!FieldSelection.parse(fields).isAll()) {
+            return ResponseEntity.ok(medicalRecords);
+        }
+        return responseBytesCache.response("medicalRecords", medicalRecords, acceptEncoding);
+    }
+
+
+    /**
+     * Get a page of medical records
+     *
+     * @param limit  maximum number of medical records
+     * @param cursor cursor returned with the previous page
+     * @param sort   sort of the pages
+     * @return Page of MedicalRecord objects
+     */
+    @Operation(summary = "Get a page of medical records", description = "Returns a page of medical records and the cursor of the next page (null on the last page).<br>A cursor stays valid after a write : the next page starts after the last medicalRecord sent")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "limit", description = "Maximum number of medical records (1 to 1000)", required = true, example = "100"),
+            @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Cursor returned with the previous page"),
+            @Parameter(in = ParameterIn.QUERY, name = "sort", description = "name or birthdate, prefixed by - for descending order (default name)", example = "name")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Bad request - Invalid limit, sort or cursor", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/medicalRecords", params = "limit", headers = "X-API-VERSION=1")
+    public Page<MedicalRecord> getMedicalRecordsPage(@RequestParam int limit, @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) String sort) {
+        log.info("<controller> **New** Request GET on /medicalRecords?limit={}&cursor={}&sort={}", limit, cursor, sort);
+        return medicalRecordService.getMedicalRecordsPage(limit, cursor, sort);
+    }
+
+    /**
+     * Get a medical record by first name and last name, with its version in the ETag header
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return MedicalRecord object
+     */
+    @Operation(summary = "Get a medical record by first name and last name", description = "Returns a medical record with its version in the ETag header.<br>Names are case-sensitive")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "firstName", description = "The first name of the person", required = true, example = "John"),
+            @Parameter(in = ParameterIn.QUERY, name = "lastName", description = "The last name of the person", required = true, example = "Boyd")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "404", description = "Not found - The medical record was not found", content = @Content)
+    })
+    @GetMapping(path = "/medicalRecord", params = {"firstName", "lastName"}, headers = "X-API-VERSION=1")
+    public ResponseEntity<MedicalRecord> getMedicalRecord(@RequestParam String firstName, @RequestParam String lastName) {
+        log.info("<controller> **New** Request GET on /medicalRecord?firstName={}&lastName={}", firstName, lastName);
+        Versioned<MedicalRecord> medicalRecord = medicalRecordService.getVersionedMedicalRecord(firstName, lastName);
+        return ResponseEntity.ok().eTag(medicalRecord.eTag()).body(medicalRecord.value());
     }
 
     /**
@@ -105,7 +173,7 @@ public class MedicalRecordController {
     public ResponseEntity<Object> createMedicalRecord(@Valid @RequestBody MedicalRecord medicalRecord) {
         log.info("<controller> **New** Request POST on /medicalRecord body {}", medicalRecord);
 
-        medicalRecordService.saveMedicalRecord(medicalRecord);
+        Versioned<MedicalRecord> medicalRecordSaved = medicalRecordService.saveMedicalRecord(medicalRecord);
 
         // Create the location of the person object saved
         URI location = ServletUriComponentsBuilder
@@ -114,24 +182,83 @@ public class MedicalRecordController {
                 .build()
                 .toUri();
         
-        return ResponseEntity.created(location).build();
+        return ResponseEntity.created(location).eTag(medicalRecordSaved.eTag()).build();
     }
 
     /**
      * Update a medical record
      *
      * @param medicalRecord MedicalRecord object to update
+     * @param ifMatch       String ETag of the medical record read before the update, optional
      * @return MedicalRecord object updated
      */
-    @Operation(summary = "Update a medical record", description = "Update a medical record by his first name and last name.<br>Names are case-sensitive")
+    @Operation(summary = "Update a medical record", description = "Update a medical record by his first name and last name.<br>Names are case-sensitive<br>"
+            + "With an If-Match header, the medical record is updated only if it was not modified since its ETag was read")
+    @Parameter(in = ParameterIn.HEADER, name = HttpHeaders.IF_MATCH, description = "ETag of the medical record", example = "\"3w5e11264sgsf-1\"")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated"),
-            @ApiResponse(responseCode = "404", description = "Not found - The medical record was not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Not found - The medical record was not found", content = @Content),
+            @ApiResponse(responseCode = "412",
+                    description = "Precondition failed - The medical record was modified since its ETag was read",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
     })
     @PutMapping(path = "/medicalRecord", headers = "X-API-VERSION=1")
-    public MedicalRecord updateMedicalRecord(@Valid @RequestBody MedicalRecord medicalRecord) {
-        log.info("<controller> **New** Request PUT on /medicalRecord body {}", medicalRecord);
+    public ResponseEntity<MedicalRecord> updateMedicalRecord(@Valid @RequestBody MedicalRecord medicalRecord,
+                                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("<controller> **New** Request PUT on /medicalRecord body {} If-Match {}", medicalRecord, ifMatch);
+
+        Versioned<MedicalRecord> medicalRecordUpdated = medicalRecordService.updateMedicalRecord(medicalRecord, ifMatch);
+        return ResponseEntity.ok().eTag(medicalRecordUpdated.eTag()).body(medicalRecordUpdated.value());
+    }
+
+    /**
+     * Create a batch of medical records
+     *
+     * @param medicalRecords List of MedicalRecord objects to create
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Create a batch of medical records", description = "Add new medical records with a single write of the file.<br>"
+            + "Each item is validated and created on its own, the status of each item is returned (201, 400 or 409)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PostMapping(path = "/medicalRecords", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> createMedicalRecords(@RequestBody List<MedicalRecord> medicalRecords) {
+        log.info("<controller> **New** Request POST on /medicalRecords with {} items", medicalRecords.size());
+        return medicalRecordService.saveMedicalRecords(medicalRecords);
+    }
 
-        return medicalRecordService.updateMedicalRecord(medicalRecord);
+    /**
+     * Update a batch of medical records
+     *
+     * @param medicalRecords List of MedicalRecord objects to update
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Update a batch of medical records", description = "Update medical records with a single write of the file.<br>"
+            + "Each item is validated and updated on its own, the status of each item is returned (200, 400 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PutMapping(path = "/medicalRecords", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> updateMedicalRecords(@RequestBody List<MedicalRecord> medicalRecords) {
+        log.info("<controller> **New** Request PUT on /medicalRecords with {} items", medicalRecords.size());
+        return medicalRecordService.updateMedicalRecords(medicalRecords);
+    }
+
+    /**
+     * Delete a batch of medical records
+     *
+     * @param names List of PersonNameDTO, first name and last name of the medical records (case-sensitive)
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Delete a batch of medical records", description = "Delete medical records by first name and last name with a single write of the file.<br>"
+            + "The status of each item is returned (200 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @DeleteMapping(path = "/medicalRecords", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> deleteMedicalRecords(@RequestBody List<PersonNameDTO> names) {
+        log.info("<controller> **New** Request DELETE on /medicalRecords with {} items", names.size());
+        return medicalRecordService.deleteMedicalRecords(names);
     }
 }
@@ -1,8 +1,14 @@
 package com.openclassrooms.SafetyNet.controller;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
 import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
 import com.openclassrooms.SafetyNet.model.Person;
 import com.openclassrooms.SafetyNet.service.PersonService;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.ResponseBytesCache;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.Parameters;
@@ -14,6 +20,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
@@ -30,21 +37,28 @@ import java.util.List;
 public class PersonController {
 
     private final PersonService personService;
+    private final ResponseBytesCache responseBytesCache;
 
     /**
      * Constructor
      *
      * @param personService PersonService
+     * @param responseBytesCache ResponseBytesCache, serialized Json of all the persons
      */
-    public PersonController(PersonService personService) {
+    public PersonController(PersonService personService, ResponseBytesCache responseBytesCache) {
         log.info("<constructor> PersonController");
         this.personService = personService;
+        this.responseBytesCache = responseBytesCache;
     }
 
 
     /**
      * Get all persons
+     * <p>
+     * Without selection of fields, the Json is served from the ResponseBytesCache (gzip if accepted by the client)
      *
+     * @param fields         fields parameter, null to get all the fields
+     * @param acceptEncoding Accept-Encoding header
      * @return List of Person objects
      */
     @Operation(summary = "Get all person", description = "Returns all persons")
@@ -52,9 +66,64 @@ public class PersonController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
     })
     @GetMapping(path = "/persons", headers = "X-API-VERSION=1")
-    public List<Person> getPersons() {
+    public ResponseEntity<?> getPersons(@Parameter(hidden = true) @RequestParam(name = FieldSelectionAdvice.FIELDS_PARAMETER, required = false) String fields,
+                                        @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("<controller> **New** Request GET on /persons");
-        return personService.getPersons();
+        List<Person> persons = personService.getPersons();
+        if (!FieldSelection.parse(fields).isAll()) {
+            return ResponseEntity.ok(persons);
+        }
+        return responseBytesCache.response("persons", persons, acceptEncoding);
+    }
+
+
+    /**
+     * Get a page of persons
+     *
+     * @param limit  maximum number of persons
+     * @param cursor cursor returned with the previous page
+     * @param sort   sort of the pages
+     * @return Page of Person objects
+     */
+    @Operation(summary = "Get a page of persons", description = "Returns a page of persons and the cursor of the next page (null on the last page).<br>A cursor stays valid after a write : the next page starts after the last person sent")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "limit", description = "Maximum number of persons (1 to 1000)", required = true, example = "100"),
+            @Parameter(in = ParameterIn.QUERY, name = "cursor", description = "Cursor returned with the previous page"),
+            @Parameter(in = ParameterIn.QUERY, name = "sort", description = "name, city or zip, prefixed by - for descending order (default name)", example = "name")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "Bad request - Invalid limit, sort or cursor", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @GetMapping(path = "/persons", params = "limit", headers = "X-API-VERSION=1")
+    public Page<Person> getPersonsPage(@RequestParam int limit, @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) String sort) {
+        log.info("<controller> **New** Request GET on /persons?limit={}&cursor={}&sort={}", limit, cursor, sort);
+        return personService.getPersonsPage(limit, cursor, sort);
+    }
+
+
+    /**
+     * Get a person by first name and last name, with its version in the ETag header
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Person object
+     */
+    @Operation(summary = "Get a person by first name and last name", description = "Returns a person with its version in the ETag header.<br>Names are case-sensitive")
+    @Parameters({
+            @Parameter(in = ParameterIn.QUERY, name = "firstName", description = "The first name of the person", required = true, example = "John"),
+            @Parameter(in = ParameterIn.QUERY, name = "lastName", description = "The last name of the person", required = true, example = "Boyd")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "404", description = "Not found - The person was not found", content = @Content)
+    })
+    @GetMapping(path = "/person", params = {"firstName", "lastName"}, headers = "X-API-VERSION=1")
+    public ResponseEntity<Person> getPerson(@RequestParam String firstName, @RequestParam String lastName) {
+        log.info("<controller> **New** Request GET on /person?firstName={}&lastName={}", firstName, lastName);
+        Versioned<Person> person = personService.getVersionedPerson(firstName, lastName);
+        return ResponseEntity.ok().eTag(person.eTag()).body(person.value());
     }
 
 
@@ -104,7 +173,7 @@ public class PersonController {
     public ResponseEntity<Object> createPerson(@Valid @RequestBody Person person) {
         log.info("<controller> **New** Request POST on /person {}", person);
 
-        personService.savePerson(person);
+        Versioned<Person> personSaved = personService.savePerson(person);
 
         // Create the location of the person object saved
         URI location = ServletUriComponentsBuilder
@@ -112,27 +181,86 @@ public class PersonController {
                 .path("/persons")
                 .build()
                 .toUri();
-        return ResponseEntity.created(location).build();
+        return ResponseEntity.created(location).eTag(personSaved.eTag()).build();
     }
 
     /**
      * Update a person
      *
-     * @param person Person object to update
+     * @param person  Person object to update
+     * @param ifMatch String ETag of the person read before the update, optional
      * @return Person object
      */
-    @Operation(summary = "Update a person", description = "Update a person by his first name and last name.<br>Names are case-sensitive")
+    @Operation(summary = "Update a person", description = "Update a person by his first name and last name.<br>Names are case-sensitive<br>"
+            + "With an If-Match header, the person is updated only if it was not modified since its ETag was read")
+    @Parameter(in = ParameterIn.HEADER, name = HttpHeaders.IF_MATCH, description = "ETag of the person", example = "\"3w5e11264sgsf-1\"")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated"),
             @ApiResponse(responseCode = "400",
                     description = "Bad request - The request is invalid",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class))),
-            @ApiResponse(responseCode = "404", description = "Not found - The person was not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Not found - The person was not found", content = @Content),
+            @ApiResponse(responseCode = "412",
+                    description = "Precondition failed - The person was modified since its ETag was read",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
     })
     @PutMapping(path = "/person", headers = "X-API-VERSION=1")
-    public Person updatePerson(@Valid @RequestBody Person person) {
-        log.info("<controller> **New** Request PUT on /person body {}", person);
+    public ResponseEntity<Person> updatePerson(@Valid @RequestBody Person person,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.info("<controller> **New** Request PUT on /person body {} If-Match {}", person, ifMatch);
+
+        Versioned<Person> personUpdated = personService.updatePerson(person, ifMatch);
+        return ResponseEntity.ok().eTag(personUpdated.eTag()).body(personUpdated.value());
+    }
+
+    /**
+     * Create a batch of persons
+     *
+     * @param persons List of Person objects to create
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Create a batch of persons", description = "Add new persons with a single write of the file.<br>"
+            + "Each item is validated and created on its own, the status of each item is returned (201, 400 or 409)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PostMapping(path = "/persons", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> createPersons(@RequestBody List<Person> persons) {
+        log.info("<controller> **New** Request POST on /persons with {} items", persons.size());
+        return personService.savePersons(persons);
+    }
 
-        return personService.updatePerson(person);
+    /**
+     * Update a batch of persons
+     *
+     * @param persons List of Person objects to update
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Update a batch of persons", description = "Update persons with a single write of the file.<br>"
+            + "Each item is validated and updated on its own, the status of each item is returned (200, 400 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @PutMapping(path = "/persons", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> updatePersons(@RequestBody List<Person> persons) {
+        log.info("<controller> **New** Request PUT on /persons with {} items", persons.size());
+        return personService.updatePersons(persons);
+    }
+
+    /**
+     * Delete a batch of persons
+     *
+     * @param names List of PersonNameDTO, first name and last name of the persons (case-sensitive)
+     * @return List of BatchItemResultDTO, status of each item
+     */
+    @Operation(summary = "Delete a batch of persons", description = "Delete persons by first name and last name with a single write of the file.<br>"
+            + "The status of each item is returned (200 or 404)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the status of each item")
+    })
+    @DeleteMapping(path = "/persons", headers = "X-API-VERSION=1")
+    public List<BatchItemResultDTO> deletePersons(@RequestBody List<PersonNameDTO> names) {
+        log.info("<controller> **New** Request DELETE on /persons with {} items", names.size());
+        return personService.deletePersons(names);
     }
 }
@@ -0,0 +1,58 @@
+package com.openclassrooms.SafetyNet.controller;
+
+import com.openclassrooms.SafetyNet.dto.TransactionDTO;
+import com.openclassrooms.SafetyNet.exceptions.CustomApiError;
+import com.openclassrooms.SafetyNet.service.TransactionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * TransactionController class
+ */
+@Tag(name = "Transaction", description = "API")
+@Log4j2
+@RestController
+public class TransactionController {
+
+    private final TransactionService transactionService;
+
+    /**
+     * Constructor
+     *
+     * @param transactionService TransactionService
+     */
+    public TransactionController(TransactionService transactionService) {
+        log.info("<constructor> TransactionController");
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * Apply mutations of persons, fire stations and medical records all together or not at all
+     *
+     * @param transaction TransactionDTO object
+     */
+    @Operation(summary = "Apply a transaction", description = "Delete, create and update persons, fire stations and medical records "
+            + "all together with a single write of the file.<br>If an item is invalid, already exists or is not found, nothing is applied")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully applied"),
+            @ApiResponse(responseCode = "400", description = "Bad request - An item is invalid, nothing is applied",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class))),
+            @ApiResponse(responseCode = "404", description = "Not found - An item to update or delete was not found, nothing is applied",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict - An item to create already exists, nothing is applied",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomApiError.class)))
+    })
+    @PostMapping(path = "/transaction", headers = "X-API-VERSION=1")
+    public void applyTransaction(@RequestBody TransactionDTO transaction) {
+        log.info("<controller> **New** Request POST on /transaction");
+        transactionService.applyTransaction(transaction);
+    }
+}
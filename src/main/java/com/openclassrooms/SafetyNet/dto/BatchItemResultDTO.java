@@ -0,0 +1,26 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * BatchItemResultDTO Class
+ */
+@Schema(description = "Result of an item of a batch")
+@Data
+@AllArgsConstructor
+public class BatchItemResultDTO {
+
+    @Schema(description = "Index of the item in the batch", example = "0")
+    private int index;
+
+    @Schema(description = "HTTP status of the item", example = "201")
+    private int status;
+
+    @Schema(description = "Errors of the item, empty if the item succeeded")
+    private List<String> errors;
+
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * EmergencyQueryDTO Class
+ */
+@Schema(description = "Named sub-query of a composite emergency query, with the parameters of its endpoint")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EmergencyQueryDTO {
+
+    @Schema(description = "Name of the sub-query, returned with its result", example = "north-phones", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String name;
+
+    @Schema(description = "Emergency query", example = "phoneAlert", requiredMode = Schema.RequiredMode.REQUIRED,
+            allowableValues = {"firestation", "childAlert", "phoneAlert", "fire", "flood", "personInfo", "communityEmail"})
+    private String query;
+
+    @Schema(description = "Station number, for firestation and phoneAlert", example = "3")
+    private Integer station;
+
+    @Schema(description = "Station numbers, for flood", example = "[1,3]")
+    private List<Integer> stations;
+
+    @Schema(description = "Address, for childAlert and fire", example = "1509 Culver St")
+    private String address;
+
+    @Schema(description = "Last name, for personInfo", example = "Boyd")
+    private String lastName;
+
+    @Schema(description = "City, for communityEmail", example = "Culver")
+    private String city;
+
+}
@@ -0,0 +1,29 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * EmergencyQueryResultDTO Class
+ */
+@Schema(description = "Result of a sub-query of a composite emergency query")
+@Data
+@AllArgsConstructor
+public class EmergencyQueryResultDTO {
+
+    @Schema(description = "Name of the sub-query", example = "north-phones")
+    private String name;
+
+    @Schema(description = "HTTP status of the sub-query", example = "200")
+    private int status;
+
+    @Schema(description = "Response of the endpoint of the sub-query, null if the sub-query failed")
+    private Object result;
+
+    @Schema(description = "Errors of the sub-query, empty if the sub-query succeeded")
+    private List<String> errors;
+
+}
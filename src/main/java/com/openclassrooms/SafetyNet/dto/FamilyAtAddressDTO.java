@@ -0,0 +1,28 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+
+/**
+ * FamilyAtAddressDTO Class
+ * <p>
+ * One line of the streamed /flood/stations response
+ */
+@Schema(description = "Family (persons at same address) with medical details, for one address")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FamilyAtAddressDTO {
+
+    @Schema(description = "Address of the family", example = "1509 Culver St", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String address;
+
+    @Schema(description = "Persons living at the address", requiredMode = Schema.RequiredMode.REQUIRED)
+    private List<PersonWithMedicalAndPhoneDTO> persons;
+
+}
@@ -2,9 +2,7 @@ package com.openclassrooms.SafetyNet.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.List;
 
@@ -12,9 +10,7 @@ import java.util.List;
  * FamilyWithMedicalAndFirestationDTO Class
  */
 @Schema(description = "Family (persons living at same address), with medical details and fire station")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Value
 public class FamilyWithMedicalAndFirestationDTO {
 
     @Schema(description = "Fire stations number", example = "3", requiredMode = Schema.RequiredMode.REQUIRED)
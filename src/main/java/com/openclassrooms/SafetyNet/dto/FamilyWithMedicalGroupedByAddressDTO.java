@@ -1,23 +1,19 @@
 package com.openclassrooms.SafetyNet.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
  * FamilyWithMedicalGroupedByAddressDTO Class
  */
 @Schema(description = "Family (persons at same address) with medical details, grouped by address")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Value
 public class FamilyWithMedicalGroupedByAddressDTO {
 
-    HashMap<String, List<PersonWithMedicalAndPhoneDTO>> mapAddressPersons;
+    Map<String, List<PersonWithMedicalAndPhoneDTO>> mapAddressPersons;
 
 }
\ No newline at end of file
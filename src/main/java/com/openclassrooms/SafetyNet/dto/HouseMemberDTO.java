@@ -1,6 +1,5 @@
 package com.openclassrooms.SafetyNet.dto;
 
-
 /**
  * HouseMemberDTO Class
  */
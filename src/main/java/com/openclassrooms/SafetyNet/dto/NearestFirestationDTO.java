@@ -0,0 +1,26 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * NearestFirestationDTO Class
+ */
+@Schema(description = "Fire station near a point, with its nearest covered address")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearestFirestationDTO {
+
+    @Schema(description = "Station number", example = "3", requiredMode = Schema.RequiredMode.REQUIRED)
+    private Integer station;
+
+    @Schema(description = "Nearest address covered by the station", example = "1509 Culver St", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String address;
+
+    @Schema(description = "Distance between the point and the address, in meters", example = "250.4", requiredMode = Schema.RequiredMode.REQUIRED)
+    private double distance;
+
+}
@@ -3,15 +3,13 @@ package com.openclassrooms.SafetyNet.dto;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
 /**
  * PersonBasicDetailsDTO Class
  */
 @Schema(description = "Details about a person")
-@Data
-@AllArgsConstructor
+@Value
 public class PersonBasicDetailsDTO {
 
     @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED, minLength = 1, maxLength = 35)
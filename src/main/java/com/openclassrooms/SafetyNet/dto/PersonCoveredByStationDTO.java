@@ -1,9 +1,7 @@
 package com.openclassrooms.SafetyNet.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.List;
 
@@ -12,9 +10,7 @@ import java.util.List;
  * PersonCoveredByStationDTO Class
  */
 @Schema(description = "Details about persons covered by station, with number of children and adults")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Value
 public class PersonCoveredByStationDTO {
 
     @Schema(description = "Number of childrens", example = "0")
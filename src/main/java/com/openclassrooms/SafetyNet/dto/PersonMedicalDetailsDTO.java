@@ -2,8 +2,7 @@ package com.openclassrooms.SafetyNet.dto;
 
 
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Value;
 
 import java.util.List;
 
@@ -11,8 +10,7 @@ import java.util.List;
  * PersonMedicalDetailsDTO Class
  */
 @Schema(description = "Details about a medical record")
-@Data
-@AllArgsConstructor
+@Value
 public class PersonMedicalDetailsDTO {
 
     @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED)
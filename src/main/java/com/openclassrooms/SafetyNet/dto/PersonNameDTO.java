@@ -0,0 +1,26 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PersonNameDTO Class
+ */
+@Schema(description = "First name and last name of a person")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PersonNameDTO {
+
+    @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotBlank(message = "First name is mandatory")
+    private String firstName;
+
+    @Schema(description = "Last name of the person", example = "Boyd", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotBlank(message = "Last name is mandatory")
+    private String lastName;
+
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * PersonNearbyDTO Class
+ */
+@Schema(description = "Person living near a point")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PersonNearbyDTO {
+
+    @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String firstName;
+
+    @Schema(description = "Last name of the person", example = "Boyd", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String lastName;
+
+    @Schema(description = "Address of the person", example = "1509 Culver St", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String address;
+
+    @Schema(description = "Phone number of the person", example = "841-874-6512", requiredMode = Schema.RequiredMode.REQUIRED)
+    private String phone;
+
+    @Schema(description = "Distance between the point and the address of the person, in meters", example = "250.4", requiredMode = Schema.RequiredMode.REQUIRED)
+    private double distance;
+
+}
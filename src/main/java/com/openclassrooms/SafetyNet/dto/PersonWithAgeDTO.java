@@ -1,25 +1,28 @@
 package com.openclassrooms.SafetyNet.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 /**
  * PersonWithAgeDTO Class
  */
 @Schema(description = "Person with first name, last name and age")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
 public abstract class PersonWithAgeDTO {
 
     @Schema(description = "First name", example = "John", requiredMode = Schema.RequiredMode.REQUIRED, minLength = 1, maxLength = 35)
-    private String firstName;
+    private final String firstName;
 
     @Schema(description = "Last name", example = "Boyd", requiredMode = Schema.RequiredMode.REQUIRED, minLength = 1, maxLength = 35)
-    private String lastName;
+    private final String lastName;
 
     @Schema(description = "Age", example = "10", requiredMode = Schema.RequiredMode.REQUIRED)
-    private int age;
+    private final int age;
 }
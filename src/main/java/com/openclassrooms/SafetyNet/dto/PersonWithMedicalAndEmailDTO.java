@@ -2,9 +2,7 @@ package com.openclassrooms.SafetyNet.dto;
 
 
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.List;
 
@@ -12,9 +10,7 @@ import java.util.List;
  * PersonWithMedicalAndEmailDTO Class
  */
 @Schema(description = "Details about a person with medical record and email")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Value
 public class PersonWithMedicalAndEmailDTO {
 
     @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED)
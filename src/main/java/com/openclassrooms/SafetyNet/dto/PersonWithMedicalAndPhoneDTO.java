@@ -1,9 +1,7 @@
 package com.openclassrooms.SafetyNet.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.List;
 
@@ -11,9 +9,7 @@ import java.util.List;
  * PersonWithMedicalAndPhoneDTO Class
  */
 @Schema(description = "Details about a person with medical record and phone")
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
+@Value
 public class PersonWithMedicalAndPhoneDTO {
 
     @Schema(description = "First name of the person", example = "John", requiredMode = Schema.RequiredMode.REQUIRED)
@@ -0,0 +1,34 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StationReassignmentDTO Class
+ */
+@Schema(description = "Addresses to move to another station")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class StationReassignmentDTO {
+
+    @Schema(description = "Addresses to move (case-sensitive)", example = "[\"1509 Culver St\", \"834 Binoc Ave\"]")
+    private List<String> addresses = new ArrayList<>();
+
+    @Schema(description = "Station number whose addresses are all moved", example = "3")
+    @Positive(message = "Station number should be positive")
+    private Integer fromStation;
+
+    @Schema(description = "New station number of the addresses", example = "4", requiredMode = Schema.RequiredMode.REQUIRED)
+    @NotNull(message = "Station number is mandatory")
+    @Positive(message = "Station number should be positive")
+    private Integer toStation;
+
+}
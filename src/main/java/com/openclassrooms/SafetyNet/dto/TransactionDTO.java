@@ -0,0 +1,48 @@
+package com.openclassrooms.SafetyNet.dto;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TransactionDTO Class
+ */
+@Schema(description = "Mutations of persons, fire stations and medical records applied all together or not at all")
+@Data
+@NoArgsConstructor
+public class TransactionDTO {
+
+    @Schema(description = "Persons to delete")
+    private List<PersonNameDTO> deletePersons = new ArrayList<>();
+
+    @Schema(description = "Persons to create")
+    private List<Person> createPersons = new ArrayList<>();
+
+    @Schema(description = "Persons to update")
+    private List<Person> updatePersons = new ArrayList<>();
+
+    @Schema(description = "Addresses of the fire stations to delete")
+    private List<String> deleteFirestations = new ArrayList<>();
+
+    @Schema(description = "Fire stations to create")
+    private List<Firestation> createFirestations = new ArrayList<>();
+
+    @Schema(description = "Fire stations to update")
+    private List<Firestation> updateFirestations = new ArrayList<>();
+
+    @Schema(description = "Medical records to delete")
+    private List<PersonNameDTO> deleteMedicalRecords = new ArrayList<>();
+
+    @Schema(description = "Medical records to create")
+    private List<MedicalRecord> createMedicalRecords = new ArrayList<>();
+
+    @Schema(description = "Medical records to update")
+    private List<MedicalRecord> updateMedicalRecords = new ArrayList<>();
+
+}
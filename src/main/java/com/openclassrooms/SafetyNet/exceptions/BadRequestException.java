@@ -0,0 +1,28 @@
+package com.openclassrooms.SafetyNet.exceptions;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.List;
+
+/**
+ * BadRequestException Class
+ */
+@Log4j2
+@Getter
+public class BadRequestException extends RuntimeException {
+
+    private final List<String> errors;
+
+    /**
+     * Constructor
+     *
+     * @param message Exception message
+     * @param errors  List of errors
+     */
+    public BadRequestException(String message, List<String> errors) {
+        super(message);
+        this.errors = errors;
+        log.error("<exception> BadRequestException : {} {}", message, errors);
+    }
+}
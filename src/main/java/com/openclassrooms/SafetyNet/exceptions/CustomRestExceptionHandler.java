@@ -51,6 +51,19 @@ public class CustomRestExceptionHandler extends ResponseEntityExceptionHandler {
     }
 
 
+    /**
+     * 400 BAD REQUEST
+     * Handle BadRequestException
+     *
+     * @param ex      BadRequestException
+     * @param request WebRequest
+     * @return ResponseEntity Object containing the error details and an HTTP status of BAD REQUEST
+     */
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<Object> handleBadRequestException(BadRequestException ex, WebRequest request) {
+        return sendResponseError(request, ex.getErrors(), HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * 409 CONFLICT
      * Handle ConflictException
@@ -81,6 +94,21 @@ public class CustomRestExceptionHandler extends ResponseEntityExceptionHandler {
         return sendResponseError(request, errors, HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * 412 PRECONDITION FAILED
+     * Handle PreconditionFailedException
+     *
+     * @param ex      PreconditionFailedException
+     * @param request WebRequest
+     * @return ResponseEntity Object containing the error details and an HTTP status of PRECONDITION FAILED
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex, WebRequest request) {
+        List<String> errors = new ArrayList<>();
+        errors.add(ex.getMessage());
+        return sendResponseError(request, errors, HttpStatus.PRECONDITION_FAILED);
+    }
+
 
     /**
      * Send response error
@@ -0,0 +1,19 @@
+package com.openclassrooms.SafetyNet.exceptions;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * PreconditionFailedException Class
+ */
+@Log4j2
+public class PreconditionFailedException extends RuntimeException {
+    /**
+     * Constructor
+     *
+     * @param message Exception message
+     */
+    public PreconditionFailedException(String message) {
+        super(message);
+        log.error("<exception> PreconditionFailedException : {}", message);
+    }
+}
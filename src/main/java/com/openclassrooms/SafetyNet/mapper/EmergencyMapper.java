@@ -4,23 +4,41 @@ import com.openclassrooms.SafetyNet.dto.*;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.service.AgeService;
+import com.openclassrooms.SafetyNet.utils.HouseholdView;
+import com.openclassrooms.SafetyNet.utils.SnapshotJoin;
+import com.openclassrooms.SafetyNet.utils.StationView;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
  * EmergencyMapper Class
+ * <p>
+ * Ages are computed by the AgeService, which caches the parsed birthdates and the ages of the day.
+ * The DTOs are immutable and their lists are read-only, so the results can be cached and shared (see QueryCache).
  */
 @Log4j2
 @Component
 public class EmergencyMapper {
 
+    private final AgeService ageService;
+
+    /**
+     * Constructor
+     *
+     * @param ageService service computing the ages
+     */
+    public EmergencyMapper(AgeService ageService) {
+        log.info("<constructor> EmergencyMapper");
+        this.ageService = ageService;
+    }
 
     /**
      * Convert a Person to a PersonAtSameAddressDTO
@@ -30,8 +48,6 @@ public class EmergencyMapper {
      */
     public PersonCoveredByStationDTO toPersonCoveredByStationDTO(Map<Person, String> personWithBirthdate) {
 
-        PersonCoveredByStationDTO personCoveredByStationDTO = new PersonCoveredByStationDTO();
-
         int nbAdults = 0;
         int nbChildren = 0;
         List<PersonBasicDetailsDTO> personBasicDetailsDTO = new ArrayList<>();
@@ -54,11 +70,30 @@ public class EmergencyMapper {
             }
         }
 
-        personCoveredByStationDTO.setNbAdults(nbAdults);
-        personCoveredByStationDTO.setNbChildren(nbChildren);
-        personCoveredByStationDTO.setPersons(personBasicDetailsDTO);
-        return personCoveredByStationDTO;
+        return new PersonCoveredByStationDTO(nbChildren, nbAdults, Collections.unmodifiableList(personBasicDetailsDTO));
+
+    }
+
+    /**
+     * Convert the materialized coverage of a station to a PersonCoveredByStationDTO
+     *
+     * @param coverage coverage of the station
+     * @return the converted PersonCoveredByStationDTO
+     */
+    public PersonCoveredByStationDTO toPersonCoveredByStationDTO(StationView.Coverage coverage) {
+        LocalDate today = ageService.today();
+
+        List<PersonBasicDetailsDTO> personBasicDetailsDTO = new ArrayList<>(coverage.getResidents().size());
+        for (Person person : coverage.getResidents()) {
+            personBasicDetailsDTO.add(new PersonBasicDetailsDTO(
+                    person.getFirstName(),
+                    person.getLastName(),
+                    person.getAddress(),
+                    person.getPhone()));
+        }
 
+        return new PersonCoveredByStationDTO(coverage.countChildren(today), coverage.countAdults(today),
+                Collections.unmodifiableList(personBasicDetailsDTO));
     }
 
     /**
@@ -68,32 +103,71 @@ public class EmergencyMapper {
      * @return the converted HouseChildrenDTO
      */
     public List<HouseChildrenDTO> toHouseChildrenDTO(Map<Person, String> personWithBirthdate) {
+        List<HouseMemberDTO> houseMembers = new ArrayList<>(personWithBirthdate.size());
+        personWithBirthdate.forEach((person, birthdate) ->
+                houseMembers.add(new HouseMemberDTO(person.getFirstName(), person.getLastName(), calculateAge(birthdate))));
+        return toHouseChildrenDTO(houseMembers);
+    }
 
-        List<HouseChildrenDTO> houseChildrenDTOList = new ArrayList<>();
 
-        personWithBirthdate.forEach((person, birthdate) -> {
-            int age = calculateAge(birthdate);
-            if (age <= 18) {
-
-                List<HouseMemberDTO> houseMemberDTOList = personWithBirthdate.entrySet().stream()
-                        .filter(entry -> !entry.getKey().equals(person))
-                        .map(entry -> new HouseMemberDTO(entry.getKey().getFirstName(), entry.getKey().getLastName(), calculateAge(entry.getValue())))
-                        .toList();
-
-                houseChildrenDTOList.add(
-                        new HouseChildrenDTO(
-                                person.getFirstName(),
-                                person.getLastName(),
-                                age,
-                                houseMemberDTOList
-                        )
-                );
+    /**
+     * Convert a materialized household to a HouseChildrenDTO, ages are computed once per member
+     *
+     * @param household household of the address
+     * @return the converted HouseChildrenDTO
+     */
+    public List<HouseChildrenDTO> toHouseChildrenDTO(HouseholdView.Household household) {
+        List<HouseMemberDTO> houseMembers = new ArrayList<>(household.getMembers().size());
+        for (HouseholdView.Member member : household.getMembers()) {
+            if (member.birthdate() != null) {
+                houseMembers.add(new HouseMemberDTO(member.person().getFirstName(), member.person().getLastName(),
+                        ageService.age(member.birthdate())));
             }
-        });
+        }
+        return toHouseChildrenDTO(houseMembers);
+    }
 
-        return houseChildrenDTOList;
+    /**
+     * Build a HouseChildrenDTO for each child of a household.
+     * The members are built once per address and shared by all the children : each child gets a view of the list
+     * without itself, so the mapping is linear in the size of the household.
+     *
+     * @param houseMembers members of the household, with their age
+     * @return the converted HouseChildrenDTO
+     */
+    private List<HouseChildrenDTO> toHouseChildrenDTO(List<HouseMemberDTO> houseMembers) {
+        List<HouseMemberDTO> members = Collections.unmodifiableList(houseMembers);
+        List<HouseChildrenDTO> houseChildrenDTOList = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            HouseMemberDTO child = members.get(i);
+            if (child.getAge() <= 18) {
+                houseChildrenDTOList.add(new HouseChildrenDTO(child.getFirstName(), child.getLastName(), child.getAge(),
+                        without(members, i)));
+            }
+        }
+        return Collections.unmodifiableList(houseChildrenDTOList);
     }
 
+    /**
+     * Read-only view of a list without one of its elements
+     *
+     * @param list  list, not modified while the view is used
+     * @param index index of the element to skip
+     * @return view of the other elements, in the order of the list
+     */
+    private static <T> List<T> without(List<T> list, int index) {
+        return new AbstractList<>() {
+            @Override
+            public T get(int i) {
+                return list.get((i < index) ? i : i + 1);
+            }
+
+            @Override
+            public int size() {
+                return list.size() - 1;
+            }
+        };
+    }
 
     /**
      * Convert a Person, MedicalRecord, Firestation to a FamilyWithMedicalAndFirestationDTO
@@ -106,31 +180,61 @@ public class EmergencyMapper {
     public FamilyWithMedicalAndFirestationDTO toFamilyWithMedicalAndFirestationDTO(List<Person> persons,
                                                                                    List<MedicalRecord> medicalRecords,
                                                                                    Firestation firestation) {
+        return toFamilyWithMedicalAndFirestationDTO(SnapshotJoin.join(persons, medicalRecords), firestation);
+    }
+
+    /**
+     * Convert joined rows (person and medical record) and a Firestation to a FamilyWithMedicalAndFirestationDTO
+     *
+     * @param rows        joined rows of the persons
+     * @param firestation firestation
+     * @return the converted FamilyWithMedicalAndFirestationDTO
+     */
+    public FamilyWithMedicalAndFirestationDTO toFamilyWithMedicalAndFirestationDTO(List<SnapshotJoin.Row> rows,
+                                                                                   Firestation firestation) {
 
-        FamilyWithMedicalAndFirestationDTO familyDTO = new FamilyWithMedicalAndFirestationDTO();
-        familyDTO.setStation(firestation.getStation());
+        // Map each joined row directly to PersonMedicalDetails, the persons without medical record are not listed
+        List<PersonMedicalDetailsDTO> personMedicalDetailDTOS = new ArrayList<>(rows.size());
+        for (SnapshotJoin.Row row : rows) {
+            MedicalRecord medicalRecord = row.medicalRecord();
+            if (medicalRecord != null) {
+                personMedicalDetailDTOS.add(new PersonMedicalDetailsDTO(
+                        row.person().getFirstName(),
+                        row.person().getLastName(),
+                        calculateAge(medicalRecord.getBirthdate()),
+                        row.person().getPhone(),
+                        readOnly(medicalRecord.getMedications()),
+                        readOnly(medicalRecord.getAllergies())));
+            }
+        }
 
-        // Associate Person with MedicalRecord
-        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS = toPersonWithMedicalRecord(persons, medicalRecords);
+        return new FamilyWithMedicalAndFirestationDTO(firestation.getStation(), Collections.unmodifiableList(personMedicalDetailDTOS));
+    }
 
-        // Map PersonWithMedicalRecord to PersonMedicalDetails
-        List<PersonMedicalDetailsDTO> personMedicalDetailDTOS = personWithMedicalRecordDTOS.stream()
-                .map(personWithMedicalRecordDTO -> new PersonMedicalDetailsDTO(
-                        personWithMedicalRecordDTO.getFirstName(),
-                        personWithMedicalRecordDTO.getLastName(),
-                        personWithMedicalRecordDTO.getAge(),
-                        personWithMedicalRecordDTO.getPhone(),
-                        personWithMedicalRecordDTO.getMedications(),
-                        personWithMedicalRecordDTO.getAllergies()
 
+    /**
+     * Convert a materialized household to a FamilyWithMedicalAndFirestationDTO,
+     * the members without a known birthdate are not listed
+     *
+     * @param household household of the address, covered by a fire station
+     * @return the converted FamilyWithMedicalAndFirestationDTO
+     */
+    public FamilyWithMedicalAndFirestationDTO toFamilyWithMedicalAndFirestationDTO(HouseholdView.Household household) {
+        List<PersonMedicalDetailsDTO> personMedicalDetailDTOS = household.getMembers().stream()
+                .filter(member -> member.birthdate() != null)
+                .map(member -> new PersonMedicalDetailsDTO(
+                        member.person().getFirstName(),
+                        member.person().getLastName(),
+                        ageService.age(member.birthdate()),
+                        member.person().getPhone(),
+                        readOnly(member.medicalRecord().getMedications()),
+                        readOnly(member.medicalRecord().getAllergies())
                 ))
                 .toList();
 
-        familyDTO.setPersonMedicalDetailDTOS(personMedicalDetailDTOS);
-        return familyDTO;
+        return new FamilyWithMedicalAndFirestationDTO(household.getFirestation().getStation(), personMedicalDetailDTOS);
     }
 
-
     /**
      * Convert a PersonWithMedicalRecord to a PersonWithMedicalAndPhoneDTO
      *
@@ -138,14 +242,26 @@ public class EmergencyMapper {
      * @return the converted PersonWithMedicalAndPhoneDTO
      */
     public PersonWithMedicalAndPhoneDTO toPersonWithMedicalAndPhone(PersonWithMedicalRecordDTO person) {
-        PersonWithMedicalAndPhoneDTO personWithMedicalAndPhoneDTO = new PersonWithMedicalAndPhoneDTO();
-        personWithMedicalAndPhoneDTO.setFirstName(person.getFirstName());
-        personWithMedicalAndPhoneDTO.setLastName(person.getLastName());
-        personWithMedicalAndPhoneDTO.setMedications(person.getMedications());
-        personWithMedicalAndPhoneDTO.setAllergies(person.getAllergies());
-        personWithMedicalAndPhoneDTO.setAge((person.getAge() != null) ? person.getAge() : null);
-        personWithMedicalAndPhoneDTO.setPhone(person.getPhone());
-        return personWithMedicalAndPhoneDTO;
+        return new PersonWithMedicalAndPhoneDTO(person.getFirstName(), person.getLastName(), person.getAge(), person.getPhone(),
+                readOnly(person.getMedications()), readOnly(person.getAllergies()));
+    }
+
+    /**
+     * Convert a joined row (person and medical record) to a PersonWithMedicalAndPhoneDTO,
+     * without the intermediate PersonWithMedicalRecordDTO
+     *
+     * @param row joined row
+     * @return the converted PersonWithMedicalAndPhoneDTO, without age nor medical details if the person has no medical record,
+     * without age if the birthdate cannot be read
+     */
+    public PersonWithMedicalAndPhoneDTO toPersonWithMedicalAndPhone(SnapshotJoin.Row row) {
+        Person person = row.person();
+        MedicalRecord medicalRecord = row.medicalRecord();
+        if (medicalRecord == null) {
+            return new PersonWithMedicalAndPhoneDTO(person.getFirstName(), person.getLastName(), null, person.getPhone(), null, null);
+        }
+        return new PersonWithMedicalAndPhoneDTO(person.getFirstName(), person.getLastName(), ageOrNull(medicalRecord.getBirthdate()),
+                person.getPhone(), readOnly(medicalRecord.getMedications()), readOnly(medicalRecord.getAllergies()));
     }
 
     /**
@@ -155,31 +271,53 @@ public class EmergencyMapper {
      * @return the converted PersonWithMedicalAndEmailDTO
      */
     public PersonWithMedicalAndEmailDTO toPersonWithMedicalAndEmailDTO(PersonWithMedicalRecordDTO person) {
-        PersonWithMedicalAndEmailDTO personWithMedicalAndEmailDTO = new PersonWithMedicalAndEmailDTO();
-        personWithMedicalAndEmailDTO.setFirstName(person.getFirstName());
-        personWithMedicalAndEmailDTO.setLastName(person.getLastName());
-        personWithMedicalAndEmailDTO.setMedications(person.getMedications());
-        personWithMedicalAndEmailDTO.setAllergies(person.getAllergies());
-        personWithMedicalAndEmailDTO.setAge((person.getAge() != null) ? person.getAge() : null);
-        personWithMedicalAndEmailDTO.setEmail(person.getEmail());
-        return personWithMedicalAndEmailDTO;
+        return new PersonWithMedicalAndEmailDTO(person.getFirstName(), person.getLastName(), person.getAge(), person.getEmail(),
+                readOnly(person.getMedications()), readOnly(person.getAllergies()));
+    }
+
+    /**
+     * Convert a joined row (person and medical record) to a PersonWithMedicalAndEmailDTO,
+     * without the intermediate PersonWithMedicalRecordDTO
+     *
+     * @param row joined row
+     * @return the converted PersonWithMedicalAndEmailDTO, without age nor medical details if the person has no medical record,
+     * without age if the birthdate cannot be read
+     */
+    public PersonWithMedicalAndEmailDTO toPersonWithMedicalAndEmailDTO(SnapshotJoin.Row row) {
+        Person person = row.person();
+        MedicalRecord medicalRecord = row.medicalRecord();
+        if (medicalRecord == null) {
+            return new PersonWithMedicalAndEmailDTO(person.getFirstName(), person.getLastName(), null, person.getEmail(), null, null);
+        }
+        return new PersonWithMedicalAndEmailDTO(person.getFirstName(), person.getLastName(), ageOrNull(medicalRecord.getBirthdate()),
+                person.getEmail(), readOnly(medicalRecord.getMedications()), readOnly(medicalRecord.getAllergies()));
     }
 
     /**
-     * Associate Person with MedicalRecord
+     * Associate Person with MedicalRecord, by a hash join : the medical records are indexed by name once,
+     * then each person is probed once, so the cost is linear in the number of persons and medical records.
+     * The first medical record of a name wins, a person without medical record has no age nor medical details.
      *
      * @param persons        list of persons
      * @param medicalRecords list of medical records
      * @return list of persons with medical records
      */
     public List<PersonWithMedicalRecordDTO> toPersonWithMedicalRecord(List<Person> persons, List<MedicalRecord> medicalRecords) {
+        return toPersonWithMedicalRecord(SnapshotJoin.join(persons, medicalRecords));
+    }
 
-        return persons.stream()
-                .map(person -> {
-                    MedicalRecord medicalRecord = medicalRecords.stream()
-                            .filter(record -> record.getFirstName().equals(person.getFirstName()) && record.getLastName().equals(person.getLastName()))
-                            .findFirst()
-                            .orElse(null);
+    /**
+     * Convert joined rows (person and medical record) to persons with medical records
+     *
+     * @param rows joined rows
+     * @return list of persons with medical records
+     */
+    public List<PersonWithMedicalRecordDTO> toPersonWithMedicalRecord(List<SnapshotJoin.Row> rows) {
+
+        return rows.stream()
+                .map(row -> {
+                    Person person = row.person();
+                    MedicalRecord medicalRecord = row.medicalRecord();
 
                     PersonWithMedicalRecordDTO personWithMedicalRecordDTO = new PersonWithMedicalRecordDTO();
                     personWithMedicalRecordDTO.setFirstName(person.getFirstName());
@@ -203,6 +341,27 @@ public class EmergencyMapper {
 
     }
 
+    /**
+     * Read-only view of a list of a medical record
+     *
+     * @param list list, may be null
+     * @return unmodifiable view of the list, null if the list is null
+     */
+    private static <T> List<T> readOnly(List<T> list) {
+        return (list == null) ? null : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Age of a joined row, read like the birthdates of the households (see HouseholdView)
+     *
+     * @param birthdate birthdate of the medical record
+     * @return age, null if the birthdate is missing or cannot be read
+     */
+    private Integer ageOrNull(String birthdate) {
+        LocalDate parsed = AgeService.readBirthdateOrNull(birthdate);
+        return (parsed == null) ? null : ageService.age(parsed);
+    }
+
     /**
      * Calcule l'âge d'une personne
      *
@@ -210,16 +369,6 @@ public class EmergencyMapper {
      * @return âge
      */
     private int calculateAge(String birthdate) {
-        // Définir le format de la date
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-
-        // Convertir la chaîne de caractères en LocalDate
-        LocalDate birthDateLocal = LocalDate.parse(birthdate, formatter);
-
-        // Obtenir la date actuelle
-        LocalDate today = LocalDate.now();
-
-        // Calculer la différence en années entre la date de naissance et la date actuelle
-        return Period.between(birthDateLocal, today).getYears();
+        return ageService.age(birthdate);
     }
 }
@@ -1,6 +1,9 @@
 package com.openclassrooms.SafetyNet.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
@@ -28,4 +31,39 @@ public class Firestation {
     @Positive(message = "Station number should be positive")
     private Integer station;
 
+    @Schema(description = "Latitude of the address, in degrees (optional)", example = "33.9751")
+    @DecimalMin(value = "-90.0", message = "Latitude should be at least {value}")
+    @DecimalMax(value = "90.0", message = "Latitude should be at most {value}")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double latitude;
+
+    @Schema(description = "Longitude of the address, in degrees (optional)", example = "-118.3962")
+    @DecimalMin(value = "-180.0", message = "Longitude should be at least {value}")
+    @DecimalMax(value = "180.0", message = "Longitude should be at most {value}")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double longitude;
+
+    /**
+     * Constructor of a fire station without coordinates
+     *
+     * @param address Address of the firestation
+     * @param station Station number
+     */
+    public Firestation(String address, Integer station) {
+        this(address, station, null, null);
+    }
+
+    /**
+     * Build the fire station updated with a new station number,
+     * the coordinates are kept when the update does not give them
+     *
+     * @param update Firestation object with the new station number
+     * @return new Firestation object, this fire station is not modified
+     */
+    public Firestation updatedWith(Firestation update) {
+        return new Firestation(address, update.getStation(),
+                update.getLatitude() != null ? update.getLatitude() : latitude,
+                update.getLongitude() != null ? update.getLongitude() : longitude);
+    }
+
 }
@@ -1,7 +1,10 @@
 package com.openclassrooms.SafetyNet.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.openclassrooms.SafetyNet.validators.annotations.ValidPhone;
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -56,6 +59,46 @@ public class Person {
     @Email(message = "Email should be valid")
     private String email;
 
+    @Schema(description = "Latitude of the address of the person, in degrees (optional)", example = "33.9751")
+    @DecimalMin(value = "-90.0", message = "Latitude should be at least {value}")
+    @DecimalMax(value = "90.0", message = "Latitude should be at most {value}")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double latitude;
+
+    @Schema(description = "Longitude of the address of the person, in degrees (optional)", example = "-118.3962")
+    @DecimalMin(value = "-180.0", message = "Longitude should be at least {value}")
+    @DecimalMax(value = "180.0", message = "Longitude should be at most {value}")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double longitude;
+
+
+    /**
+     * Constructor of a person without coordinates
+     *
+     * @param firstName The first name of the person
+     * @param lastName  The last name of the person
+     * @param address   The address of the person
+     * @param city      The city of the person
+     * @param zip       The zip code of the person
+     * @param phone     The phone number of the person
+     * @param email     The email of the person
+     */
+    public Person(String firstName, String lastName, String address, String city, String zip, String phone, String email) {
+        this(firstName, lastName, address, city, zip, phone, email, null, null);
+    }
+
+    /**
+     * Build the person updated with new information : the editable fields are taken from the update,
+     * the coordinates are kept when the update does not give them
+     *
+     * @param update Person object with the new information
+     * @return new Person object, this person is not modified
+     */
+    public Person updatedWith(Person update) {
+        return new Person(firstName, lastName, update.getAddress(), update.getCity(), update.getZip(), update.getPhone(), update.getEmail(),
+                update.getLatitude() != null ? update.getLatitude() : latitude,
+                update.getLongitude() != null ? update.getLongitude() : longitude);
+    }
 
     /**
      * Set the first name of the person capitalized
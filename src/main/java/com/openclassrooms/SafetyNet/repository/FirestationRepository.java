@@ -2,11 +2,16 @@ package com.openclassrooms.SafetyNet.repository;
 
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.Pagination;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * FirestationRepository Class
@@ -15,6 +20,11 @@ import java.util.List;
 @Repository
 public class FirestationRepository {
 
+    // station numbers are padded, so the keys sort in numeric order
+    private static final Map<String, Function<Firestation, List<String>>> SORT_KEYS = Map.of(
+            "address", f -> Pagination.key(f.getAddress()),
+            "station", f -> Pagination.key(f.getStation() == null ? null : String.format("%011d", f.getStation()), f.getAddress()));
+
     private final JsonFileManager jsonFileManager;
 
 
@@ -34,7 +44,20 @@ public class FirestationRepository {
      * @return List of Firestation objects
      */
     public List<Firestation> getFirestations() {
-        return jsonFileManager.getFirestations();
+        return jsonFileManager.getSnapshot().getFirestations();
+    }
+
+    /**
+     * Get a page of fire stations
+     *
+     * @param limit  maximum number of fire stations
+     * @param cursor cursor of the page, null for the first page
+     * @param sort   address or station, prefixed by "-" for descending order (default address)
+     * @return Page of Firestation objects
+     */
+    public Page<Firestation> getFirestationsPage(int limit, String cursor, String sort) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        return Pagination.page(snapshot, "firestations", snapshot.getFirestations(), SORT_KEYS, "address", limit, cursor, sort);
     }
 
     /**
@@ -44,10 +67,7 @@ public class FirestationRepository {
      * @return List of Firestation objects
      */
     public List<Firestation> getFirestationByStationNumber(Integer station) {
-
-        List<Firestation> firestations = getFirestations().stream()
-                .filter(f -> f.getStation().equals(station))
-                .toList();
+        List<Firestation> firestations = jsonFileManager.getSnapshot().getFirestationsByStation(station);
         log.debug("{} firestation number {} found", firestations.size(), station);
         return firestations;
     }
@@ -60,14 +80,33 @@ public class FirestationRepository {
      * @return Firestation object
      */
     public Firestation getFirestationByAddress(String address) {
-        Firestation firestation = getFirestations().stream()
-                .filter(f -> f.getAddress().equals(address))
-                .findFirst()
-                .orElse(null);
+        Firestation firestation = jsonFileManager.getSnapshot().getFirestationByAddress(address);
         log.debug("Firestation wit address {} {}", address, firestation != null ? "found" : "not found");
         return firestation;
     }
 
+    /**
+     * Get a fire station with its version, both read in the same snapshot
+     *
+     * @param address String address of the fire station (case-sensitive)
+     * @return Versioned Firestation object, null if not found
+     */
+    public Versioned<Firestation> getVersionedFirestation(String address) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Firestation firestation = snapshot.getFirestationByAddress(address);
+        return (firestation == null) ? null : new Versioned<>(firestation, snapshot.getFirestationVersion(address));
+    }
+
+    /**
+     * Get the version of a fire station, changed by each write of the fire station
+     *
+     * @param address String address of the fire station (case-sensitive)
+     * @return version of the fire station, 0 if not found
+     */
+    public long getFirestationVersion(String address) {
+        return jsonFileManager.getSnapshot().getFirestationVersion(address);
+    }
+
     /**
      * Delete a fire station by address
      *
@@ -75,8 +114,12 @@ public class FirestationRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public boolean deleteFirestationByAddress(String address) throws JsonFileManagerSaveException {
-        List<Firestation> firestations = getFirestations();
-        boolean deleted = firestations.removeIf(firestation -> firestation.getAddress().equals(address));
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            List<Firestation> firestations = new ArrayList<>(snapshot.getFirestations());
+            boolean removed = firestations.removeIf(firestation -> firestation.getAddress().equals(address));
+            return removed ? snapshot.withFirestations(firestations) : snapshot;
+        });
+        boolean deleted = previous.getFirestationByAddress(address) != null;
         if (deleted) {
             jsonFileManager.saveJsonFile();
         }
@@ -92,33 +135,166 @@ public class FirestationRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public void saveFirestation(Firestation firestation) throws JsonFileManagerSaveException {
-        List<Firestation> firestations = getFirestations();
-        firestations.add(firestation);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Firestation> firestations = new ArrayList<>(snapshot.getFirestations());
+            firestations.add(firestation);
+            return snapshot.withFirestations(firestations);
+        });
         jsonFileManager.saveJsonFile();
         log.debug("Firestation {} saved", firestation);
     }
 
     /**
-     * Update the station number for fire station matching the address
+     * Update the station number for fire station matching the address,
+     * the existing fire station is replaced in the next snapshot (published objects are never modified)
+     * by a copy with the new station number (see Firestation.updatedWith)
      *
      * @param firestation Firestation object to update
      * @return Firestation object updated
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public Firestation updateFirestation(Firestation firestation) throws JsonFileManagerSaveException {
-        Firestation firestationToUpdate = getFirestationByAddress(firestation.getAddress());
+        Firestation[] updated = new Firestation[1];
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            Firestation firestationToUpdate = snapshot.getFirestationByAddress(firestation.getAddress());
+            if (firestationToUpdate == null) {
+                return snapshot;
+            }
+            updated[0] = firestationToUpdate.updatedWith(firestation);
+            List<Firestation> firestations = new ArrayList<>(snapshot.getFirestations());
+            firestations.replaceAll(f -> f == firestationToUpdate ? updated[0] : f);
+            return snapshot.withFirestations(firestations);
+        });
 
-        if (firestationToUpdate == null) {
+        if (previous.getFirestationByAddress(firestation.getAddress()) == null) {
             log.debug("Firestation with address {} not found", firestation.getAddress());
             return null;
         }
 
-        firestationToUpdate.setStation(firestation.getStation());
         jsonFileManager.saveJsonFile();
 
         log.debug("Firestation with address {} updated", firestation.getAddress());
-        return firestationToUpdate;
+        return updated[0];
+
+    }
+
+    /**
+     * Save fire stations with a single write of the file
+     *
+     * @param firestations List of Firestation objects
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void saveFirestations(List<Firestation> firestations) throws JsonFileManagerSaveException {
+        if (firestations.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Firestation> allFirestations = new ArrayList<>(snapshot.getFirestations());
+            allFirestations.addAll(firestations);
+            return snapshot.withFirestations(allFirestations);
+        });
+        log.debug("{} fire stations saved", firestations.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Update fire stations with a single write of the file, fire stations not found are ignored
+     *
+     * @param firestations List of Firestation objects with the new station number
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void updateFirestations(List<Firestation> firestations) throws JsonFileManagerSaveException {
+        if (firestations.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            Map<Firestation, Firestation> replacements = new IdentityHashMap<>();
+            for (Firestation firestation : firestations) {
+                Firestation existingFirestation = snapshot.getFirestationByAddress(firestation.getAddress());
+                if (existingFirestation != null) {
+                    replacements.put(existingFirestation, existingFirestation.updatedWith(firestation));
+                }
+            }
+            List<Firestation> allFirestations = new ArrayList<>(snapshot.getFirestations());
+            allFirestations.replaceAll(f -> replacements.getOrDefault(f, f));
+            return snapshot.withFirestations(allFirestations);
+        });
+        log.debug("{} fire stations updated", firestations.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Delete fire stations by address with a single write of the file
+     *
+     * @param addresses Collection of addresses (case-sensitive)
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void deleteFirestations(Collection<String> addresses) throws JsonFileManagerSaveException {
+        if (addresses.isEmpty()) {
+            return;
+        }
+        Set<String> keys = new HashSet<>(addresses);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Firestation> allFirestations = new ArrayList<>(snapshot.getFirestations());
+            allFirestations.removeIf(firestation -> keys.contains(firestation.getAddress()));
+            return snapshot.withFirestations(allFirestations);
+        });
+        log.debug("{} fire stations deleted", keys.size());
+        jsonFileManager.saveJsonFile();
+    }
 
+    /**
+     * Move addresses to another station in one pass over the fire stations, with a single write of the file.
+     * Fire stations are replaced by new objects (published objects are never modified), addresses not found are ignored.
+     * An address mapped to several stations keeps a single entry for the new station, the other entries are removed.
+     * When no entry is changed, no snapshot is published.
+     *
+     * @param addresses Collection of addresses (case-sensitive)
+     * @param station   Integer new station number
+     * @return List of Firestation objects of the addresses changed, mapped to the new station
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<Firestation> reassignFirestations(Collection<String> addresses, Integer station) throws JsonFileManagerSaveException {
+        Set<String> keys = new LinkedHashSet<>(addresses);
+        Map<String, Firestation> moved = new HashMap<>();
+        DataSnapshot[] published = new DataSnapshot[1];
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            moved.clear();
+            Map<String, Firestation> atStation = new HashMap<>();
+            for (Firestation f : snapshot.getFirestations()) {
+                if (keys.contains(f.getAddress()) && station.equals(f.getStation())) {
+                    atStation.putIfAbsent(f.getAddress(), f);
+                }
+            }
+            List<Firestation> allFirestations = new ArrayList<>(snapshot.getFirestations().size());
+            for (Firestation f : snapshot.getFirestations()) {
+                if (!keys.contains(f.getAddress()) || station.equals(f.getStation())) {
+                    allFirestations.add(f);
+                    continue;
+                }
+                // an address already mapped to the station is not added again, the entry is removed
+                Firestation existing = atStation.get(f.getAddress());
+                if (existing == null) {
+                    existing = new Firestation(f.getAddress(), station, f.getLatitude(), f.getLongitude());
+                    atStation.put(f.getAddress(), existing);
+                    allFirestations.add(existing);
+                }
+                moved.put(f.getAddress(), existing);
+            }
+            published[0] = moved.isEmpty() ? snapshot : snapshot.withFirestations(allFirestations);
+            return published[0];
+        });
+        List<Firestation> reassigned = new ArrayList<>();
+        for (String address : keys) {
+            if (moved.containsKey(address)) {
+                reassigned.add(moved.get(address));
+            }
+        }
+        if (previous != published[0]) {
+            jsonFileManager.saveJsonFile();
+        }
+        log.debug("{} fire stations moved to station {}", reassigned.size(), station);
+        return reassigned;
     }
 
 }
@@ -2,11 +2,17 @@ package com.openclassrooms.SafetyNet.repository;
 
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.Pagination;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * MedicalRecordRepository Class
@@ -15,6 +21,10 @@ import java.util.List;
 @Repository
 public class MedicalRecordRepository {
 
+    private static final Map<String, Function<MedicalRecord, List<String>>> SORT_KEYS = Map.of(
+            "name", m -> Pagination.key(m.getLastName(), m.getFirstName()),
+            "birthdate", m -> Pagination.key(sortableBirthdate(m.getBirthdate()), m.getLastName(), m.getFirstName()));
+
     private final JsonFileManager jsonFileManager;
 
     /**
@@ -33,7 +43,30 @@ public class MedicalRecordRepository {
      * @return List of Medical records objects
      */
     public List<MedicalRecord> getMedicalRecords() {
-        return jsonFileManager.getMedicalRecords();
+        return jsonFileManager.getSnapshot().getMedicalRecords();
+    }
+
+    /**
+     * Get a page of medical records
+     *
+     * @param limit  maximum number of medical records
+     * @param cursor cursor of the page, null for the first page
+     * @param sort   name or birthdate, prefixed by "-" for descending order (default name)
+     * @return Page of MedicalRecord objects
+     */
+    public Page<MedicalRecord> getMedicalRecordsPage(int limit, String cursor, String sort) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        return Pagination.page(snapshot, "medicalRecords", snapshot.getMedicalRecords(), SORT_KEYS, "name", limit, cursor, sort);
+    }
+
+    /**
+     * Birthdate MM/dd/yyyy written year first, so the keys sort in chronological order
+     */
+    private static String sortableBirthdate(String birthdate) {
+        if (birthdate == null || birthdate.length() != 10) {
+            return birthdate;
+        }
+        return birthdate.substring(6) + birthdate.substring(0, 2) + birthdate.substring(3, 5);
     }
 
     /**
@@ -44,14 +77,35 @@ public class MedicalRecordRepository {
      * @return Medical record object
      */
     public MedicalRecord getMedicalRecordByFirstNameAndLastName(String firstName, String lastName) {
-        MedicalRecord medicalRecord = getMedicalRecords().stream()
-                .filter(m -> m.getFirstName().equals(firstName) && m.getLastName().equals(lastName))
-                .findFirst()
-                .orElse(null);
+        MedicalRecord medicalRecord = jsonFileManager.getSnapshot().getMedicalRecord(firstName, lastName);
         log.debug("Medical record for {} {} {}", firstName, lastName, medicalRecord != null ? "found" : "not found");
         return medicalRecord;
     }
 
+    /**
+     * Get a medical record with its version, both read in the same snapshot
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Versioned MedicalRecord object, null if not found
+     */
+    public Versioned<MedicalRecord> getVersionedMedicalRecord(String firstName, String lastName) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        MedicalRecord medicalRecord = snapshot.getMedicalRecord(firstName, lastName);
+        return (medicalRecord == null) ? null : new Versioned<>(medicalRecord, snapshot.getMedicalRecordVersion(firstName, lastName));
+    }
+
+    /**
+     * Get the version of a medical record, changed by each write of the medical record
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return version of the medical record, 0 if not found
+     */
+    public long getMedicalRecordVersion(String firstName, String lastName) {
+        return jsonFileManager.getSnapshot().getMedicalRecordVersion(firstName, lastName);
+    }
+
     /**
      * Get the birthdate by first name and last name
      *
@@ -74,10 +128,13 @@ public class MedicalRecordRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public boolean deleteMedicalRecordByFirstNameAndLastName(String firstName, String lastName) throws JsonFileManagerSaveException {
-
-        List<MedicalRecord> medicalRecords = getMedicalRecords();
-        boolean deleted = medicalRecords.removeIf(medicalRecord ->
-                medicalRecord.getFirstName().equals(firstName) && medicalRecord.getLastName().equals(lastName));
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            List<MedicalRecord> medicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            boolean removed = medicalRecords.removeIf(medicalRecord ->
+                    medicalRecord.getFirstName().equals(firstName) && medicalRecord.getLastName().equals(lastName));
+            return removed ? snapshot.withMedicalRecords(medicalRecords) : snapshot;
+        });
+        boolean deleted = previous.getMedicalRecord(firstName, lastName) != null;
         if (deleted) {
             jsonFileManager.saveJsonFile();
         }
@@ -92,31 +149,104 @@ public class MedicalRecordRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public void saveMedicalRecord(MedicalRecord medicalRecord) throws JsonFileManagerSaveException {
-        List<MedicalRecord> medicalRecords = getMedicalRecords();
-        medicalRecords.add(medicalRecord);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<MedicalRecord> medicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            medicalRecords.add(medicalRecord);
+            return snapshot.withMedicalRecords(medicalRecords);
+        });
         log.debug("Medical record {} {} saved", medicalRecord.getFirstName(), medicalRecord.getLastName());
         jsonFileManager.saveJsonFile();
     }
 
 
     /**
-     * Update a medical record
+     * Update a medical record, the existing record is replaced in the next snapshot (published objects are never modified)
      *
      * @param medicalRecord MedicalRecord object with the new information
      * @return MedicalRecord object updated
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public MedicalRecord updateMedicalRecord(MedicalRecord medicalRecord) throws JsonFileManagerSaveException {
-        MedicalRecord existingRecord = getMedicalRecordByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
-        if (existingRecord != null) {
-            existingRecord.setBirthdate(medicalRecord.getBirthdate());
-            existingRecord.setMedications(medicalRecord.getMedications());
-            existingRecord.setAllergies(medicalRecord.getAllergies());
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            MedicalRecord existingRecord = snapshot.getMedicalRecord(medicalRecord.getFirstName(), medicalRecord.getLastName());
+            if (existingRecord == null) {
+                return snapshot;
+            }
+            List<MedicalRecord> medicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            medicalRecords.replaceAll(m -> m == existingRecord ? medicalRecord : m);
+            return snapshot.withMedicalRecords(medicalRecords);
+        });
+        if (previous.getMedicalRecord(medicalRecord.getFirstName(), medicalRecord.getLastName()) != null) {
             jsonFileManager.saveJsonFile();
-            return existingRecord;
+            return medicalRecord;
         }
         log.debug("Medical record {} {} not found", medicalRecord.getFirstName(), medicalRecord.getLastName());
         return null;
     }
 
+    /**
+     * Save medical records with a single write of the file
+     *
+     * @param medicalRecords List of MedicalRecord objects
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void saveMedicalRecords(List<MedicalRecord> medicalRecords) throws JsonFileManagerSaveException {
+        if (medicalRecords.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<MedicalRecord> allMedicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            allMedicalRecords.addAll(medicalRecords);
+            return snapshot.withMedicalRecords(allMedicalRecords);
+        });
+        log.debug("{} medical records saved", medicalRecords.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Update medical records with a single write of the file, medical records not found are ignored
+     *
+     * @param medicalRecords List of MedicalRecord objects with the new information
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void updateMedicalRecords(List<MedicalRecord> medicalRecords) throws JsonFileManagerSaveException {
+        if (medicalRecords.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            Map<MedicalRecord, MedicalRecord> replacements = new IdentityHashMap<>();
+            for (MedicalRecord medicalRecord : medicalRecords) {
+                MedicalRecord existingRecord = snapshot.getMedicalRecord(medicalRecord.getFirstName(), medicalRecord.getLastName());
+                if (existingRecord != null) {
+                    replacements.put(existingRecord, medicalRecord);
+                }
+            }
+            List<MedicalRecord> allMedicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            allMedicalRecords.replaceAll(m -> replacements.getOrDefault(m, m));
+            return snapshot.withMedicalRecords(allMedicalRecords);
+        });
+        log.debug("{} medical records updated", medicalRecords.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Delete medical records by first name and last name with a single write of the file
+     *
+     * @param names Collection of NameKey (first name and last name, case-sensitive)
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void deleteMedicalRecords(Collection<NameKey> names) throws JsonFileManagerSaveException {
+        if (names.isEmpty()) {
+            return;
+        }
+        Set<NameKey> keys = new HashSet<>(names);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<MedicalRecord> allMedicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+            allMedicalRecords.removeIf(medicalRecord -> keys.contains(new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName())));
+            return snapshot.withMedicalRecords(allMedicalRecords);
+        });
+        log.debug("{} medical records deleted", keys.size());
+        jsonFileManager.saveJsonFile();
+    }
+
 }
@@ -2,11 +2,17 @@ package com.openclassrooms.SafetyNet.repository;
 
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.Pagination;
+import com.openclassrooms.SafetyNet.utils.Versioned;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * PersonRepository Class
@@ -15,6 +21,11 @@ import java.util.List;
 @Repository
 public class PersonRepository {
 
+    private static final Map<String, Function<Person, List<String>>> SORT_KEYS = Map.of(
+            "name", p -> Pagination.key(p.getLastName(), p.getFirstName()),
+            "city", p -> Pagination.key(p.getCity(), p.getLastName(), p.getFirstName()),
+            "zip", p -> Pagination.key(p.getZip(), p.getLastName(), p.getFirstName()));
+
     private final JsonFileManager jsonFileManager;
 
     /**
@@ -33,7 +44,20 @@ public class PersonRepository {
      * @return List of Person objects
      */
     public List<Person> getPersons() {
-        return jsonFileManager.getPersons();
+        return jsonFileManager.getSnapshot().getPersons();
+    }
+
+    /**
+     * Get a page of persons
+     *
+     * @param limit  maximum number of persons
+     * @param cursor cursor of the page, null for the first page
+     * @param sort   name, city or zip, prefixed by "-" for descending order (default name)
+     * @return Page of Person objects
+     */
+    public Page<Person> getPersonsPage(int limit, String cursor, String sort) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        return Pagination.page(snapshot, "persons", snapshot.getPersons(), SORT_KEYS, "name", limit, cursor, sort);
     }
 
     /**
@@ -44,14 +68,35 @@ public class PersonRepository {
      * @return Person object
      */
     public Person getPersonByFirstNameAndLastName(String firstName, String lastName) {
-        Person personFound = getPersons().stream()
-                .filter(p -> p.getFirstName().equals(firstName) && p.getLastName().equals(lastName))
-                .findFirst()
-                .orElse(null);
+        Person personFound = jsonFileManager.getSnapshot().getPerson(firstName, lastName);
         log.debug("Person {} {} {}", firstName, lastName, personFound != null ? "found" : "not found");
         return personFound;
     }
 
+    /**
+     * Get a person with its version, both read in the same snapshot
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Versioned Person object, null if not found
+     */
+    public Versioned<Person> getVersionedPerson(String firstName, String lastName) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Person person = snapshot.getPerson(firstName, lastName);
+        return (person == null) ? null : new Versioned<>(person, snapshot.getPersonVersion(firstName, lastName));
+    }
+
+    /**
+     * Get the version of a person, changed by each write of the person
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return version of the person, 0 if not found
+     */
+    public long getPersonVersion(String firstName, String lastName) {
+        return jsonFileManager.getSnapshot().getPersonVersion(firstName, lastName);
+    }
+
     /**
      * Get a list of persons by last name
      *
@@ -59,9 +104,7 @@ public class PersonRepository {
      * @return List of Person objects
      */
     public List<Person> getPersonByLastName(String lastName) {
-        List<Person> persons = getPersons().stream()
-                .filter(p -> p.getLastName().equals(lastName))
-                .toList();
+        List<Person> persons = jsonFileManager.getSnapshot().getPersonsByLastName(lastName);
         log.debug("{} persons with last name {} found", persons.size(), lastName);
         return persons;
     }
@@ -73,10 +116,7 @@ public class PersonRepository {
      * @return List of Person objects
      */
     public List<Person> getPersonByAddress(String address) {
-
-        List<Person> persons = getPersons().stream()
-                .filter(p -> p.getAddress().equals(address))
-                .toList();
+        List<Person> persons = jsonFileManager.getSnapshot().getPersonsByAddress(address);
         log.debug("{} persons with address {} found", persons.size(), address);
         return persons;
     }
@@ -90,8 +130,12 @@ public class PersonRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public boolean deletePersonByFirstNameAndLastName(String firstName, String lastName) throws JsonFileManagerSaveException {
-        List<Person> persons = getPersons();
-        boolean deleted = persons.removeIf(person -> person.getFirstName().equals(firstName) && person.getLastName().equals(lastName));
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            List<Person> persons = new ArrayList<>(snapshot.getPersons());
+            boolean removed = persons.removeIf(person -> person.getFirstName().equals(firstName) && person.getLastName().equals(lastName));
+            return removed ? snapshot.withPersons(persons) : snapshot;
+        });
+        boolean deleted = previous.getPerson(firstName, lastName) != null;
         if (deleted) {
             jsonFileManager.saveJsonFile();
         }
@@ -106,33 +150,107 @@ public class PersonRepository {
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public void savePerson(Person person) throws JsonFileManagerSaveException {
-        List<Person> persons = getPersons();
-        persons.add(person);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Person> persons = new ArrayList<>(snapshot.getPersons());
+            persons.add(person);
+            return snapshot.withPersons(persons);
+        });
         log.debug("Person {} {} saved", person.getFirstName(), person.getLastName());
         jsonFileManager.saveJsonFile();
     }
 
 
     /**
-     * Update a person
+     * Update a person, the existing person is replaced in the next snapshot (published objects are never modified)
+     * by a copy with the editable fields of the update (see Person.updatedWith)
      *
      * @param person Person object with the new information
      * @return Person object updated
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public Person updatePerson(Person person) throws JsonFileManagerSaveException {
-        Person existingPerson = getPersonByFirstNameAndLastName(person.getFirstName(), person.getLastName());
-        if (existingPerson != null) {
-            existingPerson.setAddress(person.getAddress());
-            existingPerson.setCity(person.getCity());
-            existingPerson.setZip(person.getZip());
-            existingPerson.setPhone(person.getPhone());
-            existingPerson.setEmail(person.getEmail());
+        Person[] updated = new Person[1];
+        DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> {
+            Person existingPerson = snapshot.getPerson(person.getFirstName(), person.getLastName());
+            if (existingPerson == null) {
+                return snapshot;
+            }
+            updated[0] = existingPerson.updatedWith(person);
+            List<Person> persons = new ArrayList<>(snapshot.getPersons());
+            persons.replaceAll(p -> p == existingPerson ? updated[0] : p);
+            return snapshot.withPersons(persons);
+        });
+        if (previous.getPerson(person.getFirstName(), person.getLastName()) != null) {
             jsonFileManager.saveJsonFile();
-            return existingPerson;
+            return updated[0];
         }
         log.debug("Person {} {} not found", person.getFirstName(), person.getLastName());
         return null;
     }
 
+    /**
+     * Save persons with a single write of the file
+     *
+     * @param persons List of Person objects
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void savePersons(List<Person> persons) throws JsonFileManagerSaveException {
+        if (persons.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Person> allPersons = new ArrayList<>(snapshot.getPersons());
+            allPersons.addAll(persons);
+            return snapshot.withPersons(allPersons);
+        });
+        log.debug("{} persons saved", persons.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Update persons with a single write of the file, persons not found are ignored
+     *
+     * @param persons List of Person objects with the new information
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void updatePersons(List<Person> persons) throws JsonFileManagerSaveException {
+        if (persons.isEmpty()) {
+            return;
+        }
+        jsonFileManager.updateSnapshot(snapshot -> {
+            Map<Person, Person> replacements = new IdentityHashMap<>();
+            for (Person person : persons) {
+                Person existingPerson = snapshot.getPerson(person.getFirstName(), person.getLastName());
+                if (existingPerson != null) {
+                    replacements.put(existingPerson, existingPerson.updatedWith(person));
+                }
+            }
+            List<Person> allPersons = new ArrayList<>(snapshot.getPersons());
+            allPersons.replaceAll(p -> replacements.getOrDefault(p, p));
+            return snapshot.withPersons(allPersons);
+        });
+        log.debug("{} persons updated", persons.size());
+        jsonFileManager.saveJsonFile();
+    }
+
+    /**
+     * Delete persons by first name and last name with a single write of the file
+     *
+     * @param names Collection of NameKey (first name and last name, case-sensitive)
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void deletePersons(Collection<NameKey> names) throws JsonFileManagerSaveException {
+        if (names.isEmpty()) {
+            return;
+        }
+        Set<NameKey> keys = new HashSet<>(names);
+        jsonFileManager.updateSnapshot(snapshot -> {
+            List<Person> allPersons = new ArrayList<>(snapshot.getPersons());
+            allPersons.removeIf(person -> keys.contains(new NameKey(person.getFirstName(), person.getLastName())));
+            return snapshot.withPersons(allPersons);
+        });
+        log.debug("{} persons deleted", keys.size());
+        jsonFileManager.saveJsonFile();
+    }
+
 }
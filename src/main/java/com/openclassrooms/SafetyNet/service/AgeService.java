@@ -0,0 +1,162 @@
+package com.openclassrooms.SafetyNet.service;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AgeService Class
+ * <p>
+ * Compute the ages of the persons from the birthdates of their medical records (MM/dd/yyyy).
+ * Parsed birthdates are cached in a bounded LRU shared by the application, ages are cached for the current day only :
+ * the cache of the ages is replaced by the first call after midnight, read on the injected Clock.
+ */
+@Log4j2
+@Service
+public class AgeService {
+
+    private static final DateTimeFormatter BIRTHDATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final int MAX_BIRTHDATES = 100_000;
+    private static final Map<String, LocalDate> BIRTHDATES = Collections.synchronizedMap(lru(MAX_BIRTHDATES));
+
+    private final Clock clock;
+    private volatile Ages ages;
+
+    /**
+     * Constructor
+     *
+     * @param clock clock giving the current day
+     */
+    public AgeService(Clock clock) {
+        log.info("<constructor> AgeService");
+        this.clock = clock;
+        this.ages = new Ages(LocalDate.now(clock));
+    }
+
+    /**
+     * Get the current day
+     *
+     * @return current day, in the time zone of the clock
+     */
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Get the age of a person born at a birthdate
+     *
+     * @param birthdate birthdate (MM/dd/yyyy)
+     * @return age in years
+     * @throws java.time.format.DateTimeParseException if the birthdate cannot be read
+     */
+    public int age(String birthdate) {
+        return age(parseBirthdate(birthdate));
+    }
+
+    /**
+     * Get the age of a person born at a birthdate
+     *
+     * @param birthdate birthdate
+     * @return age in years
+     */
+    public int age(LocalDate birthdate) {
+        Ages current = currentAges();
+        return current.byBirthdate.computeIfAbsent(birthdate, b -> Period.between(b, current.day).getYears());
+    }
+
+    /**
+     * Read a birthdate, once for each distinct string
+     *
+     * @param birthdate birthdate (MM/dd/yyyy)
+     * @return LocalDate object
+     * @throws java.time.format.DateTimeParseException if the birthdate cannot be read
+     */
+    public LocalDate parseBirthdate(String birthdate) {
+        return readBirthdate(birthdate);
+    }
+
+    /**
+     * Read a birthdate, once for each distinct string : the cache is shared with the views built outside of Spring
+     * (HouseholdView) and keeps the MAX_BIRTHDATES birthdates read last
+     *
+     * @param birthdate birthdate (MM/dd/yyyy)
+     * @return LocalDate object
+     * @throws java.time.format.DateTimeParseException if the birthdate cannot be read
+     */
+    public static LocalDate readBirthdate(String birthdate) {
+        LocalDate parsed = BIRTHDATES.get(birthdate);
+        if (parsed == null) {
+            parsed = LocalDate.parse(birthdate, BIRTHDATE_FORMATTER);
+            BIRTHDATES.put(birthdate, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Build a map evicting its least recently used entry beyond a maximum size
+     *
+     * @param maxSize maximum number of entries
+     * @return an empty map, not synchronized
+     */
+    static <K, V> Map<K, V> lru(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Read a birthdate of a medical record, null if it is missing or cannot be read :
+     * a bad record gives an unknown age, it does not fail the whole query
+     *
+     * @param birthdate birthdate (MM/dd/yyyy), may be null
+     * @return LocalDate object, null if the birthdate is missing or not readable
+     */
+    public static LocalDate readBirthdateOrNull(String birthdate) {
+        if (birthdate == null) {
+            return null;
+        }
+        try {
+            return readBirthdate(birthdate);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the ages of the current day, replacing the ages of a previous day
+     */
+    private Ages currentAges() {
+        LocalDate today = today();
+        Ages current = ages;
+        if (!current.day.equals(today)) {
+            current = new Ages(today);
+            ages = current;
+            log.debug("Ages cache reset for {}", today);
+        }
+        return current;
+    }
+
+    /**
+     * Ages computed for a day, by birthdate
+     */
+    private static final class Ages {
+        private final LocalDate day;
+        private final Map<LocalDate, Integer> byBirthdate = new ConcurrentHashMap<>();
+
+        private Ages(LocalDate day) {
+            this.day = day;
+        }
+    }
+}
@@ -1,49 +1,72 @@
 package com.openclassrooms.SafetyNet.service;
 
 import com.openclassrooms.SafetyNet.dto.*;
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
 import com.openclassrooms.SafetyNet.mapper.EmergencyMapper;
 import com.openclassrooms.SafetyNet.model.*;
-import com.openclassrooms.SafetyNet.repository.FirestationRepository;
-import com.openclassrooms.SafetyNet.repository.MedicalRecordRepository;
-import com.openclassrooms.SafetyNet.repository.PersonRepository;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.FanOut;
+import com.openclassrooms.SafetyNet.utils.HouseholdView;
+import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.QueryCache;
+import com.openclassrooms.SafetyNet.utils.QueryCache.Key;
+import com.openclassrooms.SafetyNet.utils.QueryCache.Scope;
+import com.openclassrooms.SafetyNet.utils.QueryTrace;
+import com.openclassrooms.SafetyNet.utils.SnapshotJoin;
+import com.openclassrooms.SafetyNet.utils.SpatialIndex;
+import com.openclassrooms.SafetyNet.utils.StationView;
 import lombok.Data;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 
 /**
  * EmergencyService Class
+ * <p>
+ * Each query reads one DataSnapshot, so it runs without lock and sees persons, fire stations
+ * and medical records in the same state, even while writes are published.
+ * Persons are joined with their medical record and fire station by SnapshotJoin, in one pass over the indexes.
+ * Results are cached by QueryCache, which only evicts the results touched by a write : they are immutable DTOs
+ * with read-only collections, shared by all the callers.
+ * A composite query runs its sub-queries on one snapshot, sharing their cached results and intermediate joins.
+ * In explain mode, the stages of each query are recorded by QueryTrace.
+ * The streaming variants of the large queries are not cached : they hand each row to a sink as soon as it is built.
+ * The geographic queries are not cached either : they read the spatial indexes of the snapshot.
  */
 @Log4j2
 @Service
 @Data
 public class EmergencyService {
 
-    private final PersonRepository personRepository;
-    private final FirestationRepository firestationRepository;
-    private final MedicalRecordRepository medicalRecordRepository;
+    static final int MAX_NEAREST = 100;
+    static final double MAX_RADIUS = 100_000;
+
+    private final JsonFileManager jsonFileManager;
     private final EmergencyMapper emergencyMapper;
+    private final QueryCache queryCache;
+    private final FanOut fanOut;
 
     /**
      * Constructeur
      *
-     * @param personRepository        person repository
-     * @param firestationRepository   firestation repository
-     * @param medicalRecordRepository medical record repository
-     * @param emergencyMapper         emergency mapper
+     * @param jsonFileManager json file manager, source of the snapshots
+     * @param emergencyMapper emergency mapper
+     * @param queryCache      cache of the results of the queries
+     * @param fanOut          executor of the per-address work of the multi-station queries
      */
-    public EmergencyService(PersonRepository personRepository,
-                            FirestationRepository firestationRepository,
-                            MedicalRecordRepository medicalRecordRepository,
-                            EmergencyMapper emergencyMapper) {
+    public EmergencyService(JsonFileManager jsonFileManager,
+                            EmergencyMapper emergencyMapper,
+                            QueryCache queryCache,
+                            FanOut fanOut) {
         log.info("<constructor> EmergencyService");
-        this.personRepository = personRepository;
-        this.firestationRepository = firestationRepository;
-        this.medicalRecordRepository = medicalRecordRepository;
+        this.jsonFileManager = jsonFileManager;
         this.emergencyMapper = emergencyMapper;
+        this.queryCache = queryCache;
+        this.fanOut = fanOut;
     }
 
     /**
@@ -53,26 +76,24 @@ public class EmergencyService {
      * @return liste de PersonCoveredByStation
      */
     public PersonCoveredByStationDTO getPersonCoveredByStationNumber(int stationNumber) {
-        List<Firestation> firestations = firestationRepository.getFirestationByStationNumber(stationNumber);
-        if (firestations.isEmpty()) {
-            throw new NotFoundException("No firestation found for station number " + stationNumber);
-        }
-
-        Map<Person, String> personWithBirthdate = new LinkedHashMap<>();
-
-        for (Firestation firestation : firestations) {
-            List<Person> persons = personRepository.getPersonByAddress(firestation.getAddress());
+        return getPersonCoveredByStationNumber(jsonFileManager.getSnapshot(), stationNumber);
+    }
 
-            for (Person p : persons) {
-                String birthdate = medicalRecordRepository.getBirthdateByFirstNameAndLastName(p.getFirstName(), p.getLastName());
-                if (birthdate != null) {
-                    personWithBirthdate.put(p, birthdate);
-                }
+    /**
+     * Persons covered by a fire station, read in a snapshot
+     */
+    private PersonCoveredByStationDTO getPersonCoveredByStationNumber(DataSnapshot snapshot, int stationNumber) {
+        return queryCache.get(snapshot, Key.of("firestation", Scope.STATION, stationNumber), () -> {
+            StationView.Coverage coverage = QueryTrace.stage("station coverage", "materialized station view",
+                    () -> snapshot.getStationCoverage(stationNumber), c -> c.getResidents().size());
+            if (coverage == null) {
+                throw new NotFoundException("No firestation found for station number " + stationNumber);
             }
-        }
 
-        log.info("{} persons found", personWithBirthdate.size());
-        return emergencyMapper.toPersonCoveredByStationDTO(personWithBirthdate);
+            log.info("{} persons found", coverage.getResidents().size());
+            return QueryTrace.stage("DTO mapping", "residents of the coverage",
+                    () -> emergencyMapper.toPersonCoveredByStationDTO(coverage), dto -> dto.getPersons().size());
+        });
     }
 
 
@@ -83,47 +104,93 @@ public class EmergencyService {
      * @return List of HouseChildrenDTO objects
      */
     public List<HouseChildrenDTO> getHouseChildren(String address) {
-        List<Person> persons = personRepository.getPersonByAddress(address);
-
-        Map<Person, String> personWithBirthdate = new LinkedHashMap<>();
+        return getHouseChildren(jsonFileManager.getSnapshot(), address);
+    }
 
-        for (Person p : persons) {
-            String birthdate = medicalRecordRepository.getBirthdateByFirstNameAndLastName(p.getFirstName(), p.getLastName());
-            if (birthdate != null) {
-                personWithBirthdate.put(p, birthdate);
+    /**
+     * Children living at an address, read in a snapshot
+     */
+    private List<HouseChildrenDTO> getHouseChildren(DataSnapshot snapshot, String address) {
+        return queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, address), () -> {
+            HouseholdView.Household household = QueryTrace.stage("household", "materialized household view",
+                    () -> snapshot.getHousehold(address), h -> h.getMembers().size());
+            if (household == null) {
+                log.info("0 persons found");
+                return List.of();
             }
-        }
-
-        log.info("{} persons found", personWithBirthdate.size());
-        return emergencyMapper.toHouseChildrenDTO(personWithBirthdate);
 
+            log.info("{} persons found", household.getMembers().size());
+            return QueryTrace.stage("DTO mapping", "members of the household",
+                    () -> emergencyMapper.toHouseChildrenDTO(household), List::size);
+        });
     }
 
     /**
      * Get phone numbers covered by a fire stations
      *
      * @param stationNumber station number
-     * @return HashSet of phone numbers
+     * @return Set of phone numbers, read-only
      */
-    public HashSet<String> getPhoneNumbersCoveredByFireStation(int stationNumber) {
-        HashSet<String> phoneNumbers = new HashSet<>();
+    public Set<String> getPhoneNumbersCoveredByFireStation(int stationNumber) {
+        return getPhoneNumbersCoveredByFireStation(jsonFileManager.getSnapshot(), stationNumber, new HashMap<>());
+    }
 
-        List<Firestation> firestations = firestationRepository.getFirestationByStationNumber(stationNumber);
-        if (firestations.isEmpty()) {
+    /**
+     * Phone numbers covered by a fire station, read in a snapshot
+     */
+    private Set<String> getPhoneNumbersCoveredByFireStation(DataSnapshot snapshot, int stationNumber,
+                                                                Map<String, List<String>> phoneNumbersByAddress) {
+        if (snapshot.getFirestationsByStation(stationNumber).isEmpty()) {
             throw new NotFoundException("No firestation found for station number " + stationNumber);
         }
+        return phoneNumbersCoveredByFireStation(snapshot, stationNumber, phoneNumbersByAddress);
+    }
 
-        for (Firestation firestation : firestations) {
-            List<Person> persons = personRepository.getPersonByAddress(firestation.getAddress());
-            for (Person person : persons) {
-                phoneNumbers.add(person.getPhone());
+    /**
+     * Get phone numbers covered by several fire stations, read in one snapshot.
+     * The phone numbers of an address mapped to several stations are collected once.
+     *
+     * @param stationNumbers station numbers
+     * @return read-only phone numbers by station number, in the order of the request, empty for an unknown station
+     */
+    public Map<Integer, Set<String>> getPhoneNumbersCoveredByFireStations(List<Integer> stationNumbers) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Map<String, List<String>> phoneNumbersByAddress = new HashMap<>();
+        Map<Integer, Set<String>> phoneNumbers = new LinkedHashMap<>();
+        for (Integer stationNumber : stationNumbers) {
+            if (stationNumber == null || phoneNumbers.containsKey(stationNumber)) {
+                continue;
             }
+            phoneNumbers.put(stationNumber, snapshot.getFirestationsByStation(stationNumber).isEmpty()
+                    ? Set.of()
+                    : phoneNumbersCoveredByFireStation(snapshot, stationNumber, phoneNumbersByAddress));
         }
-
-        log.info("{} phone numbers found", phoneNumbers.size());
+        log.info("{} fire stations queried", phoneNumbers.size());
         return phoneNumbers;
     }
 
+    /**
+     * Phone numbers covered by a mapped fire station, cached
+     */
+    private Set<String> phoneNumbersCoveredByFireStation(DataSnapshot snapshot, int stationNumber,
+                                                             Map<String, List<String>> phoneNumbersByAddress) {
+        return queryCache.get(snapshot, Key.of("phoneAlert", Scope.STATION, stationNumber), () -> {
+            List<String> addresses = QueryTrace.stage("station lookup", "index of fire stations by station",
+                    () -> SnapshotJoin.addressesOf(snapshot, List.of(stationNumber)), List::size);
+            HashSet<String> phoneNumbers = QueryTrace.stage("resident scan", "index of persons by address", () -> {
+                HashSet<String> phones = new HashSet<>();
+                for (String address : addresses) {
+                    phones.addAll(phoneNumbersByAddress.computeIfAbsent(address, a ->
+                            snapshot.getPersonsByAddress(a).stream().map(Person::getPhone).toList()));
+                }
+                return phones;
+            }, Set::size);
+
+            log.info("{} phone numbers found", phoneNumbers.size());
+            return Collections.unmodifiableSet(phoneNumbers);
+        });
+    }
+
     /**
      * Get family (persons at same address) with fire station and medical details
      *
@@ -131,76 +198,156 @@ public class EmergencyService {
      * @return liste de FamilyWithMedicalAndFirestationDTO
      */
     public FamilyWithMedicalAndFirestationDTO getFamilyWithMedicalAndFirestation(String address) {
+        return familyWithMedicalAndFirestation(jsonFileManager.getSnapshot(), address);
+    }
 
-        Firestation firestation = firestationRepository.getFirestationByAddress(address);
-        if (firestation == null) {
-            return new FamilyWithMedicalAndFirestationDTO();
+    /**
+     * Get families (persons at same address) with fire station and medical details of several addresses,
+     * read in one snapshot
+     *
+     * @param addresses addresses
+     * @return FamilyWithMedicalAndFirestationDTO by address, in the order of the request, empty for an unknown address
+     */
+    public Map<String, FamilyWithMedicalAndFirestationDTO> getFamiliesWithMedicalAndFirestation(List<String> addresses) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Map<String, FamilyWithMedicalAndFirestationDTO> families = new LinkedHashMap<>();
+        for (String address : addresses) {
+            families.computeIfAbsent(address, a -> familyWithMedicalAndFirestation(snapshot, a));
         }
+        log.info("{} addresses queried", families.size());
+        return families;
+    }
 
-        List<Person> persons = personRepository.getPersonByAddress(address);
-
-        List<MedicalRecord> medicalRecords = new ArrayList<>();
-        for (Person person : persons) {
-            MedicalRecord medicalRecord = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(
-                    person.getFirstName(),
-                    person.getLastName());
-            if (medicalRecord != null) {
-                medicalRecords.add(medicalRecord);
+    /**
+     * Family with fire station and medical details of an address, cached
+     */
+    private FamilyWithMedicalAndFirestationDTO familyWithMedicalAndFirestation(DataSnapshot snapshot, String address) {
+        return queryCache.get(snapshot, Key.of("fire", Scope.ADDRESS, address), () -> {
+            HouseholdView.Household household = QueryTrace.stage("household", "materialized household view",
+                    () -> snapshot.getHousehold(address), h -> h.getMembers().size());
+            if (household == null || household.getFirestation() == null) {
+                return new FamilyWithMedicalAndFirestationDTO(null, null);
             }
-        }
 
-        log.info("{} persons found", persons.size());
-        return emergencyMapper.toFamilyWithMedicalAndFirestationDTO(persons, medicalRecords, firestation);
+            log.info("{} persons found", household.getMembers().size());
+            return QueryTrace.stage("DTO mapping", "members of the household",
+                    () -> emergencyMapper.toFamilyWithMedicalAndFirestationDTO(household), dto -> dto.getPersonMedicalDetailDTOS().size());
+        });
     }
 
-
     /**
      * Get family (persons at same address) with medical details, grouped by address
      *
-     * @param stationNumbers List of station numbers
-     * @return FamilyWithMedicalGroupedByAddressDTO object
+     * @param stationNumbers List of station numbers, in any order
+     * @return FamilyWithMedicalGroupedByAddressDTO object, addresses in the ascending order of the stations
      */
     public FamilyWithMedicalGroupedByAddressDTO getFamilyWithMedicalGroupedByAddress(List<Integer> stationNumbers) {
+        return getFamilyWithMedicalGroupedByAddress(jsonFileManager.getSnapshot(), stationNumbers);
+    }
 
-        FamilyWithMedicalGroupedByAddressDTO familyDTO = new FamilyWithMedicalGroupedByAddressDTO();
-
-        Set<String> addresses = new HashSet<>();
+    /**
+     * Families covered by fire stations, read in a snapshot
+     */
+    private FamilyWithMedicalGroupedByAddressDTO getFamilyWithMedicalGroupedByAddress(DataSnapshot snapshot, List<Integer> stationNumbers) {
+        List<Integer> stations = floodStations(stationNumbers);
+        return queryCache.get(snapshot, Key.of("flood", Scope.STATION, stations.toArray()), () -> {
+            List<String> addresses = QueryTrace.stage("station lookup", "index of fire stations by station",
+                    () -> SnapshotJoin.addressesOf(snapshot, stations), List::size);
+            return familiesByAddress(snapshot, addresses);
+        });
+    }
 
-        for (Integer stationNumber : stationNumbers) {
-            List<Firestation> firestations = firestationRepository.getFirestationByStationNumber(stationNumber);
+    /**
+     * Stations of a flood query, read in ascending order : the result (and its cache key) does not depend on the order
+     * of the request, and the Json and streamed variants list the addresses in the same order
+     */
+    private static List<Integer> floodStations(List<Integer> stationNumbers) {
+        return stationNumbers.stream().filter(Objects::nonNull).distinct().sorted().toList();
+    }
 
-            firestations.stream().map(Firestation::getAddress).forEach(addresses::add);
+    /**
+     * Get family (persons at same address) with medical details, grouped by address, for the addresses within
+     * a distance of a point. Only the geocoded addresses are found, through the spatial index of the households.
+     *
+     * @param latitude  latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param radius    distance, in meters
+     * @return FamilyWithMedicalGroupedByAddressDTO object, the nearest addresses first
+     */
+    public FamilyWithMedicalGroupedByAddressDTO getFamilyWithMedicalWithinRadius(double latitude, double longitude, double radius) {
+        List<String> errors = locationErrors(latitude, longitude);
+        if (!(radius > 0 && radius <= MAX_RADIUS)) {
+            errors.add("radius should be positive and at most " + (int) MAX_RADIUS + " meters");
         }
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid location query", errors);
+        }
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        QueryTrace.describeCurrent("floodRadius", snapshot.getVersion());
 
-        List<Person> finalPersonList = new ArrayList<>();
-        List<MedicalRecord> finalMedicalRecordList = new ArrayList<>();
-
-        for (String address : addresses) {
-            List<Person> tempPersonList = personRepository.getPersonByAddress(address);
-            finalPersonList.addAll(tempPersonList);
-
-            for (Person person : tempPersonList) {
-                MedicalRecord tempMedicalRecord = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(person.getFirstName(), person.getLastName());
-                if (tempMedicalRecord != null) {
-                    finalMedicalRecordList.add(tempMedicalRecord);
-                }
+        List<String> addresses = QueryTrace.stage("spatial index lookup", "k-d tree of geocoded households", () -> {
+            List<String> found = new ArrayList<>();
+            for (SpatialIndex.Hit<String> hit : snapshot.getHouseholdLocations().withinRadius(latitude, longitude, radius)) {
+                found.add(hit.item());
             }
-        }
+            return found;
+        }, List::size);
+        return familiesByAddress(snapshot, addresses);
+    }
 
-        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS = emergencyMapper.toPersonWithMedicalRecord(finalPersonList, finalMedicalRecordList);
+    /**
+     * Families (persons at same address) with medical details of addresses, grouped by address
+     */
+    private FamilyWithMedicalGroupedByAddressDTO familiesByAddress(DataSnapshot snapshot, List<String> addresses) {
+        // per-address work (residents, medical join, mapping) fanned out, merged in the order of the addresses
+        List<Map.Entry<String, PersonWithMedicalAndPhoneDTO>> persons = fanOut.map(addresses, QueryTrace.propagate(chunk -> {
+            List<SnapshotJoin.Row> rows = QueryTrace.stage("resident scan and medical join",
+                    "index of persons by address, index of medical records by name",
+                    () -> SnapshotJoin.byAddresses(snapshot, chunk), List::size);
+            return QueryTrace.stage("DTO mapping", "joined rows", () -> {
+                List<Map.Entry<String, PersonWithMedicalAndPhoneDTO>> mapped = new ArrayList<>(rows.size());
+                for (SnapshotJoin.Row row : rows) {
+                    mapped.add(Map.entry(row.person().getAddress(), emergencyMapper.toPersonWithMedicalAndPhone(row)));
+                }
+                return mapped;
+            }, List::size);
+        }));
+
+        Map<String, List<PersonWithMedicalAndPhoneDTO>> personGroupedByAddress = QueryTrace.stage("grouping by address",
+                "hash map", () -> {
+                    Map<String, List<PersonWithMedicalAndPhoneDTO>> grouped = new LinkedHashMap<>();
+                    for (Map.Entry<String, PersonWithMedicalAndPhoneDTO> person : persons) {
+                        grouped.computeIfAbsent(person.getKey(), k -> new ArrayList<>()).add(person.getValue());
+                    }
+                    grouped.replaceAll((address, group) -> Collections.unmodifiableList(group));
+                    return Collections.unmodifiableMap(grouped);
+                }, Map::size);
 
-        HashMap<String, List<PersonWithMedicalAndPhoneDTO>> personGroupedByAddress = new HashMap<>();
+        log.info("{} persons found", persons.size());
+        return new FamilyWithMedicalGroupedByAddressDTO(personGroupedByAddress);
+    }
 
-        for (PersonWithMedicalRecordDTO personWithMedicalRecordDTO : personWithMedicalRecordDTOS) {
-            PersonWithMedicalAndPhoneDTO personWithMedicalAndPhoneDTO = emergencyMapper.toPersonWithMedicalAndPhone(personWithMedicalRecordDTO);
-            personGroupedByAddress.computeIfAbsent(
-                    personWithMedicalRecordDTO.getAddress(), k -> new ArrayList<>()).add(personWithMedicalAndPhoneDTO
-            );
+    /**
+     * Stream the families (persons at same address) with medical details, one address at a time.
+     * Only the persons of the current address are held in memory, addresses without resident are skipped.
+     *
+     * @param stationNumbers List of station numbers, in any order
+     * @param sink           consumer of the families, called in the ascending order of the stations (as the Json variant)
+     */
+    public void streamFamilyWithMedicalGroupedByAddress(List<Integer> stationNumbers, Consumer<? super FamilyAtAddressDTO> sink) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        int count = 0;
+        for (String address : SnapshotJoin.addressesOf(snapshot, floodStations(stationNumbers))) {
+            List<PersonWithMedicalAndPhoneDTO> persons = new ArrayList<>();
+            for (SnapshotJoin.Row row : SnapshotJoin.byAddress(snapshot, address)) {
+                persons.add(emergencyMapper.toPersonWithMedicalAndPhone(row));
+            }
+            if (!persons.isEmpty()) {
+                sink.accept(new FamilyAtAddressDTO(address, persons));
+                count += persons.size();
+            }
         }
-        familyDTO.setMapAddressPersons(personGroupedByAddress);
-
-        log.info("{} persons found", finalPersonList.size());
-        return familyDTO;
+        log.info("{} persons streamed", count);
     }
 
 
@@ -211,30 +358,32 @@ public class EmergencyService {
      * @return List of PersonWithMedicalAndEmailDTO objects
      */
     public List<PersonWithMedicalAndEmailDTO> getPersonMedicalWithEmail(String lastName) {
-        List<Person> personsList = personRepository.getPersonByLastName(lastName);
-        if (personsList.isEmpty()) {
-            throw new NotFoundException("No person found with last name " + lastName);
-        }
+        return getPersonMedicalWithEmail(jsonFileManager.getSnapshot(), lastName);
+    }
 
-        List<MedicalRecord> medicalRecordsList = new ArrayList<>();
-        for (Person person : personsList) {
-            MedicalRecord medicalRecord = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(
-                    person.getFirstName(), person.getLastName());
-            if (medicalRecord != null) {
-                medicalRecordsList.add(medicalRecord);
+    /**
+     * Persons with a last name, read in a snapshot
+     */
+    private List<PersonWithMedicalAndEmailDTO> getPersonMedicalWithEmail(DataSnapshot snapshot, String lastName) {
+        return queryCache.get(snapshot, Key.of("personInfo", Scope.LAST_NAME, lastName), () -> {
+            List<SnapshotJoin.Row> rows = QueryTrace.stage("resident scan and medical join",
+                    "index of persons by last name, index of medical records by name",
+                    () -> SnapshotJoin.byLastName(snapshot, lastName), List::size);
+            if (rows.isEmpty()) {
+                throw new NotFoundException("No person found with last name " + lastName);
             }
-        }
 
-        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS = emergencyMapper.toPersonWithMedicalRecord(personsList, medicalRecordsList);
-        
-        List<PersonWithMedicalAndEmailDTO> personWithMedicalAndEmailDTOS = new ArrayList<>();
-        for (PersonWithMedicalRecordDTO p : personWithMedicalRecordDTOS) {
-            PersonWithMedicalAndEmailDTO personWithMedicalAndEmailDTO = emergencyMapper.toPersonWithMedicalAndEmailDTO(p);
-            personWithMedicalAndEmailDTOS.add(personWithMedicalAndEmailDTO);
-        }
+            List<PersonWithMedicalAndEmailDTO> personWithMedicalAndEmailDTOS = QueryTrace.stage("DTO mapping", "joined rows", () -> {
+                List<PersonWithMedicalAndEmailDTO> dtos = new ArrayList<>(rows.size());
+                for (SnapshotJoin.Row row : rows) {
+                    dtos.add(emergencyMapper.toPersonWithMedicalAndEmailDTO(row));
+                }
+                return dtos;
+            }, List::size);
 
-        log.info("{} persons found", personWithMedicalAndEmailDTOS.size());
-        return personWithMedicalAndEmailDTOS;
+            log.info("{} persons found", personWithMedicalAndEmailDTOS.size());
+            return Collections.unmodifiableList(personWithMedicalAndEmailDTOS);
+        });
     }
 
 
@@ -242,20 +391,192 @@ public class EmergencyService {
      * Get email of persons living in the city
      *
      * @param city name of the city
-     * @return HashSet of email
+     * @return Set of email, read-only
+     */
+    public Set<String> getPersonEmailByCity(String city) {
+        return getPersonEmailByCity(jsonFileManager.getSnapshot(), city);
+    }
+
+    /**
+     * Email of persons living in a city, read in a snapshot
+     */
+    private Set<String> getPersonEmailByCity(DataSnapshot snapshot, String city) {
+        return queryCache.get(snapshot, Key.of("communityEmail", Scope.CITY, city), () -> {
+            HashSet<String> emailList = QueryTrace.stage("resident scan", "full scan of persons", () -> {
+                HashSet<String> emails = new HashSet<>();
+                snapshot.getPersons().stream()
+                        .filter(p -> p.getCity().equals(city))
+                        .map(Person::getEmail)
+                        .forEach(emails::add);
+                return emails;
+            }, Set::size);
+
+            log.info("{} emails found", emailList.size());
+            return Collections.unmodifiableSet(emailList);
+        });
+    }
+
+    /**
+     * Stream the email of persons living in the city, each email once
+     *
+     * @param city name of the city
+     * @param sink consumer of the emails
+     */
+    public void streamPersonEmailByCity(String city, Consumer<? super String> sink) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Set<String> seen = new HashSet<>();
+        for (Person person : snapshot.getPersons()) {
+            if (person.getCity().equals(city) && seen.add(person.getEmail())) {
+                sink.accept(person.getEmail());
+            }
+        }
+        log.info("{} emails streamed", seen.size());
+    }
+
+    /**
+     * Get the fire stations nearest to a point, each station once with its nearest covered address
+     *
+     * @param latitude  latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param count     maximum number of stations
+     * @return List of NearestFirestationDTO objects, nearest first
+     */
+    public List<NearestFirestationDTO> getNearestFirestations(double latitude, double longitude, int count) {
+        List<String> errors = locationErrors(latitude, longitude);
+        if (count < 1 || count > MAX_NEAREST) {
+            errors.add("count should be between 1 and " + MAX_NEAREST);
+        }
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid location query", errors);
+        }
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        QueryTrace.describeCurrent("nearestFirestations", snapshot.getVersion());
+        SpatialIndex<Firestation> locations = snapshot.getFirestationLocations();
+
+        // several addresses are covered by the same station : the search is widened until enough stations are found
+        List<NearestFirestationDTO> nearest = QueryTrace.stage("spatial index lookup", "k-d tree of geocoded fire stations", () -> {
+            for (int size = count; ; size *= 2) {
+                List<SpatialIndex.Hit<Firestation>> hits = locations.nearest(latitude, longitude, size);
+                Map<Integer, NearestFirestationDTO> stations = new LinkedHashMap<>();
+                for (SpatialIndex.Hit<Firestation> hit : hits) {
+                    if (stations.size() == count) {
+                        break;
+                    }
+                    Firestation firestation = hit.item();
+                    stations.putIfAbsent(firestation.getStation(),
+                            new NearestFirestationDTO(firestation.getStation(), firestation.getAddress(), hit.distance()));
+                }
+                if (stations.size() == count || hits.size() < size) {
+                    return new ArrayList<>(stations.values());
+                }
+            }
+        }, List::size);
+
+        log.info("{} fire stations found", nearest.size());
+        return nearest;
+    }
+
+    /**
+     * Get the persons living within a distance of a point
+     *
+     * @param latitude  latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param radius    distance, in meters
+     * @return List of PersonNearbyDTO objects, nearest first
      */
-    public HashSet<String> getPersonEmailByCity(String city) {
+    public List<PersonNearbyDTO> getPersonsWithinRadius(double latitude, double longitude, double radius) {
+        List<String> errors = locationErrors(latitude, longitude);
+        if (!(radius > 0 && radius <= MAX_RADIUS)) {
+            errors.add("radius should be positive and at most " + (int) MAX_RADIUS + " meters");
+        }
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid location query", errors);
+        }
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        QueryTrace.describeCurrent("nearbyPersons", snapshot.getVersion());
+
+        List<SpatialIndex.Hit<Person>> hits = QueryTrace.stage("spatial index lookup", "k-d tree of geocoded persons",
+                () -> snapshot.getPersonLocations().withinRadius(latitude, longitude, radius), List::size);
+        List<PersonNearbyDTO> persons = QueryTrace.stage("DTO mapping", "spatial index hits", () -> {
+            List<PersonNearbyDTO> dtos = new ArrayList<>(hits.size());
+            for (SpatialIndex.Hit<Person> hit : hits) {
+                Person person = hit.item();
+                dtos.add(new PersonNearbyDTO(person.getFirstName(), person.getLastName(), person.getAddress(),
+                        person.getPhone(), hit.distance()));
+            }
+            return dtos;
+        }, List::size);
 
-        HashSet<String> emailList = new HashSet<>();
+        log.info("{} persons found", persons.size());
+        return persons;
+    }
 
-        List<Person> personList = personRepository.getPersons();
-        personList.stream()
-                .filter(p -> p.getCity().equals(city))
-                .map(Person::getEmail)
-                .forEach(emailList::add);
+    /**
+     * Check the coordinates of a point
+     */
+    private static List<String> locationErrors(double latitude, double longitude) {
+        List<String> errors = new ArrayList<>();
+        if (!(latitude >= -90 && latitude <= 90)) {
+            errors.add("latitude should be between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            errors.add("longitude should be between -180 and 180");
+        }
+        return errors;
+    }
+
+    /**
+     * Run named sub-queries of the emergency endpoints on one snapshot.
+     * Sub-queries with the same parameters share their cached result, and the phone numbers of an address
+     * are collected once for all the phoneAlert sub-queries.
+     *
+     * @param queries sub-queries
+     * @return results of the sub-queries, in the order of the request
+     */
+    public List<EmergencyQueryResultDTO> runQueries(List<EmergencyQueryDTO> queries) {
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        Map<String, List<String>> phoneNumbersByAddress = new HashMap<>();
+        List<EmergencyQueryResultDTO> results = new ArrayList<>(queries.size());
+        for (EmergencyQueryDTO query : queries) {
+            try {
+                Object result = runQuery(snapshot, query, phoneNumbersByAddress);
+                results.add(new EmergencyQueryResultDTO(query.getName(), 200, result, List.of()));
+            } catch (BadRequestException e) {
+                results.add(new EmergencyQueryResultDTO(query.getName(), 400, null, e.getErrors()));
+            } catch (NotFoundException e) {
+                results.add(new EmergencyQueryResultDTO(query.getName(), 404, null, List.of(e.getMessage())));
+            }
+        }
+        log.info("{} queries run on snapshot version {}", results.size(), snapshot.getVersion());
+        return results;
+    }
+
+    /**
+     * Run a sub-query on a snapshot
+     */
+    private Object runQuery(DataSnapshot snapshot, EmergencyQueryDTO query, Map<String, List<String>> phoneNumbersByAddress) {
+        String name = (query.getQuery() == null) ? "" : query.getQuery();
+        return switch (name) {
+            case "firestation" -> getPersonCoveredByStationNumber(snapshot, required(query.getStation(), "station"));
+            case "childAlert" -> getHouseChildren(snapshot, required(query.getAddress(), "address"));
+            case "phoneAlert" -> getPhoneNumbersCoveredByFireStation(snapshot, required(query.getStation(), "station"), phoneNumbersByAddress);
+            case "fire" -> familyWithMedicalAndFirestation(snapshot, required(query.getAddress(), "address"));
+            case "flood" -> getFamilyWithMedicalGroupedByAddress(snapshot, required(query.getStations(), "stations"));
+            case "personInfo" -> getPersonMedicalWithEmail(snapshot, required(query.getLastName(), "lastName"));
+            case "communityEmail" -> getPersonEmailByCity(snapshot, required(query.getCity(), "city"));
+            default -> throw new BadRequestException("Invalid query",
+                    List.of("query must be one of firestation, childAlert, phoneAlert, fire, flood, personInfo, communityEmail"));
+        };
+    }
 
-        log.info("{} emails found", emailList.size());
-        return emailList;
+    /**
+     * Check a parameter of a sub-query
+     */
+    private static <T> T required(T value, String parameter) {
+        if (value == null) {
+            throw new BadRequestException("Invalid query", List.of(parameter + " is required"));
+        }
+        return value;
     }
 
 }
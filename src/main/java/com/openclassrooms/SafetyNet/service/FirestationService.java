@@ -1,13 +1,20 @@
 package com.openclassrooms.SafetyNet.service;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.StationReassignmentDTO;
 import com.openclassrooms.SafetyNet.exceptions.*;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.repository.FirestationRepository;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.utils.Versioned;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
 import lombok.Data;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * FirestationService Class
@@ -18,15 +25,21 @@ import java.util.List;
 public class FirestationService {
 
     private final FirestationRepository firestationRepository;
+    private final StripedLock stripedLock;
+    private final BatchItemValidator batchItemValidator;
 
     /**
      * Constructor
      *
      * @param firestationRepository firestation repository
+     * @param stripedLock           write locks striped by address
+     * @param batchItemValidator    validator of the items of a batch
      */
-    public FirestationService(FirestationRepository firestationRepository) {
+    public FirestationService(FirestationRepository firestationRepository, StripedLock stripedLock, BatchItemValidator batchItemValidator) {
         log.info("<constructor> FirestationService");
         this.firestationRepository = firestationRepository;
+        this.stripedLock = stripedLock;
+        this.batchItemValidator = batchItemValidator;
     }
 
     /**
@@ -40,6 +53,20 @@ public class FirestationService {
         return firestations;
     }
 
+    /**
+     * Get a page of fire stations
+     *
+     * @param limit  maximum number of fire stations
+     * @param cursor cursor returned with the previous page, null for the first page
+     * @param sort   name of the sort, prefixed by "-" for descending order, null for the default sort
+     * @return Page of Firestation objects
+     */
+    public Page<Firestation> getFirestationsPage(int limit, String cursor, String sort) {
+        Page<Firestation> page = firestationRepository.getFirestationsPage(limit, cursor, sort);
+        log.info("{} fire stations found, version {}", page.items().size(), page.version());
+        return page;
+    }
+
 
     /**
      * Get fire station by address
@@ -58,6 +85,23 @@ public class FirestationService {
     }
 
 
+    /**
+     * Get fire station by address with its version
+     *
+     * @param address String address of the fire station (case-sensitive)
+     * @return Versioned Firestation object
+     * @throws NotFoundException if fire station not found
+     */
+    public Versioned<Firestation> getVersionedFirestation(String address) throws NotFoundException {
+        Versioned<Firestation> firestation = firestationRepository.getVersionedFirestation(address);
+        if (firestation == null) {
+            throw new NotFoundException("Fire station with address " + address + " not found");
+        }
+        log.info("Fire station with address {} found, version {}", address, firestation.version());
+        return firestation;
+    }
+
+
     /**
      * Delete a fire station by address
      *
@@ -65,7 +109,7 @@ public class FirestationService {
      * @throws Exception if error while deleting
      */
     public void deleteFirestationByAddress(String address) throws Exception {
-        try {
+        try (StripedLock.Guard ignored = stripedLock.lock(address)) {
             boolean deleted = firestationRepository.deleteFirestationByAddress(address);
             if (!deleted) {
                 throw new NotFoundException("Fire station not found with address : " + address);
@@ -81,24 +125,30 @@ public class FirestationService {
      * Save a fire station
      *
      * @param firestation Firestation object to save
+     * @return Versioned Firestation object saved
      * @throws JsonFileManagerSaveException if error while saving
      * @throws ConflictException            if fire station already exist
      */
-    public void saveFirestation(Firestation firestation) throws JsonFileManagerSaveException, ConflictException {
+    public Versioned<Firestation> saveFirestation(Firestation firestation) throws JsonFileManagerSaveException, ConflictException {
+        long version;
 
-        // Vérifie si Firestation existe déjà
-        Firestation firestationExist = firestationRepository.getFirestationByAddress(firestation.getAddress());
-        if (firestationExist != null) {
-            throw new ConflictException("Fire station already exist with address: " + firestation.getAddress());
+        try (StripedLock.Guard ignored = stripedLock.lock(firestation.getAddress())) {
+            // Vérifie si Firestation existe déjà
+            Firestation firestationExist = firestationRepository.getFirestationByAddress(firestation.getAddress());
+            if (firestationExist != null) {
+                throw new ConflictException("Fire station already exist with address: " + firestation.getAddress());
 
-        }
-        // Création de Firestation
-        try {
-            firestationRepository.saveFirestation(firestation);
-        } catch (JsonFileManagerSaveException ex) {
-            throw new JsonFileManagerSaveException("Error while saving the fire station in JSON file");
+            }
+            // Création de Firestation
+            try {
+                firestationRepository.saveFirestation(firestation);
+            } catch (JsonFileManagerSaveException ex) {
+                throw new JsonFileManagerSaveException("Error while saving the fire station in JSON file");
+            }
+            version = firestationRepository.getFirestationVersion(firestation.getAddress());
         }
         log.info("Firestation number {} at {} saved", firestation.getStation(), firestation.getAddress());
+        return new Versioned<>(firestation, version);
 
     }
 
@@ -110,13 +160,165 @@ public class FirestationService {
      * @throws NotFoundException if fire station not found
      */
     public Firestation updateFirestation(Firestation firestation) throws NotFoundException {
+        return updateFirestation(firestation, null).value();
+    }
 
-        Firestation firestationUpdated = firestationRepository.updateFirestation(firestation);
+    /**
+     * Update station number of the fire station matching the address if its version matches the If-Match header
+     *
+     * @param firestation Firestation object to update
+     * @param ifMatch     String If-Match header, null to update any version
+     * @return Versioned Firestation object updated
+     * @throws NotFoundException           if fire station not found
+     * @throws PreconditionFailedException if the fire station was modified since the ETag was read
+     */
+    public Versioned<Firestation> updateFirestation(Firestation firestation, String ifMatch) throws NotFoundException, PreconditionFailedException {
+
+        Firestation firestationUpdated;
+        long version;
+        try (StripedLock.Guard ignored = stripedLock.lock(firestation.getAddress())) {
+            long currentVersion = firestationRepository.getFirestationVersion(firestation.getAddress());
+            if (currentVersion != 0 && !Versioned.matches(ifMatch, currentVersion)) {
+                throw new PreconditionFailedException("Fire station with address " + firestation.getAddress()
+                        + " was modified, current version: " + currentVersion);
+            }
+            firestationUpdated = firestationRepository.updateFirestation(firestation);
+            version = firestationRepository.getFirestationVersion(firestation.getAddress());
+        }
         if (firestationUpdated == null) {
             throw new NotFoundException("Fire station not found with address: " + firestation.getAddress());
         }
 
-        log.debug("Fire station with address {} updated", firestationUpdated.getAddress());
-        return firestationUpdated;
+        log.debug("Fire station with address {} updated, version {}", firestationUpdated.getAddress(), version);
+        return new Versioned<>(firestationUpdated, version);
+    }
+
+    /**
+     * Save a batch of fire stations : all stripes are locked, valid items are saved with a single write of the file
+     *
+     * @param firestations List of Firestation objects
+     * @return List of BatchItemResultDTO, one per item : 201, 400 if invalid, 409 if the fire station already exists
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> saveFirestations(List<Firestation> firestations) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(firestations.size());
+        List<Firestation> firestationsToSave = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            Set<String> addresses = new HashSet<>();
+            for (int i = 0; i < firestations.size(); i++) {
+                Firestation firestation = firestations.get(i);
+                List<String> errors = batchItemValidator.validate(firestation);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (!addresses.add(firestation.getAddress())
+                        || firestationRepository.getFirestationByAddress(firestation.getAddress()) != null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CONFLICT.value(),
+                            List.of("Fire station already exist with address: " + firestation.getAddress())));
+                } else {
+                    firestationsToSave.add(firestation);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CREATED.value(), List.of()));
+                }
+            }
+            firestationRepository.saveFirestations(firestationsToSave);
+        }
+        log.info("{} fire stations saved out of {}", firestationsToSave.size(), firestations.size());
+        return results;
+    }
+
+    /**
+     * Update a batch of fire stations : all stripes are locked, valid items are updated with a single write of the file
+     *
+     * @param firestations List of Firestation objects with the new station number
+     * @return List of BatchItemResultDTO, one per item : 200, 400 if invalid, 404 if the fire station is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> updateFirestations(List<Firestation> firestations) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(firestations.size());
+        List<Firestation> firestationsToUpdate = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < firestations.size(); i++) {
+                Firestation firestation = firestations.get(i);
+                List<String> errors = batchItemValidator.validate(firestation);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (firestationRepository.getFirestationByAddress(firestation.getAddress()) == null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Fire station not found with address: " + firestation.getAddress())));
+                } else {
+                    firestationsToUpdate.add(firestation);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            firestationRepository.updateFirestations(firestationsToUpdate);
+        }
+        log.info("{} fire stations updated out of {}", firestationsToUpdate.size(), firestations.size());
+        return results;
+    }
+
+    /**
+     * Delete a batch of fire stations : all stripes are locked, fire stations found are deleted with a single write of the file
+     *
+     * @param addresses List of addresses (case-sensitive)
+     * @return List of BatchItemResultDTO, one per item : 200, 404 if the fire station is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> deleteFirestations(List<String> addresses) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(addresses.size());
+        Set<String> addressesToDelete = new HashSet<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < addresses.size(); i++) {
+                String address = addresses.get(i);
+                if (firestationRepository.getFirestationByAddress(address) == null || !addressesToDelete.add(address)) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Fire station not found with address : " + address)));
+                } else {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            firestationRepository.deleteFirestations(addressesToDelete);
+        }
+        log.info("{} fire stations deleted out of {}", addressesToDelete.size(), addresses.size());
+        return results;
+    }
+
+    /**
+     * Move addresses to another station : the given addresses and all the addresses of fromStation.
+     * All stripes are locked, the fire stations are updated in one pass with a single write of the file.
+     *
+     * @param reassignment StationReassignmentDTO
+     * @return List of Firestation objects moved to the new station
+     * @throws BadRequestException          if the reassignment is invalid
+     * @throws NotFoundException            if an address or fromStation is not found, nothing is moved
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<Firestation> reassignFirestations(StationReassignmentDTO reassignment)
+            throws BadRequestException, NotFoundException, JsonFileManagerSaveException {
+        List<String> errors = batchItemValidator.validate(reassignment);
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid station reassignment", errors);
+        }
+
+        List<Firestation> reassigned;
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            Set<String> addresses = new LinkedHashSet<>();
+            if (reassignment.getAddresses() != null) {
+                for (String address : reassignment.getAddresses()) {
+                    if (firestationRepository.getFirestationByAddress(address) == null) {
+                        throw new NotFoundException("Fire station not found with address: " + address);
+                    }
+                    addresses.add(address);
+                }
+            }
+            if (reassignment.getFromStation() != null) {
+                List<Firestation> firestations = firestationRepository.getFirestationByStationNumber(reassignment.getFromStation());
+                if (firestations.isEmpty()) {
+                    throw new NotFoundException("No firestation found for station number " + reassignment.getFromStation());
+                }
+                firestations.forEach(firestation -> addresses.add(firestation.getAddress()));
+            }
+            reassigned = firestationRepository.reassignFirestations(addresses, reassignment.getToStation());
+        }
+        log.info("{} fire stations moved to station {}", reassigned.size(), reassignment.getToStation());
+        return reassigned;
     }
 }
@@ -1,16 +1,28 @@
 package com.openclassrooms.SafetyNet.service;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
 import com.openclassrooms.SafetyNet.exceptions.ConflictException;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
+import com.openclassrooms.SafetyNet.exceptions.PreconditionFailedException;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
 import com.openclassrooms.SafetyNet.repository.MedicalRecordRepository;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.utils.Versioned;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
 import lombok.Data;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * MedicalRecordService Class
@@ -22,16 +34,24 @@ public class MedicalRecordService {
 
     private final MedicalRecordRepository medicalRecordRepository;
     private final PersonService personService;
+    private final StripedLock stripedLock;
+    private final BatchItemValidator batchItemValidator;
 
     /**
      * Constructor
      *
      * @param medicalRecordRepository medical repository
+     * @param personService           person service
+     * @param stripedLock             write locks striped by name
+     * @param batchItemValidator      validator of the items of a batch
      */
-    public MedicalRecordService(MedicalRecordRepository medicalRecordRepository, PersonService personService) {
+    public MedicalRecordService(MedicalRecordRepository medicalRecordRepository, PersonService personService,
+                                StripedLock stripedLock, BatchItemValidator batchItemValidator) {
         log.info("<constructor> MedicalRecordService");
         this.medicalRecordRepository = medicalRecordRepository;
         this.personService = personService;
+        this.stripedLock = stripedLock;
+        this.batchItemValidator = batchItemValidator;
     }
 
     /**
@@ -45,6 +65,20 @@ public class MedicalRecordService {
         return medicalRecords;
     }
 
+    /**
+     * Get a page of medical records
+     *
+     * @param limit  maximum number of medical records
+     * @param cursor cursor returned with the previous page, null for the first page
+     * @param sort   name of the sort, prefixed by "-" for descending order, null for the default sort
+     * @return Page of MedicalRecord objects
+     */
+    public Page<MedicalRecord> getMedicalRecordsPage(int limit, String cursor, String sort) {
+        Page<MedicalRecord> page = medicalRecordRepository.getMedicalRecordsPage(limit, cursor, sort);
+        log.info("{} medical records found, version {}", page.items().size(), page.version());
+        return page;
+    }
+
     /**
      * Get a medical record by first name and last name
      *
@@ -62,6 +96,23 @@ public class MedicalRecordService {
         return medicalRecord;
     }
 
+    /**
+     * Get a medical record by first name and last name with its version
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Versioned MedicalRecord object
+     * @throws NotFoundException if medical record not found
+     */
+    public Versioned<MedicalRecord> getVersionedMedicalRecord(String firstName, String lastName) throws NotFoundException {
+        Versioned<MedicalRecord> medicalRecord = medicalRecordRepository.getVersionedMedicalRecord(firstName, lastName);
+        if (medicalRecord == null) {
+            throw new NotFoundException("Medical record not found with firstName: " + firstName + " and lastName: " + lastName);
+        }
+        log.info("Medical record of {} {} found, version {}", firstName, lastName, medicalRecord.version());
+        return medicalRecord;
+    }
+
     /**
      * Delete a medical record by first name and last name
      *
@@ -70,7 +121,7 @@ public class MedicalRecordService {
      * @throws Exception if an error occurs while deleting the person
      */
     public void deleteMedicalRecordByFirstNameAndLastName(String firstName, String lastName) throws Exception {
-        try {
+        try (StripedLock.Guard ignored = stripedLock.lock(new NameKey(firstName, lastName))) {
             boolean deleted = medicalRecordRepository.deleteMedicalRecordByFirstNameAndLastName(firstName, lastName);
             if (!deleted) {
                 throw new NotFoundException("Medical record not found with firstName: " + firstName + " and lastName: " + lastName);
@@ -85,30 +136,36 @@ public class MedicalRecordService {
      * Save a medical record
      *
      * @param medicalRecord MedicalRecord object to be saved
+     * @return Versioned MedicalRecord object saved
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      * @throws ConflictException            if medical record already exist
      */
-    public void saveMedicalRecord(MedicalRecord medicalRecord) throws JsonFileManagerSaveException, ConflictException, NotFoundException {
+    public Versioned<MedicalRecord> saveMedicalRecord(MedicalRecord medicalRecord) throws JsonFileManagerSaveException, ConflictException, NotFoundException {
 
-        // Vérifie si le medical record existe déjà
-        try {
-            MedicalRecord medicalRecordExist = getMedicalRecordByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
-            if (medicalRecordExist != null) {
-                throw new ConflictException("Medical record already exist with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName());
+        long version;
+        try (StripedLock.Guard ignored = stripedLock.lock(new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName()))) {
+            // Vérifie si le medical record existe déjà
+            try {
+                MedicalRecord medicalRecordExist = getMedicalRecordByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+                if (medicalRecordExist != null) {
+                    throw new ConflictException("Medical record already exist with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName());
+                }
+            } catch (NotFoundException notFound) {
             }
-        } catch (NotFoundException ignored) {
-        }
 
-        // Vérifie si la personne existe
-        personService.getPersonByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+            // Vérifie si la personne existe
+            personService.getPersonByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
 
-        // Création du medical record
-        try {
-            medicalRecordRepository.saveMedicalRecord(medicalRecord);
-        } catch (JsonFileManagerSaveException ex) {
-            throw new JsonFileManagerSaveException("Error while saving the medical record in JSON file");
+            // Création du medical record
+            try {
+                medicalRecordRepository.saveMedicalRecord(medicalRecord);
+            } catch (JsonFileManagerSaveException ex) {
+                throw new JsonFileManagerSaveException("Error while saving the medical record in JSON file");
+            }
+            version = medicalRecordRepository.getMedicalRecordVersion(medicalRecord.getFirstName(), medicalRecord.getLastName());
         }
         log.info("Medical record of {} {} saved", medicalRecord.getFirstName(), medicalRecord.getLastName());
+        return new Versioned<>(medicalRecord, version);
     }
 
 
@@ -120,18 +177,139 @@ public class MedicalRecordService {
      * @throws NotFoundException if medical record not found
      */
     public MedicalRecord updateMedicalRecord(MedicalRecord medicalRecord) throws NotFoundException {
+        return updateMedicalRecord(medicalRecord, null).value();
+    }
+
+    /**
+     * Update a medical record if its version matches the If-Match header
+     *
+     * @param medicalRecord MedicalRecord object to update
+     * @param ifMatch       String If-Match header, null to update any version
+     * @return Versioned MedicalRecord object updated
+     * @throws NotFoundException           if medical record not found
+     * @throws PreconditionFailedException if the medical record was modified since the ETag was read
+     */
+    public Versioned<MedicalRecord> updateMedicalRecord(MedicalRecord medicalRecord, String ifMatch) throws NotFoundException, PreconditionFailedException {
+
+        MedicalRecord medicalRecordUdated;
+        long version;
+        try (StripedLock.Guard ignored = stripedLock.lock(new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName()))) {
+            // Vérifie si la personne existe
+            personService.getPersonByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
 
-        // Vérifie si la personne existe
-        personService.getPersonByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName());
+            long currentVersion = medicalRecordRepository.getMedicalRecordVersion(medicalRecord.getFirstName(), medicalRecord.getLastName());
+            if (currentVersion != 0 && !Versioned.matches(ifMatch, currentVersion)) {
+                throw new PreconditionFailedException("Medical record of " + medicalRecord.getFirstName() + " " + medicalRecord.getLastName()
+                        + " was modified, current version: " + currentVersion);
+            }
 
-        // Récupère le medical record
-        MedicalRecord medicalRecordUdated = medicalRecordRepository.updateMedicalRecord(medicalRecord);
+            // Récupère le medical record
+            medicalRecordUdated = medicalRecordRepository.updateMedicalRecord(medicalRecord);
+            version = medicalRecordRepository.getMedicalRecordVersion(medicalRecord.getFirstName(), medicalRecord.getLastName());
+        }
         if (medicalRecordUdated == null) {
             throw new NotFoundException("Medical record not found with firstName: " + medicalRecord.getFirstName()
                     + " and lastName: " + medicalRecord.getLastName());
         }
-        log.info("Medical record of {} {} updated", medicalRecord.getFirstName(), medicalRecord.getLastName());
+        log.info("Medical record of {} {} updated, version {}", medicalRecord.getFirstName(), medicalRecord.getLastName(), version);
+
+        return new Versioned<>(medicalRecordUdated, version);
+    }
+
+    /**
+     * Save a batch of medical records : all stripes are locked, valid items are saved with a single write of the file
+     *
+     * @param medicalRecords List of MedicalRecord objects
+     * @return List of BatchItemResultDTO, one per item : 201, 400 if invalid, 404 if the person doesn't exist,
+     * 409 if the medical record already exists
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> saveMedicalRecords(List<MedicalRecord> medicalRecords) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(medicalRecords.size());
+        List<MedicalRecord> medicalRecordsToSave = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            Set<NameKey> names = new HashSet<>();
+            for (int i = 0; i < medicalRecords.size(); i++) {
+                MedicalRecord medicalRecord = medicalRecords.get(i);
+                List<String> errors = batchItemValidator.validate(medicalRecord);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (!personService.existsPerson(medicalRecord.getFirstName(), medicalRecord.getLastName())) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Person not found with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName())));
+                } else if (!names.add(new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName()))
+                        || medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName()) != null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CONFLICT.value(),
+                            List.of("Medical record already exist with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName())));
+                } else {
+                    medicalRecordsToSave.add(medicalRecord);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CREATED.value(), List.of()));
+                }
+            }
+            medicalRecordRepository.saveMedicalRecords(medicalRecordsToSave);
+        }
+        log.info("{} medical records saved out of {}", medicalRecordsToSave.size(), medicalRecords.size());
+        return results;
+    }
+
+    /**
+     * Update a batch of medical records : all stripes are locked, valid items are updated with a single write of the file
+     *
+     * @param medicalRecords List of MedicalRecord objects with the new information
+     * @return List of BatchItemResultDTO, one per item : 200, 400 if invalid, 404 if the person or the medical record is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> updateMedicalRecords(List<MedicalRecord> medicalRecords) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(medicalRecords.size());
+        List<MedicalRecord> medicalRecordsToUpdate = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < medicalRecords.size(); i++) {
+                MedicalRecord medicalRecord = medicalRecords.get(i);
+                List<String> errors = batchItemValidator.validate(medicalRecord);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (!personService.existsPerson(medicalRecord.getFirstName(), medicalRecord.getLastName())
+                        || medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(medicalRecord.getFirstName(), medicalRecord.getLastName()) == null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Medical record not found with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName())));
+                } else {
+                    medicalRecordsToUpdate.add(medicalRecord);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            medicalRecordRepository.updateMedicalRecords(medicalRecordsToUpdate);
+        }
+        log.info("{} medical records updated out of {}", medicalRecordsToUpdate.size(), medicalRecords.size());
+        return results;
+    }
 
-        return medicalRecordUdated;
+    /**
+     * Delete a batch of medical records : all stripes are locked, medical records found are deleted with a single write of the file
+     *
+     * @param names List of PersonNameDTO (first name and last name, case-sensitive)
+     * @return List of BatchItemResultDTO, one per item : 200, 400 if invalid, 404 if the medical record is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> deleteMedicalRecords(List<PersonNameDTO> names) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(names.size());
+        Set<NameKey> namesToDelete = new HashSet<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < names.size(); i++) {
+                PersonNameDTO name = names.get(i);
+                List<String> errors = batchItemValidator.validate(name);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(name.getFirstName(), name.getLastName()) == null
+                        || !namesToDelete.add(new NameKey(name.getFirstName(), name.getLastName()))) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Medical record not found with firstName: " + name.getFirstName() + " and lastName: " + name.getLastName())));
+                } else {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            medicalRecordRepository.deleteMedicalRecords(namesToDelete);
+        }
+        log.info("{} medical records deleted out of {}", namesToDelete.size(), names.size());
+        return results;
     }
 }
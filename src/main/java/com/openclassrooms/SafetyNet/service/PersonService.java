@@ -1,15 +1,24 @@
 package com.openclassrooms.SafetyNet.service;
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.exceptions.ConflictException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
+import com.openclassrooms.SafetyNet.exceptions.PreconditionFailedException;
 import com.openclassrooms.SafetyNet.repository.PersonRepository;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
+import com.openclassrooms.SafetyNet.utils.Page;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.utils.Versioned;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
 import lombok.Data;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * PersonService Class
@@ -20,15 +29,21 @@ import java.util.List;
 public class PersonService {
 
     private final PersonRepository personRepository;
+    private final StripedLock stripedLock;
+    private final BatchItemValidator batchItemValidator;
 
     /**
      * Constructor
      *
-     * @param personRepository person repository
+     * @param personRepository   person repository
+     * @param stripedLock        write locks striped by household address and name
+     * @param batchItemValidator validator of the items of a batch
      */
-    public PersonService(PersonRepository personRepository) {
+    public PersonService(PersonRepository personRepository, StripedLock stripedLock, BatchItemValidator batchItemValidator) {
         log.info("<constructor> PersonService");
         this.personRepository = personRepository;
+        this.stripedLock = stripedLock;
+        this.batchItemValidator = batchItemValidator;
     }
 
     /**
@@ -42,6 +57,20 @@ public class PersonService {
         return persons;
     }
 
+    /**
+     * Get a page of persons
+     *
+     * @param limit  maximum number of persons
+     * @param cursor cursor returned with the previous page, null for the first page
+     * @param sort   name of the sort, prefixed by "-" for descending order, null for the default sort
+     * @return Page of Person objects
+     */
+    public Page<Person> getPersonsPage(int limit, String cursor, String sort) {
+        Page<Person> page = personRepository.getPersonsPage(limit, cursor, sort);
+        log.info("{} persons found, version {}", page.items().size(), page.version());
+        return page;
+    }
+
     /**
      * Get a person by first name and last name
      *
@@ -59,6 +88,23 @@ public class PersonService {
         return person;
     }
 
+    /**
+     * Get a person by first name and last name with its version
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Versioned Person object
+     * @throws NotFoundException if person not found
+     */
+    public Versioned<Person> getVersionedPerson(String firstName, String lastName) throws NotFoundException {
+        Versioned<Person> person = personRepository.getVersionedPerson(firstName, lastName);
+        if (person == null) {
+            throw new NotFoundException("Person not found with firstName: " + firstName + " and lastName: " + lastName);
+        }
+        log.info("Person {} {} found, version {}", firstName, lastName, person.version());
+        return person;
+    }
+
     /**
      * Delete a person by first name and last name
      *
@@ -67,7 +113,7 @@ public class PersonService {
      * @throws Exception if an error occurs while deleting the person
      */
     public void deletePersonByFirstNameAndLastName(String firstName, String lastName) throws Exception {
-        try {
+        try (StripedLock.Guard ignored = lockPerson(firstName, lastName, null)) {
             boolean deleted = personRepository.deletePersonByFirstNameAndLastName(firstName, lastName);
             if (!deleted) {
                 throw new NotFoundException("Person not found with firstName: " + firstName + " and lastName: " + lastName);
@@ -83,23 +129,27 @@ public class PersonService {
      * Save a person
      *
      * @param person Person
+     * @return Versioned Person object saved
      */
-    public void savePerson(Person person) throws JsonFileManagerSaveException, ConflictException {
-        try {
+    public Versioned<Person> savePerson(Person person) throws JsonFileManagerSaveException, ConflictException {
+        long version;
+        try (StripedLock.Guard ignored = stripedLock.lock(new NameKey(person.getFirstName(), person.getLastName()), person.getAddress())) {
             // Vérifie si la personne existe déjà
-            Person personExist = getPersonByFirstNameAndLastName(person.getFirstName(), person.getLastName());
+            Person personExist = personRepository.getPersonByFirstNameAndLastName(person.getFirstName(), person.getLastName());
             if (personExist != null) {
                 throw new ConflictException("Person already exist with firstName: " + person.getFirstName() + " and lastName: " + person.getLastName());
             }
-        } catch (NotFoundException e) {
+
             // Création de la personne
             try {
                 personRepository.savePerson(person);
             } catch (JsonFileManagerSaveException ex) {
                 throw new JsonFileManagerSaveException("Error while saving the person in JSON file");
             }
-            log.info("Person {} {} saved", person.getFirstName(), person.getLastName());
+            version = personRepository.getPersonVersion(person.getFirstName(), person.getLastName());
         }
+        log.info("Person {} {} saved", person.getFirstName(), person.getLastName());
+        return new Versioned<>(person, version);
     }
 
 
@@ -111,11 +161,170 @@ public class PersonService {
      * @throws NotFoundException if person not found
      */
     public Person updatePerson(Person person) throws NotFoundException {
-        Person personUpdated = personRepository.updatePerson(person);
+        return updatePerson(person, null).value();
+    }
+
+    /**
+     * Update a person if its version matches the If-Match header
+     *
+     * @param person  Person object with the new information
+     * @param ifMatch String If-Match header, null to update any version
+     * @return Versioned Person object updated
+     * @throws NotFoundException           if person not found
+     * @throws PreconditionFailedException if the person was modified since the ETag was read
+     */
+    public Versioned<Person> updatePerson(Person person, String ifMatch) throws NotFoundException, PreconditionFailedException {
+        Person personUpdated;
+        long version;
+        try (StripedLock.Guard ignored = lockPerson(person.getFirstName(), person.getLastName(), person.getAddress())) {
+            long currentVersion = personRepository.getPersonVersion(person.getFirstName(), person.getLastName());
+            if (currentVersion != 0 && !Versioned.matches(ifMatch, currentVersion)) {
+                throw new PreconditionFailedException("Person " + person.getFirstName() + " " + person.getLastName()
+                        + " was modified, current version: " + currentVersion);
+            }
+            personUpdated = personRepository.updatePerson(person);
+            version = personRepository.getPersonVersion(person.getFirstName(), person.getLastName());
+        }
         if (personUpdated == null) {
             throw new NotFoundException("Person not found with firstName: " + person.getFirstName() + " and " + person.getLastName());
         }
-        log.info("Person {} {} updated", person.getFirstName(), person.getLastName());
-        return personUpdated;
+        log.info("Person {} {} updated, version {}", person.getFirstName(), person.getLastName(), version);
+        return new Versioned<>(personUpdated, version);
+    }
+
+    /**
+     * Lock the stripes of a person : its name, its current address and its new address.
+     * The current address is read before locking, so stripes are locked again if the person moved meanwhile.
+     *
+     * @param firstName  String case-sensitive
+     * @param lastName   String case-sensitive
+     * @param newAddress String new address of the person, null if unchanged
+     * @return Guard releasing the stripes
+     */
+    private StripedLock.Guard lockPerson(String firstName, String lastName, String newAddress) {
+        NameKey nameKey = new NameKey(firstName, lastName);
+        while (true) {
+            String currentAddress = getAddress(firstName, lastName);
+            StripedLock.Guard guard = stripedLock.lock(nameKey, currentAddress, newAddress);
+            if (Objects.equals(currentAddress, getAddress(firstName, lastName))) {
+                return guard;
+            }
+            guard.close();
+        }
+    }
+
+    /**
+     * Get the current address of a person
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return address, null if the person does not exist
+     */
+    private String getAddress(String firstName, String lastName) {
+        Person person = personRepository.getPersonByFirstNameAndLastName(firstName, lastName);
+        return (person == null) ? null : person.getAddress();
+    }
+
+    /**
+     * Save a batch of persons : all stripes are locked, valid items are saved with a single write of the file
+     *
+     * @param persons List of Person objects
+     * @return List of BatchItemResultDTO, one per item : 201, 400 if invalid, 409 if the person already exists
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> savePersons(List<Person> persons) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(persons.size());
+        List<Person> personsToSave = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            Set<NameKey> names = new HashSet<>();
+            for (int i = 0; i < persons.size(); i++) {
+                Person person = persons.get(i);
+                List<String> errors = batchItemValidator.validate(person);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (!names.add(new NameKey(person.getFirstName(), person.getLastName()))
+                        || personRepository.getPersonByFirstNameAndLastName(person.getFirstName(), person.getLastName()) != null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CONFLICT.value(),
+                            List.of("Person already exist with firstName: " + person.getFirstName() + " and lastName: " + person.getLastName())));
+                } else {
+                    personsToSave.add(person);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.CREATED.value(), List.of()));
+                }
+            }
+            personRepository.savePersons(personsToSave);
+        }
+        log.info("{} persons saved out of {}", personsToSave.size(), persons.size());
+        return results;
+    }
+
+    /**
+     * Update a batch of persons : all stripes are locked, valid items are updated with a single write of the file
+     *
+     * @param persons List of Person objects with the new information
+     * @return List of BatchItemResultDTO, one per item : 200, 400 if invalid, 404 if the person is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> updatePersons(List<Person> persons) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(persons.size());
+        List<Person> personsToUpdate = new ArrayList<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < persons.size(); i++) {
+                Person person = persons.get(i);
+                List<String> errors = batchItemValidator.validate(person);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (personRepository.getPersonByFirstNameAndLastName(person.getFirstName(), person.getLastName()) == null) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Person not found with firstName: " + person.getFirstName() + " and lastName: " + person.getLastName())));
+                } else {
+                    personsToUpdate.add(person);
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            personRepository.updatePersons(personsToUpdate);
+        }
+        log.info("{} persons updated out of {}", personsToUpdate.size(), persons.size());
+        return results;
+    }
+
+    /**
+     * Delete a batch of persons : all stripes are locked, persons found are deleted with a single write of the file
+     *
+     * @param names List of PersonNameDTO (first name and last name, case-sensitive)
+     * @return List of BatchItemResultDTO, one per item : 200, 400 if invalid, 404 if the person is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public List<BatchItemResultDTO> deletePersons(List<PersonNameDTO> names) throws JsonFileManagerSaveException {
+        List<BatchItemResultDTO> results = new ArrayList<>(names.size());
+        Set<NameKey> namesToDelete = new HashSet<>();
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            for (int i = 0; i < names.size(); i++) {
+                PersonNameDTO name = names.get(i);
+                List<String> errors = batchItemValidator.validate(name);
+                if (!errors.isEmpty()) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.BAD_REQUEST.value(), errors));
+                } else if (personRepository.getPersonByFirstNameAndLastName(name.getFirstName(), name.getLastName()) == null
+                        || !namesToDelete.add(new NameKey(name.getFirstName(), name.getLastName()))) {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.NOT_FOUND.value(),
+                            List.of("Person not found with firstName: " + name.getFirstName() + " and lastName: " + name.getLastName())));
+                } else {
+                    results.add(new BatchItemResultDTO(i, HttpStatus.OK.value(), List.of()));
+                }
+            }
+            personRepository.deletePersons(namesToDelete);
+        }
+        log.info("{} persons deleted out of {}", namesToDelete.size(), names.size());
+        return results;
+    }
+
+    /**
+     * Check if a person exists
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return true if the person exists
+     */
+    public boolean existsPerson(String firstName, String lastName) {
+        return personRepository.getPersonByFirstNameAndLastName(firstName, lastName) != null;
     }
 }
@@ -0,0 +1,309 @@
+package com.openclassrooms.SafetyNet.service;
+
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
+import com.openclassrooms.SafetyNet.dto.TransactionDTO;
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
+import com.openclassrooms.SafetyNet.exceptions.ConflictException;
+import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
+import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
+import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
+import lombok.Data;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * TransactionService Class
+ * <p>
+ * Apply mutations of persons, fire stations and medical records all together or not at all.
+ * The next snapshot is built from the current one and published with a single swap and a single write of the file,
+ * an invalid, conflicting or not found item rejects the whole transaction before anything is published,
+ * and the previous snapshot is restored when the file can not be written.
+ */
+@Log4j2
+@Service
+@Data
+public class TransactionService {
+
+    private final JsonFileManager jsonFileManager;
+    private final StripedLock stripedLock;
+    private final BatchItemValidator batchItemValidator;
+
+    /**
+     * Constructor
+     *
+     * @param jsonFileManager    json file manager, source of the snapshots
+     * @param stripedLock        write locks, all stripes are locked by a transaction
+     * @param batchItemValidator validator of the items of the transaction
+     */
+    public TransactionService(JsonFileManager jsonFileManager, StripedLock stripedLock, BatchItemValidator batchItemValidator) {
+        log.info("<constructor> TransactionService");
+        this.jsonFileManager = jsonFileManager;
+        this.stripedLock = stripedLock;
+        this.batchItemValidator = batchItemValidator;
+    }
+
+    /**
+     * Apply a transaction.
+     * Persons are applied first, then fire stations, then medical records (a medical record needs its person),
+     * and for each entity : deletions, creations, then updates.
+     *
+     * @param transaction TransactionDTO
+     * @throws BadRequestException          if an item is invalid
+     * @throws ConflictException            if an item to create already exists
+     * @throws NotFoundException            if an item to update or delete is not found
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    public void applyTransaction(TransactionDTO transaction)
+            throws BadRequestException, ConflictException, NotFoundException, JsonFileManagerSaveException {
+        List<String> errors = validate(transaction);
+        if (!errors.isEmpty()) {
+            throw new BadRequestException("Invalid transaction", errors);
+        }
+
+        try (StripedLock.Guard ignored = stripedLock.lockAll()) {
+            DataSnapshot[] published = new DataSnapshot[1];
+            DataSnapshot previous = jsonFileManager.updateSnapshot(snapshot -> published[0] = apply(snapshot, transaction));
+            if (previous != published[0]) {
+                save(previous, published[0]);
+            }
+        }
+        log.info("Transaction applied");
+    }
+
+    /**
+     * Save the published snapshot, the previous one is restored if the file can not be written
+     *
+     * @param previous  snapshot the transaction was applied to
+     * @param published snapshot published by the transaction
+     * @throws JsonFileManagerSaveException if an error occurs while saving the file
+     */
+    private void save(DataSnapshot previous, DataSnapshot published) throws JsonFileManagerSaveException {
+        try {
+            jsonFileManager.saveJsonFile();
+        } catch (JsonFileManagerSaveException e) {
+            if (jsonFileManager.restoreSnapshot(published, previous)) {
+                log.error("Transaction rolled back, the file could not be saved");
+            } else {
+                log.error("Transaction not rolled back, another change was published since");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Build the next snapshot, nothing is published if an exception is thrown
+     *
+     * @param snapshot    current snapshot
+     * @param transaction TransactionDTO
+     * @return next snapshot
+     */
+    private DataSnapshot apply(DataSnapshot snapshot, TransactionDTO transaction) {
+        Changes<NameKey, Person> persons = new Changes<>(
+                key -> snapshot.getPerson(key.firstName(), key.lastName()),
+                person -> new NameKey(person.getFirstName(), person.getLastName()));
+        for (PersonNameDTO name : orEmpty(transaction.getDeletePersons())) {
+            NameKey key = new NameKey(name.getFirstName(), name.getLastName());
+            if (!persons.exists(key)) {
+                throw new NotFoundException("Person not found with firstName: " + name.getFirstName() + " and lastName: " + name.getLastName());
+            }
+            persons.delete(key);
+        }
+        for (Person person : orEmpty(transaction.getCreatePersons())) {
+            if (persons.exists(persons.keyOf(person))) {
+                throw new ConflictException("Person already exist with firstName: " + person.getFirstName() + " and lastName: " + person.getLastName());
+            }
+            persons.put(person);
+        }
+        for (Person person : orEmpty(transaction.getUpdatePersons())) {
+            if (!persons.exists(persons.keyOf(person))) {
+                throw new NotFoundException("Person not found with firstName: " + person.getFirstName() + " and lastName: " + person.getLastName());
+            }
+            persons.put(persons.get(persons.keyOf(person)).updatedWith(person));
+        }
+
+        Changes<String, Firestation> firestations = new Changes<>(snapshot::getFirestationByAddress, Firestation::getAddress);
+        for (String address : orEmpty(transaction.getDeleteFirestations())) {
+            if (!firestations.exists(address)) {
+                throw new NotFoundException("Fire station not found with address : " + address);
+            }
+            firestations.delete(address);
+        }
+        for (Firestation firestation : orEmpty(transaction.getCreateFirestations())) {
+            if (firestations.exists(firestation.getAddress())) {
+                throw new ConflictException("Fire station already exist with address: " + firestation.getAddress());
+            }
+            firestations.put(firestation);
+        }
+        for (Firestation firestation : orEmpty(transaction.getUpdateFirestations())) {
+            if (!firestations.exists(firestation.getAddress())) {
+                throw new NotFoundException("Fire station not found with address: " + firestation.getAddress());
+            }
+            firestations.put(firestations.get(firestation.getAddress()).updatedWith(firestation));
+        }
+
+        Changes<NameKey, MedicalRecord> medicalRecords = new Changes<>(
+                key -> snapshot.getMedicalRecord(key.firstName(), key.lastName()),
+                medicalRecord -> new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName()));
+        for (PersonNameDTO name : orEmpty(transaction.getDeleteMedicalRecords())) {
+            NameKey key = new NameKey(name.getFirstName(), name.getLastName());
+            if (!medicalRecords.exists(key)) {
+                throw new NotFoundException("Medical record not found with firstName: " + name.getFirstName() + " and lastName: " + name.getLastName());
+            }
+            medicalRecords.delete(key);
+        }
+        for (MedicalRecord medicalRecord : orEmpty(transaction.getCreateMedicalRecords())) {
+            NameKey key = medicalRecords.keyOf(medicalRecord);
+            if (!persons.exists(key)) {
+                throw new NotFoundException("Person not found with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName());
+            }
+            if (medicalRecords.exists(key)) {
+                throw new ConflictException("Medical record already exist with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName());
+            }
+            medicalRecords.put(medicalRecord);
+        }
+        for (MedicalRecord medicalRecord : orEmpty(transaction.getUpdateMedicalRecords())) {
+            NameKey key = medicalRecords.keyOf(medicalRecord);
+            if (!persons.exists(key) || !medicalRecords.exists(key)) {
+                throw new NotFoundException("Medical record not found with firstName: " + medicalRecord.getFirstName() + " and lastName: " + medicalRecord.getLastName());
+            }
+            medicalRecords.put(medicalRecord);
+        }
+
+        DataSnapshot next = snapshot;
+        if (persons.isChanged()) {
+            next = next.withPersons(persons.applyTo(snapshot.getPersons()));
+        }
+        if (firestations.isChanged()) {
+            next = next.withFirestations(firestations.applyTo(snapshot.getFirestations()));
+        }
+        if (medicalRecords.isChanged()) {
+            next = next.withMedicalRecords(medicalRecords.applyTo(snapshot.getMedicalRecords()));
+        }
+        return next;
+    }
+
+    /**
+     * Validate all the items of a transaction
+     *
+     * @param transaction TransactionDTO
+     * @return List of errors, formatted as "list[index].field: message"
+     */
+    private List<String> validate(TransactionDTO transaction) {
+        List<String> errors = new ArrayList<>();
+        validate(errors, "deletePersons", transaction.getDeletePersons());
+        validate(errors, "createPersons", transaction.getCreatePersons());
+        validate(errors, "updatePersons", transaction.getUpdatePersons());
+        validate(errors, "deleteFirestations", transaction.getDeleteFirestations());
+        validate(errors, "createFirestations", transaction.getCreateFirestations());
+        validate(errors, "updateFirestations", transaction.getUpdateFirestations());
+        validate(errors, "deleteMedicalRecords", transaction.getDeleteMedicalRecords());
+        validate(errors, "createMedicalRecords", transaction.getCreateMedicalRecords());
+        validate(errors, "updateMedicalRecords", transaction.getUpdateMedicalRecords());
+        return errors;
+    }
+
+    /**
+     * Validate the items of a list of the transaction
+     *
+     * @param errors List of errors to complete
+     * @param name   name of the list
+     * @param items  items of the list
+     */
+    private void validate(List<String> errors, String name, List<?> items) {
+        List<?> values = orEmpty(items);
+        for (int i = 0; i < values.size(); i++) {
+            for (String error : batchItemValidator.validate(values.get(i))) {
+                errors.add(name + "[" + i + "]." + error);
+            }
+        }
+    }
+
+    /**
+     * A null list of the transaction is an empty list
+     */
+    private static <T> List<T> orEmpty(List<T> values) {
+        return (values == null) ? List.of() : values;
+    }
+
+    /**
+     * Changes of an entity by key, on top of the current snapshot.
+     * A key may be shared by several entries (an address mapped to several stations) : an update replaces
+     * the entry found by the key only, a deletion removes all the entries of the key.
+     *
+     * @param <K> type of the key
+     * @param <T> type of the entity
+     */
+    private static final class Changes<K, T> {
+
+        private final Function<K, T> current;
+        private final Function<T, K> key;
+        private final Map<K, T> changed = new LinkedHashMap<>();
+        private final Set<K> deleted = new HashSet<>();
+
+        private Changes(Function<K, T> current, Function<T, K> key) {
+            this.current = current;
+            this.key = key;
+        }
+
+        private K keyOf(T value) {
+            return key.apply(value);
+        }
+
+        private T get(K k) {
+            return changed.containsKey(k) ? changed.get(k) : current.apply(k);
+        }
+
+        private boolean exists(K k) {
+            return get(k) != null;
+        }
+
+        private void put(T value) {
+            changed.put(key.apply(value), value);
+        }
+
+        private void delete(K k) {
+            changed.put(k, null);
+            deleted.add(k);
+        }
+
+        private boolean isChanged() {
+            return !changed.isEmpty();
+        }
+
+        /**
+         * Apply the changes : the entry found by a changed key is replaced in place (or removed), the other entries
+         * of the key are kept unless the key was deleted, created values are added at the end
+         */
+        private List<T> applyTo(List<T> values) {
+            List<T> result = new ArrayList<>(values.size() + changed.size());
+            Set<K> written = new HashSet<>();
+            for (T value : values) {
+                K k = key.apply(value);
+                if (changed.containsKey(k) && value == current.apply(k)) {
+                    if (changed.get(k) != null) {
+                        result.add(changed.get(k));
+                    }
+                    written.add(k);
+                } else if (!deleted.contains(k)) {
+                    result.add(value);
+                }
+            }
+            changed.forEach((k, value) -> {
+                if (value != null && written.add(k)) {
+                    result.add(value);
+                }
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * DataSnapshot Class
+ * <p>
+ * Immutable state of the Json file (persons, fire stations and medical records) with its lookup indexes.
+ * A published snapshot is never modified : writers build a new one from the current one and swap it,
+ * the collections and indexes of the entities not concerned by the change are shared between both snapshots.
+ * <p>
+ * Each record has a version : the version of the snapshot which wrote it. A record kept as is (same object)
+ * in the next snapshot keeps its version, so the version of a record only changes when the record is written.
+ * The versions of the snapshots are drawn from one counter of the process : a snapshot loaded again from the file,
+ * or built after a snapshot was restored (see JsonFileManager.restoreSnapshot), never reuses a version.
+ * They are unique within the process only, the ETags and the cursors also carry the EPOCH of the process.
+ * <p>
+ * The households of each address and the persons covered by each station are materialized in a HouseholdView
+ * and a StationView, updated only for the addresses and stations touched by a change.
+ * Sorted views of the collections (pagination) are built on first use and shared by all the readers of the snapshot.
+ * The spatial indexes of the geocoded persons and fire stations are built on first use too, and shared with the next
+ * snapshots as long as their collection does not change.
+ */
+@Getter
+public final class DataSnapshot {
+
+    /**
+     * Id of the process, sent with the versions so a version issued before a restart never matches
+     */
+    public static final String EPOCH = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final long version;
+    private final List<Person> persons;
+    private final List<Firestation> firestations;
+    private final List<MedicalRecord> medicalRecords;
+
+    @Getter(AccessLevel.NONE)
+    private final PersonIndexes personIndexes;
+    @Getter(AccessLevel.NONE)
+    private final FirestationIndexes firestationIndexes;
+    @Getter(AccessLevel.NONE)
+    private final MedicalRecordIndexes medicalRecordIndexes;
+    @Getter(AccessLevel.PACKAGE)
+    private final HouseholdView householdView;
+    @Getter(AccessLevel.PACKAGE)
+    private final StationView stationView;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, List<?>> sortedViews = new ConcurrentHashMap<>();
+
+    private DataSnapshot(DataSnapshot previous, long version,
+                         List<Person> persons, PersonIndexes personIndexes,
+                         List<Firestation> firestations, FirestationIndexes firestationIndexes,
+                         List<MedicalRecord> medicalRecords, MedicalRecordIndexes medicalRecordIndexes) {
+        this.version = version;
+        this.persons = persons;
+        this.personIndexes = personIndexes;
+        this.firestations = firestations;
+        this.firestationIndexes = firestationIndexes;
+        this.medicalRecords = medicalRecords;
+        this.medicalRecordIndexes = medicalRecordIndexes;
+        // the views read the indexes, they are built last (the stations read the households)
+        if (previous == null) {
+            this.householdView = HouseholdView.build(this);
+            this.stationView = StationView.build(this);
+        } else {
+            Set<String> residentAddresses = SnapshotDiff.residentAddresses(previous, this);
+            Set<String> householdAddresses = new HashSet<>(residentAddresses);
+            householdAddresses.addAll(SnapshotDiff.firestationAddresses(previous, this));
+            this.householdView = HouseholdView.update(previous, this, householdAddresses);
+            this.stationView = StationView.update(previous, this, residentAddresses);
+        }
+    }
+
+    /**
+     * Build the first snapshot from the lists read in the Json file
+     *
+     * @param persons        list of persons
+     * @param firestations   list of fire stations
+     * @param medicalRecords list of medical records
+     * @return DataSnapshot object
+     */
+    public static DataSnapshot of(List<Person> persons, List<Firestation> firestations, List<MedicalRecord> medicalRecords) {
+        List<Person> personList = freeze(persons);
+        List<Firestation> firestationList = freeze(firestations);
+        List<MedicalRecord> medicalRecordList = freeze(medicalRecords);
+        long version = VERSIONS.incrementAndGet();
+        return new DataSnapshot(null, version,
+                personList, new PersonIndexes(personList, null, version),
+                firestationList, new FirestationIndexes(firestationList, null, version),
+                medicalRecordList, new MedicalRecordIndexes(medicalRecordList, null, version));
+    }
+
+    /**
+     * Build the first snapshot from the JsonModel read in the Json file
+     *
+     * @param jsonModel JsonModel object
+     * @return DataSnapshot object
+     */
+    public static DataSnapshot of(JsonModel jsonModel) {
+        return of(jsonModel.getPersons(), jsonModel.getFirestations(), jsonModel.getMedicalrecords());
+    }
+
+    /**
+     * Convert the snapshot into a JsonModel, to be written in the Json file
+     *
+     * @return JsonModel object
+     */
+    public JsonModel toJsonModel() {
+        JsonModel jsonModel = new JsonModel();
+        jsonModel.setPersons(persons);
+        jsonModel.setFirestations(firestations);
+        jsonModel.setMedicalrecords(medicalRecords);
+        return jsonModel;
+    }
+
+    /**
+     * Build the next snapshot with a new list of persons, fire stations and medical records are shared
+     *
+     * @param persons new list of persons
+     * @return DataSnapshot object
+     */
+    public DataSnapshot withPersons(List<Person> persons) {
+        List<Person> personList = freeze(persons);
+        long next = VERSIONS.incrementAndGet();
+        return new DataSnapshot(this, next,
+                personList, new PersonIndexes(personList, personIndexes, next),
+                firestations, firestationIndexes,
+                medicalRecords, medicalRecordIndexes);
+    }
+
+    /**
+     * Build the next snapshot with a new list of fire stations, persons and medical records are shared
+     *
+     * @param firestations new list of fire stations
+     * @return DataSnapshot object
+     */
+    public DataSnapshot withFirestations(List<Firestation> firestations) {
+        List<Firestation> firestationList = freeze(firestations);
+        long next = VERSIONS.incrementAndGet();
+        return new DataSnapshot(this, next,
+                persons, personIndexes,
+                firestationList, new FirestationIndexes(firestationList, firestationIndexes, next),
+                medicalRecords, medicalRecordIndexes);
+    }
+
+    /**
+     * Build the next snapshot with a new list of medical records, persons and fire stations are shared
+     *
+     * @param medicalRecords new list of medical records
+     * @return DataSnapshot object
+     */
+    public DataSnapshot withMedicalRecords(List<MedicalRecord> medicalRecords) {
+        List<MedicalRecord> medicalRecordList = freeze(medicalRecords);
+        long next = VERSIONS.incrementAndGet();
+        return new DataSnapshot(this, next,
+                persons, personIndexes,
+                firestations, firestationIndexes,
+                medicalRecordList, new MedicalRecordIndexes(medicalRecordList, medicalRecordIndexes, next));
+    }
+
+    /**
+     * Check if this snapshot was built after another one. A published snapshot is always built after the one
+     * it replaces, so a snapshot read by a late reader (or restored after a failed save) is older than the newest one,
+     * and a snapshot loaded again from the file is newer than all the previous ones
+     *
+     * @param other other snapshot
+     * @return true if this snapshot is the newest
+     */
+    boolean isNewerThan(DataSnapshot other) {
+        return version > other.version;
+    }
+
+    /**
+     * Get a person by first name and last name
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return Person object, null if not found
+     */
+    public Person getPerson(String firstName, String lastName) {
+        return personIndexes.byName.get(new NameKey(firstName, lastName));
+    }
+
+    /**
+     * Get the persons living at an address
+     *
+     * @param address String case-sensitive
+     * @return List of Person objects, empty if none
+     */
+    public List<Person> getPersonsByAddress(String address) {
+        return personIndexes.byAddress.getOrDefault(address, List.of());
+    }
+
+    /**
+     * Get the persons with a last name
+     *
+     * @param lastName String case-sensitive
+     * @return List of Person objects, empty if none
+     */
+    public List<Person> getPersonsByLastName(String lastName) {
+        return personIndexes.byLastName.getOrDefault(lastName, List.of());
+    }
+
+    /**
+     * Get a fire station by address
+     *
+     * @param address String case-sensitive
+     * @return Firestation object, null if not found
+     */
+    public Firestation getFirestationByAddress(String address) {
+        return firestationIndexes.byAddress.get(address);
+    }
+
+    /**
+     * Get the fire stations with a station number
+     *
+     * @param station Integer station number
+     * @return List of Firestation objects, empty if none
+     */
+    public List<Firestation> getFirestationsByStation(Integer station) {
+        return firestationIndexes.byStation.getOrDefault(station, List.of());
+    }
+
+    /**
+     * Get a medical record by first name and last name
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return MedicalRecord object, null if not found
+     */
+    public MedicalRecord getMedicalRecord(String firstName, String lastName) {
+        return medicalRecordIndexes.byName.get(new NameKey(firstName, lastName));
+    }
+
+    /**
+     * Get the household living at an address, maintained with each snapshot
+     *
+     * @param address String case-sensitive
+     * @return Household object, null if nobody lives at the address and no fire station covers it
+     */
+    public HouseholdView.Household getHousehold(String address) {
+        return householdView.get(address);
+    }
+
+    /**
+     * Get the coverage of a station, maintained with each snapshot
+     *
+     * @param station Integer station number
+     * @return Coverage object, null if no address is mapped to the station
+     */
+    public StationView.Coverage getStationCoverage(Integer station) {
+        return stationView.get(station);
+    }
+
+    /**
+     * Get the spatial index of the persons with coordinates, built on first use
+     *
+     * @return SpatialIndex of Person objects
+     */
+    public SpatialIndex<Person> getPersonLocations() {
+        return personIndexes.locations(persons);
+    }
+
+    /**
+     * Get the spatial index of the addresses with a geocoded resident, built on first use.
+     * An address is located at its first resident with coordinates.
+     *
+     * @return SpatialIndex of addresses
+     */
+    public SpatialIndex<String> getHouseholdLocations() {
+        return personIndexes.householdLocations(persons);
+    }
+
+    /**
+     * Get the spatial index of the fire stations with coordinates, built on first use
+     *
+     * @return SpatialIndex of Firestation objects
+     */
+    public SpatialIndex<Firestation> getFirestationLocations() {
+        return firestationIndexes.locations(firestations);
+    }
+
+    /**
+     * Get a sorted view of a collection of the snapshot, sorted on first use then shared
+     *
+     * @param name       name of the view, identifying the collection and the order
+     * @param items      collection of the snapshot
+     * @param comparator order of the view
+     * @param <T>        type of the records
+     * @return unmodifiable sorted list
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getSortedView(String name, List<T> items, Comparator<? super T> comparator) {
+        return (List<T>) sortedViews.computeIfAbsent(name, k -> {
+            List<T> sorted = new ArrayList<>(items);
+            sorted.sort(comparator);
+            return Collections.unmodifiableList(sorted);
+        });
+    }
+
+    /**
+     * Get the version of a person
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return version of the person, 0 if not found
+     */
+    public long getPersonVersion(String firstName, String lastName) {
+        return personIndexes.versions.getOrDefault(new NameKey(firstName, lastName), 0L);
+    }
+
+    /**
+     * Get the version of a fire station
+     *
+     * @param address String case-sensitive
+     * @return version of the fire station, 0 if not found
+     */
+    public long getFirestationVersion(String address) {
+        return firestationIndexes.versions.getOrDefault(address, 0L);
+    }
+
+    /**
+     * Get the version of a medical record
+     *
+     * @param firstName String case-sensitive
+     * @param lastName  String case-sensitive
+     * @return version of the medical record, 0 if not found
+     */
+    public long getMedicalRecordVersion(String firstName, String lastName) {
+        return medicalRecordIndexes.versions.getOrDefault(new NameKey(firstName, lastName), 0L);
+    }
+
+    /**
+     * Key of a person or a medical record
+     *
+     * @param firstName first name
+     * @param lastName  last name
+     */
+    public record NameKey(String firstName, String lastName) {
+    }
+
+    /**
+     * Indexes on the persons list
+     */
+    private static final class PersonIndexes {
+        private final Map<NameKey, Person> byName;
+        private final Map<String, List<Person>> byAddress;
+        private final Map<String, List<Person>> byLastName;
+        private final Map<NameKey, Long> versions;
+        private volatile SpatialIndex<Person> locations;
+        private volatile SpatialIndex<String> householdLocations;
+
+        private PersonIndexes(List<Person> persons, PersonIndexes previous, long version) {
+            byName = indexByName(persons, Person::getFirstName, Person::getLastName);
+            byAddress = group(persons, Person::getAddress);
+            byLastName = group(persons, Person::getLastName);
+            versions = (previous == null) ? versions(byName, Collections.emptyMap(), Collections.emptyMap(), version)
+                    : versions(byName, previous.byName, previous.versions, version);
+        }
+
+        private SpatialIndex<Person> locations(List<Person> persons) {
+            if (locations == null) {
+                synchronized (this) {
+                    if (locations == null) {
+                        locations = SpatialIndex.build(persons, Person::getLatitude, Person::getLongitude);
+                    }
+                }
+            }
+            return locations;
+        }
+
+        private SpatialIndex<String> householdLocations(List<Person> persons) {
+            if (householdLocations == null) {
+                synchronized (this) {
+                    if (householdLocations == null) {
+                        Map<String, Person> located = new LinkedHashMap<>();
+                        for (Person person : persons) {
+                            if (person.getLatitude() != null && person.getLongitude() != null) {
+                                located.putIfAbsent(person.getAddress(), person);
+                            }
+                        }
+                        householdLocations = SpatialIndex.build(located.keySet(),
+                                address -> located.get(address).getLatitude(), address -> located.get(address).getLongitude());
+                    }
+                }
+            }
+            return householdLocations;
+        }
+    }
+
+    /**
+     * Indexes on the fire stations list
+     */
+    private static final class FirestationIndexes {
+        private final Map<String, Firestation> byAddress;
+        private final Map<Integer, List<Firestation>> byStation;
+        private final Map<String, Long> versions;
+        private volatile SpatialIndex<Firestation> locations;
+
+        private FirestationIndexes(List<Firestation> firestations, FirestationIndexes previous, long version) {
+            Map<String, Firestation> addresses = new HashMap<>();
+            for (Firestation firestation : firestations) {
+                addresses.putIfAbsent(firestation.getAddress(), firestation);
+            }
+            byAddress = Collections.unmodifiableMap(addresses);
+            byStation = group(firestations, Firestation::getStation);
+            versions = (previous == null) ? versions(byAddress, Collections.emptyMap(), Collections.emptyMap(), version)
+                    : versions(byAddress, previous.byAddress, previous.versions, version);
+        }
+
+        private SpatialIndex<Firestation> locations(List<Firestation> firestations) {
+            if (locations == null) {
+                synchronized (this) {
+                    if (locations == null) {
+                        locations = SpatialIndex.build(firestations, Firestation::getLatitude, Firestation::getLongitude);
+                    }
+                }
+            }
+            return locations;
+        }
+    }
+
+    /**
+     * Indexes on the medical records list
+     */
+    private static final class MedicalRecordIndexes {
+        private final Map<NameKey, MedicalRecord> byName;
+        private final Map<NameKey, Long> versions;
+
+        private MedicalRecordIndexes(List<MedicalRecord> medicalRecords, MedicalRecordIndexes previous, long version) {
+            byName = indexByName(medicalRecords, MedicalRecord::getFirstName, MedicalRecord::getLastName);
+            versions = (previous == null) ? versions(byName, Collections.emptyMap(), Collections.emptyMap(), version)
+                    : versions(byName, previous.byName, previous.versions, version);
+        }
+    }
+
+    /**
+     * Copy a list into an unmodifiable list, a null list gives an empty list
+     */
+    private static <T> List<T> freeze(List<T> values) {
+        return (values == null) ? List.of() : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    /**
+     * Index values by first name and last name, the first value found wins
+     */
+    private static <T> Map<NameKey, T> indexByName(List<T> values, Function<T, String> firstName, Function<T, String> lastName) {
+        Map<NameKey, T> index = new HashMap<>();
+        for (T value : values) {
+            index.putIfAbsent(new NameKey(firstName.apply(value), lastName.apply(value)), value);
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Version of each indexed value : the previous version if the same object was indexed under the key, else the new version
+     */
+    private static <K, T> Map<K, Long> versions(Map<K, T> index, Map<K, T> previousIndex, Map<K, Long> previousVersions, long version) {
+        Map<K, Long> versions = new HashMap<>();
+        index.forEach((key, value) -> versions.put(key, (previousIndex.get(key) == value) ? previousVersions.get(key) : version));
+        return Collections.unmodifiableMap(versions);
+    }
+
+    /**
+     * Group values by key, keeping the order of the list in each group
+     */
+    private static <K, T> Map<K, List<T>> group(List<T> values, Function<T, K> key) {
+        Map<K, List<T>> index = new HashMap<>();
+        for (T value : values) {
+            index.computeIfAbsent(key.apply(value), k -> new ArrayList<>()).add(value);
+        }
+        index.replaceAll((k, group) -> Collections.unmodifiableList(group));
+        return Collections.unmodifiableMap(index);
+    }
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.SafetyNet.utils;
+
+/**
+ * Explained record
+ * <p>
+ * Result of a query run in explain mode, with its explain plan.
+ *
+ * @param result  result of the query
+ * @param explain explain plan of the query
+ */
+public record Explained(Object result, QueryTrace.Plan explain) implements FieldSelection.Envelope {
+
+    @Override
+    public String payloadProperty() {
+        return "result";
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * FanOut Class
+ * <p>
+ * Split the work of a query over a list of items (addresses of the stations of a /flood query) into chunks
+ * run on a bounded fork-join pool shared by all the requests. The results of the chunks are merged in the order
+ * of the items, so the result does not depend on the scheduling. Below the threshold, the work runs on the caller thread.
+ */
+@Log4j2
+@Component
+public class FanOut implements AutoCloseable {
+
+    private static final int DEFAULT_THRESHOLD = 256;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int threshold;
+
+    /**
+     * Constructor
+     */
+    public FanOut() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param parallelism maximum number of threads of the pool
+     * @param threshold   minimum number of items to split the work
+     */
+    public FanOut(int parallelism, int threshold) {
+        log.info("<constructor> FanOut with {} threads from {} items", parallelism, threshold);
+        this.pool = new ForkJoinPool(parallelism);
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Apply the work to the items, split in chunks when there are enough items
+     *
+     * @param items items of the query
+     * @param work  work on a chunk of items, it must only read shared state
+     * @param <T>   type of the items
+     * @param <R>   type of the results
+     * @return results of the chunks, in the order of the items
+     */
+    public <T, R> List<R> map(List<T> items, Function<List<T>, List<R>> work) {
+        if (items.size() < threshold || parallelism < 2) {
+            return work.apply(items);
+        }
+        int chunkSize = Math.max(threshold / 2, (items.size() + parallelism - 1) / parallelism);
+        List<ForkJoinTask<List<R>>> tasks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+            tasks.add(pool.submit(() -> work.apply(chunk)));
+        }
+        log.debug("{} items split in {} chunks", items.size(), tasks.size());
+
+        List<R> results = new ArrayList<>();
+        for (ForkJoinTask<List<R>> task : tasks) {
+            results.addAll(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Shut down the pool when the application stops
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
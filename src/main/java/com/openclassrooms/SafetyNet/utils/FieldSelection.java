@@ -0,0 +1,140 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FieldSelection Class
+ * <p>
+ * Sparse fieldset (?fields=firstName,phone) applied by Jackson while it writes the response : the properties
+ * which are not selected are skipped, no copy of the records is built.
+ * A field is a path of property names from the record (persons.firstName for /firestation), the items of
+ * the lists and the entries of the maps are crossed without adding a name to the path.
+ * Selecting a property selects all its content. The selection applies to the payload of an envelope (the items
+ * of a Page, the result of an explained query), the other properties of the envelope are written as is.
+ */
+public final class FieldSelection extends SimpleBeanPropertyFilter {
+
+    /**
+     * Id of the filter, given to the classes of the application by the ObjectMapper configuration
+     */
+    public static final String FILTER_ID = "fields";
+
+    /**
+     * Selection of all the fields
+     */
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    private final Node root;
+
+    private FieldSelection(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Wrapper of a response whose payload is filtered
+     */
+    public interface Envelope {
+
+        /**
+         * Get the name of the property holding the payload
+         *
+         * @return property name
+         */
+        String payloadProperty();
+    }
+
+    /**
+     * Parse the fields parameter
+     *
+     * @param fields comma separated paths, null or blank to select all the fields
+     * @return FieldSelection object
+     */
+    public static FieldSelection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Node root = new Node();
+        for (String field : fields.split(",")) {
+            if (field.isBlank()) {
+                continue;
+            }
+            Node node = root;
+            for (String name : field.trim().split("\\.")) {
+                node = node.children.computeIfAbsent(name, k -> new Node());
+            }
+            node.all = true;
+        }
+        return root.children.isEmpty() ? ALL : new FieldSelection(root);
+    }
+
+    /**
+     * Get the filters to give to the ObjectMapper
+     *
+     * @return FilterProvider applying this selection
+     */
+    public FilterProvider filters() {
+        return new SimpleFilterProvider().addFilter(FILTER_ID, this);
+    }
+
+    /**
+     * Check if all the fields are selected
+     *
+     * @return true if nothing is filtered
+     */
+    public boolean isAll() {
+        return root == null;
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+        if (root == null || pojo instanceof Envelope || isSelected(gen.getOutputContext(), writer.getName())) {
+            writer.serializeAsField(pojo, gen, provider);
+        } else if (!gen.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, gen, provider);
+        }
+    }
+
+    /**
+     * Check if a property of the object being written is selected, from the path of the object
+     */
+    private boolean isSelected(JsonStreamContext context, String name) {
+        List<String> path = new ArrayList<>(4);
+        for (JsonStreamContext parent = context.getParent(); parent != null; parent = parent.getParent()) {
+            // names of the properties only : items of lists and entries of maps are crossed
+            if (parent.getCurrentValue() instanceof Envelope envelope) {
+                if (!envelope.payloadProperty().equals(parent.getCurrentName())) {
+                    return true;
+                }
+            } else if (parent.inObject() && !(parent.getCurrentValue() instanceof Map)) {
+                path.add(parent.getCurrentName());
+            }
+        }
+        Node node = root;
+        for (int i = path.size() - 1; i >= 0 && !node.all; i--) {
+            node = node.children.get(path.get(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.all || node.children.containsKey(name);
+    }
+
+    /**
+     * Node of the tree of the selected paths
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean all;
+    }
+}
@@ -0,0 +1,147 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.service.AgeService;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.*;
+
+/**
+ * HouseholdView Class
+ * <p>
+ * Materialized view of the households, held by a DataSnapshot : for each address, its residents with their
+ * medical record and birthdate, and the fire station covering the address.
+ * It is built when the file is loaded, then maintained by each new snapshot : only the addresses where a person,
+ * a medical record or the fire station changed are rebuilt, the other households are shared with the previous snapshot.
+ */
+public final class HouseholdView {
+
+    private final Map<String, Household> households;
+
+    private HouseholdView(Map<String, Household> households) {
+        this.households = households;
+    }
+
+    /**
+     * Build the view of all the addresses of a snapshot
+     *
+     * @param snapshot snapshot, with its indexes
+     * @return HouseholdView object
+     */
+    static HouseholdView build(DataSnapshot snapshot) {
+        Map<String, Household> households = new HashMap<>();
+        for (Person person : snapshot.getPersons()) {
+            households.computeIfAbsent(person.getAddress(), address -> Household.of(snapshot, address));
+        }
+        for (Firestation firestation : snapshot.getFirestations()) {
+            households.computeIfAbsent(firestation.getAddress(), address -> Household.of(snapshot, address));
+        }
+        return new HouseholdView(Collections.unmodifiableMap(households));
+    }
+
+    /**
+     * Build the view of the next snapshot, rebuilding only the households of the changed addresses
+     *
+     * @param previous  snapshot the change was applied to, with its view
+     * @param next      next snapshot, with its indexes
+     * @param addresses addresses where a resident, the medical record of a resident or the fire station changed
+     * @return HouseholdView object
+     */
+    static HouseholdView update(DataSnapshot previous, DataSnapshot next, Set<String> addresses) {
+        HouseholdView view = previous.getHouseholdView();
+        if (addresses.isEmpty()) {
+            return view;
+        }
+        Map<String, Household> households = new HashMap<>(view.households);
+        for (String address : addresses) {
+            Household household = Household.of(next, address);
+            if (household == null) {
+                households.remove(address);
+            } else {
+                households.put(address, household);
+            }
+        }
+        return new HouseholdView(Collections.unmodifiableMap(households));
+    }
+
+    /**
+     * Get the household living at an address
+     *
+     * @param address address
+     * @return Household object, null if nobody lives at the address and no fire station covers it
+     */
+    public Household get(String address) {
+        return households.get(address);
+    }
+
+    /**
+     * Household : residents of an address and the fire station covering it
+     */
+    public static final class Household {
+
+        private final Firestation firestation;
+        private final List<Member> members;
+
+        private Household(Firestation firestation, List<Member> members) {
+            this.firestation = firestation;
+            this.members = members;
+        }
+
+        /**
+         * Build the household of an address from the indexes of a snapshot
+         */
+        private static Household of(DataSnapshot snapshot, String address) {
+            List<SnapshotJoin.Row> rows = SnapshotJoin.byAddress(snapshot, address);
+            Firestation firestation = snapshot.getFirestationByAddress(address);
+            if (rows.isEmpty() && firestation == null) {
+                return null;
+            }
+            List<Member> members = new ArrayList<>(rows.size());
+            for (SnapshotJoin.Row row : rows) {
+                members.add(new Member(row.person(), row.medicalRecord(), AgeService.readBirthdateOrNull(row.birthdate())));
+            }
+            return new Household(firestation, Collections.unmodifiableList(members));
+        }
+
+        /**
+         * Get the fire station covering the address
+         *
+         * @return Firestation object, null if no fire station covers the address
+         */
+        public Firestation getFirestation() {
+            return firestation;
+        }
+
+        /**
+         * Get the residents of the address
+         *
+         * @return List of Member objects, in the order of the persons
+         */
+        public List<Member> getMembers() {
+            return members;
+        }
+    }
+
+    /**
+     * Member of a household
+     *
+     * @param person        person
+     * @param medicalRecord medical record of the person, null if not found
+     * @param birthdate     birthdate read from the medical record, null if not found or not readable
+     */
+    public record Member(Person person, MedicalRecord medicalRecord, LocalDate birthdate) {
+
+        /**
+         * Get the age of the member at a date
+         *
+         * @param today date
+         * @return age in years, null if the birthdate is unknown
+         */
+        public Integer age(LocalDate today) {
+            return (birthdate == null) ? null : Period.between(birthdate, today).getYears();
+        }
+    }
+}
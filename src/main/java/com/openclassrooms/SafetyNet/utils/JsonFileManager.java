@@ -1,6 +1,9 @@
 package com.openclassrooms.SafetyNet.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerLoadException;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.model.Firestation;
@@ -13,17 +16,33 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * JsonFileManager Class
+ * <p>
+ * The content of the file is held in an immutable DataSnapshot : readers never lock,
+ * writers publish a new snapshot with an atomic swap.
+ * The reader and the writer of the file are built once from a copy of the ObjectMapper, then reused for each load and save.
+ * The copy has the default annotation introspector : the field selection filter of the responses (FieldSelection)
+ * never applies to the file, which is always written with all its fields.
+ * <p>
+ * The file is always rewritten as a whole, so the saves are coalesced : a save writes the newest snapshot, and
+ * the writers which published their change before it started return without writing the file again.
+ * Concurrent writers therefore wait for one write of the file in progress and one pending write at most,
+ * instead of one write each. The writes of the file themselves are not parallel.
  */
 @Log4j2
 @Component
 public class JsonFileManager {
 
-    private JsonModel jsonModel;
+    private final AtomicReference<DataSnapshot> snapshot = new AtomicReference<>();
+    private final Object saveLock = new Object();
+    private DataSnapshot savedSnapshot;
 
-    private final ObjectMapper objectMapper;
+    private final ObjectReader jsonModelReader;
+    private final ObjectWriter jsonModelWriter;
     private final CustomProperties customProperties;
 
     /**
@@ -34,7 +53,9 @@ public class JsonFileManager {
      */
     public JsonFileManager(ObjectMapper objectMapper, CustomProperties customProperties) {
         log.info("<constructor> JsonFileManager");
-        this.objectMapper = objectMapper;
+        ObjectMapper fileMapper = objectMapper.copy().setAnnotationIntrospector(new JacksonAnnotationIntrospector());
+        this.jsonModelReader = fileMapper.readerFor(JsonModel.class);
+        this.jsonModelWriter = fileMapper.writerFor(JsonModel.class).withDefaultPrettyPrinter();
         this.customProperties = customProperties;
 
         loadJsonFile();
@@ -47,7 +68,12 @@ public class JsonFileManager {
      */
     private void loadJsonFile() {
         try {
-            jsonModel = objectMapper.readValue(new File(customProperties.getJsonFilePath()), JsonModel.class);
+            JsonModel jsonModel = jsonModelReader.readValue(new File(customProperties.getJsonFilePath()));
+            DataSnapshot loaded = DataSnapshot.of(jsonModel);
+            snapshot.set(loaded);
+            synchronized (saveLock) {
+                savedSnapshot = loaded;
+            }
             log.info("Json file loaded");
 
         } catch (Exception e) {
@@ -56,45 +82,87 @@ public class JsonFileManager {
     }
 
     /**
-     * Save the JsonModel object into the Json file
+     * Save the current snapshot into the Json file.
+     * When the file already holds the current snapshot or a newer one (written for another writer meanwhile),
+     * it is not written again. Otherwise the newest snapshot is written, covering the writers waiting behind this one.
      *
      * @throws JsonFileManagerSaveException if an error occurs while saving the file
      */
     public void saveJsonFile() throws JsonFileManagerSaveException {
-        try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(customProperties.getJsonFilePath()), jsonModel);
-            log.info("JSON file saved");
-
-        } catch (Exception e) {
-            throw new JsonFileManagerSaveException("Error while saving the file");
+        DataSnapshot published = getSnapshot();
+        synchronized (saveLock) {
+            if (savedSnapshot != null && !published.isNewerThan(savedSnapshot)) {
+                log.debug("Snapshot {} already saved", published.getVersion());
+                return;
+            }
+            DataSnapshot newest = getSnapshot();
+            try {
+                jsonModelWriter.writeValue(new File(customProperties.getJsonFilePath()), newest.toJsonModel());
+                savedSnapshot = newest;
+                log.info("JSON file saved");
+
+            } catch (Exception e) {
+                throw new JsonFileManagerSaveException("Error while saving the file");
+            }
         }
     }
 
     /**
-     * Get the list of persons from the JsonModel object
+     * Get the current snapshot, a consistent view of persons, fire stations and medical records
+     *
+     * @return DataSnapshot object
+     */
+    public DataSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Apply a change to the current snapshot and publish the result atomically.
+     * When writers race, the change is applied again on the newer snapshot, so it must not have side effects.
+     *
+     * @param change function building the next snapshot from the current one
+     * @return the snapshot the change was applied to
+     */
+    public DataSnapshot updateSnapshot(UnaryOperator<DataSnapshot> change) {
+        return snapshot.getAndUpdate(change);
+    }
+
+    /**
+     * Put back the snapshot replaced by a change, unless another change was published since
+     *
+     * @param published snapshot published by the change
+     * @param previous  snapshot the change was applied to
+     * @return true if the previous snapshot is the current one again
+     */
+    public boolean restoreSnapshot(DataSnapshot published, DataSnapshot previous) {
+        return snapshot.compareAndSet(published, previous);
+    }
+
+    /**
+     * Get the list of persons from the current snapshot
      *
      * @return List of Person objects
      */
     public List<Person> getPersons() {
-        return jsonModel.getPersons();
+        return getSnapshot().getPersons();
     }
 
     /**
-     * Get the list of firestations from the JsonModel object
+     * Get the list of firestations from the current snapshot
      *
      * @return List of Firestation objects
      */
     public List<Firestation> getFirestations() {
-        return jsonModel.getFirestations();
+        return getSnapshot().getFirestations();
     }
 
     /**
-     * Get the list of medical records from the JsonModel object
+     * Get the list of medical records from the current snapshot
      *
      * @return List of MedicalRecord objects
      */
     public List<MedicalRecord> getMedicalRecords() {
-        return jsonModel.getMedicalrecords();
+        return getSnapshot().getMedicalRecords();
     }
 
 }
@@ -0,0 +1,21 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import java.util.List;
+
+/**
+ * Page record
+ * <p>
+ * A page of a collection read in one snapshot, with the cursor of the next page.
+ *
+ * @param items      records of the page
+ * @param nextCursor opaque cursor of the next page, null on the last page
+ * @param version    version of the snapshot the page was read from
+ * @param <T>        type of the records
+ */
+public record Page<T>(List<T> items, String nextCursor, long version) implements FieldSelection.Envelope {
+
+    @Override
+    public String payloadProperty() {
+        return "items";
+    }
+}
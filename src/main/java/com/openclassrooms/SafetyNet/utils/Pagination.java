@@ -0,0 +1,165 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Pagination Class
+ * <p>
+ * Cursor-based pages over a collection of a snapshot. Each sort is a view of the collection sorted once per snapshot
+ * (see DataSnapshot.getSortedView), a page is a sub list of this view : nothing is copied per page.
+ * <p>
+ * The cursor holds the version of the snapshot (with the epoch of the process), the position in the view and the sort
+ * key of the last record sent.
+ * While the version is unchanged the next page starts at the position, after a write or a restart it starts after the last key :
+ * records that were not written are neither skipped nor repeated.
+ */
+public final class Pagination {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final Comparator<String> VALUE_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<List<String>> KEY_ORDER = (a, b) -> {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int compare = VALUE_ORDER.compare(a.get(i), b.get(i));
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    };
+
+    private Pagination() {
+    }
+
+    /**
+     * Get a page of a collection
+     *
+     * @param snapshot    snapshot the collection belongs to
+     * @param collection  name of the collection
+     * @param items       records of the collection
+     * @param sortKeys    sort keys by name, each key must identify a record (it ends with the natural key)
+     * @param defaultSort sort used when none is requested
+     * @param limit       maximum number of records of the page
+     * @param cursor      cursor returned with the previous page, null for the first page
+     * @param sort        name of the sort, prefixed by "-" for descending order, null for the default sort
+     * @param <T>         type of the records
+     * @return Page object
+     * @throws BadRequestException if the limit, the sort or the cursor is invalid
+     */
+    public static <T> Page<T> page(DataSnapshot snapshot, String collection, List<T> items,
+                                   Map<String, Function<T, List<String>>> sortKeys, String defaultSort,
+                                   int limit, String cursor, String sort) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Invalid page", List.of("limit must be between 1 and " + MAX_LIMIT));
+        }
+        String sortName = (sort == null || sort.isBlank()) ? defaultSort : sort;
+        boolean descending = sortName.startsWith("-");
+        Function<T, List<String>> sortKey = sortKeys.get(descending ? sortName.substring(1) : sortName);
+        if (sortKey == null) {
+            throw new BadRequestException("Invalid page", List.of("sort must be one of " + new TreeSet<>(sortKeys.keySet())));
+        }
+        Comparator<List<String>> order = descending ? KEY_ORDER.reversed() : KEY_ORDER;
+        String viewName = collection + ":" + sortName;
+        List<T> view = snapshot.getSortedView(viewName, items, Comparator.comparing(sortKey, order));
+
+        int from = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor position = Cursor.decode(cursor);
+            if (!position.view().equals(viewName)) {
+                throw new BadRequestException("Invalid page", List.of("cursor was not issued for " + viewName));
+            }
+            from = (position.epoch().equals(DataSnapshot.EPOCH) && position.version() == snapshot.getVersion())
+                    ? Math.min(position.offset(), view.size())
+                    : resumeAfter(view, sortKey, order, position.lastKey());
+        }
+        int to = Math.min(from + limit, view.size());
+        String nextCursor = (to < view.size())
+                ? new Cursor(DataSnapshot.EPOCH, snapshot.getVersion(), to, viewName, sortKey.apply(view.get(to - 1))).encode()
+                : null;
+        return new Page<>(view.subList(from, to), nextCursor, snapshot.getVersion());
+    }
+
+    /**
+     * Build a sort key from values, null values allowed
+     *
+     * @param values values of the key, compared in order
+     * @return sort key
+     */
+    public static List<String> key(String... values) {
+        return Arrays.asList(values);
+    }
+
+    /**
+     * Position of the first record after the last key sent, found by binary search in the sorted view
+     */
+    private static <T> int resumeAfter(List<T> view, Function<T, List<String>> sortKey,
+                                       Comparator<List<String>> order, List<String> lastKey) {
+        int low = 0;
+        int high = view.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(sortKey.apply(view.get(middle)), lastKey) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Position of the next page, sent to the client as an opaque url-safe string
+     *
+     * @param epoch   epoch of the process which issued the cursor
+     * @param version version of the snapshot of the previous page
+     * @param offset  position of the next page in the view
+     * @param view    name of the sorted view
+     * @param lastKey sort key of the last record of the previous page
+     */
+    record Cursor(String epoch, long version, int offset, String view, List<String> lastKey) {
+
+        String encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(epoch);
+                out.writeLong(version);
+                out.writeInt(offset);
+                out.writeUTF(view);
+                out.writeInt(lastKey.size());
+                for (String value : lastKey) {
+                    out.writeBoolean(value != null);
+                    if (value != null) {
+                        out.writeUTF(value);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        }
+
+        static Cursor decode(String cursor) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+                String epoch = in.readUTF();
+                long version = in.readLong();
+                int offset = in.readInt();
+                String view = in.readUTF();
+                int size = in.readInt();
+                if (offset < 0 || size < 0 || size > 16) {
+                    throw new IOException("Corrupted cursor");
+                }
+                List<String> lastKey = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    lastKey.add(in.readBoolean() ? in.readUTF() : null);
+                }
+                return new Cursor(epoch, version, offset, view, lastKey);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new BadRequestException("Invalid page", List.of("cursor is invalid"));
+            }
+        }
+    }
+}
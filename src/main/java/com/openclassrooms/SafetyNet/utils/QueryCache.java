@@ -0,0 +1,268 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * QueryCache Class
+ * <p>
+ * Bounded LRU cache of the results of the emergency queries, keyed by query and parameters.
+ * All the entries are valid for one snapshot : when a query reads a newer snapshot, the change between both snapshots
+ * is computed once, outside the monitor of the cache, and only the entries touching a changed address, station,
+ * last name or city are evicted. The cache only moves forward : a query reading an older snapshot than the one of
+ * the cache is computed and its result is not cached.
+ * Results are computed with the ages of the day, so the cache is cleared when the day of the clock changes.
+ * <p>
+ * A cached result is returned as is to every caller : the loaders return immutable results (immutable DTOs,
+ * read-only collections), so no caller can change the result of the next ones.
+ * In explain mode (see QueryTrace) the query is always run, so its stages are measured, and the cache is left as is.
+ */
+@Log4j2
+@Component
+public class QueryCache {
+
+    private static final int DEFAULT_SIZE = 1024;
+
+    private final Map<Key, Object> entries;
+    private final Clock clock;
+    private final Object advanceLock = new Object();
+    private DataSnapshot snapshot;
+    private LocalDate day;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor
+     */
+    public QueryCache() {
+        this(DEFAULT_SIZE, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param clock clock giving the current day
+     */
+    @Autowired
+    public QueryCache(Clock clock) {
+        this(DEFAULT_SIZE, clock);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size maximum number of cached results
+     */
+    public QueryCache(int size) {
+        this(size, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size  maximum number of cached results
+     * @param clock clock giving the current day
+     */
+    public QueryCache(int size, Clock clock) {
+        log.info("<constructor> QueryCache with {} entries", size);
+        this.clock = clock;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Scope of a query : the kind of key its parameters are
+     */
+    public enum Scope {
+        STATION, ADDRESS, LAST_NAME, CITY
+    }
+
+    /**
+     * Key of a cached result
+     *
+     * @param query  name of the query
+     * @param scope  kind of the parameters
+     * @param values parameters of the query (station numbers, address, last name or city)
+     */
+    public record Key(String query, Scope scope, List<?> values) {
+
+        /**
+         * Build a key
+         *
+         * @param query  name of the query
+         * @param scope  kind of the parameters
+         * @param values parameters of the query
+         * @return Key object
+         */
+        public static Key of(String query, Scope scope, Object... values) {
+            return new Key(query, scope, Arrays.asList(values));
+        }
+
+        /**
+         * Check if the result of the query may be changed by a snapshot change
+         *
+         * @param change change between two snapshots
+         * @return true if a parameter of the query is touched by the change
+         */
+        public boolean isTouchedBy(SnapshotChange change) {
+            Set<?> touched = switch (scope) {
+                case STATION -> change.stations();
+                case ADDRESS -> change.addresses();
+                case LAST_NAME -> change.lastNames();
+                case CITY -> change.cities();
+            };
+            for (Object value : values) {
+                if (touched.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Get the result of a query, computed by the loader if it is not cached.
+     * The result is cached only if the cache did not move to a newer snapshot while it was computed,
+     * exceptions are not cached.
+     *
+     * @param snapshot snapshot read by the query
+     * @param key      key of the query
+     * @param loader   computation of the result from the snapshot
+     * @param <T>      type of the result
+     * @return result of the query, shared with the other callers
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(DataSnapshot snapshot, Key key, Supplier<T> loader) {
+        QueryTrace trace = QueryTrace.current();
+        if (trace != null) {
+            return explain(snapshot, key, loader, trace);
+        }
+        boolean current = moveTo(snapshot);
+        Object cached = null;
+        synchronized (this) {
+            if (current && snapshot == this.snapshot) {
+                cached = entries.get(key);
+            }
+            if (cached != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (cached != null) {
+            log.debug("Cache hit for {}", key);
+            return (T) cached;
+        }
+        T value = loader.get();
+        if (current && value != null) {
+            synchronized (this) {
+                if (snapshot == this.snapshot) {
+                    entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the number of results served from the cache
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of results computed by the loader
+     *
+     * @return number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of cached results
+     *
+     * @return number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Run a query in explain mode, recording whether its result was cached
+     */
+    private <T> T explain(DataSnapshot snapshot, Key key, Supplier<T> loader, QueryTrace trace) {
+        boolean cached;
+        synchronized (this) {
+            cached = snapshot == this.snapshot && entries.containsKey(key);
+        }
+        trace.describe(key.query(), snapshot.getVersion());
+        trace.record("cache lookup", cached ? "query cache, bypassed (result cached)" : "query cache, bypassed (result not cached)",
+                cached ? 1 : 0, 0);
+        return loader.get();
+    }
+
+    /**
+     * Move the cache forward to the snapshot read by a query, evicting the entries touched by the change.
+     * The change is computed under the advance lock only, so the queries reading the snapshot of the cache
+     * are not blocked, and the queries reading the new snapshot wait for a single computation.
+     *
+     * @param current snapshot read by the query
+     * @return false if the snapshot is older than the snapshot of the cache
+     */
+    private boolean moveTo(DataSnapshot current) {
+        synchronized (this) {
+            LocalDate today = LocalDate.now(clock);
+            if (!today.equals(day)) {
+                entries.clear();
+                day = today;
+            }
+            if (snapshot == current) {
+                return true;
+            }
+            if (snapshot != null && !current.isNewerThan(snapshot)) {
+                return false;
+            }
+        }
+        synchronized (advanceLock) {
+            DataSnapshot previous;
+            boolean empty;
+            synchronized (this) {
+                if (snapshot == current) {
+                    return true;
+                }
+                if (snapshot != null && !current.isNewerThan(snapshot)) {
+                    return false;
+                }
+                previous = snapshot;
+                empty = entries.isEmpty();
+            }
+            SnapshotChange change = (previous == null || empty) ? null : SnapshotChange.between(previous, current);
+            synchronized (this) {
+                int size = entries.size();
+                if (change != null) {
+                    entries.keySet().removeIf(key -> key.isTouchedBy(change));
+                } else {
+                    // results cached while the cache was empty have not been checked against the change
+                    entries.clear();
+                }
+                log.debug("{} cached results evicted", size - entries.size());
+                snapshot = current;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * QueryTrace Class
+ * <p>
+ * Execution stages of an emergency query run in explain mode : name, access path (index, materialized view, cache
+ * or scan), number of rows produced and time spent. The trace of a request is bound to its thread, the work
+ * fanned out to other threads is traced with propagate(). Stages with the same name (one per chunk of a fan-out)
+ * are summed.
+ * <p>
+ * Outside explain mode no trace is bound and a stage only runs its work.
+ */
+public final class QueryTrace {
+
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private String query;
+    private long snapshotVersion;
+
+    private QueryTrace() {
+    }
+
+    /**
+     * Stage of a query
+     *
+     * @param name   name of the stage
+     * @param access access path used by the stage
+     * @param rows   number of rows produced
+     * @param nanos  time spent, summed over the threads
+     */
+    public record Stage(String name, String access, long rows, long nanos) {
+    }
+
+    /**
+     * Explain plan returned with the result of a query
+     *
+     * @param query           name of the query
+     * @param snapshotVersion version of the snapshot read by the query
+     * @param totalNanos      time since the start of the trace
+     * @param stages          stages, in the order they started
+     */
+    public record Plan(String query, long snapshotVersion, long totalNanos, List<Stage> stages) {
+    }
+
+    /**
+     * Bind a new trace to the current thread
+     *
+     * @return QueryTrace object
+     */
+    public static QueryTrace start() {
+        QueryTrace trace = new QueryTrace();
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Unbind the trace of the current thread
+     */
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Get the trace of the current thread
+     *
+     * @return QueryTrace object, null outside explain mode
+     */
+    public static QueryTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Set the query traced on the current thread, for the queries which are not cached (see QueryCache)
+     *
+     * @param query           name of the query
+     * @param snapshotVersion version of the snapshot
+     */
+    public static void describeCurrent(String query, long snapshotVersion) {
+        QueryTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.describe(query, snapshotVersion);
+        }
+    }
+
+    /**
+     * Run a stage of the query, traced in explain mode
+     *
+     * @param name   name of the stage
+     * @param access access path used by the stage
+     * @param work   work of the stage
+     * @param rows   number of rows of the result
+     * @param <T>    type of the result
+     * @return result of the work
+     */
+    public static <T> T stage(String name, String access, Supplier<T> work, ToIntFunction<T> rows) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) {
+            return work.get();
+        }
+        long begin = System.nanoTime();
+        T result = work.get();
+        trace.record(name, access, (result == null) ? 0 : rows.applyAsInt(result), System.nanoTime() - begin);
+        return result;
+    }
+
+    /**
+     * Bind the trace of the current thread to a work run by another thread
+     *
+     * @param work work, run by a thread of a pool
+     * @param <A>  type of the input
+     * @param <B>  type of the output
+     * @return work recording its stages in the trace of the current thread
+     */
+    public static <A, B> Function<A, B> propagate(Function<A, B> work) {
+        QueryTrace trace = CURRENT.get();
+        if (trace == null) {
+            return work;
+        }
+        return input -> {
+            QueryTrace previous = CURRENT.get();
+            CURRENT.set(trace);
+            try {
+                return work.apply(input);
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Record a stage
+     *
+     * @param name   name of the stage
+     * @param access access path used by the stage
+     * @param rows   number of rows produced
+     * @param nanos  time spent
+     */
+    public synchronized void record(String name, String access, long rows, long nanos) {
+        stages.merge(name, new Stage(name, access, rows, nanos),
+                (a, b) -> new Stage(name, access, a.rows() + b.rows(), a.nanos() + b.nanos()));
+    }
+
+    /**
+     * Set the query and the snapshot it reads
+     *
+     * @param query           name of the query
+     * @param snapshotVersion version of the snapshot
+     */
+    public synchronized void describe(String query, long snapshotVersion) {
+        this.query = query;
+        this.snapshotVersion = snapshotVersion;
+    }
+
+    /**
+     * Get the explain plan
+     *
+     * @return Plan object
+     */
+    public synchronized Plan plan() {
+        return new Plan(query, snapshotVersion, System.nanoTime() - start, new ArrayList<>(stages.values()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ResponseBytesCache Class
+ * <p>
+ * Serialized Json of the list endpoints (all the persons, fire stations or medical records), kept as bytes with
+ * a gzip variant built on first use. An entry is valid for one list : a snapshot shares the lists of the collections
+ * not changed by a write, so an entry is kept until the repository of its collection publishes a new list, and the
+ * next request serializes it again. A repeated request only copies the bytes to the response.
+ * <p>
+ * The Json is written with all the fields : a request selecting fields (see FieldSelection) is not served from
+ * this cache. Cached bytes are shared between the responses, they must not be modified.
+ */
+@Log4j2
+@Component
+public class ResponseBytesCache {
+
+    private static final String GZIP = "gzip";
+
+    private final ObjectWriter writer;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param objectMapper ObjectMapper of the responses
+     */
+    public ResponseBytesCache(ObjectMapper objectMapper) {
+        log.info("<constructor> ResponseBytesCache");
+        this.writer = objectMapper.writer(FieldSelection.ALL.filters());
+    }
+
+    /**
+     * Serialized Json of a list
+     */
+    public static final class Entry {
+
+        private final List<?> records;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        private Entry(List<?> records, byte[] json) {
+            this.records = records;
+            this.json = json;
+        }
+
+        /**
+         * Get the Json of the list
+         *
+         * @return bytes of the Json, UTF-8
+         */
+        public byte[] json() {
+            return json;
+        }
+
+        /**
+         * Get the gzip of the Json of the list, compressed on first use
+         *
+         * @return bytes of the compressed Json
+         */
+        public byte[] gzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                compressed = compress(json);
+                gzip = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    /**
+     * Get the serialized Json of a list, written if the list is not the one cached for the view
+     *
+     * @param view    name of the list endpoint
+     * @param records list of the current snapshot
+     * @return Entry object
+     */
+    public Entry get(String view, List<?> records) {
+        Entry entry = entries.get(view);
+        if (entry != null && entry.records == records) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        try {
+            entry = new Entry(records, writer.writeValueAsBytes(records));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("Json of {} serialized, {} bytes", view, entry.json.length);
+        entries.put(view, entry);
+        return entry;
+    }
+
+    /**
+     * Build the response of a list endpoint from its serialized Json, compressed if the client accepts gzip
+     *
+     * @param view           name of the list endpoint
+     * @param records        list of the current snapshot
+     * @param acceptEncoding Accept-Encoding header of the request, may be null
+     * @return ResponseEntity with the bytes of the Json
+     */
+    public ResponseEntity<byte[]> response(String view, List<?> records, String acceptEncoding) {
+        Entry entry = get(view, records);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(entry.gzip());
+        }
+        return builder.body(entry.json());
+    }
+
+    /**
+     * Get the number of responses served from the cache
+     *
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lists serialized
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Check if an Accept-Encoding header accepts gzip (gzip or *, without a zero quality)
+     *
+     * @param acceptEncoding Accept-Encoding header, may be null
+     * @return true if the response may be compressed with gzip
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(GZIP) && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compress bytes with gzip
+     */
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.Person;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SnapshotChange record
+ * <p>
+ * Change event between two snapshots : the addresses, stations, last names and cities whose query results may differ.
+ * A person touches its address, the stations of its address, its last name and its city (in both snapshots,
+ * so a person who moved touches both addresses), a medical record touches the same keys as its person,
+ * and a fire station mapping touches its address and its station.
+ *
+ * @param addresses addresses whose residents, medical records or fire station changed
+ * @param stations  stations whose mapped addresses or residents changed
+ * @param lastNames last names of the changed persons and medical records
+ * @param cities    cities of the changed persons
+ */
+public record SnapshotChange(Set<String> addresses, Set<Integer> stations, Set<String> lastNames, Set<String> cities) {
+
+    /**
+     * Compute the change between two snapshots
+     *
+     * @param previous snapshot before the change
+     * @param next     snapshot after the change
+     * @return SnapshotChange object, empty if both snapshots are the same
+     */
+    public static SnapshotChange between(DataSnapshot previous, DataSnapshot next) {
+        Set<String> addresses = new HashSet<>();
+        Set<Integer> stations = new HashSet<>();
+        Set<String> lastNames = new HashSet<>();
+        Set<String> cities = new HashSet<>();
+        if (previous == next) {
+            return new SnapshotChange(addresses, stations, lastNames, cities);
+        }
+
+        List<Person> changedPersons = SnapshotDiff.changedPersons(previous, next);
+        for (Person person : changedPersons) {
+            addresses.add(person.getAddress());
+            lastNames.add(person.getLastName());
+            cities.add(person.getCity());
+        }
+        for (Person person : SnapshotDiff.personsWithChangedMedicalRecord(previous, next)) {
+            addresses.add(person.getAddress());
+            lastNames.add(person.getLastName());
+        }
+        addresses.addAll(SnapshotDiff.firestationAddresses(previous, next));
+
+        stations.addAll(SnapshotDiff.changedStations(previous, next));
+        addStations(previous.getFirestations(), addresses, stations);
+        addStations(next.getFirestations(), addresses, stations);
+        return new SnapshotChange(addresses, stations, lastNames, cities);
+    }
+
+    /**
+     * Check if nothing changed
+     *
+     * @return true if no key is touched
+     */
+    public boolean isEmpty() {
+        return addresses.isEmpty() && stations.isEmpty() && lastNames.isEmpty() && cities.isEmpty();
+    }
+
+    /**
+     * Add the stations mapped to the touched addresses
+     */
+    private static void addStations(List<Firestation> firestations, Set<String> addresses, Set<Integer> stations) {
+        for (Firestation firestation : firestations) {
+            if (addresses.contains(firestation.getAddress())) {
+                stations.add(firestation.getStation());
+            }
+        }
+    }
+}
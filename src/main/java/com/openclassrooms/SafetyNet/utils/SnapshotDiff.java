@@ -0,0 +1,143 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SnapshotDiff Class
+ * <p>
+ * Find what changed between two snapshots, to maintain the materialized views and invalidate cached results.
+ * A record is unchanged when the other snapshot holds the same object, so the diff only compares references.
+ */
+final class SnapshotDiff {
+
+    private SnapshotDiff() {
+    }
+
+    /**
+     * Get the addresses where a resident or the medical record of a resident changed
+     *
+     * @param previous snapshot the change was applied to
+     * @param next     next snapshot
+     * @return Set of addresses, from both snapshots (a person who moved touches both addresses)
+     */
+    static Set<String> residentAddresses(DataSnapshot previous, DataSnapshot next) {
+        Set<String> addresses = new HashSet<>();
+        for (Person person : changedPersons(previous, next)) {
+            addresses.add(person.getAddress());
+        }
+        for (Person person : personsWithChangedMedicalRecord(previous, next)) {
+            addresses.add(person.getAddress());
+        }
+        return addresses;
+    }
+
+    /**
+     * Get the persons which are not the same object in both snapshots
+     *
+     * @param previous snapshot the change was applied to
+     * @param next     next snapshot
+     * @return List of persons, as found in the snapshot holding them (a changed person is listed twice)
+     */
+    static List<Person> changedPersons(DataSnapshot previous, DataSnapshot next) {
+        List<Person> persons = new ArrayList<>();
+        if (next.getPersons() != previous.getPersons()) {
+            changedPersons(previous, next, persons);
+            changedPersons(next, previous, persons);
+        }
+        return persons;
+    }
+
+    /**
+     * Get the persons whose medical record is not the same object in both snapshots
+     *
+     * @param previous snapshot the change was applied to
+     * @param next     next snapshot
+     * @return List of persons, as found in the snapshot holding the medical record
+     */
+    static List<Person> personsWithChangedMedicalRecord(DataSnapshot previous, DataSnapshot next) {
+        List<Person> persons = new ArrayList<>();
+        if (next.getMedicalRecords() != previous.getMedicalRecords()) {
+            personsWithChangedMedicalRecord(previous, next, persons);
+            personsWithChangedMedicalRecord(next, previous, persons);
+        }
+        return persons;
+    }
+
+    /**
+     * Get the addresses whose fire station changed
+     *
+     * @param previous snapshot the change was applied to
+     * @param next     next snapshot
+     * @return Set of addresses
+     */
+    static Set<String> firestationAddresses(DataSnapshot previous, DataSnapshot next) {
+        Set<String> addresses = new HashSet<>();
+        if (next.getFirestations() != previous.getFirestations()) {
+            for (Firestation firestation : previous.getFirestations()) {
+                if (next.getFirestationByAddress(firestation.getAddress()) != previous.getFirestationByAddress(firestation.getAddress())) {
+                    addresses.add(firestation.getAddress());
+                }
+            }
+            for (Firestation firestation : next.getFirestations()) {
+                if (next.getFirestationByAddress(firestation.getAddress()) != previous.getFirestationByAddress(firestation.getAddress())) {
+                    addresses.add(firestation.getAddress());
+                }
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Get the stations whose mapped addresses changed
+     *
+     * @param previous snapshot the change was applied to
+     * @param next     next snapshot
+     * @return Set of station numbers
+     */
+    static Set<Integer> changedStations(DataSnapshot previous, DataSnapshot next) {
+        Set<Integer> stations = new HashSet<>();
+        if (next.getFirestations() != previous.getFirestations()) {
+            Set<Integer> candidates = new HashSet<>();
+            previous.getFirestations().forEach(firestation -> candidates.add(firestation.getStation()));
+            next.getFirestations().forEach(firestation -> candidates.add(firestation.getStation()));
+            for (Integer station : candidates) {
+                if (!previous.getFirestationsByStation(station).equals(next.getFirestationsByStation(station))) {
+                    stations.add(station);
+                }
+            }
+        }
+        return stations;
+    }
+
+    /**
+     * Add the persons of a snapshot which are not the same object in the other snapshot
+     */
+    private static void changedPersons(DataSnapshot from, DataSnapshot other, List<Person> persons) {
+        for (Person person : from.getPersons()) {
+            if (other.getPerson(person.getFirstName(), person.getLastName()) != person) {
+                persons.add(person);
+            }
+        }
+    }
+
+    /**
+     * Add the persons whose medical record is not the same object in the other snapshot
+     */
+    private static void personsWithChangedMedicalRecord(DataSnapshot from, DataSnapshot other, List<Person> persons) {
+        for (MedicalRecord medicalRecord : from.getMedicalRecords()) {
+            if (other.getMedicalRecord(medicalRecord.getFirstName(), medicalRecord.getLastName()) != medicalRecord) {
+                Person person = from.getPerson(medicalRecord.getFirstName(), medicalRecord.getLastName());
+                if (person != null) {
+                    persons.add(person);
+                }
+            }
+        }
+    }
+}
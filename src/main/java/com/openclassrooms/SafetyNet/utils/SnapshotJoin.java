@@ -0,0 +1,144 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot.NameKey;
+
+import java.util.*;
+
+/**
+ * SnapshotJoin Class
+ * <p>
+ * Join persons with their medical record and their fire station in a single pass.
+ * Each person is probed once in the hash indexes of the snapshot (or in a hash table built once per query),
+ * so a join costs O(persons + medical records) instead of scanning the medical records for each person.
+ */
+public final class SnapshotJoin {
+
+    private SnapshotJoin() {
+    }
+
+    /**
+     * Joined row : a person with its medical record and the fire station of its address
+     *
+     * @param person        person
+     * @param medicalRecord medical record of the person, null if not found
+     * @param firestation   fire station of the address of the person, null if not found
+     */
+    public record Row(Person person, MedicalRecord medicalRecord, Firestation firestation) {
+
+        /**
+         * Get the birthdate of the person
+         *
+         * @return birthdate, null if the person has no medical record
+         */
+        public String birthdate() {
+            return (medicalRecord == null) ? null : medicalRecord.getBirthdate();
+        }
+    }
+
+    /**
+     * Join the persons covered by fire stations, each address is joined once even if it is mapped several times
+     *
+     * @param snapshot       snapshot read by the query
+     * @param stationNumbers station numbers
+     * @return List of rows, grouped by address in the order of the fire stations
+     */
+    public static List<Row> byStations(DataSnapshot snapshot, Collection<Integer> stationNumbers) {
+        return byAddresses(snapshot, addressesOf(snapshot, stationNumbers));
+    }
+
+    /**
+     * Get the addresses mapped to fire stations, each address once
+     *
+     * @param snapshot       snapshot read by the query
+     * @param stationNumbers station numbers
+     * @return List of addresses, in the order of the fire stations
+     */
+    public static List<String> addressesOf(DataSnapshot snapshot, Collection<Integer> stationNumbers) {
+        Set<String> addresses = new LinkedHashSet<>();
+        for (Integer stationNumber : stationNumbers) {
+            for (Firestation firestation : snapshot.getFirestationsByStation(stationNumber)) {
+                addresses.add(firestation.getAddress());
+            }
+        }
+        return new ArrayList<>(addresses);
+    }
+
+    /**
+     * Join the persons living at addresses
+     *
+     * @param snapshot  snapshot read by the query
+     * @param addresses addresses
+     * @return List of rows, grouped by address in the order of the addresses
+     */
+    public static List<Row> byAddresses(DataSnapshot snapshot, Collection<String> addresses) {
+        List<Row> rows = new ArrayList<>();
+        for (String address : addresses) {
+            addRows(snapshot, address, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Join the persons living at an address
+     *
+     * @param snapshot snapshot read by the query
+     * @param address  address
+     * @return List of rows
+     */
+    public static List<Row> byAddress(DataSnapshot snapshot, String address) {
+        List<Row> rows = new ArrayList<>();
+        addRows(snapshot, address, rows);
+        return rows;
+    }
+
+    /**
+     * Join the persons with a last name
+     *
+     * @param snapshot snapshot read by the query
+     * @param lastName last name
+     * @return List of rows
+     */
+    public static List<Row> byLastName(DataSnapshot snapshot, String lastName) {
+        List<Person> persons = snapshot.getPersonsByLastName(lastName);
+        List<Row> rows = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            rows.add(new Row(person,
+                    snapshot.getMedicalRecord(person.getFirstName(), person.getLastName()),
+                    snapshot.getFirestationByAddress(person.getAddress())));
+        }
+        return rows;
+    }
+
+    /**
+     * Join lists of persons and medical records which are not indexed : the hash table of the medical records
+     * is built once, then probed once per person (the first medical record of a name wins)
+     *
+     * @param persons        list of persons
+     * @param medicalRecords list of medical records
+     * @return List of rows, without fire station
+     */
+    public static List<Row> join(List<Person> persons, List<MedicalRecord> medicalRecords) {
+        Map<NameKey, MedicalRecord> medicalRecordsByName = new HashMap<>();
+        for (MedicalRecord medicalRecord : medicalRecords) {
+            medicalRecordsByName.putIfAbsent(new NameKey(medicalRecord.getFirstName(), medicalRecord.getLastName()), medicalRecord);
+        }
+        List<Row> rows = new ArrayList<>(persons.size());
+        for (Person person : persons) {
+            rows.add(new Row(person, medicalRecordsByName.get(new NameKey(person.getFirstName(), person.getLastName())), null));
+        }
+        return rows;
+    }
+
+    /**
+     * Add the rows of the persons living at an address
+     */
+    private static void addRows(DataSnapshot snapshot, String address, List<Row> rows) {
+        Firestation firestation = snapshot.getFirestationByAddress(address);
+        for (Person person : snapshot.getPersonsByAddress(address)) {
+            rows.add(new Row(person, snapshot.getMedicalRecord(person.getFirstName(), person.getLastName()), firestation));
+        }
+    }
+}
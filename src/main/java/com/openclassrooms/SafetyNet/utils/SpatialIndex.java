@@ -0,0 +1,287 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * SpatialIndex Class
+ * <p>
+ * Immutable k-d tree over geocoded records (latitude and longitude in degrees), for k-nearest and radius queries.
+ * Each point is stored as a unit vector of the sphere : the straight-line (chord) distance between two vectors grows
+ * with the great-circle distance, so the tree can prune on the x, y and z axes without special cases at the poles
+ * or at the antimeridian. Distances are returned in meters along the surface of the Earth.
+ * <p>
+ * The tree is stored in arrays, each node being the median of its range, so a query visits O(log n + k) nodes.
+ * Records without coordinates are not indexed.
+ *
+ * @param <T> type of the records
+ */
+public final class SpatialIndex<T> {
+
+    /**
+     * Mean radius of the Earth, in meters
+     */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+
+    private final List<T> items;
+    private final double[] points;
+
+    private SpatialIndex(List<T> items, double[] points) {
+        this.items = items;
+        this.points = points;
+    }
+
+    /**
+     * Record found by a query, with its distance to the point of the query
+     *
+     * @param item     record
+     * @param distance great-circle distance, in meters
+     * @param <T>      type of the record
+     */
+    public record Hit<T>(T item, double distance) {
+    }
+
+    /**
+     * Build the index of the records with coordinates
+     *
+     * @param records   records
+     * @param latitude  latitude of a record, in degrees, null if not geocoded
+     * @param longitude longitude of a record, in degrees, null if not geocoded
+     * @param <T>       type of the records
+     * @return SpatialIndex object
+     */
+    public static <T> SpatialIndex<T> build(Collection<T> records, Function<T, Double> latitude, Function<T, Double> longitude) {
+        List<T> located = new ArrayList<>();
+        List<double[]> vectors = new ArrayList<>();
+        for (T record : records) {
+            Double lat = latitude.apply(record);
+            Double lon = longitude.apply(record);
+            if (lat != null && lon != null) {
+                located.add(record);
+                vectors.add(toVector(lat, lon));
+            }
+        }
+        int size = located.size();
+        double[] unordered = new double[size * 3];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(vectors.get(i), 0, unordered, i * 3, 3);
+            order[i] = i;
+        }
+        arrange(order, unordered, 0, size, 0);
+
+        List<T> items = new ArrayList<>(size);
+        double[] points = new double[size * 3];
+        for (int i = 0; i < size; i++) {
+            items.add(located.get(order[i]));
+            System.arraycopy(unordered, order[i] * 3, points, i * 3, 3);
+        }
+        return new SpatialIndex<>(Collections.unmodifiableList(items), points);
+    }
+
+    /**
+     * Get the number of indexed records
+     *
+     * @return number of records with coordinates
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Get the records nearest to a point
+     *
+     * @param latitude  latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param count     maximum number of records
+     * @return List of hits, nearest first
+     */
+    public List<Hit<T>> nearest(double latitude, double longitude, int count) {
+        if (count <= 0 || items.isEmpty()) {
+            return List.of();
+        }
+        double[] query = toVector(latitude, longitude);
+        // max-heap on the squared chord : its head is the farthest of the best candidates
+        PriorityQueue<Candidate> best = new PriorityQueue<>(count + 1,
+                Comparator.comparingDouble(Candidate::chord2).reversed());
+        nearest(0, items.size(), 0, query, count, best);
+        List<Candidate> candidates = new ArrayList<>(best);
+        candidates.sort(Comparator.comparingDouble(Candidate::chord2));
+        return toHits(candidates);
+    }
+
+    /**
+     * Get the records within a distance of a point
+     *
+     * @param latitude  latitude of the point, in degrees
+     * @param longitude longitude of the point, in degrees
+     * @param radius    distance, in meters
+     * @return List of hits, nearest first
+     */
+    public List<Hit<T>> withinRadius(double latitude, double longitude, double radius) {
+        if (radius < 0 || items.isEmpty()) {
+            return List.of();
+        }
+        double[] query = toVector(latitude, longitude);
+        double chord = 2 * Math.sin(Math.min(radius / EARTH_RADIUS, Math.PI) / 2);
+        List<Candidate> found = new ArrayList<>();
+        withinRadius(0, items.size(), 0, query, chord, found);
+        found.sort(Comparator.comparingDouble(Candidate::chord2));
+        return toHits(found);
+    }
+
+    /**
+     * Great-circle distance between two points
+     *
+     * @param latitude1  latitude of the first point, in degrees
+     * @param longitude1 longitude of the first point, in degrees
+     * @param latitude2  latitude of the second point, in degrees
+     * @param longitude2 longitude of the second point, in degrees
+     * @return distance, in meters
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double[] a = toVector(latitude1, longitude1);
+        double[] b = toVector(latitude2, longitude2);
+        double dx = a[0] - b[0];
+        double dy = a[1] - b[1];
+        double dz = a[2] - b[2];
+        return toMeters(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Indexed record, by position in the tree, with its squared chord to the point of the query
+     */
+    private record Candidate(int index, double chord2) {
+    }
+
+    /**
+     * Search the nearest records in the subtree of the range [from, to)
+     */
+    private void nearest(int from, int to, int depth, double[] query, int count, PriorityQueue<Candidate> best) {
+        if (from >= to) {
+            return;
+        }
+        int node = (from + to) >>> 1;
+        double chord2 = chord2(node, query);
+        if (best.size() < count) {
+            best.add(new Candidate(node, chord2));
+        } else if (chord2 < best.peek().chord2()) {
+            best.poll();
+            best.add(new Candidate(node, chord2));
+        }
+        int axis = depth % 3;
+        double delta = query[axis] - points[node * 3 + axis];
+        boolean left = delta < 0;
+        nearest(left ? from : node + 1, left ? node : to, depth + 1, query, count, best);
+        if (best.size() < count || delta * delta < best.peek().chord2()) {
+            nearest(left ? node + 1 : from, left ? to : node, depth + 1, query, count, best);
+        }
+    }
+
+    /**
+     * Search the records within a chord in the subtree of the range [from, to)
+     */
+    private void withinRadius(int from, int to, int depth, double[] query, double chord, List<Candidate> found) {
+        if (from >= to) {
+            return;
+        }
+        int node = (from + to) >>> 1;
+        double chord2 = chord2(node, query);
+        if (chord2 <= chord * chord) {
+            found.add(new Candidate(node, chord2));
+        }
+        int axis = depth % 3;
+        double delta = query[axis] - points[node * 3 + axis];
+        if (delta <= chord) {
+            withinRadius(from, node, depth + 1, query, chord, found);
+        }
+        if (delta >= -chord) {
+            withinRadius(node + 1, to, depth + 1, query, chord, found);
+        }
+    }
+
+    /**
+     * Squared chord between an indexed point and the point of the query
+     */
+    private double chord2(int node, double[] query) {
+        double dx = points[node * 3] - query[0];
+        double dy = points[node * 3 + 1] - query[1];
+        double dz = points[node * 3 + 2] - query[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Convert candidates into hits
+     */
+    private List<Hit<T>> toHits(List<Candidate> candidates) {
+        List<Hit<T>> hits = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            hits.add(new Hit<>(items.get(candidate.index()), toMeters(candidate.chord2())));
+        }
+        return hits;
+    }
+
+    /**
+     * Great-circle distance of a squared chord of the unit sphere, in meters
+     */
+    private static double toMeters(double chord2) {
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(chord2) / 2));
+    }
+
+    /**
+     * Unit vector of a point of the sphere
+     */
+    private static double[] toVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cos = Math.cos(lat);
+        return new double[]{cos * Math.cos(lon), cos * Math.sin(lon), Math.sin(lat)};
+    }
+
+    /**
+     * Order the range [from, to) as a k-d tree : the median on the axis of the depth in the middle,
+     * the smaller points before it and the greater ones after it, then each half on the next axis
+     */
+    private static void arrange(int[] order, double[] points, int from, int to, int depth) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(order, points, depth % 3, from, to - 1, middle);
+        arrange(order, points, from, middle, depth + 1);
+        arrange(order, points, middle + 1, to, depth + 1);
+    }
+
+    /**
+     * Move the k-th smallest point of the range [low, high] on an axis to the position k (quickselect)
+     */
+    private static void select(int[] order, double[] points, int axis, int low, int high, int k) {
+        while (low < high) {
+            double pivot = points[order[(low + high) >>> 1] * 3 + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (points[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (points[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
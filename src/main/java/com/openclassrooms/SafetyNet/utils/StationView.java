@@ -0,0 +1,181 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.Person;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.LongStream;
+
+/**
+ * StationView Class
+ * <p>
+ * Materialized view of the persons covered by each fire station, held by a DataSnapshot and built from its households.
+ * It is built when the file is loaded, then maintained by each new snapshot : only the stations covering
+ * an address where a person, a medical record or a fire station mapping changed are rebuilt,
+ * the coverage of the other stations is shared with the previous snapshot.
+ */
+public final class StationView {
+
+    private final List<Firestation> firestations;
+    private final Map<String, Set<Integer>> stationsByAddress;
+    private final Map<Integer, Coverage> coverages;
+
+    private StationView(List<Firestation> firestations, Map<String, Set<Integer>> stationsByAddress, Map<Integer, Coverage> coverages) {
+        this.firestations = firestations;
+        this.stationsByAddress = stationsByAddress;
+        this.coverages = coverages;
+    }
+
+    /**
+     * Build the view of all the stations of a snapshot
+     *
+     * @param snapshot snapshot, with its indexes
+     * @return StationView object
+     */
+    static StationView build(DataSnapshot snapshot) {
+        Map<String, Set<Integer>> stationsByAddress = stationsByAddress(snapshot.getFirestations());
+        Map<Integer, Coverage> coverages = new HashMap<>();
+        for (Firestation firestation : snapshot.getFirestations()) {
+            coverages.computeIfAbsent(firestation.getStation(), station -> Coverage.of(snapshot, station));
+        }
+        return new StationView(snapshot.getFirestations(), stationsByAddress, Collections.unmodifiableMap(coverages));
+    }
+
+    /**
+     * Build the view of the next snapshot, rebuilding only the stations affected by the change
+     *
+     * @param previous  snapshot the change was applied to, with its view
+     * @param next      next snapshot, with its indexes
+     * @param addresses addresses where a resident or the medical record of a resident changed
+     * @return StationView object
+     */
+    static StationView update(DataSnapshot previous, DataSnapshot next, Set<String> addresses) {
+        StationView view = previous.getStationView();
+        Set<Integer> stations = new HashSet<>();
+
+        Map<String, Set<Integer>> stationsByAddress = view.stationsByAddress;
+        if (next.getFirestations() != view.firestations) {
+            stationsByAddress = stationsByAddress(next.getFirestations());
+            stations.addAll(SnapshotDiff.changedStations(previous, next));
+        }
+
+        for (String address : addresses) {
+            stations.addAll(view.stationsByAddress.getOrDefault(address, Set.of()));
+            stations.addAll(stationsByAddress.getOrDefault(address, Set.of()));
+        }
+
+        if (stations.isEmpty() && stationsByAddress == view.stationsByAddress) {
+            return view;
+        }
+        Map<Integer, Coverage> coverages = new HashMap<>(view.coverages);
+        for (Integer station : stations) {
+            if (next.getFirestationsByStation(station).isEmpty()) {
+                coverages.remove(station);
+            } else {
+                coverages.put(station, Coverage.of(next, station));
+            }
+        }
+        return new StationView(next.getFirestations(), stationsByAddress, Collections.unmodifiableMap(coverages));
+    }
+
+    /**
+     * Get the coverage of a station
+     *
+     * @param station station number
+     * @return Coverage object, null if no address is mapped to the station
+     */
+    public Coverage get(Integer station) {
+        return coverages.get(station);
+    }
+
+    /**
+     * Index the station numbers by address, an address may be mapped to several stations
+     */
+    private static Map<String, Set<Integer>> stationsByAddress(List<Firestation> firestations) {
+        Map<String, Set<Integer>> stationsByAddress = new HashMap<>();
+        for (Firestation firestation : firestations) {
+            stationsByAddress.computeIfAbsent(firestation.getAddress(), address -> new HashSet<>()).add(firestation.getStation());
+        }
+        return stationsByAddress;
+    }
+
+    /**
+     * Coverage of a station : the residents with a medical record, and their birthdates sorted to count adults and children
+     */
+    public static final class Coverage {
+
+        private final List<Person> residents;
+        private final long[] birthdates;
+
+        private Coverage(List<Person> residents, long[] birthdates) {
+            this.residents = residents;
+            this.birthdates = birthdates;
+        }
+
+        /**
+         * Build the coverage of a station from the households of its addresses
+         */
+        private static Coverage of(DataSnapshot snapshot, Integer station) {
+            Set<String> addresses = new LinkedHashSet<>();
+            for (Firestation firestation : snapshot.getFirestationsByStation(station)) {
+                addresses.add(firestation.getAddress());
+            }
+            List<Person> residents = new ArrayList<>();
+            LongStream.Builder birthdates = LongStream.builder();
+            for (String address : addresses) {
+                HouseholdView.Household household = snapshot.getHousehold(address);
+                if (household == null) {
+                    continue;
+                }
+                for (HouseholdView.Member member : household.getMembers()) {
+                    if (member.medicalRecord() != null) {
+                        residents.add(member.person());
+                        // a birthdate not readable is listed but not counted
+                        if (member.birthdate() != null) {
+                            birthdates.add(member.birthdate().toEpochDay());
+                        }
+                    }
+                }
+            }
+            return new Coverage(Collections.unmodifiableList(residents), birthdates.build().sorted().toArray());
+        }
+
+        /**
+         * Get the residents covered by the station
+         *
+         * @return List of Person objects, in the order of the fire stations
+         */
+        public List<Person> getResidents() {
+            return residents;
+        }
+
+        /**
+         * Count the adults (18 years old or more) at a date
+         *
+         * @param today date of the count
+         * @return number of adults
+         */
+        public int countAdults(LocalDate today) {
+            long adultBirthdate = today.minusYears(18).toEpochDay();
+            int index = Arrays.binarySearch(birthdates, adultBirthdate);
+            if (index < 0) {
+                return -index - 1;
+            }
+            while (index < birthdates.length && birthdates[index] == adultBirthdate) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * Count the children (less than 18 years old) at a date
+         *
+         * @param today date of the count
+         * @return number of children
+         */
+        public int countChildren(LocalDate today) {
+            return birthdates.length - countAdults(today);
+        }
+    }
+}
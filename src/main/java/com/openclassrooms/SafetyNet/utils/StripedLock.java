@@ -0,0 +1,120 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * StripedLock Class
+ * <p>
+ * Write-side locks striped by key (address of a household, name of a person or a medical record).
+ * Writes on keys mapped to different stripes run their checks (existence, version) in parallel, writes on the same key
+ * are serialized. The stripes do not parallelize the rest of a write : each write copies the list of its entity
+ * into a new snapshot, and the Json file is rewritten as a whole (the saves of concurrent writers are coalesced,
+ * see JsonFileManager).
+ * Stripes are always acquired in ascending order, so a write locking several keys can not deadlock with another one.
+ */
+@Log4j2
+@Component
+public class StripedLock {
+
+    private static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] stripes;
+
+    /**
+     * Constructor
+     */
+    public StripedLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param size number of stripes
+     */
+    public StripedLock(int size) {
+        log.info("<constructor> StripedLock with {} stripes", size);
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock the stripes of the keys, null keys are ignored
+     *
+     * @param keys keys of the records changed by the write
+     * @return Guard to close (try-with-resources) to release the stripes
+     */
+    public Guard lock(Object... keys) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Object key : keys) {
+            if (key != null) {
+                indexes.add(stripeOf(key));
+            }
+        }
+        int[] locked = indexes.stream().mapToInt(Integer::intValue).toArray();
+        for (int index : locked) {
+            stripes[index].lock();
+        }
+        return new Guard(locked);
+    }
+
+    /**
+     * Lock all the stripes, for a write on many keys (batch)
+     *
+     * @return Guard to close (try-with-resources) to release the stripes
+     */
+    public Guard lockAll() {
+        int[] locked = IntStream.range(0, stripes.length).toArray();
+        for (int index : locked) {
+            stripes[index].lock();
+        }
+        return new Guard(locked);
+    }
+
+    /**
+     * Get the stripe index of a key
+     *
+     * @param key key
+     * @return index of the stripe
+     */
+    private int stripeOf(Object key) {
+        int hash = Objects.hashCode(key);
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, stripes.length);
+    }
+
+    /**
+     * Stripes held by a write, released in reverse order
+     */
+    public final class Guard implements AutoCloseable {
+
+        private final int[] locked;
+        private boolean released;
+
+        private Guard(int[] locked) {
+            this.locked = locked;
+        }
+
+        /**
+         * Release the stripes
+         */
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (int i = locked.length - 1; i >= 0; i--) {
+                stripes[locked[i]].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.SafetyNet.utils;
+
+/**
+ * Versioned record
+ * <p>
+ * A record read or written with its version, sent to the client as an ETag header
+ * and checked against the If-Match header of the next update.
+ *
+ * @param value   record
+ * @param version version of the record
+ * @param <T>     type of the record
+ */
+public record Versioned<T>(T value, long version) {
+
+    /**
+     * Get the ETag of the record (strong validator)
+     *
+     * @return ETag, epoch of the process and version between double quotes
+     */
+    public String eTag() {
+        return eTag(version);
+    }
+
+    /**
+     * Check an If-Match header against the version of a record.
+     * A missing header or "*" matches any version, weak ETags never match (strong comparison).
+     *
+     * @param ifMatch value of the If-Match header, may be null
+     * @param version current version of the record
+     * @return true if the update can be applied
+     */
+    public static boolean matches(String ifMatch, long version) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        String eTag = eTag(version);
+        for (String candidate : ifMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ETag of a version : the versions are unique within the process only, so the ETag carries the epoch of the process
+     */
+    private static String eTag(long version) {
+        return "\"" + DataSnapshot.EPOCH + "-" + version + "\"";
+    }
+}
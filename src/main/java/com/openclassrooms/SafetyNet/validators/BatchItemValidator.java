@@ -0,0 +1,49 @@
+package com.openclassrooms.SafetyNet.validators;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BatchItemValidator Class
+ * <p>
+ * Validate each item of a batch on its own, an invalid item is rejected without rejecting the whole batch.
+ */
+@Log4j2
+@Component
+public class BatchItemValidator {
+
+    private final Validator validator;
+
+    /**
+     * Constructor
+     *
+     * @param validator Validator
+     */
+    public BatchItemValidator(Validator validator) {
+        log.info("<constructor> BatchItemValidator");
+        this.validator = validator;
+    }
+
+    /**
+     * Validate an item of a batch
+     *
+     * @param item item to validate
+     * @return List of errors, formatted as "field: message", empty if the item is valid
+     */
+    public List<String> validate(Object item) {
+        List<String> errors = new ArrayList<>();
+        if (item == null) {
+            errors.add("Item is mandatory");
+            return errors;
+        }
+        for (ConstraintViolation<Object> violation : validator.validate(item)) {
+            errors.add(violation.getPropertyPath() + ": " + violation.getMessage());
+        }
+        return errors;
+    }
+}
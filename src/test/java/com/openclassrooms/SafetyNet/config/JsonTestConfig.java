@@ -1,13 +1,21 @@
 package com.openclassrooms.SafetyNet.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonModel;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.lenient;
 
 /**
  * JsonTestConfig class
@@ -28,12 +36,36 @@ public class JsonTestConfig {
     public static void loadJsonTest(JsonFileManager jsonFileManager) throws Exception {
         // Load specific json file for tests
         ObjectMapper objectMapper = new ObjectMapper();
-        File jsonFile = new File(PATH_TO_JSON_TEST_FILE);
-        when(jsonFileManager.getPersons()).thenReturn(objectMapper.readValue(jsonFile, JsonModel.class).getPersons());
-        when(jsonFileManager.getFirestations()).thenReturn(objectMapper.readValue(jsonFile, JsonModel.class).getFirestations());
-        when(jsonFileManager.getMedicalRecords()).thenReturn(objectMapper.readValue(jsonFile, JsonModel.class).getMedicalrecords());
+        JsonModel jsonModel = objectMapper.readValue(new File(PATH_TO_JSON_TEST_FILE), JsonModel.class);
+        mockSnapshot(jsonFileManager, jsonModel.getPersons(), jsonModel.getFirestations(), jsonModel.getMedicalrecords());
 
         // Do nothing when saveJsonFile is called
         doNothing().when(jsonFileManager).saveJsonFile();
     }
+
+    /**
+     * Back a mocked JsonFileManager with an in-memory snapshot, updated like the real one
+     *
+     * @param jsonFileManager mocked JsonFileManager
+     * @param persons         list of persons
+     * @param firestations    list of fire stations
+     * @param medicalRecords  list of medical records
+     */
+    @SuppressWarnings("unchecked")
+    public static void mockSnapshot(JsonFileManager jsonFileManager,
+                                    List<Person> persons,
+                                    List<Firestation> firestations,
+                                    List<MedicalRecord> medicalRecords) {
+        AtomicReference<DataSnapshot> snapshot = new AtomicReference<>(DataSnapshot.of(persons, firestations, medicalRecords));
+
+        // doAnswer does not call the stubbed methods, so a test can back the mock with other lists
+        lenient().doAnswer(invocation -> snapshot.get()).when(jsonFileManager).getSnapshot();
+        lenient().doAnswer(invocation -> snapshot.getAndUpdate(invocation.getArgument(0, UnaryOperator.class)))
+                .when(jsonFileManager).updateSnapshot(any());
+        lenient().doAnswer(invocation -> snapshot.compareAndSet(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(jsonFileManager).restoreSnapshot(any(), any());
+        lenient().doAnswer(invocation -> snapshot.get().getPersons()).when(jsonFileManager).getPersons();
+        lenient().doAnswer(invocation -> snapshot.get().getFirestations()).when(jsonFileManager).getFirestations();
+        lenient().doAnswer(invocation -> snapshot.get().getMedicalRecords()).when(jsonFileManager).getMedicalRecords();
+    }
 }
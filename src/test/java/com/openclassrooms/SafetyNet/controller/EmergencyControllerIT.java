@@ -1,21 +1,37 @@
 package com.openclassrooms.SafetyNet.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.SafetyNet.config.JsonTestConfig;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.util.List;
 
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -57,6 +73,31 @@ public class EmergencyControllerIT {
                 .andExpect(jsonPath("$.nbChildren").value(3));
     }
 
+    /**
+     * Test of getPersonCoveredByStation method with fields
+     * - Given an existing station number and the fields nbAdults and persons.phone
+     * - Then OK and PersonCoveredByStationDTO with these fields only
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExistingStationNumberAndFields_whenGetPersonCoveredByStation_thenOkAndSelectedFieldsOnly() throws Exception {
+        // Given
+        int stationNumber = 3;
+
+        // When
+        ResultActions result = mockMvc.perform(get("/firestation?stationNumber=" + stationNumber + "&fields=nbAdults,persons.phone")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.persons", hasSize(11)))
+                .andExpect(jsonPath("$.persons[0].phone").exists())
+                .andExpect(jsonPath("$.persons[0].firstName").doesNotExist())
+                .andExpect(jsonPath("$.nbAdults").value(8))
+                .andExpect(jsonPath("$.nbChildren").doesNotExist());
+    }
+
     /**
      * Test of getHouseChildren method
      * - Given an existing address
@@ -183,4 +224,277 @@ public class EmergencyControllerIT {
         result.andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(15)));
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of streamFamilyWithMedicalGroupedByAddress method
+     * - Given existing station numbers and Accept application/x-ndjson
+     * - Then OK and one FamilyAtAddressDTO per line
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExistingStationNumbersAndNdjson_whenGetFamilyWithMedicalGroupedByAddress_thenOkAndOneAddressPerLine() throws Exception {
+        // Given
+        MvcResult started = mockMvc.perform(get("/flood/stations")
+                        .param("stations", "1", "3")
+                        .header("X-API-VERSION", "1")
+                        .accept(EmergencyController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When
+        ResultActions result = mockMvc.perform(asyncDispatch(started));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(EmergencyController.APPLICATION_NDJSON_VALUE));
+        String[] lines = result.andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(7);
+        assertThat(lines).allMatch(line -> line.startsWith("{\"address\":") && line.contains("\"persons\":["));
+    }
+
+    /**
+     * Test of streamPersonEmailByCity method
+     * - Given an existing city and Accept application/x-ndjson
+     * - Then OK and one email per line
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExistingCityAndNdjson_whenGetPersonEmailByCity_thenOkAndOneEmailPerLine() throws Exception {
+        // Given
+        MvcResult started = mockMvc.perform(get("/communityEmail?city=Culver")
+                        .header("X-API-VERSION", "1")
+                        .accept(EmergencyController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When
+        ResultActions result = mockMvc.perform(asyncDispatch(started));
+
+        // Then
+        result.andExpect(status().isOk());
+        String[] lines = result.andReturn().getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(15).doesNotHaveDuplicates();
+        assertThat(lines).allMatch(line -> line.startsWith("\"") && line.endsWith(".com\""));
+    }
+
+    /**
+     * Test of getPhoneNumbersCoveredByFireStations and getFamiliesWithMedicalAndFirestation methods
+     * - Given several station numbers, then several addresses
+     * - Then OK and results keyed by station number and by address
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenStationNumbersAndAddresses_whenBatchQueries_thenOkAndResultsByInput() throws Exception {
+        // Given && When
+        ResultActions phones = mockMvc.perform(get("/phoneAlert")
+                .param("firestations", "1", "3", "99")
+                .header("X-API-VERSION", "1"));
+        ResultActions families = mockMvc.perform(get("/fire")
+                .param("addresses", "1509 Culver St", "29 15th St")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        phones.andExpect(status().isOk())
+                .andExpect(jsonPath("$['1']").isArray())
+                .andExpect(jsonPath("$['3']").isArray())
+                .andExpect(jsonPath("$['99']", hasSize(0)));
+        families.andExpect(status().isOk())
+                .andExpect(jsonPath("$['1509 Culver St'].station").value(3))
+                .andExpect(jsonPath("$['29 15th St'].station").value(2));
+    }
+
+    /**
+     * Test of runQueries method
+     * - Given sub-queries of several endpoints, one of them on an unknown station
+     * - Then OK and one result per sub-query, in the order of the request
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenSubQueries_whenRunQueries_thenOkAndResultPerSubQuery() throws Exception {
+        // Given
+        String queries = """
+                [
+                  {"name": "coverage", "query": "firestation", "station": 3},
+                  {"name": "phones", "query": "phoneAlert", "station": 3},
+                  {"name": "children", "query": "childAlert", "address": "1509 Culver St"},
+                  {"name": "fire", "query": "fire", "address": "1509 Culver St"},
+                  {"name": "nowhere", "query": "phoneAlert", "station": 99}
+                ]
+                """;
+
+        // When
+        ResultActions result = mockMvc.perform(post("/emergency/queries")
+                .header("X-API-VERSION", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(queries));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].name").value("coverage"))
+                .andExpect(jsonPath("$[0].result.nbAdults").value(8))
+                .andExpect(jsonPath("$[1].status").value(200))
+                .andExpect(jsonPath("$[2].result", hasSize(2)))
+                .andExpect(jsonPath("$[3].result.station").value(3))
+                .andExpect(jsonPath("$[4].status").value(404));
+    }
+
+    /**
+     * Test of getFamilyWithMedicalGroupedByAddress method in explain mode
+     * - Given existing station numbers, the explain header and fields
+     * - Then OK, the filtered result and the stages of the query with their rows
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExplainHeader_whenGetFamilyWithMedicalGroupedByAddress_thenOkAndResultWithStages() throws Exception {
+        // Given && When
+        ResultActions result = mockMvc.perform(get("/flood/stations")
+                .param("stations", "1", "3")
+                .param("fields", "mapAddressPersons.firstName")
+                .header("X-API-VERSION", "1")
+                .header("X-Explain", "true"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.mapAddressPersons['1509 Culver St'][0].firstName").exists())
+                .andExpect(jsonPath("$.result.mapAddressPersons['1509 Culver St'][0].phone").doesNotExist())
+                .andExpect(jsonPath("$.explain.query").value("flood"))
+                .andExpect(jsonPath("$.explain.stages[0].name").value("cache lookup"))
+                .andExpect(jsonPath("$.explain.stages[1].name").value("station lookup"))
+                .andExpect(jsonPath("$.explain.stages[1].rows").value(7))
+                .andExpect(jsonPath("$.explain.stages[2].name").value("resident scan and medical join"))
+                .andExpect(jsonPath("$.explain.stages[2].access").isString())
+                .andExpect(jsonPath("$.explain.stages[3].name").value("DTO mapping"))
+                .andExpect(jsonPath("$.explain.stages[4].name").value("grouping by address"))
+                .andExpect(jsonPath("$.explain.stages[4].nanos").isNumber());
+    }
+
+    /**
+     * Test of getNearestFirestations and getPersonsWithinRadius methods
+     * - Given geocoded fire stations and persons
+     * - Then OK, the nearest stations and the persons within the radius
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenGeocodedData_whenGetNearestFirestationsAndPersonsWithinRadius_thenOkAndNearestFirst() throws Exception {
+        // Given
+        when(jsonFileManager.getSnapshot()).thenReturn(DataSnapshot.of(
+                List.of(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com", 33.9750, -118.3960),
+                        new Person("Tony", "Cooper", "112 Steppes Pl", "Culver", "97451", "841-874-6874", "tcoop@ymail.com", 33.9900, -118.3960)),
+                List.of(new Firestation("1509 Culver St", 3, 33.9750, -118.3960),
+                        new Firestation("112 Steppes Pl", 4, 33.9900, -118.3960)),
+                List.of()));
+
+        // When
+        ResultActions stations = mockMvc.perform(get("/nearby/firestations?latitude=33.98&longitude=-118.396&count=1")
+                .header("X-API-VERSION", "1"));
+        ResultActions persons = mockMvc.perform(get("/nearby/persons?latitude=33.98&longitude=-118.396&radius=1000")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        stations.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].station").value(3))
+                .andExpect(jsonPath("$[0].address").value("1509 Culver St"));
+        persons.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].firstName").value("John"))
+                .andExpect(jsonPath("$[0].distance").isNumber());
+    }
+
+    /**
+     * Test of updatePerson and updateFirestation methods on geocoded records
+     * - Given a geocoded person and fire station, updated without coordinates
+     * - Then the updated records keep their coordinates and are still found nearby
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenGeocodedRecordsUpdatedWithoutCoordinates_whenGetNearby_thenStillFound() throws Exception {
+        // Given
+        JsonTestConfig.mockSnapshot(jsonFileManager,
+                List.of(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com", 33.9750, -118.3960)),
+                List.of(new Firestation("1509 Culver St", 3, 33.9750, -118.3960)),
+                List.of());
+        ObjectMapper objectMapper = new ObjectMapper();
+        mockMvc.perform(put("/person")
+                        .header("X-API-VERSION", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-0000", "jaboyd@email.com"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/firestation")
+                        .header("X-API-VERSION", "1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Firestation("1509 Culver St", 2))))
+                .andExpect(status().isOk());
+
+        // When
+        ResultActions stations = mockMvc.perform(get("/nearby/firestations?latitude=33.98&longitude=-118.396&count=1")
+                .header("X-API-VERSION", "1"));
+        ResultActions persons = mockMvc.perform(get("/nearby/persons?latitude=33.98&longitude=-118.396&radius=1000")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        stations.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].station").value(2));
+        persons.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].phone").value("841-874-0000"));
+    }
+
+    /**
+     * Test of getPersonsWithinRadius method with an invalid radius
+     * - Given a radius of 0
+     * - Then Bad Request
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenInvalidRadius_whenGetPersonsWithinRadius_thenBadRequest() throws Exception {
+        // When
+        ResultActions result = mockMvc.perform(get("/nearby/persons?latitude=33.98&longitude=-118.396&radius=0")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        result.andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test of getFamilyWithMedicalWithinRadius method
+     * - Given geocoded persons at two addresses within the radius, one address out of the radius and a person not geocoded
+     * - Then OK and the families of the addresses within the radius, with medical details
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenGeocodedPersons_whenGetFamilyWithMedicalWithinRadius_thenOkAndFamiliesWithinRadius() throws Exception {
+        // Given
+        when(jsonFileManager.getSnapshot()).thenReturn(DataSnapshot.of(
+                List.of(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com", 33.9750, -118.3960),
+                        new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com", 33.9750, -118.3960),
+                        new Person("Tony", "Cooper", "112 Steppes Pl", "Culver", "97451", "841-874-6874", "tcoop@ymail.com", 33.9770, -118.3960),
+                        new Person("Ron", "Peters", "29 15th St", "Culver", "97451", "841-874-8888", "jpeter@email.com", 34.0500, -118.3960),
+                        new Person("Eric", "Cadigan", "951 LoneTree Rd", "Culver", "97451", "841-874-7458", "gramps@email.com")),
+                List.of(),
+                List.of(new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of("nillacilan")))));
+
+        // When
+        ResultActions result = mockMvc.perform(get("/flood/radius?latitude=33.9752&longitude=-118.396&radius=1000")
+                .header("X-API-VERSION", "1"));
+
+        // Then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.mapAddressPersons.length()").value(2))
+                .andExpect(jsonPath("$.mapAddressPersons['1509 Culver St']", hasSize(2)))
+                .andExpect(jsonPath("$.mapAddressPersons['1509 Culver St'][0].medications[0]").value("aznol:350mg"))
+                .andExpect(jsonPath("$.mapAddressPersons['112 Steppes Pl'][0].phone").value("841-874-6874"));
+    }
+}
@@ -3,6 +3,7 @@ package com.openclassrooms.SafetyNet.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,9 +15,13 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -56,6 +61,30 @@ public class FirestationControllerIT {
         resultActions.andExpect(status().isOk()).andExpect(jsonPath("$", hasSize(12)));
     }
 
+    /**
+     * Test of getFirestationsPage method
+     * - Given a list of firestations, a limit and a descending sort by station
+     * - Then OK and the first page holds the highest stations
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenFirestationListAndDescendingSort_whenGetFirestationsPage_thenOkAndHighestStationsFirst() throws Exception {
+
+        // Given
+
+        // When
+        ResultActions resultActions = mockMvc.perform(get("/firestations?limit=2&sort=-station")
+                .header("X-API-VERSION", 1));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].station").value(4))
+                .andExpect(jsonPath("$.items[1].station").value(4))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
     /**
      * Test of deleteFirestationByAddress method
      * - Given an existing address
@@ -267,4 +296,106 @@ public class FirestationControllerIT {
         resultActions.andExpect(status().isBadRequest())
                 .andDo(result -> System.out.println(result.getResponse().getContentAsString()));
     }
+
+    /**
+     * Test of getFirestation method
+     * - Given an existing address
+     * - Then OK, Firestation and its version in ETag
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExistingAddress_whenGetFirestation_thenOkAndETag() throws Exception {
+        // Given
+        String address = "1509 Culver St";
+        String eTag = "\"" + DataSnapshot.EPOCH + "-" + jsonFileManager.getSnapshot().getFirestationVersion(address) + "\"";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(get("/firestation?address={address}", address)
+                .header("X-API-VERSION", 1));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(jsonPath("$.address").value(address));
+    }
+
+    /**
+     * Test of updateFirestation method
+     * - Given an existing address and a stale ETag in If-Match
+     * - Then PRECONDITION FAILED
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenStaleETag_whenUpdateFirestation_thenPreconditionFailed() throws Exception {
+        // Given
+        Firestation firestation = new Firestation("1509 Culver St", 999);
+        ObjectMapper objectMapper = new ObjectMapper();
+        String firestationToJson = objectMapper.writeValueAsString(firestation);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/firestation")
+                .header("X-API-VERSION", 1)
+                .header("If-Match", "\"99\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(firestationToJson));
+
+        // Then
+        resultActions.andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * Test of updateFirestations method
+     * - Given a batch with an existing address and an unknown address
+     * - Then OK, status of each item and only the existing fire station is updated
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenBatch_whenUpdateFirestations_thenOkAndStatusPerItem() throws Exception {
+        // Given
+        List<Firestation> firestations = List.of(new Firestation("1509 Culver St", 999), new Firestation("UnknowAddress", 999));
+        ObjectMapper objectMapper = new ObjectMapper();
+        String firestationsToJson = objectMapper.writeValueAsString(firestations);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/firestations")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(firestationsToJson));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[1].status").value(404));
+        assertEquals(999, jsonFileManager.getSnapshot().getFirestationByAddress("1509 Culver St").getStation());
+    }
+
+    /**
+     * Test of reassignFirestations method
+     * - Given all the addresses of station 3 to move to station 9
+     * - Then OK, addresses moved and station 3 has no more address
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenStation_whenReassignFirestations_thenOkAndAddressesMoved() throws Exception {
+        // Given
+        String body = "{\"fromStation\": 3, \"toStation\": 9}";
+        int addresses = jsonFileManager.getSnapshot().getFirestationsByStation(3).size();
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/firestations/reassignment")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(addresses)))
+                .andExpect(jsonPath("$[0].station").value(9));
+        assertTrue(jsonFileManager.getSnapshot().getFirestationsByStation(3).isEmpty());
+        assertEquals(9, jsonFileManager.getSnapshot().getFirestationByAddress("1509 Culver St").getStation());
+    }
 }
@@ -347,4 +347,59 @@ public class MedicalRecordControllerIT {
                 .andDo(result -> System.out.println(result.getResponse().getContentAsString()));
     }
 
+
+    /**
+     * Test of updateMedicalRecord method
+     * - Given an existing medical record and a stale ETag in If-Match
+     * - Then PRECONDITION FAILED
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenStaleETag_whenUpdateMedicalRecord_thenPreconditionFailed() throws Exception {
+        // Given
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "01/01/1955", Arrays.asList("aaaa:666mg", "bbbb:555mg"), List.of("ccc", "ddd"));
+        ObjectMapper objectMapper = new ObjectMapper();
+        String medicalRecordToJson = objectMapper.writeValueAsString(medicalRecord);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/medicalRecord")
+                .header("X-API-VERSION", 1)
+                .header("If-Match", "\"99\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(medicalRecordToJson));
+
+        // Then
+        resultActions.andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * Test of createMedicalRecords method
+     * - Given a batch with a medical record for an existing person, an invalid one and one for an unknown person
+     * - Then OK and status of each item
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenBatch_whenCreateMedicalRecords_thenOkAndStatusPerItem() throws Exception {
+        // Given
+        List<MedicalRecord> medicalRecords = List.of(
+                new MedicalRecord("John", "Doe", "01/01/1980", List.of("aznol:350mg"), List.of("nillacilan")),
+                new MedicalRecord("John", "", "01/01/1980", List.of(), List.of()),
+                new MedicalRecord("UnknowFirstName", "UnknowLastName", "01/01/1980", List.of(), List.of()));
+        ObjectMapper objectMapper = new ObjectMapper();
+        String medicalRecordsToJson = objectMapper.writeValueAsString(medicalRecords);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(post("/medicalRecords")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(medicalRecordsToJson));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[1].status").value(400))
+                .andExpect(jsonPath("$[2].status").value(404));
+    }
 }
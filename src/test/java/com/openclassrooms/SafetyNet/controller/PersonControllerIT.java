@@ -3,21 +3,31 @@ package com.openclassrooms.SafetyNet.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -58,6 +68,123 @@ public class PersonControllerIT {
                 .andExpect(jsonPath("$", hasSize(24)));
     }
 
+    /**
+     * Test of getPersons method with fields
+     * - Given a list of persons and the fields firstName, lastName and phone
+     * - Then OK and PersonList with these fields only
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenPersonListAndFields_whenGetPersons_thenOkAndSelectedFieldsOnly() throws Exception {
+
+        // Given
+
+        // When
+        ResultActions resultActions = mockMvc.perform(get("/persons?fields=firstName,lastName,phone")
+                .header("X-API-VERSION", 1));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(24)))
+                .andExpect(jsonPath("$[0].firstName").exists())
+                .andExpect(jsonPath("$[0].phone").exists())
+                .andExpect(jsonPath("$[0].email").doesNotExist())
+                .andExpect(jsonPath("$[0].address").doesNotExist());
+    }
+
+    /**
+     * Test of getPersons method with gzip, before and after a write
+     * - Given a client accepting gzip and a person created between two polls
+     * - Then OK, compressed PersonList, then the PersonList with the new person
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenAcceptGzipAndNewPerson_whenGetPersons_thenGzipPersonListUpdated() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        Person newPerson = new Person("NewFirstName", "NewLastName", "New address", "New City", "99999", "999-999-9999", "newMail@email.com");
+
+        // When
+        byte[] before = mockMvc.perform(get("/persons")
+                        .header("X-API-VERSION", 1)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        mockMvc.perform(post("/person")
+                        .header("X-API-VERSION", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newPerson)))
+                .andExpect(status().isCreated());
+        ResultActions after = mockMvc.perform(get("/persons")
+                .header("X-API-VERSION", 1));
+
+        // Then
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(before))) {
+            assertEquals(24, objectMapper.readTree(gzip).size());
+        }
+        after.andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(jsonPath("$", hasSize(25)))
+                .andExpect(jsonPath("$[24].firstName").value("NewFirstName"));
+    }
+
+    /**
+     * Test of getPersonsPage method
+     * - Given a list of persons and a limit of 10
+     * - Then OK and 3 pages sorted by name, the last page without cursor
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenPersonListAndLimit_whenGetPersonsPage_thenOkAndPagesUntilLastPage() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        String cursor = null;
+        int count = 0;
+        int pages = 0;
+
+        // When
+        do {
+            ResultActions resultActions = mockMvc.perform(get("/persons")
+                    .param("limit", "10")
+                    .param("cursor", cursor == null ? "" : cursor)
+                    .header("X-API-VERSION", 1));
+            resultActions.andExpect(status().isOk());
+            var page = objectMapper.readTree(resultActions.andReturn().getResponse().getContentAsString());
+            count += page.get("items").size();
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        // Then
+        assertEquals(24, count);
+        assertEquals(3, pages);
+        mockMvc.perform(get("/persons?limit=2")
+                        .header("X-API-VERSION", 1))
+                .andExpect(jsonPath("$.items[0].lastName").value("Boyd"))
+                .andExpect(jsonPath("$.nextCursor").isString());
+    }
+
+    /**
+     * Test of getPersonsPage method
+     * - Given an unknown sort
+     * - Then BAD REQUEST
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenUnknownSort_whenGetPersonsPage_thenBadRequest() throws Exception {
+        // Given & When
+        ResultActions resultActions = mockMvc.perform(get("/persons?limit=10&sort=phone")
+                .header("X-API-VERSION", 1));
+
+        // Then
+        resultActions.andExpect(status().isBadRequest());
+    }
+
     /**
      * Test of getPersonInfo method
      * - Given an existing person
@@ -278,4 +405,167 @@ public class PersonControllerIT {
         resultActions.andExpect(status().isBadRequest())
                 .andDo(result -> System.out.println(result.getResponse().getContentAsString()));
     }
+
+    /**
+     * Test of getPerson method
+     * - Given an existing person
+     * - Then OK, Person and its version in ETag
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenExistingPerson_whenGetPerson_thenOkAndETag() throws Exception {
+        // Given
+        String firstName = "John";
+        String lastName = "Boyd";
+
+        String eTag = "\"" + DataSnapshot.EPOCH + "-" + jsonFileManager.getSnapshot().getPersonVersion(firstName, lastName) + "\"";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(get("/person?firstName={firstName}&lastName={lastName}", firstName, lastName)
+                .header("X-API-VERSION", 1));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(jsonPath("$.firstName").value(firstName))
+                .andExpect(jsonPath("$.lastName").value(lastName));
+    }
+
+    /**
+     * Test of updatePerson method
+     * - Given an existing person and its current ETag in If-Match
+     * - Then OK and new ETag
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenCurrentETag_whenUpdatePerson_thenOkAndNewETag() throws Exception {
+        // Given
+        Person pExpected = new Person("John", "Boyd", "Update address", "Update City", "99999", "999-999-9999", "update@email.com");
+        ObjectMapper objectMapper = new ObjectMapper();
+        String personToJson = objectMapper.writeValueAsString(pExpected);
+        String eTag = mockMvc.perform(get("/person?firstName=John&lastName=Boyd").header("X-API-VERSION", 1))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/person")
+                .header("X-API-VERSION", 1)
+                .header("If-Match", eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(personToJson));
+
+        // Then
+        long version = jsonFileManager.getSnapshot().getPersonVersion("John", "Boyd");
+        resultActions.andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + DataSnapshot.EPOCH + "-" + version + "\""));
+        assertNotEquals(eTag, resultActions.andReturn().getResponse().getHeader("ETag"));
+    }
+
+    /**
+     * Test of updatePerson method
+     * - Given an existing person and the ETag of its version issued by another process (before a restart)
+     * - Then PRECONDITION FAILED
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenETagOfAnotherEpoch_whenUpdatePerson_thenPreconditionFailed() throws Exception {
+        // Given
+        Person person = new Person("John", "Boyd", "Update address", "Update City", "99999", "999-999-9999", "update@email.com");
+        String personToJson = new ObjectMapper().writeValueAsString(person);
+        String eTag = "\"previous-" + jsonFileManager.getSnapshot().getPersonVersion("John", "Boyd") + "\"";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/person")
+                .header("X-API-VERSION", 1)
+                .header("If-Match", eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(personToJson));
+
+        // Then
+        resultActions.andExpect(status().isPreconditionFailed());
+    }
+
+    /**
+     * Test of updatePerson method
+     * - Given an existing person and a stale ETag in If-Match
+     * - Then PRECONDITION FAILED and Person is not updated
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenStaleETag_whenUpdatePerson_thenPreconditionFailed() throws Exception {
+        // Given
+        Person person = new Person("John", "Boyd", "Update address", "Update City", "99999", "999-999-9999", "update@email.com");
+        ObjectMapper objectMapper = new ObjectMapper();
+        String personToJson = objectMapper.writeValueAsString(person);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(put("/person")
+                .header("X-API-VERSION", 1)
+                .header("If-Match", "\"99\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(personToJson));
+
+        // Then
+        resultActions.andExpect(status().isPreconditionFailed());
+        assertEquals("1509 Culver St", jsonFileManager.getSnapshot().getPerson("John", "Boyd").getAddress());
+    }
+
+    /**
+     * Test of createPersons method
+     * - Given a batch with a new person and an existing person
+     * - Then OK, status of each item and only the new person is created
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenBatch_whenCreatePersons_thenOkAndStatusPerItem() throws Exception {
+        // Given
+        List<Person> persons = List.of(
+                new Person("NewFirstName", "NewLastName", "New address", "New City", "99999", "999-999-9999", "newMail@email.com"),
+                new Person("Jacob", "Boyd", "new address", "New City", "99999", "999-999-9999", "newMail@email.com"));
+        ObjectMapper objectMapper = new ObjectMapper();
+        String personsToJson = objectMapper.writeValueAsString(persons);
+
+        // When
+        ResultActions resultActions = mockMvc.perform(post("/persons")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(personsToJson));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[1].status").value(409));
+        assertEquals(25, jsonFileManager.getPersons().size());
+        verify(jsonFileManager, times(1)).saveJsonFile();
+    }
+
+    /**
+     * Test of deletePersons method
+     * - Given a batch with an existing person and an unknown person
+     * - Then OK, status of each item and only the existing person is deleted
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenBatch_whenDeletePersons_thenOkAndStatusPerItem() throws Exception {
+        // Given
+        String body = "[{\"firstName\": \"John\", \"lastName\": \"Boyd\"}, {\"firstName\": \"Unknown\", \"lastName\": \"Boyd\"}]";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(delete("/persons")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+
+        // Then
+        resultActions.andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[1].status").value(404));
+        assertEquals(23, jsonFileManager.getPersons().size());
+    }
 }
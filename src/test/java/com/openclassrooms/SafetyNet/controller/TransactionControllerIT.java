@@ -0,0 +1,87 @@
+package com.openclassrooms.SafetyNet.controller;
+
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
+import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TransactionControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private JsonFileManager jsonFileManager;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        // Load specific json file for tests
+        JsonTestConfig.loadJsonTest(jsonFileManager);
+    }
+
+    /**
+     * Test of applyTransaction method
+     * - Given a new person with its medical record
+     * - Then OK and both are created
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenNewResident_whenApplyTransaction_thenOkAndPersonAndMedicalRecordCreated() throws Exception {
+        // Given
+        String body = "{\"createPersons\": [{\"firstName\": \"New\", \"lastName\": \"Resident\", \"address\": \"1509 Culver St\", "
+                + "\"city\": \"Culver\", \"zip\": \"97451\", \"phone\": \"841-874-6512\", \"email\": \"new@email.com\"}], "
+                + "\"createMedicalRecords\": [{\"firstName\": \"New\", \"lastName\": \"Resident\", \"birthdate\": \"01/01/1980\", "
+                + "\"medications\": [], \"allergies\": []}]}";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(post("/transaction")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+
+        // Then
+        resultActions.andExpect(status().isOk());
+        assertNotNull(jsonFileManager.getSnapshot().getPerson("New", "Resident"));
+        assertNotNull(jsonFileManager.getSnapshot().getMedicalRecord("New", "Resident"));
+    }
+
+    /**
+     * Test of applyTransaction method
+     * - Given a new person and the deletion of an unknown medical record
+     * - Then NOT FOUND and the person is not created
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenUnknownMedicalRecord_whenApplyTransaction_thenNotFoundAndNothingApplied() throws Exception {
+        // Given
+        String body = "{\"createPersons\": [{\"firstName\": \"New\", \"lastName\": \"Resident\", \"address\": \"1509 Culver St\", "
+                + "\"city\": \"Culver\", \"zip\": \"97451\", \"phone\": \"841-874-6512\", \"email\": \"new@email.com\"}], "
+                + "\"deleteMedicalRecords\": [{\"firstName\": \"Unknown\", \"lastName\": \"Resident\"}]}";
+
+        // When
+        ResultActions resultActions = mockMvc.perform(post("/transaction")
+                .header("X-API-VERSION", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+
+        // Then
+        resultActions.andExpect(status().isNotFound());
+        assertNull(jsonFileManager.getSnapshot().getPerson("New", "Resident"));
+    }
+}
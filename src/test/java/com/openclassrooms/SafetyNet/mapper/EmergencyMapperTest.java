@@ -4,16 +4,23 @@ import com.openclassrooms.SafetyNet.dto.*;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.service.AgeService;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.HouseholdView;
+import com.openclassrooms.SafetyNet.utils.SnapshotJoin;
+import com.openclassrooms.SafetyNet.utils.StationView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 
 /**
@@ -35,7 +42,7 @@ public class EmergencyMapperTest {
      */
     @BeforeEach
     public void setUpPerTest() {
-        emergencyMapper = new EmergencyMapper();
+        emergencyMapper = new EmergencyMapper(new AgeService(Clock.systemDefaultZone()));
         // Firestation
         firestation = new Firestation("1509 Culver St", 1);
         // Persons
@@ -86,6 +93,28 @@ public class EmergencyMapperTest {
         assertEquals(p2Expected, p2);
     }
 
+    /**
+     * Testing method toPersonCoveredByStationDTO
+     * - Given the coverage of a station
+     * - Then return PersonCoveredByStationDTO
+     */
+    @Test
+    public void givenStationCoverage_whenToPersonCoveredByStationDTO_thenReturnPersonCoveredByStationDTO() {
+        // Given
+        StationView.Coverage coverage = DataSnapshot.of(persons, List.of(firestation), medicalRecords).getStationCoverage(1);
+
+        // When
+        PersonCoveredByStationDTO personCoveredByStationDTO = emergencyMapper.toPersonCoveredByStationDTO(coverage);
+
+        // Then
+        assertEquals(1, personCoveredByStationDTO.getNbChildren());
+        assertEquals(1, personCoveredByStationDTO.getNbAdults());
+        assertEquals(List.of(
+                new PersonBasicDetailsDTO("John", "Boyd", "1509 Culver St", "841-874-6512"),
+                new PersonBasicDetailsDTO("Jacob", "Boyd", "1509 Culver St", "841-874-6513")
+        ), personCoveredByStationDTO.getPersons());
+    }
+
     /**
      * Testing method toHouseChildrenDTO
      * - Given list of persons with birthdate
@@ -132,6 +161,107 @@ public class EmergencyMapperTest {
 
     }
 
+    /**
+     * Testing method toHouseChildrenDTO
+     * - Given the household of an address
+     * - Then return List of HouseChildrenDTO
+     */
+    @Test
+    public void givenHousehold_whenToHouseChildrenDTO_thenReturnListOfHouseChildrenDTO() {
+        // Given
+        HouseholdView.Household household = DataSnapshot.of(persons, List.of(firestation), medicalRecords).getHousehold("1509 Culver St");
+
+        // When
+        List<HouseChildrenDTO> houseChildrenDTOList = emergencyMapper.toHouseChildrenDTO(household);
+
+        // Then
+        assertEquals(List.of(new HouseChildrenDTO("Jacob", "Boyd", 5, List.of(new HouseMemberDTO("John", "Boyd", 30)))),
+                houseChildrenDTOList);
+    }
+
+    /**
+     * Testing method toHouseChildrenDTO with a large household
+     * - Given a household of 500 residents, 200 of them children
+     * - Then each child with all the other residents, in the order of the household, without itself
+     */
+    @Test
+    public void givenLargeHousehold_whenToHouseChildrenDTO_thenEachChildWithOtherResidents() {
+        // Given
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+        List<Person> residents = new ArrayList<>();
+        List<MedicalRecord> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            residents.add(new Person("Resident" + i, "Home", "1 Care Home Rd", "Culver", "97451", "841-874-6512", "home@email.com"));
+            records.add(new MedicalRecord("Resident" + i, "Home",
+                    LocalDate.now().minusYears((i % 5 < 2) ? 10 : 80).format(formatter), List.of(), List.of()));
+        }
+        HouseholdView.Household household = DataSnapshot.of(residents, List.of(), records).getHousehold("1 Care Home Rd");
+
+        // When
+        List<HouseChildrenDTO> houseChildrenDTOList = emergencyMapper.toHouseChildrenDTO(household);
+
+        // Then
+        assertEquals(200, houseChildrenDTOList.size());
+        HouseChildrenDTO child = houseChildrenDTOList.get(1);
+        assertEquals("Resident1", child.getFirstName());
+        assertEquals(499, child.getHouseMembersDTO().size());
+        assertEquals("Resident0", child.getHouseMembersDTO().get(0).getFirstName());
+        assertEquals("Resident2", child.getHouseMembersDTO().get(1).getFirstName());
+        assertEquals("Resident499", child.getHouseMembersDTO().getLast().getFirstName());
+    }
+
+    /**
+     * Testing method toPersonWithMedicalRecord on a large flood result
+     * - Given 20000 persons, their medical records in the reverse order, a duplicate medical record and a person without medical record
+     * - Then each person with its own medical record, the first medical record of a name wins
+     */
+    @Test
+    public void givenLargeListsOfPersonsAndMedicalRecords_whenToPersonWithMedicalRecord_thenEachPersonWithItsMedicalRecord() {
+        // Given
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+        List<Person> floodPersons = new ArrayList<>();
+        List<MedicalRecord> floodMedicalRecords = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            floodPersons.add(new Person("Person" + i, "Flood", i + " River Rd", "Culver", "97451", "841-874-6512", "flood@email.com"));
+            floodMedicalRecords.addFirst(new MedicalRecord("Person" + i, "Flood",
+                    LocalDate.now().minusYears(i % 90).format(formatter), List.of("med" + i), List.of()));
+        }
+        floodMedicalRecords.add(new MedicalRecord("Person0", "Flood", "01/01/1900", List.of("duplicate"), List.of()));
+        floodPersons.add(new Person("Nobody", "Flood", "0 River Rd", "Culver", "97451", "841-874-6512", "flood@email.com"));
+
+        // When
+        List<PersonWithMedicalRecordDTO> result = emergencyMapper.toPersonWithMedicalRecord(floodPersons, floodMedicalRecords);
+
+        // Then
+        assertEquals(20_001, result.size());
+        assertEquals(List.of("med0"), result.getFirst().getMedications());
+        assertEquals(0, result.getFirst().getAge());
+        assertEquals(List.of("med12345"), result.get(12_345).getMedications());
+        assertEquals(12_345 % 90, result.get(12_345).getAge());
+        assertNull(result.getLast().getAge());
+    }
+
+    /**
+     * Testing method toFamilyWithMedicalAndFirestationDTO
+     * - Given the household of an address
+     * - Then return FamilyWithMedicalAndFirestationDTO
+     */
+    @Test
+    public void givenHousehold_whenToFamilyWithMedicalAndFirestationDTO_thenReturnFamilyWithMedicalAndFirestationDTO() {
+        // Given
+        HouseholdView.Household household = DataSnapshot.of(persons, List.of(firestation), medicalRecords).getHousehold("1509 Culver St");
+        FamilyWithMedicalAndFirestationDTO familyExpected = new FamilyWithMedicalAndFirestationDTO(1, List.of(
+                new PersonMedicalDetailsDTO("John", "Boyd", 30, "841-874-6512", List.of("aznol:350mg", "hydrapermazol:100mg"), List.of("nillacilan")),
+                new PersonMedicalDetailsDTO("Jacob", "Boyd", 5, "841-874-6513", List.of("pharmacol:5000mg", "terazine:10mg", "noznazol:250mg"), List.of())
+        ));
+
+        // When
+        FamilyWithMedicalAndFirestationDTO familyWithMedicalAndFirestationDTO = emergencyMapper.toFamilyWithMedicalAndFirestationDTO(household);
+
+        // Then
+        assertEquals(familyExpected, familyWithMedicalAndFirestationDTO);
+    }
+
     /**
      * Testing method toPersonWithMedicalAndPhoneDTO
      * - Given PersonWithMedicalRecordDTO
@@ -173,4 +303,51 @@ public class EmergencyMapperTest {
         // Then
         assertEquals(personExpected, personWithMedicalAndEmailDTO);
     }
+
+    /**
+     * Testing methods toPersonWithMedicalAndPhone and toPersonWithMedicalAndEmailDTO with joined rows
+     * - Given a row with a medical record and a row without medical record
+     * - Then the same DTOs as through PersonWithMedicalRecordDTO, without age nor medical details for the second row
+     */
+    @Test
+    public void givenJoinedRows_whenToPersonWithMedicalAndPhoneAndEmail_thenSameDTOsAsThroughPersonWithMedicalRecord() {
+        // Given
+        SnapshotJoin.Row row = new SnapshotJoin.Row(persons.get(0), medicalRecords.get(0), firestation);
+        SnapshotJoin.Row rowWithoutMedicalRecord = new SnapshotJoin.Row(persons.get(1), null, firestation);
+        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS =
+                emergencyMapper.toPersonWithMedicalRecord(List.of(row, rowWithoutMedicalRecord));
+
+        // When && Then
+        assertEquals(emergencyMapper.toPersonWithMedicalAndPhone(personWithMedicalRecordDTOS.get(0)),
+                emergencyMapper.toPersonWithMedicalAndPhone(row));
+        assertEquals(emergencyMapper.toPersonWithMedicalAndPhone(personWithMedicalRecordDTOS.get(1)),
+                emergencyMapper.toPersonWithMedicalAndPhone(rowWithoutMedicalRecord));
+        assertEquals(emergencyMapper.toPersonWithMedicalAndEmailDTO(personWithMedicalRecordDTOS.get(0)),
+                emergencyMapper.toPersonWithMedicalAndEmailDTO(row));
+        assertEquals(emergencyMapper.toPersonWithMedicalAndEmailDTO(personWithMedicalRecordDTOS.get(1)),
+                emergencyMapper.toPersonWithMedicalAndEmailDTO(rowWithoutMedicalRecord));
+        assertNull(emergencyMapper.toPersonWithMedicalAndPhone(rowWithoutMedicalRecord).getAge());
+    }
+
+    /**
+     * Testing methods toPersonWithMedicalAndPhone and toPersonWithMedicalAndEmailDTO with an unreadable birthdate
+     * - Given a row whose medical record has an unreadable birthdate
+     * - Then DTOs without age, with the medical details, as for the households
+     */
+    @Test
+    public void givenUnreadableBirthdate_whenToPersonWithMedicalAndPhoneAndEmail_thenNoAge() {
+        // Given
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "31/31/1984", List.of("aznol:350mg"), List.of());
+        SnapshotJoin.Row row = new SnapshotJoin.Row(persons.get(0), medicalRecord, firestation);
+
+        // When
+        PersonWithMedicalAndPhoneDTO withPhone = emergencyMapper.toPersonWithMedicalAndPhone(row);
+        PersonWithMedicalAndEmailDTO withEmail = emergencyMapper.toPersonWithMedicalAndEmailDTO(row);
+
+        // Then
+        assertNull(withPhone.getAge());
+        assertNull(withEmail.getAge());
+        assertEquals(List.of("aznol:350mg"), withPhone.getMedications());
+        assertEquals(List.of("aznol:350mg"), withEmail.getMedications());
+    }
 }
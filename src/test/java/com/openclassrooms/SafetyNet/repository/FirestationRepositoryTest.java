@@ -1,7 +1,9 @@
 package com.openclassrooms.SafetyNet.repository;
 
 
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -52,7 +54,7 @@ public class FirestationRepositoryTest {
     public void givenFirestationList_whenGetFirestations_thenReturnFirestationList() {
 
         // Given
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         List<Firestation> firestationList = firestationRepository.getFirestations();
@@ -70,7 +72,7 @@ public class FirestationRepositoryTest {
     public void givenExistingStationNumber_whenGetFirestationsByStationNumber_thenReturnFirestationList() {
 
         // Given
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         List<Firestation> firestationList = firestationRepository.getFirestationByStationNumber(3);
@@ -88,7 +90,7 @@ public class FirestationRepositoryTest {
     public void givenExistingAddress_whenGetFirestationByAddress_thenReturnFirestation() {
         // Given
         Firestation firestationExpected = firestations.getFirst();
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         Firestation firestation = firestationRepository.getFirestationByAddress(firestationExpected.getAddress());
@@ -105,7 +107,7 @@ public class FirestationRepositoryTest {
     @Test
     public void givenNonExistingAddress_whenGetFirestationByAddress_thenReturnNull() {
         // Given
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         Firestation firestation = firestationRepository.getFirestationByAddress("UnknownAddress");
@@ -123,7 +125,7 @@ public class FirestationRepositoryTest {
     public void givenExistinsAddress_whenDeleteFirestationByAddress_thenReturnTrue() {
         // Given
         Firestation firestationExpected = firestations.getFirst();
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         boolean isDeleted = firestationRepository.deleteFirestationByAddress(firestationExpected.getAddress());
@@ -131,7 +133,7 @@ public class FirestationRepositoryTest {
         // Then
         assertTrue(isDeleted);
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertFalse(firestations.contains(firestationExpected));
+        assertFalse(firestationRepository.getFirestations().contains(firestationExpected));
     }
 
     /**
@@ -142,7 +144,7 @@ public class FirestationRepositoryTest {
     @Test
     public void givenNonExistingAddress_whenDeleteFirestationByAddress_thenReturnFalse() {
         // Given
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         boolean isDeleted = firestationRepository.deleteFirestationByAddress("UnknownAddress");
@@ -161,14 +163,14 @@ public class FirestationRepositoryTest {
     public void givenNewFirestation_whenSaveFirestation_thenFirestationSaved() {
         // Given
         Firestation firestation = new Firestation("NewAddress", 99);
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         firestationRepository.saveFirestation(firestation);
 
         // Then
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertTrue(firestations.contains(firestation));
+        assertTrue(firestationRepository.getFirestations().contains(firestation));
     }
 
     /**
@@ -181,7 +183,7 @@ public class FirestationRepositoryTest {
         // Given
         Firestation firestationExpected = firestations.getFirst();
         firestationExpected.setStation(99);
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         Firestation firestation = firestationRepository.updateFirestation(firestationExpected);
@@ -200,7 +202,7 @@ public class FirestationRepositoryTest {
     public void givenNonExistingFirestation_whenUpdateFirestation_thenReturnNull() {
         // Given
         Firestation firestationToUpdate = new Firestation("UnknownAddress", 99);
-        when(jsonFileManager.getFirestations()).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
 
         // When
         Firestation firestation = firestationRepository.updateFirestation(firestationToUpdate);
@@ -210,4 +212,48 @@ public class FirestationRepositoryTest {
         assertNull(firestation);
     }
 
+    /**
+     * Testing method reassignFirestations
+     * - Given an address mapped to stations 3 and 4, reassigned to station 3
+     * - Then a single entry (address, 3) is left, the other addresses are unchanged
+     */
+    @Test
+    public void givenAddressMappedToTwoStations_whenReassignFirestations_thenNoDuplicateEntry() {
+        // Given
+        firestations.add(new Firestation("112 Steppes Pl", 3));
+        firestations.add(new Firestation("112 Steppes Pl", 4));
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
+
+        // When
+        List<Firestation> reassigned = firestationRepository.reassignFirestations(List.of("112 Steppes Pl"), 3);
+
+        // Then
+        List<Firestation> steppes = jsonFileManager.getSnapshot().getFirestations().stream()
+                .filter(firestation -> firestation.getAddress().equals("112 Steppes Pl")).toList();
+        assertEquals(1, steppes.size());
+        assertEquals(3, steppes.get(0).getStation());
+        assertEquals(List.of(steppes.get(0)), reassigned);
+        assertEquals(4, jsonFileManager.getSnapshot().getFirestations().size());
+        verify(jsonFileManager, times(1)).saveJsonFile();
+    }
+
+    /**
+     * Testing method reassignFirestations
+     * - Given addresses already mapped to the new station
+     * - Then no snapshot is published and the file is not written
+     */
+    @Test
+    public void givenAddressesAlreadyOnStation_whenReassignFirestations_thenSnapshotUnchanged() {
+        // Given
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
+        DataSnapshot before = jsonFileManager.getSnapshot();
+
+        // When
+        List<Firestation> reassigned = firestationRepository.reassignFirestations(List.of("1509 Culver St", "834 Binoc Ave"), 3);
+
+        // Then
+        assertTrue(reassigned.isEmpty());
+        assertSame(before, jsonFileManager.getSnapshot());
+        verify(jsonFileManager, never()).saveJsonFile();
+    }
 }
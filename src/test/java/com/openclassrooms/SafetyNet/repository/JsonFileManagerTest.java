@@ -2,21 +2,30 @@ package com.openclassrooms.SafetyNet.repository;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.openclassrooms.SafetyNet.config.CustomProperties;
+import com.openclassrooms.SafetyNet.config.JacksonConfiguration;
+import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.utils.JsonModel;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.FieldSelection;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import lombok.extern.log4j.Log4j2;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +43,12 @@ public class JsonFileManagerTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private ObjectReader objectReader;
+
+    @Mock
+    private ObjectWriter objectWriter;
+
     @Mock
     private CustomProperties customProperties;
 
@@ -58,7 +73,12 @@ public class JsonFileManagerTest {
 
         when(customProperties.getJsonFilePath()).thenReturn("src/test/java/com/openclassrooms/SafetyNet/ressources/datas_for_tests.json");
         try {
-            when(objectMapper.readValue(any(File.class), eq(JsonModel.class))).thenReturn(jsonModel);
+            when(objectMapper.copy()).thenReturn(objectMapper);
+            when(objectMapper.setAnnotationIntrospector(any())).thenReturn(objectMapper);
+            when(objectMapper.readerFor(JsonModel.class)).thenReturn(objectReader);
+            when(objectMapper.writerFor(JsonModel.class)).thenReturn(objectWriter);
+            when(objectWriter.withDefaultPrettyPrinter()).thenReturn(objectWriter);
+            when(objectReader.readValue(any(File.class))).thenReturn(jsonModel);
         } catch (IOException e) {
             fail("Mock setup failed");
         }
@@ -117,5 +137,79 @@ public class JsonFileManagerTest {
         assertEquals(jsonModel.getMedicalrecords(), medicalRecords);
     }
 
+    /**
+     * Test of saveJsonFile method
+     * - Given two changes published before the saves of their writers
+     * - Then the file is written once with the newest snapshot, and not written again without change
+     *
+     * @throws IOException exception
+     */
+    @Test
+    public void givenChangesPublishedBeforeSaves_whenSaveJsonFile_thenFileWrittenOnce() throws IOException {
+        // Given
+        jsonFileManager.updateSnapshot(snapshot -> snapshot.withFirestations(List.of(new Firestation("address1", 2))));
+        jsonFileManager.updateSnapshot(snapshot -> snapshot.withFirestations(List.of(new Firestation("address1", 3))));
+
+        // When
+        jsonFileManager.saveJsonFile();
+        jsonFileManager.saveJsonFile();
+
+        // Then
+        verify(objectWriter, times(1)).writeValue(any(File.class),
+                argThat((JsonModel written) -> written.getFirestations().getFirst().getStation() == 3));
+        jsonFileManager.updateSnapshot(snapshot -> snapshot.withFirestations(List.of(new Firestation("address1", 4))));
+        jsonFileManager.saveJsonFile();
+        verify(objectWriter, times(2)).writeValue(any(File.class), any(JsonModel.class));
+    }
+
+    /**
+     * Test of saveJsonFile method
+     * - Given a change and a failing write
+     * - Then JsonFileManagerSaveException, and the next save writes the file again
+     *
+     * @throws IOException exception
+     */
+    @Test
+    public void givenFailingWrite_whenSaveJsonFile_thenExceptionAndWrittenAgainOnNextSave() throws IOException {
+        // Given
+        jsonFileManager.updateSnapshot(snapshot -> snapshot.withFirestations(List.of(new Firestation("address1", 2))));
+        doThrow(new IOException("disk full")).doNothing().when(objectWriter).writeValue(any(File.class), any(JsonModel.class));
+
+        // When
+        assertThrows(JsonFileManagerSaveException.class, () -> jsonFileManager.saveJsonFile());
+        jsonFileManager.saveJsonFile();
+
+        // Then
+        verify(objectWriter, times(2)).writeValue(any(File.class), any(JsonModel.class));
+    }
+
+    /**
+     * Test of saveJsonFile method with the ObjectMapper of the application
+     * - Given the field selection filter of the responses, narrowed to the first names
+     * - Then the file written with all the fields
+     *
+     * @param tempDir temporary directory
+     * @throws IOException exception
+     */
+    @Test
+    public void givenFieldSelectionOfResponses_whenSaveJsonFile_thenAllFieldsWritten(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path file = tempDir.resolve("datas.json");
+        Files.copy(Path.of("src/test/java/com/openclassrooms/SafetyNet/ressources/datas_for_tests.json"), file);
+        when(customProperties.getJsonFilePath()).thenReturn(file.toString());
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().fieldSelectionCustomizer().customize(builder);
+        ObjectMapper applicationMapper = builder.build().setFilterProvider(FieldSelection.parse("firstName").filters());
+        JsonFileManager fileManager = new JsonFileManager(applicationMapper, customProperties);
+        fileManager.updateSnapshot(snapshot -> snapshot.withFirestations(List.of(new Firestation("address1", 5))));
 
+        // When
+        fileManager.saveJsonFile();
+
+        // Then
+        String written = Files.readString(file);
+        assertTrue(written.contains("\"address\" : \"address1\""));
+        assertTrue(written.contains("\"station\" : 5"));
+        assertTrue(written.contains("\"lastName\""));
+    }
 }
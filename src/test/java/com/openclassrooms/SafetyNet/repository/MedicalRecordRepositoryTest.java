@@ -1,6 +1,7 @@
 package com.openclassrooms.SafetyNet.repository;
 
 
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,7 +52,7 @@ public class MedicalRecordRepositoryTest {
     public void givenMedicalRecordList_whenGetMedicalRecords_thenReturnMedicalRecordList() {
 
         // Given
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         List<MedicalRecord> medicalRecordList = medicalRecordRepository.getMedicalRecords();
@@ -70,7 +71,7 @@ public class MedicalRecordRepositoryTest {
 
         // Given
         MedicalRecord mdExpected = medicalRecords.getFirst();
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         MedicalRecord medicalRecord = medicalRecordRepository.getMedicalRecordByFirstNameAndLastName(mdExpected.getFirstName(), mdExpected.getLastName());
@@ -89,7 +90,7 @@ public class MedicalRecordRepositoryTest {
     public void givenExistingName_whenGetBirthdateByFirstNameAndLastName_thenReturnBirthdate() {
         // Given
         MedicalRecord mdExpected = medicalRecords.getFirst();
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         String birthdate = medicalRecordRepository.getBirthdateByFirstNameAndLastName("John", "Boyd");
@@ -106,7 +107,7 @@ public class MedicalRecordRepositoryTest {
     @Test
     public void givenNonExistingName_whenGetBirthdateByFirstNameAndLastName_thenReturnNull() {
         // Given
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         String birthdate = medicalRecordRepository.getBirthdateByFirstNameAndLastName("UnknowFirstName", "UnknowLastName");
@@ -125,7 +126,7 @@ public class MedicalRecordRepositoryTest {
 
         // Given
         MedicalRecord mdExpected = medicalRecords.getFirst();
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         boolean deleted = medicalRecordRepository.deleteMedicalRecordByFirstNameAndLastName(
@@ -135,7 +136,7 @@ public class MedicalRecordRepositoryTest {
         // Then
         assertTrue(deleted);
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertFalse(medicalRecords.contains(mdExpected));
+        assertFalse(medicalRecordRepository.getMedicalRecords().contains(mdExpected));
     }
 
     /**
@@ -147,7 +148,7 @@ public class MedicalRecordRepositoryTest {
     public void givenNonExistingName_whenDeleteMedicalRecordByFirstNameAndLastName_thenReturnFalse() {
 
         // Given
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         boolean deleted = medicalRecordRepository.deleteMedicalRecordByFirstNameAndLastName("UnknowFirstName", "UnknowLastName");
@@ -168,14 +169,14 @@ public class MedicalRecordRepositoryTest {
 
         // Given
         MedicalRecord newMedicalRecord = new MedicalRecord("NewFirstName", "NewLastName", "01/01/2000", List.of("med1:100mg"), List.of("allergy"));
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         medicalRecordRepository.saveMedicalRecord(newMedicalRecord);
 
         // Then
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertTrue(medicalRecords.contains(newMedicalRecord));
+        assertTrue(medicalRecordRepository.getMedicalRecords().contains(newMedicalRecord));
     }
 
     /**
@@ -188,7 +189,7 @@ public class MedicalRecordRepositoryTest {
         // Given
         MedicalRecord mdExpected = medicalRecords.getFirst();
         mdExpected.setBirthdate("01/01/2000");
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         MedicalRecord medicalRecord = medicalRecordRepository.updateMedicalRecord(mdExpected);
@@ -196,7 +197,7 @@ public class MedicalRecordRepositoryTest {
         // Then
         assertEquals(mdExpected, medicalRecord);
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertTrue(medicalRecords.contains(mdExpected));
+        assertTrue(medicalRecordRepository.getMedicalRecords().contains(mdExpected));
     }
 
     /**
@@ -208,7 +209,7 @@ public class MedicalRecordRepositoryTest {
     public void givenNonExistingMedicalRecord_whenUpdateMedicalRecord_thenReturnNull() {
         // Given
         MedicalRecord mdExpected = new MedicalRecord("UnknowFirstName", "UnknowLastName", "01/01/2000", List.of("med1:100mg"), List.of("allergy"));
-        when(jsonFileManager.getMedicalRecords()).thenReturn(medicalRecords);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), medicalRecords);
 
         // When
         MedicalRecord medicalRecord = medicalRecordRepository.updateMedicalRecord(mdExpected);
@@ -216,7 +217,7 @@ public class MedicalRecordRepositoryTest {
         // Then
         assertNull(medicalRecord);
         verify(jsonFileManager, times(0)).saveJsonFile();
-        assertFalse(medicalRecords.contains(mdExpected));
+        assertFalse(medicalRecordRepository.getMedicalRecords().contains(mdExpected));
     }
 
 }
@@ -1,6 +1,7 @@
 package com.openclassrooms.SafetyNet.repository;
 
 
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.model.Person;
 import com.openclassrooms.SafetyNet.utils.JsonFileManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,7 +52,7 @@ public class PersonRepositoryTest {
     public void givenPeronList_whenGetPersons_thenReturnPersonList() {
 
         // Given
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         List<Person> personList = personRepository.getPersons();
@@ -70,7 +71,7 @@ public class PersonRepositoryTest {
     public void givenExistingPerson_whenGetPersonByFirstNameAndLastName_thenReturnPerson() {
         // Given
         Person personExpected = persons.getFirst();
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         Person person = personRepository.getPersonByFirstNameAndLastName(personExpected.getFirstName(), personExpected.getLastName());
@@ -88,7 +89,7 @@ public class PersonRepositoryTest {
     @Test
     public void givenNonExistingPerson_whenGetPersonByFirstNameAndLastName_thenThrowNotFoundException() {
         // Given
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         Person person = personRepository.getPersonByFirstNameAndLastName("UnknowLastName", "UnknowFirstName");
@@ -106,7 +107,7 @@ public class PersonRepositoryTest {
     public void givenExistingLastName_whenGetPersonByLastName_thenReturnPersonList() {
         // Given
         String lastName = "Boyd";
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         List<Person> personList = personRepository.getPersonByLastName(lastName);
@@ -124,7 +125,7 @@ public class PersonRepositoryTest {
     public void givenExistingAddress_whenGetPersonByAddress_thenReturnPersonList() {
         // Given
         String address = "1509 Culver St";
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         List<Person> personList = personRepository.getPersonByAddress(address);
@@ -142,7 +143,7 @@ public class PersonRepositoryTest {
     public void givenExistingPerson_whenDeletePersonByFirstNameAndLastName_thenPersonDeleted() {
         // Given
         Person personToDelete = persons.getFirst();
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         personRepository.deletePersonByFirstNameAndLastName(personToDelete.getFirstName(), personToDelete.getLastName());
@@ -150,7 +151,7 @@ public class PersonRepositoryTest {
         // Then
         verify(jsonFileManager, times(1)).saveJsonFile();
         assertEquals(2, personRepository.getPersons().size());
-        assertFalse(persons.contains(personToDelete));
+        assertFalse(personRepository.getPersons().contains(personToDelete));
     }
 
     /**
@@ -161,7 +162,7 @@ public class PersonRepositoryTest {
     @Test
     public void givenNonExistingPerson_whenDeletePersonByFirstNameAndLastName_thenThrowNotFoundException() {
         // Given
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         boolean deleted = personRepository.deletePersonByFirstNameAndLastName("UnknowLastName", "UnknowFirstName");
@@ -181,14 +182,14 @@ public class PersonRepositoryTest {
         // Given
         Person personToSave = new Person("NewFirstName", "NewLastName", "New Address", "New City", "99999", "999-999-9999", "bnewemail@mail.com");
 
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         personRepository.savePerson(personToSave);
 
         // Then
         verify(jsonFileManager, times(1)).saveJsonFile();
-        assertTrue(persons.contains(personToSave));
+        assertTrue(personRepository.getPersons().contains(personToSave));
 
     }
 
@@ -203,7 +204,7 @@ public class PersonRepositoryTest {
         Person personToUpdate = persons.getFirst();
         personToUpdate.setAddress("NewAddress");
 
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         Person person = personRepository.updatePerson(personToUpdate);
@@ -223,7 +224,7 @@ public class PersonRepositoryTest {
         // Given
         Person personToUpdate = new Person("UnknowFirstName", "UnknowLastName", "New Address", "New City", "99999", "999-999-9999", "mail@mail.com");
 
-        when(jsonFileManager.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
         Person person = personRepository.updatePerson(personToUpdate);
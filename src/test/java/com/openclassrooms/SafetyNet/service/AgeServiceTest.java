@@ -0,0 +1,119 @@
+package com.openclassrooms.SafetyNet.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of AgeService
+ */
+@ExtendWith(MockitoExtension.class)
+public class AgeServiceTest {
+
+    private AgeService ageService;
+
+    @Mock
+    Clock clock;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        when(clock.instant()).thenReturn(Instant.parse("2024-03-05T23:59:59Z"));
+        ageService = new AgeService(clock);
+    }
+
+    /**
+     * Testing method age
+     * - Given a birthdate read twice, the day before a birthday
+     * - Then the age, the same parsed birthdate
+     */
+    @Test
+    public void givenBirthdate_whenAge_thenReturnAgeOfTheDay() {
+        // When
+        int age = ageService.age("03/06/1984");
+
+        // Then
+        assertEquals(39, age);
+        assertEquals(LocalDate.of(2024, 3, 5), ageService.today());
+        assertSame(ageService.parseBirthdate("03/06/1984"), ageService.parseBirthdate("03/06/1984"));
+    }
+
+    /**
+     * Testing method age after midnight
+     * - Given an age computed the day before a birthday, then the clock passing midnight
+     * - Then the age of the new day
+     */
+    @Test
+    public void givenAgeComputed_whenClockPassesMidnight_thenReturnAgeOfTheNewDay() {
+        // Given
+        assertEquals(39, ageService.age("03/06/1984"));
+
+        // When
+        when(clock.instant()).thenReturn(Instant.parse("2024-03-06T00:00:01Z"));
+
+        // Then
+        assertEquals(40, ageService.age("03/06/1984"));
+        assertEquals(40, ageService.age(LocalDate.of(1984, 3, 6)));
+    }
+
+    /**
+     * Testing method age with an invalid birthdate
+     * - Given a birthdate not in the MM/dd/yyyy format
+     * - Then DateTimeParseException
+     */
+    @Test
+    public void givenInvalidBirthdate_whenAge_thenThrowDateTimeParseException() {
+        // When & Then
+        assertThrows(DateTimeParseException.class, () -> ageService.age("1984-03-06"));
+    }
+
+    /**
+     * Testing method readBirthdate
+     * - Given a birthdate read by the service, then by the static method used by HouseholdView
+     * - Then the same cached LocalDate
+     */
+    @Test
+    public void givenBirthdateParsedByService_whenReadBirthdate_thenSameCachedInstance() {
+        // Given
+        LocalDate parsed = ageService.parseBirthdate("07/14/1991");
+
+        // When & Then
+        assertSame(parsed, AgeService.readBirthdate("07/14/1991"));
+        assertSame(parsed, AgeService.readBirthdateOrNull("07/14/1991"));
+    }
+
+    /**
+     * Testing method lru
+     * - Given a full cache whose oldest entry was read again
+     * - Then only the least recently used entry evicted
+     */
+    @Test
+    public void givenFullCache_whenPut_thenLeastRecentlyUsedEvicted() {
+        // Given
+        Map<String, Integer> cache = AgeService.lru(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+
+        // When
+        cache.put("c", 3);
+
+        // Then
+        assertEquals(Map.of("a", 1, "c", 3), cache);
+    }
+}
@@ -1,20 +1,27 @@
 package com.openclassrooms.SafetyNet.service;
 
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
 import com.openclassrooms.SafetyNet.dto.*;
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
 import com.openclassrooms.SafetyNet.mapper.EmergencyMapper;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
-import com.openclassrooms.SafetyNet.repository.FirestationRepository;
-import com.openclassrooms.SafetyNet.repository.MedicalRecordRepository;
-import com.openclassrooms.SafetyNet.repository.PersonRepository;
+import com.openclassrooms.SafetyNet.utils.FanOut;
+import com.openclassrooms.SafetyNet.utils.HouseholdView;
+import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.QueryCache;
+import com.openclassrooms.SafetyNet.utils.SnapshotJoin;
+import com.openclassrooms.SafetyNet.utils.StationView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDate;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,11 +36,7 @@ public class EmergencyServiceTest {
     private EmergencyService emergencyService;
 
     @Mock
-    PersonRepository personRepository;
-    @Mock
-    FirestationRepository firestationRepository;
-    @Mock
-    MedicalRecordRepository medicalRecordRepository;
+    JsonFileManager jsonFileManager;
     @Mock
     EmergencyMapper emergencyMapper;
 
@@ -42,7 +45,7 @@ public class EmergencyServiceTest {
      */
     @BeforeEach
     public void setUpPerTest() {
-        emergencyService = new EmergencyService(personRepository, firestationRepository, medicalRecordRepository, emergencyMapper);
+        emergencyService = new EmergencyService(jsonFileManager, emergencyMapper, new QueryCache(), new FanOut());
     }
 
 
@@ -66,15 +69,15 @@ public class EmergencyServiceTest {
         List<Person> persons = new ArrayList<>();
         persons.add(new Person(firstName, lastName, address, "Culver", "97451", "841-874-6512", "jaboyd@email.com"));
 
-        Map<Person, String> personWithBirthdate = new HashMap<>();
-        personWithBirthdate.put(persons.getFirst(), birthdate);
+        List<MedicalRecord> medicalRecords = new ArrayList<>();
+        medicalRecords.add(new MedicalRecord(firstName, lastName, birthdate, new ArrayList<>(), new ArrayList<>()));
 
-        PersonCoveredByStationDTO expectedDTO = new PersonCoveredByStationDTO();
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, medicalRecords);
 
-        when(firestationRepository.getFirestationByStationNumber(stationNumber)).thenReturn(firestations);
-        when(personRepository.getPersonByAddress(address)).thenReturn(persons);
-        when(medicalRecordRepository.getBirthdateByFirstNameAndLastName(firstName, lastName)).thenReturn(birthdate);
-        when(emergencyMapper.toPersonCoveredByStationDTO(personWithBirthdate)).thenReturn(expectedDTO);
+        PersonCoveredByStationDTO expectedDTO = new PersonCoveredByStationDTO(0, 1, List.of());
+
+        ArgumentCaptor<StationView.Coverage> coverage = ArgumentCaptor.forClass(StationView.Coverage.class);
+        when(emergencyMapper.toPersonCoveredByStationDTO(coverage.capture())).thenReturn(expectedDTO);
 
         // When
         PersonCoveredByStationDTO result = emergencyService.getPersonCoveredByStationNumber(stationNumber);
@@ -85,10 +88,9 @@ public class EmergencyServiceTest {
         assertEquals(expectedDTO.getNbAdults(), result.getNbAdults());
         assertEquals(expectedDTO.getNbChildren(), result.getNbChildren());
 
-        verify(firestationRepository, times(1)).getFirestationByStationNumber(stationNumber);
-        verify(personRepository, times(1)).getPersonByAddress(address);
-        verify(medicalRecordRepository, times(1)).getBirthdateByFirstNameAndLastName(firstName, lastName);
-        verify(emergencyMapper, times(1)).toPersonCoveredByStationDTO(personWithBirthdate);
+        verify(jsonFileManager, times(1)).getSnapshot();
+        verify(emergencyMapper, times(1)).toPersonCoveredByStationDTO(any(StationView.Coverage.class));
+        assertEquals(persons, coverage.getValue().getResidents());
     }
 
     /**
@@ -99,17 +101,12 @@ public class EmergencyServiceTest {
     @Test
     public void givenNonExistingStationNumber_whenGetPersonCoveredByStationNumber_thenReturnNotFoundException() {
         // Given
-        List<Firestation> firestations = new ArrayList<>();
-
-        when(firestationRepository.getFirestationByStationNumber(anyInt())).thenReturn(firestations);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), List.of());
 
         // When & Then
-        assertThrows(NotFoundException.class, () -> emergencyService.getPersonCoveredByStationNumber(anyInt()));
+        assertThrows(NotFoundException.class, () -> emergencyService.getPersonCoveredByStationNumber(1));
 
-        verify(firestationRepository, times(1)).getFirestationByStationNumber(anyInt());
-        verify(personRepository, times(0)).getPersonByAddress(anyString());
-        verify(medicalRecordRepository, times(0)).getMedicalRecordByFirstNameAndLastName(anyString(), anyString());
-        verify(emergencyMapper, times(0)).toPersonCoveredByStationDTO(anyMap());
+        verify(emergencyMapper, times(0)).toPersonCoveredByStationDTO(any(StationView.Coverage.class));
     }
 
     /**
@@ -126,18 +123,11 @@ public class EmergencyServiceTest {
         persons.add(new Person("John", "Boyd", address, "Culver", "97451", "841-874-6512", "jaboyd@email.com"));
         persons.add(new Person("Jacob", "Boyd", address, "Culver", "97451", "841-874-6513", "jacob@email.com"));
 
-        when(personRepository.getPersonByAddress(address)).thenReturn(persons);
-
         List<MedicalRecord> medicalRecords = new ArrayList<>();
         medicalRecords.add(new MedicalRecord("John", "Boyd", "03/06/1984", new ArrayList<>(), new ArrayList<>()));
         medicalRecords.add(new MedicalRecord("Jacob", "Boyd", "03/06/2024", new ArrayList<>(), new ArrayList<>()));
 
-        when(medicalRecordRepository.getBirthdateByFirstNameAndLastName("John", "Boyd")).thenReturn(medicalRecords.getFirst().getBirthdate());
-        when(medicalRecordRepository.getBirthdateByFirstNameAndLastName("Jacob", "Boyd")).thenReturn(medicalRecords.get(1).getBirthdate());
-
-        Map<Person, String> personWithBirthdate = new HashMap<>();
-        personWithBirthdate.put(persons.get(0), medicalRecords.get(0).getBirthdate());
-        personWithBirthdate.put(persons.get(1), medicalRecords.get(1).getBirthdate());
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), medicalRecords);
 
         List<HouseChildrenDTO> expectedDTOList = new ArrayList<>();
         expectedDTOList.add(new HouseChildrenDTO("Jacob", "Boyd", 3,
@@ -145,15 +135,17 @@ public class EmergencyServiceTest {
                 )
         );
 
-        when(emergencyMapper.toHouseChildrenDTO(personWithBirthdate)).thenReturn(expectedDTOList);
+        ArgumentCaptor<HouseholdView.Household> household = ArgumentCaptor.forClass(HouseholdView.Household.class);
+        when(emergencyMapper.toHouseChildrenDTO(household.capture())).thenReturn(expectedDTOList);
 
         // When
         List<HouseChildrenDTO> houseChildrenDTOList = emergencyService.getHouseChildren(address);
 
         // Then
         assertEquals(expectedDTOList, houseChildrenDTOList);
-        verify(personRepository, times(1)).getPersonByAddress(address);
-        verify(medicalRecordRepository, times(1)).getBirthdateByFirstNameAndLastName("John", "Boyd");
+        verify(emergencyMapper, times(1)).toHouseChildrenDTO(any(HouseholdView.Household.class));
+        assertEquals(persons, household.getValue().getMembers().stream().map(HouseholdView.Member::person).toList());
+        assertEquals(LocalDate.of(2024, 3, 6), household.getValue().getMembers().get(1).birthdate());
     }
 
 
@@ -173,15 +165,13 @@ public class EmergencyServiceTest {
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"));
 
-        when(firestationRepository.getFirestationByStationNumber(stationNumber)).thenReturn(firestations);
-        when(personRepository.getPersonByAddress("1509 Culver St")).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, List.of());
 
         // When
-        HashSet<String> phones = emergencyService.getPhoneNumbersCoveredByFireStation(stationNumber);
+        Set<String> phones = emergencyService.getPhoneNumbersCoveredByFireStation(stationNumber);
 
         // Then
-        verify(firestationRepository, times(1)).getFirestationByStationNumber(stationNumber);
-        verify(personRepository, times(1)).getPersonByAddress("1509 Culver St");
+        verify(jsonFileManager, times(1)).getSnapshot();
         assertEquals(1, phones.size());
         assertEquals("841-874-6512", phones.iterator().next());
     }
@@ -194,12 +184,71 @@ public class EmergencyServiceTest {
     @Test
     public void givenNonExistingStationNumber_givenGetPhoneNumbersCoveredByFireStation_thenThrowNotFoundException() {
         // Given
-        when(firestationRepository.getFirestationByStationNumber(1)).thenReturn(new ArrayList<>());
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), List.of());
 
         // When && Then
         assertThrows(NotFoundException.class, () -> emergencyService.getPhoneNumbersCoveredByFireStation(1));
     }
 
+    /**
+     * Testing method getPhoneNumbersCoveredByFireStations
+     * - Given stations sharing an address, an unknown station and a repeated station
+     * - Then phone numbers by station in the order of the request, one snapshot read
+     */
+    @Test
+    public void givenStationNumbers_whenGetPhoneNumbersCoveredByFireStations_thenReturnPhonesByStation() {
+        // Given
+        List<Firestation> firestations = List.of(
+                new Firestation("1509 Culver St", 1),
+                new Firestation("834 Binoc Ave", 2),
+                new Firestation("1509 Culver St", 2));
+
+        List<Person> persons = List.of(
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6515", "tenz@email.com"));
+
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, List.of());
+
+        // When
+        Map<Integer, Set<String>> phones = emergencyService.getPhoneNumbersCoveredByFireStations(List.of(2, 9, 1, 2));
+
+        // Then
+        verify(jsonFileManager, times(1)).getSnapshot();
+        assertEquals(List.of(2, 9, 1), new ArrayList<>(phones.keySet()));
+        assertEquals(Set.of("841-874-6512", "841-874-6515"), phones.get(2));
+        assertEquals(Set.of(), phones.get(9));
+        assertEquals(Set.of("841-874-6512"), phones.get(1));
+    }
+
+    /**
+     * Testing method getFamiliesWithMedicalAndFirestation
+     * - Given an existing address, an unknown address and a repeated address
+     * - Then FamilyWithMedicalAndFirestationDTO by address, each address mapped once
+     */
+    @Test
+    public void givenAddresses_whenGetFamiliesWithMedicalAndFirestation_thenReturnFamilyByAddress() {
+        // Given
+        Firestation firestation = new Firestation("1509 Culver St", 1);
+        Person person = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com");
+        MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "03/06/1984", new ArrayList<>(), new ArrayList<>());
+
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(person), List.of(firestation), List.of(medicalRecord));
+
+        FamilyWithMedicalAndFirestationDTO expectedDTO = new FamilyWithMedicalAndFirestationDTO(1, List.of());
+        when(emergencyMapper.toFamilyWithMedicalAndFirestationDTO(any(HouseholdView.Household.class))).thenReturn(expectedDTO);
+
+        // When
+        Map<String, FamilyWithMedicalAndFirestationDTO> families = emergencyService.getFamiliesWithMedicalAndFirestation(
+                List.of("1509 Culver St", "Unknown", "1509 Culver St"));
+
+        // Then
+        verify(jsonFileManager, times(1)).getSnapshot();
+        verify(emergencyMapper, times(1)).toFamilyWithMedicalAndFirestationDTO(any(HouseholdView.Household.class));
+        assertEquals(List.of("1509 Culver St", "Unknown"), new ArrayList<>(families.keySet()));
+        assertSame(expectedDTO, families.get("1509 Culver St"));
+        assertNull(families.get("Unknown").getStation());
+    }
+
 
     /**
      * Testing method getFamilyWithMedicalAndFirestation
@@ -213,35 +262,32 @@ public class EmergencyServiceTest {
 
         // Firestation at address
         Firestation firestation = new Firestation("1509 Culver St", 1);
-        when(firestationRepository.getFirestationByAddress("1509 Culver St")).thenReturn(firestation);
 
         // Person covered by firestation
         Person person = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com");
-        when(personRepository.getPersonByAddress("1509 Culver St")).thenReturn(List.of(person));
 
         // Medical record of person
         MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "03/06/1984", new ArrayList<>(), new ArrayList<>());
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Boyd")).thenReturn(medicalRecord);
+
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(person), List.of(firestation), List.of(medicalRecord));
 
         // Map to FamilyWithMedicalAndFirestationDTO
         FamilyWithMedicalAndFirestationDTO expectedDTO =
                 new FamilyWithMedicalAndFirestationDTO(1, List.of(
                         new PersonMedicalDetailsDTO("John", "Boyd", 37, "841-874-6512", new ArrayList<>(), new ArrayList<>())
                 ));
-        when(emergencyMapper.toFamilyWithMedicalAndFirestationDTO(
-                List.of(person),
-                List.of(medicalRecord),
-                firestation)).thenReturn(expectedDTO);
+        ArgumentCaptor<HouseholdView.Household> household = ArgumentCaptor.forClass(HouseholdView.Household.class);
+        when(emergencyMapper.toFamilyWithMedicalAndFirestationDTO(household.capture())).thenReturn(expectedDTO);
 
         // When
         FamilyWithMedicalAndFirestationDTO familyDTO = emergencyService.getFamilyWithMedicalAndFirestation("1509 Culver St");
 
         // Then
-        verify(firestationRepository, times(1)).getFirestationByAddress("1509 Culver St");
-        verify(personRepository, times(1)).getPersonByAddress("1509 Culver St");
-        verify(medicalRecordRepository, times(1)).getMedicalRecordByFirstNameAndLastName("John", "Boyd");
+        verify(jsonFileManager, times(1)).getSnapshot();
         assertEquals(1, familyDTO.getStation());
         assertEquals(1, familyDTO.getPersonMedicalDetailDTOS().size());
+        assertEquals(firestation, household.getValue().getFirestation());
+        assertEquals(medicalRecord, household.getValue().getMembers().getFirst().medicalRecord());
 
     }
 
@@ -253,7 +299,7 @@ public class EmergencyServiceTest {
     @Test
     public void givenNonExistingAddress_givenGetFamilyWithMedicalAndFirestation_thenReturnEmptyFamilyWithMedicalAndFirestationDTO() {
         // Given
-        when(firestationRepository.getFirestationByAddress("UnknowAddress")).thenReturn(null);
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), List.of());
 
         // When
         FamilyWithMedicalAndFirestationDTO familyDTO = emergencyService.getFamilyWithMedicalAndFirestation("UnknowAddress");
@@ -277,46 +323,93 @@ public class EmergencyServiceTest {
         List<Firestation> firestations = new ArrayList<>();
         firestations.add(new Firestation("1509 Culver St", 1));
 
-        when(firestationRepository.getFirestationByStationNumber(1)).thenReturn(List.of(firestations.getFirst()));
-
         // Persons of firestation
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
 
-        when(personRepository.getPersonByAddress("1509 Culver St")).thenReturn(List.of(persons.getFirst()));
-
         // Medical records of persons
         MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "03/06/1984", new ArrayList<>(), new ArrayList<>());
         List<MedicalRecord> medicalRecords = List.of(medicalRecord);
 
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Boyd")).thenReturn(medicalRecord);
-
-        // Map persons and medical records
-        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS = new ArrayList<>();
-        personWithMedicalRecordDTOS.add(new PersonWithMedicalRecordDTO("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com", 37, true, new ArrayList<>(), new ArrayList<>()));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, medicalRecords);
 
-        when(emergencyMapper.toPersonWithMedicalRecord(persons, medicalRecords)).thenReturn(personWithMedicalRecordDTOS);
-
-        // Map to PersonWithMedicalAndPhoneDTO
+        // Map joined rows to PersonWithMedicalAndPhoneDTO
+        SnapshotJoin.Row row = new SnapshotJoin.Row(persons.getFirst(), medicalRecord, firestations.getFirst());
         PersonWithMedicalAndPhoneDTO personWithMedicalAndPhoneDTO =
                 new PersonWithMedicalAndPhoneDTO("John", "Boyd", 37, "841-874-6512", new ArrayList<>(), new ArrayList<>());
 
-        when(emergencyMapper.toPersonWithMedicalAndPhone(personWithMedicalRecordDTOS.getFirst())).thenReturn(personWithMedicalAndPhoneDTO);
+        when(emergencyMapper.toPersonWithMedicalAndPhone(row)).thenReturn(personWithMedicalAndPhoneDTO);
 
 
         // When
         FamilyWithMedicalGroupedByAddressDTO familyDTO = emergencyService.getFamilyWithMedicalGroupedByAddress(stationNumbers);
 
         // Then
-        verify(firestationRepository, times(1)).getFirestationByStationNumber(1);
-        verify(personRepository, times(1)).getPersonByAddress("1509 Culver St");
-        verify(medicalRecordRepository, times(1)).getMedicalRecordByFirstNameAndLastName("John", "Boyd");
-        verify(emergencyMapper, times(1)).toPersonWithMedicalRecord(persons, medicalRecords);
-        verify(emergencyMapper, times(1)).toPersonWithMedicalAndPhone(personWithMedicalRecordDTOS.getFirst());
+        verify(jsonFileManager, times(1)).getSnapshot();
+        verify(emergencyMapper, times(1)).toPersonWithMedicalAndPhone(row);
         assertNotNull(familyDTO);
         assertEquals(1, familyDTO.getMapAddressPersons().size());
+        assertEquals(List.of(personWithMedicalAndPhoneDTO), familyDTO.getMapAddressPersons().get("1509 Culver St"));
+    }
+
+
+    /**
+     * Testing method getFamilyWithMedicalGroupedByAddress with the stations in both orders
+     * - Given two stations requested as 3,1 then as 1,3
+     * - Then the same addresses in the same order (ascending stations), the second result served from the cache
+     */
+    @Test
+    public void givenStationsInBothOrders_whenGetFamilyWithMedicalGroupedByAddress_thenSameOrder() {
+        // Given
+        List<Firestation> firestations = List.of(new Firestation("834 Binoc Ave", 3), new Firestation("1509 Culver St", 1));
+        List<Person> persons = List.of(
+                new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@mail.com"),
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, List.of());
+        when(emergencyMapper.toPersonWithMedicalAndPhone(any(SnapshotJoin.Row.class))).thenAnswer(invocation -> {
+            Person person = invocation.getArgument(0, SnapshotJoin.Row.class).person();
+            return new PersonWithMedicalAndPhoneDTO(person.getFirstName(), person.getLastName(), null, person.getPhone(), null, null);
+        });
+
+        // When
+        FamilyWithMedicalGroupedByAddressDTO descending = emergencyService.getFamilyWithMedicalGroupedByAddress(List.of(3, 1));
+        FamilyWithMedicalGroupedByAddressDTO ascending = emergencyService.getFamilyWithMedicalGroupedByAddress(List.of(1, 3));
+
+        // Then
+        List<String> expected = List.of("1509 Culver St", "834 Binoc Ave");
+        assertEquals(expected, new ArrayList<>(descending.getMapAddressPersons().keySet()));
+        assertEquals(expected, new ArrayList<>(ascending.getMapAddressPersons().keySet()));
+        assertEquals(1, emergencyService.getQueryCache().getHits());
     }
 
+    /**
+     * Testing method streamFamilyWithMedicalGroupedByAddress
+     * - Given stations in descending order, with a null and a duplicate station
+     * - Then each address is streamed once, in the order of the Json variant
+     */
+    @Test
+    public void givenUnorderedStationsWithDuplicate_whenStreamFamilyWithMedicalGroupedByAddress_thenOrderOfJsonVariant() {
+        // Given
+        List<Firestation> firestations = List.of(new Firestation("834 Binoc Ave", 3), new Firestation("1509 Culver St", 1));
+        List<Person> persons = List.of(
+                new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@mail.com"),
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, List.of());
+        when(emergencyMapper.toPersonWithMedicalAndPhone(any(SnapshotJoin.Row.class))).thenAnswer(invocation -> {
+            Person person = invocation.getArgument(0, SnapshotJoin.Row.class).person();
+            return new PersonWithMedicalAndPhoneDTO(person.getFirstName(), person.getLastName(), null, person.getPhone(), null, null);
+        });
+        List<Integer> stations = Arrays.asList(3, null, 1, 3);
+
+        // When
+        List<String> streamed = new ArrayList<>();
+        emergencyService.streamFamilyWithMedicalGroupedByAddress(stations, family -> streamed.add(family.getAddress()));
+        FamilyWithMedicalGroupedByAddressDTO json = emergencyService.getFamilyWithMedicalGroupedByAddress(stations);
+
+        // Then
+        assertEquals(List.of("1509 Culver St", "834 Binoc Ave"), streamed);
+        assertEquals(new ArrayList<>(json.getMapAddressPersons().keySet()), streamed);
+    }
 
     /**
      * Testing method getPersonMedicalWithEmail
@@ -331,38 +424,27 @@ public class EmergencyServiceTest {
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
 
-        when(personRepository.getPersonByLastName("Boyd")).thenReturn(persons);
-
         // Medical records of persons
         MedicalRecord medicalRecord = new MedicalRecord("John", "Boyd", "03/06/1984", new ArrayList<>(), new ArrayList<>());
         List<MedicalRecord> medicalRecords = List.of(medicalRecord);
 
-        when(medicalRecordRepository.getMedicalRecordByFirstNameAndLastName("John", "Boyd")).thenReturn(medicalRecord);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), medicalRecords);
 
-        // Map persons and medical records
-        List<PersonWithMedicalRecordDTO> personWithMedicalRecordDTOS = new ArrayList<>();
-        personWithMedicalRecordDTOS.add(
-                new PersonWithMedicalRecordDTO("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com", 37, true, new ArrayList<>(), new ArrayList<>())
-        );
-
-        when(emergencyMapper.toPersonWithMedicalRecord(persons, medicalRecords)).thenReturn(personWithMedicalRecordDTOS);
-
-        // Map to PersonWithMedicalAndEmailDTO
+        // Map joined rows to PersonWithMedicalAndEmailDTO
+        SnapshotJoin.Row row = new SnapshotJoin.Row(persons.getFirst(), medicalRecord, null);
         PersonWithMedicalAndEmailDTO personWithMedicalAndEmailDTO =
                 new PersonWithMedicalAndEmailDTO("John", "Boyd", 37, "jboyd@mail.com", new ArrayList<>(), new ArrayList<>());
 
-        when(emergencyMapper.toPersonWithMedicalAndEmailDTO(personWithMedicalRecordDTOS.getFirst())).thenReturn(personWithMedicalAndEmailDTO);
+        when(emergencyMapper.toPersonWithMedicalAndEmailDTO(row)).thenReturn(personWithMedicalAndEmailDTO);
 
         // When
         List<PersonWithMedicalAndEmailDTO> personWithMedicalAndEmailDTOS = emergencyService.getPersonMedicalWithEmail("Boyd");
 
         // Then
-        verify(personRepository, times(1)).getPersonByLastName("Boyd");
-        verify(medicalRecordRepository, times(1)).getMedicalRecordByFirstNameAndLastName("John", "Boyd");
-        verify(emergencyMapper, times(1)).toPersonWithMedicalRecord(persons, medicalRecords);
-        verify(emergencyMapper, times(1)).toPersonWithMedicalAndEmailDTO(personWithMedicalRecordDTOS.getFirst());
+        verify(jsonFileManager, times(1)).getSnapshot();
+        verify(emergencyMapper, times(1)).toPersonWithMedicalAndEmailDTO(row);
         assertNotNull(personWithMedicalAndEmailDTOS);
-        assertEquals(1, personWithMedicalAndEmailDTOS.size());
+        assertEquals(List.of(personWithMedicalAndEmailDTO), personWithMedicalAndEmailDTOS);
     }
 
     /**
@@ -373,7 +455,7 @@ public class EmergencyServiceTest {
     @Test
     public void givenNonExistingLastName_whenGetPersonMedicalWithEmail_thenReturnNotFoundException() {
         // Given
-        when(personRepository.getPersonByLastName("UnknowLastName")).thenReturn(new ArrayList<>());
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), List.of(), List.of());
 
         // When && Then
         assertThrows(NotFoundException.class, () -> emergencyService.getPersonMedicalWithEmail("UnknowLastName"));
@@ -394,14 +476,174 @@ public class EmergencyServiceTest {
         List<Person> persons = new ArrayList<>();
         persons.add(new Person("John", "Boyd", "1509 Culver St", city, "97451", "841-874-6512", "jboyd@mail.com"));
 
-        when(personRepository.getPersons()).thenReturn(persons);
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
 
         // When
-        HashSet<String> emails = emergencyService.getPersonEmailByCity(city);
+        Set<String> emails = emergencyService.getPersonEmailByCity(city);
 
         // Then
-        verify(personRepository, times(1)).getPersons();
+        verify(jsonFileManager, times(1)).getSnapshot();
         assertEquals(1, emails.size());
     }
 
+    /**
+     * Testing the cache of the queries
+     * - Given a station queried twice, then a person moved to the station
+     * - Then the second query is served from the cache, the query after the write is computed again
+     */
+    @Test
+    public void givenStationQueriedTwice_whenGetPhoneNumbersCoveredByFireStation_thenCachedUntilStationTouched() {
+        // Given
+        List<Person> persons = new ArrayList<>();
+        persons.add(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
+        persons.add(new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6515", "tenz@mail.com"));
+        List<Firestation> firestations = List.of(new Firestation("1509 Culver St", 1), new Firestation("834 Binoc Ave", 2));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, firestations, List.of());
+
+        // When
+        Set<String> first = emergencyService.getPhoneNumbersCoveredByFireStation(1);
+        Set<String> second = emergencyService.getPhoneNumbersCoveredByFireStation(1);
+        Set<String> otherStation = emergencyService.getPhoneNumbersCoveredByFireStation(2);
+
+        persons.set(1, new Person("Tessa", "Carman", "1509 Culver St", "Culver", "97451", "841-874-6515", "tenz@mail.com"));
+        jsonFileManager.updateSnapshot(snapshot -> snapshot.withPersons(persons));
+        Set<String> afterWrite = emergencyService.getPhoneNumbersCoveredByFireStation(1);
+
+        // Then
+        assertSame(first, second);
+        assertEquals(Set.of("841-874-6512"), first);
+        assertEquals(Set.of("841-874-6515"), otherStation);
+        assertEquals(Set.of("841-874-6512", "841-874-6515"), afterWrite);
+        assertEquals(1, emergencyService.getQueryCache().getHits());
+        assertEquals(3, emergencyService.getQueryCache().getMisses());
+    }
+
+    /**
+     * Testing method streamPersonEmailByCity
+     * - Given persons of a city sharing an email, and a person of another city
+     * - Then each email of the city is streamed once, in the order of the persons
+     */
+    @Test
+    public void givenExistingCity_whenStreamPersonEmailByCity_thenStreamEachEmailOnce() {
+        // Given
+        String city = "Culver";
+
+        List<Person> persons = new ArrayList<>();
+        persons.add(new Person("John", "Boyd", "1509 Culver St", city, "97451", "841-874-6512", "jboyd@mail.com"));
+        persons.add(new Person("Jacob", "Boyd", "1509 Culver St", city, "97451", "841-874-6513", "jboyd@mail.com"));
+        persons.add(new Person("Tessa", "Carman", "834 Binoc Ave", city, "97451", "841-874-6515", "tenz@mail.com"));
+        persons.add(new Person("Eric", "Cadigan", "951 LoneTree Rd", "Paris", "97451", "841-874-7458", "gramps@mail.com"));
+
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
+
+        // When
+        List<String> emails = new ArrayList<>();
+        emergencyService.streamPersonEmailByCity(city, emails::add);
+
+        // Then
+        assertEquals(List.of("jboyd@mail.com", "tenz@mail.com"), emails);
+    }
+
+    /**
+     * Testing method runQueries
+     * - Given sub-queries sharing a station, a sub-query on an unknown station and an invalid sub-query
+     * - Then one snapshot read, a result per sub-query with its status, the shared result computed once
+     */
+    @Test
+    public void givenSubQueries_whenRunQueries_thenReturnResultsWithStatus() {
+        // Given
+        List<Person> persons = List.of(
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jboyd@mail.com"));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(new Firestation("1509 Culver St", 1)), List.of());
+
+        List<EmergencyQueryDTO> queries = List.of(
+                new EmergencyQueryDTO("phones", "phoneAlert", 1, null, null, null, null),
+                new EmergencyQueryDTO("phones again", "phoneAlert", 1, null, null, null, null),
+                new EmergencyQueryDTO("unknown station", "phoneAlert", 9, null, null, null, null),
+                new EmergencyQueryDTO("no city", "communityEmail", null, null, null, null, null),
+                new EmergencyQueryDTO("unknown query", "weather", null, null, null, null, null),
+                new EmergencyQueryDTO("emails", "communityEmail", null, null, null, null, "Culver"));
+
+        // When
+        List<EmergencyQueryResultDTO> results = emergencyService.runQueries(queries);
+
+        // Then
+        verify(jsonFileManager, times(1)).getSnapshot();
+        assertEquals(List.of(200, 200, 404, 400, 400, 200), results.stream().map(EmergencyQueryResultDTO::getStatus).toList());
+        assertEquals(Set.of("841-874-6512"), results.get(0).getResult());
+        assertSame(results.get(0).getResult(), results.get(1).getResult());
+        assertEquals(List.of("city is required"), results.get(3).getErrors());
+        assertNull(results.get(4).getResult());
+        assertEquals(Set.of("jboyd@mail.com"), results.get(5).getResult());
+        assertEquals(1, emergencyService.getQueryCache().getHits());
+    }
+
+    /**
+     * Testing method getNearestFirestations
+     * - Given geocoded fire stations, two addresses of station 3 nearer than station 1, and a fire station not geocoded
+     * - Then each station once, with its nearest address, nearest first
+     */
+    @Test
+    public void givenGeocodedFirestations_whenGetNearestFirestations_thenReturnEachStationOnceNearestFirst() {
+        // Given
+        List<Firestation> firestations = List.of(
+                new Firestation("1509 Culver St", 3, 33.9750, -118.3960),
+                new Firestation("834 Binoc Ave", 3, 33.9760, -118.3960),
+                new Firestation("644 Gershwin Cir", 1, 33.9850, -118.3960),
+                new Firestation("29 15th St", 2, 34.0500, -118.3960),
+                new Firestation("112 Steppes Pl", 4));
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(), firestations, List.of());
+
+        // When
+        List<NearestFirestationDTO> result = emergencyService.getNearestFirestations(33.9740, -118.3960, 2);
+
+        // Then
+        assertEquals(List.of(3, 1), result.stream().map(NearestFirestationDTO::getStation).toList());
+        assertEquals("1509 Culver St", result.get(0).getAddress());
+        assertEquals(111, result.get(0).getDistance(), 1);
+        assertEquals(3, emergencyService.getNearestFirestations(33.9740, -118.3960, 10).size());
+    }
+
+    /**
+     * Testing method getPersonsWithinRadius
+     * - Given geocoded persons, one of them out of the radius, and a person not geocoded
+     * - Then the persons within the radius, nearest first
+     */
+    @Test
+    public void givenGeocodedPersons_whenGetPersonsWithinRadius_thenReturnPersonsWithinRadiusNearestFirst() {
+        // Given
+        List<Person> persons = List.of(
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com", 33.9760, -118.3960),
+                new Person("Tony", "Cooper", "112 Steppes Pl", "Culver", "97451", "841-874-6874", "tcoop@ymail.com", 33.9745, -118.3960),
+                new Person("Ron", "Peters", "112 Steppes Pl", "Culver", "97451", "841-874-8888", "jpeter@email.com", 33.9900, -118.3960),
+                new Person("Eric", "Cadigan", "951 LoneTree Rd", "Culver", "97451", "841-874-7458", "gramps@email.com"));
+        JsonTestConfig.mockSnapshot(jsonFileManager, persons, List.of(), List.of());
+
+        // When
+        List<PersonNearbyDTO> result = emergencyService.getPersonsWithinRadius(33.9740, -118.3960, 500);
+
+        // Then
+        assertEquals(List.of("Tony", "John"), result.stream().map(PersonNearbyDTO::getFirstName).toList());
+        assertEquals("841-874-6874", result.get(0).getPhone());
+        assertEquals(56, result.get(0).getDistance(), 1);
+    }
+
+    /**
+     * Testing the checks of the geographic queries
+     * - Given a latitude out of range, a count of 0 and a negative radius
+     * - Then BadRequestException with each error
+     */
+    @Test
+    public void givenInvalidLocationQuery_whenGetNearestFirestationsOrPersonsWithinRadius_thenThrowBadRequestException() {
+        // When
+        BadRequestException nearest = assertThrows(BadRequestException.class,
+                () -> emergencyService.getNearestFirestations(91, -118.3960, 0));
+        BadRequestException radius = assertThrows(BadRequestException.class,
+                () -> emergencyService.getPersonsWithinRadius(33.9740, -118.3960, -1));
+
+        // Then
+        assertEquals(2, nearest.getErrors().size());
+        assertEquals(1, radius.getErrors().size());
+        verify(jsonFileManager, times(0)).getSnapshot();
+    }
 }
@@ -1,11 +1,15 @@
 package com.openclassrooms.SafetyNet.service;
 
 
+import com.openclassrooms.SafetyNet.dto.StationReassignmentDTO;
 import com.openclassrooms.SafetyNet.exceptions.ConflictException;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
 import com.openclassrooms.SafetyNet.model.Firestation;
 import com.openclassrooms.SafetyNet.repository.FirestationRepository;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +18,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -37,7 +42,8 @@ public class FirestationServiceTest {
      */
     @BeforeEach
     public void setUpPerTest() {
-        firestationService = new FirestationService(firestationRepository);
+        firestationService = new FirestationService(firestationRepository, new StripedLock(),
+                new BatchItemValidator(Validation.buildDefaultValidatorFactory().getValidator()));
         firestations = Arrays.asList(
                 new Firestation("1509 Culver St", 3),
                 new Firestation("29 15th St", 2),
@@ -244,4 +250,41 @@ public class FirestationServiceTest {
 
     }
 
+    /**
+     * Testing method reassignFirestations
+     * - Given an address and a station to move
+     * - Then the address and all the addresses of the station are moved in a single repository call
+     */
+    @Test
+    public void givenAddressAndStation_whenReassignFirestations_thenMovedInOneCall() {
+        // Given
+        StationReassignmentDTO reassignment = new StationReassignmentDTO(List.of("29 15th St"), 3, 4);
+        when(firestationRepository.getFirestationByAddress("29 15th St")).thenReturn(firestations.get(1));
+        when(firestationRepository.getFirestationByStationNumber(3)).thenReturn(List.of(firestations.get(0), firestations.get(2)));
+        when(firestationRepository.reassignFirestations(Set.of("29 15th St", "1509 Culver St", "834 Binoc Ave"), 4))
+                .thenReturn(List.of(new Firestation("29 15th St", 4), new Firestation("1509 Culver St", 4), new Firestation("834 Binoc Ave", 4)));
+
+        // When
+        List<Firestation> reassigned = firestationService.reassignFirestations(reassignment);
+
+        // Then
+        assertEquals(3, reassigned.size());
+        verify(firestationRepository, times(1)).reassignFirestations(anyCollection(), eq(4));
+    }
+
+    /**
+     * Testing method reassignFirestations
+     * - Given an unknown address
+     * - Then throw NotFoundException and nothing is moved
+     */
+    @Test
+    public void givenUnknownAddress_whenReassignFirestations_thenThrowNotFoundException() {
+        // Given
+        StationReassignmentDTO reassignment = new StationReassignmentDTO(List.of("UnknowAddress"), null, 4);
+        when(firestationRepository.getFirestationByAddress("UnknowAddress")).thenReturn(null);
+
+        // When & Then
+        assertThrows(NotFoundException.class, () -> firestationService.reassignFirestations(reassignment));
+        verify(firestationRepository, never()).reassignFirestations(anyCollection(), any());
+    }
 }
@@ -7,6 +7,9 @@ import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
 import com.openclassrooms.SafetyNet.model.MedicalRecord;
 import com.openclassrooms.SafetyNet.model.Person;
 import com.openclassrooms.SafetyNet.repository.MedicalRecordRepository;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -40,7 +43,8 @@ public class MedicalRecordServiceTest {
      */
     @BeforeEach
     public void setUpPerTest() {
-        medicalRecordService = new MedicalRecordService(medicalRecordRepository, personService);
+        medicalRecordService = new MedicalRecordService(medicalRecordRepository, personService, new StripedLock(),
+                new BatchItemValidator(Validation.buildDefaultValidatorFactory().getValidator()));
         medicalRecords = Arrays.asList(
                 new MedicalRecord("John", "Boyd", "03/06/1984", Arrays.asList("aznol:350mg", "hydrapermazol:100mg"), List.of("nillacilan")),
                 new MedicalRecord("Jacob", "Boyd", "03/06/1989", Arrays.asList("pharmacol:5000mg", "terazine:10mg", "noznazol:250mg"), List.of()),
@@ -1,11 +1,15 @@
 package com.openclassrooms.SafetyNet.service;
 
 
+import com.openclassrooms.SafetyNet.dto.BatchItemResultDTO;
 import com.openclassrooms.SafetyNet.exceptions.ConflictException;
 import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
 import com.openclassrooms.SafetyNet.exceptions.NotFoundException;
 import com.openclassrooms.SafetyNet.model.Person;
 import com.openclassrooms.SafetyNet.repository.PersonRepository;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -39,7 +43,8 @@ public class PersonServiceTest {
      */
     @BeforeEach
     public void setUpPerTest() {
-        personService = new PersonService(personRepository);
+        personService = new PersonService(personRepository, new StripedLock(),
+                new BatchItemValidator(Validation.buildDefaultValidatorFactory().getValidator()));
         persons = Arrays.asList(
                 new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
                 new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com"),
@@ -265,4 +270,25 @@ public class PersonServiceTest {
         );
     }
 
+    /**
+     * Testing method savePersons
+     * - Given a batch with a new person, an invalid person, an existing person and a duplicate
+     * - Then only the new person is saved, with one status per item
+     */
+    @Test
+    public void givenBatch_whenSavePersons_thenStatusPerItemAndSingleSave() {
+        // Given
+        Person newPerson = new Person("NewFirstName", "NewLastName", "New Address", "New City", "99999", "999-999-9999", "newmail@mail.com");
+        Person invalidPerson = new Person("Invalid", "Person", "", "New City", "99999", "999-999-9999", "newmail@mail.com");
+        Person existingPerson = persons.getFirst();
+        when(personRepository.getPersonByFirstNameAndLastName(newPerson.getFirstName(), newPerson.getLastName())).thenReturn(null);
+        when(personRepository.getPersonByFirstNameAndLastName(existingPerson.getFirstName(), existingPerson.getLastName())).thenReturn(existingPerson);
+
+        // When
+        List<BatchItemResultDTO> results = personService.savePersons(Arrays.asList(newPerson, invalidPerson, existingPerson, newPerson));
+
+        // Then
+        assertEquals(List.of(201, 400, 409, 409), results.stream().map(BatchItemResultDTO::getStatus).toList());
+        verify(personRepository, times(1)).savePersons(List.of(newPerson));
+    }
 }
@@ -0,0 +1,183 @@
+package com.openclassrooms.SafetyNet.service;
+
+import com.openclassrooms.SafetyNet.config.JsonTestConfig;
+import com.openclassrooms.SafetyNet.dto.PersonNameDTO;
+import com.openclassrooms.SafetyNet.dto.TransactionDTO;
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
+import com.openclassrooms.SafetyNet.exceptions.ConflictException;
+import com.openclassrooms.SafetyNet.exceptions.JsonFileManagerSaveException;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.DataSnapshot;
+import com.openclassrooms.SafetyNet.utils.JsonFileManager;
+import com.openclassrooms.SafetyNet.utils.StripedLock;
+import com.openclassrooms.SafetyNet.validators.BatchItemValidator;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for TransactionService
+ */
+@ExtendWith(MockitoExtension.class)
+public class TransactionServiceTest {
+
+    private TransactionService transactionService;
+
+    @Mock
+    private JsonFileManager jsonFileManager;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        transactionService = new TransactionService(jsonFileManager, new StripedLock(),
+                new BatchItemValidator(Validation.buildDefaultValidatorFactory().getValidator()));
+        JsonTestConfig.mockSnapshot(jsonFileManager,
+                List.of(new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com")),
+                List.of(new Firestation("1509 Culver St", 3)),
+                List.of(new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of("nillacilan"))));
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given a new person with its medical record and the removal of an existing resident
+     * - Then all mutations are published in one snapshot and the file is written once
+     */
+    @Test
+    public void givenOnboardingAndRemoval_whenApplyTransaction_thenAllAppliedWithOneSave() {
+        // Given
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setCreatePersons(List.of(new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com")));
+        transaction.setCreateMedicalRecords(List.of(new MedicalRecord("Jacob", "Boyd", "03/06/1989", List.of(), List.of())));
+        transaction.setDeletePersons(List.of(new PersonNameDTO("John", "Boyd")));
+        transaction.setDeleteMedicalRecords(List.of(new PersonNameDTO("John", "Boyd")));
+        long version = jsonFileManager.getSnapshot().getVersion();
+
+        // When
+        transactionService.applyTransaction(transaction);
+
+        // Then
+        DataSnapshot snapshot = jsonFileManager.getSnapshot();
+        assertNotNull(snapshot.getPerson("Jacob", "Boyd"));
+        assertNotNull(snapshot.getMedicalRecord("Jacob", "Boyd"));
+        assertNull(snapshot.getPerson("John", "Boyd"));
+        assertNull(snapshot.getMedicalRecord("John", "Boyd"));
+        assertEquals(version + 2, snapshot.getVersion());
+        verify(jsonFileManager, times(1)).updateSnapshot(any());
+        verify(jsonFileManager, times(1)).saveJsonFile();
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given an update of an address mapped to two stations
+     * - Then only the first mapping is updated, the other one is kept
+     */
+    @Test
+    public void givenAddressMappedToTwoStations_whenApplyTransactionUpdate_thenOtherMappingKept() {
+        // Given
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(),
+                List.of(new Firestation("112 Steppes Pl", 3), new Firestation("112 Steppes Pl", 4), new Firestation("1509 Culver St", 3)),
+                List.of());
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setUpdateFirestations(List.of(new Firestation("112 Steppes Pl", 2)));
+
+        // When
+        transactionService.applyTransaction(transaction);
+
+        // Then
+        List<Firestation> firestations = jsonFileManager.getSnapshot().getFirestations();
+        assertEquals(List.of(2, 4, 3), firestations.stream().map(Firestation::getStation).toList());
+        assertEquals(List.of("112 Steppes Pl", "112 Steppes Pl", "1509 Culver St"), firestations.stream().map(Firestation::getAddress).toList());
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given the deletion of an address mapped to two stations
+     * - Then both mappings are removed, like a single deletion
+     */
+    @Test
+    public void givenAddressMappedToTwoStations_whenApplyTransactionDelete_thenAllMappingsRemoved() {
+        // Given
+        JsonTestConfig.mockSnapshot(jsonFileManager, List.of(),
+                List.of(new Firestation("112 Steppes Pl", 3), new Firestation("112 Steppes Pl", 4), new Firestation("1509 Culver St", 3)),
+                List.of());
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setDeleteFirestations(List.of("112 Steppes Pl"));
+
+        // When
+        transactionService.applyTransaction(transaction);
+
+        // Then
+        assertEquals(List.of("1509 Culver St"),
+                jsonFileManager.getSnapshot().getFirestations().stream().map(Firestation::getAddress).toList());
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given a new person and a medical record which already exists
+     * - Then ConflictException and nothing is applied
+     */
+    @Test
+    public void givenExistingMedicalRecord_whenApplyTransaction_thenThrowConflictExceptionAndNothingApplied() {
+        // Given
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setCreatePersons(List.of(new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com")));
+        transaction.setCreateMedicalRecords(List.of(new MedicalRecord("John", "Boyd", "03/06/1984", List.of(), List.of())));
+        DataSnapshot before = jsonFileManager.getSnapshot();
+
+        // When & Then
+        assertThrows(ConflictException.class, () -> transactionService.applyTransaction(transaction));
+        assertSame(before, jsonFileManager.getSnapshot());
+        verify(jsonFileManager, never()).saveJsonFile();
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given a new person and a file which can not be written
+     * - Then JsonFileManagerSaveException and the previous snapshot is restored
+     */
+    @Test
+    public void givenFailingSave_whenApplyTransaction_thenThrowExceptionAndPreviousSnapshotRestored() {
+        // Given
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setCreatePersons(List.of(new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com")));
+        DataSnapshot before = jsonFileManager.getSnapshot();
+        doThrow(new JsonFileManagerSaveException("Error while saving the file")).when(jsonFileManager).saveJsonFile();
+
+        // When & Then
+        assertThrows(JsonFileManagerSaveException.class, () -> transactionService.applyTransaction(transaction));
+        assertSame(before, jsonFileManager.getSnapshot());
+        assertNull(jsonFileManager.getSnapshot().getPerson("Jacob", "Boyd"));
+        verify(jsonFileManager, times(1)).restoreSnapshot(any(), eq(before));
+    }
+
+    /**
+     * Testing method applyTransaction
+     * - Given an invalid person
+     * - Then BadRequestException with the errors of the item and nothing is applied
+     */
+    @Test
+    public void givenInvalidPerson_whenApplyTransaction_thenThrowBadRequestException() {
+        // Given
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setUpdatePersons(List.of(new Person("John", "Boyd", "", "Culver", "97451", "841-874-6512", "jaboyd@email.com")));
+
+        // When
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> transactionService.applyTransaction(transaction));
+
+        // Then
+        assertTrue(exception.getErrors().stream().allMatch(error -> error.startsWith("updatePersons[0].address")));
+        verify(jsonFileManager, never()).updateSnapshot(any());
+    }
+}
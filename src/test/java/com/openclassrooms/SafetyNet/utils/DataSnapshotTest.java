@@ -0,0 +1,176 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DataSnapshot
+ */
+public class DataSnapshotTest {
+
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        snapshot = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                        new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com"),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(
+                        new Firestation("1509 Culver St", 3),
+                        new Firestation("834 Binoc Ave", 3)
+                ),
+                List.of(
+                        new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of("nillacilan"))
+                )
+        );
+    }
+
+    /**
+     * Testing indexes
+     * - Given a snapshot
+     * - Then lookups return the same values as a scan of the lists
+     */
+    @Test
+    public void givenSnapshot_whenLookup_thenReturnIndexedValues() {
+        // When & Then
+        assertEquals("841-874-6513", snapshot.getPerson("Jacob", "Boyd").getPhone());
+        assertNull(snapshot.getPerson("Unknown", "Boyd"));
+        assertEquals(2, snapshot.getPersonsByAddress("1509 Culver St").size());
+        assertEquals("John", snapshot.getPersonsByAddress("1509 Culver St").getFirst().getFirstName());
+        assertEquals(2, snapshot.getPersonsByLastName("Boyd").size());
+        assertTrue(snapshot.getPersonsByAddress("UnknownAddress").isEmpty());
+        assertEquals(3, snapshot.getFirestationByAddress("834 Binoc Ave").getStation());
+        assertEquals(2, snapshot.getFirestationsByStation(3).size());
+        assertTrue(snapshot.getFirestationsByStation(99).isEmpty());
+        assertEquals("03/06/1984", snapshot.getMedicalRecord("John", "Boyd").getBirthdate());
+        assertNull(snapshot.getMedicalRecord("Jacob", "Boyd"));
+    }
+
+    /**
+     * Testing withPersons
+     * - Given a snapshot
+     * - Then the next snapshot has the new persons, the previous one is unchanged
+     */
+    @Test
+    public void givenSnapshot_whenWithPersons_thenPreviousSnapshotUnchanged() {
+        // Given
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.removeFirst();
+
+        // When
+        DataSnapshot next = snapshot.withPersons(persons);
+
+        // Then
+        assertTrue(next.getVersion() > snapshot.getVersion());
+        assertNull(next.getPerson("John", "Boyd"));
+        assertNotNull(snapshot.getPerson("John", "Boyd"));
+        assertEquals(1, next.getPersonsByAddress("1509 Culver St").size());
+        assertEquals(2, snapshot.getPersonsByAddress("1509 Culver St").size());
+        assertSame(snapshot.getFirestations(), next.getFirestations());
+        assertSame(snapshot.getMedicalRecords(), next.getMedicalRecords());
+    }
+
+    /**
+     * Testing versions
+     * - Given a snapshot and a person updated in the next snapshot
+     * - Then only the updated person gets the new version
+     */
+    @Test
+    public void givenUpdatedPerson_whenGetVersion_thenOnlyUpdatedPersonHasNewVersion() {
+        // Given
+        Person updated = new Person("John", "Boyd", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.set(0, updated);
+
+        // When
+        DataSnapshot next = snapshot.withPersons(persons);
+
+        // Then
+        assertEquals(snapshot.getVersion(), snapshot.getPersonVersion("John", "Boyd"));
+        assertEquals(next.getVersion(), next.getPersonVersion("John", "Boyd"));
+        assertEquals(snapshot.getVersion(), next.getPersonVersion("Jacob", "Boyd"));
+        assertEquals(0, next.getPersonVersion("Unknown", "Boyd"));
+        assertEquals(snapshot.getVersion(), next.getFirestationVersion("1509 Culver St"));
+        assertEquals(snapshot.getVersion(), next.getMedicalRecordVersion("John", "Boyd"));
+    }
+
+    /**
+     * Testing versions
+     * - Given a snapshot written twice (a write, then another write after the first snapshot was restored),
+     *   and the same lists loaded again
+     * - Then each snapshot gets a version never used before
+     */
+    @Test
+    public void givenSnapshotRestoredOrReloaded_whenWrite_thenVersionNeverReused() {
+        // Given
+        Person updated = new Person("John", "Boyd", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.set(0, updated);
+
+        // When
+        DataSnapshot failed = snapshot.withPersons(persons);
+        DataSnapshot afterRestore = snapshot.withPersons(persons);
+        DataSnapshot reloaded = DataSnapshot.of(snapshot.getPersons(), snapshot.getFirestations(), snapshot.getMedicalRecords());
+
+        // Then
+        assertNotEquals(failed.getPersonVersion("John", "Boyd"), afterRestore.getPersonVersion("John", "Boyd"));
+        assertTrue(afterRestore.getVersion() > failed.getVersion());
+        assertTrue(reloaded.getVersion() > afterRestore.getVersion());
+        assertTrue(reloaded.getPersonVersion("Jacob", "Boyd") > snapshot.getPersonVersion("Jacob", "Boyd"));
+    }
+
+    /**
+     * Testing lists of the snapshot
+     * - Given a snapshot
+     * - Then lists can not be modified
+     */
+    @Test
+    public void givenSnapshot_whenModifyList_thenThrowUnsupportedOperationException() {
+        // When & Then
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getPersons().clear());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getFirestations().clear());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getPersonsByAddress("1509 Culver St").clear());
+    }
+
+    /**
+     * Testing the spatial index of the households
+     * - Given geocoded residents, two of them at the same address, then a change of the fire stations only
+     * - Then each geocoded address once, located at its first geocoded resident, and the index shared with the next snapshot
+     */
+    @Test
+    public void givenGeocodedResidents_whenGetHouseholdLocations_thenEachAddressOnceAndSharedIndex() {
+        // Given
+        DataSnapshot geocoded = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com", 33.9750, -118.3960),
+                        new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com", 33.9900, -118.3960),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(new Firestation("1509 Culver St", 3)),
+                List.of());
+
+        // When
+        SpatialIndex<String> locations = geocoded.getHouseholdLocations();
+        DataSnapshot next = geocoded.withFirestations(List.of(new Firestation("1509 Culver St", 2)));
+
+        // Then
+        assertEquals(1, locations.size());
+        assertEquals("1509 Culver St", locations.nearest(33.9750, -118.3960, 1).getFirst().item());
+        assertEquals(0, locations.nearest(33.9750, -118.3960, 1).getFirst().distance(), 0.01);
+        assertSame(locations, next.getHouseholdLocations());
+    }
+}
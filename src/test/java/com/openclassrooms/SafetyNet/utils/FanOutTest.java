@@ -0,0 +1,93 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FanOut
+ */
+public class FanOutTest {
+
+    private FanOut fanOut;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        fanOut = new FanOut(4, 10);
+    }
+
+    /**
+     * Shut down the pool after each test
+     */
+    @AfterEach
+    public void tearDownPerTest() {
+        fanOut.close();
+    }
+
+    /**
+     * Testing method map
+     * - Given more items than the threshold
+     * - Then the work is split in chunks and the results are merged in the order of the items
+     */
+    @Test
+    public void givenItemsAboveThreshold_whenMap_thenChunksMergedInOrder() {
+        // Given
+        List<Integer> items = IntStream.range(0, 100).boxed().toList();
+        ConcurrentLinkedQueue<Integer> chunkSizes = new ConcurrentLinkedQueue<>();
+
+        // When
+        List<Integer> results = fanOut.map(items, chunk -> {
+            chunkSizes.add(chunk.size());
+            return chunk.stream().map(item -> item * 2).toList();
+        });
+
+        // Then
+        assertEquals(IntStream.range(0, 100).map(item -> item * 2).boxed().toList(), results);
+        assertEquals(4, chunkSizes.size());
+    }
+
+    /**
+     * Testing method map
+     * - Given less items than the threshold
+     * - Then the work runs once on the caller thread
+     */
+    @Test
+    public void givenItemsBelowThreshold_whenMap_thenWorkRunsOnCallerThread() {
+        // Given
+        Thread caller = Thread.currentThread();
+
+        // When
+        List<Thread> threads = fanOut.map(List.of(1, 2, 3), chunk -> List.of(Thread.currentThread()));
+
+        // Then
+        assertEquals(List.of(caller), threads);
+    }
+
+    /**
+     * Testing method map
+     * - Given a chunk failing
+     * - Then the exception is thrown to the caller
+     */
+    @Test
+    public void givenFailingChunk_whenMap_thenThrowException() {
+        // Given
+        List<Integer> items = IntStream.range(0, 100).boxed().toList();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> fanOut.map(items, chunk -> {
+            if (chunk.contains(99)) {
+                throw new IllegalStateException("chunk failed");
+            }
+            return chunk;
+        }));
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.SafetyNet.config.JacksonConfiguration;
+import com.openclassrooms.SafetyNet.dto.FamilyWithMedicalGroupedByAddressDTO;
+import com.openclassrooms.SafetyNet.dto.PersonWithMedicalAndPhoneDTO;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for FieldSelection
+ */
+public class FieldSelectionTest {
+
+    private ObjectMapper objectMapper;
+    private Person person;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfiguration().fieldSelectionCustomizer().customize(builder);
+        objectMapper = builder.build();
+        person = new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com");
+    }
+
+    /**
+     * Testing a selection of fields of a list
+     * - Given a list of persons and the fields firstName and phone
+     * - Then only firstName and phone are written
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenFields_whenWriteList_thenWriteSelectedFieldsOnly() throws Exception {
+        // When
+        String json = write(List.of(person), "firstName, phone");
+
+        // Then
+        assertEquals("[{\"firstName\":\"John\",\"phone\":\"841-874-6512\"}]", json);
+    }
+
+    /**
+     * Testing paths of fields
+     * - Given a page of persons, a map of lists, and paths through them
+     * - Then the envelope of the page is written, the paths cross the items of the lists and the entries of the maps
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenPaths_whenWriteNestedObjects_thenWriteSelectedPaths() throws Exception {
+        // Given
+        Page<Person> page = new Page<>(List.of(person), "next", 3);
+        HashMap<String, List<PersonWithMedicalAndPhoneDTO>> families = new HashMap<>();
+        families.put("1509 Culver St", List.of(new PersonWithMedicalAndPhoneDTO("John", "Boyd", 40, "841-874-6512", List.of(), List.of())));
+        FamilyWithMedicalGroupedByAddressDTO family = new FamilyWithMedicalGroupedByAddressDTO(families);
+
+        // When
+        String pageJson = write(page, "lastName");
+        String familyJson = write(family, "mapAddressPersons.firstName,mapAddressPersons.age");
+
+        // Then
+        assertEquals("{\"items\":[{\"lastName\":\"Boyd\"}],\"nextCursor\":\"next\",\"version\":3}", pageJson);
+        assertEquals("{\"mapAddressPersons\":{\"1509 Culver St\":[{\"firstName\":\"John\",\"age\":40}]}}", familyJson);
+    }
+
+    /**
+     * Testing the default selection
+     * - Given no fields or blank fields
+     * - Then all the fields are written
+     *
+     * @throws Exception exception
+     */
+    @Test
+    public void givenNoFields_whenWrite_thenWriteAllFields() throws Exception {
+        // Given
+        String all = objectMapper.writeValueAsString(person);
+
+        // When & Then
+        assertTrue(FieldSelection.parse(null).isAll());
+        assertTrue(FieldSelection.parse(" , ").isAll());
+        assertEquals(all, write(person, null));
+        assertEquals("{\"items\":[" + all + "],\"nextCursor\":null,\"version\":1}",
+                write(new Page<>(List.of(person), null, 1), ""));
+        assertTrue(all.contains("\"email\":\"jaboyd@email.com\""));
+    }
+
+    private String write(Object value, String fields) throws Exception {
+        return objectMapper.writer(FieldSelection.parse(fields).filters()).writeValueAsString(value);
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for HouseholdView
+ */
+public class HouseholdViewTest {
+
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        snapshot = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                        new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com"),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(
+                        new Firestation("1509 Culver St", 3),
+                        new Firestation("644 Gershwin Cir", 1)
+                ),
+                List.of(
+                        new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of()),
+                        new MedicalRecord("Tenley", "Boyd", "02/18/2012", List.of(), List.of("peanut"))
+                )
+        );
+    }
+
+    /**
+     * Testing the view built with the first snapshot
+     * - Given a snapshot
+     * - Then each address has its members, their birthdate and its fire station
+     */
+    @Test
+    public void givenSnapshot_whenGetHousehold_thenReturnMembersAndFirestation() {
+        // When
+        HouseholdView.Household household = snapshot.getHousehold("1509 Culver St");
+
+        // Then
+        assertEquals(3, household.getFirestation().getStation());
+        assertEquals(2, household.getMembers().size());
+        assertEquals(LocalDate.of(1984, 3, 6), household.getMembers().getFirst().birthdate());
+        assertEquals(13, household.getMembers().get(1).age(LocalDate.of(2026, 1, 1)));
+        assertNull(snapshot.getHousehold("834 Binoc Ave").getFirestation());
+        assertNull(snapshot.getHousehold("834 Binoc Ave").getMembers().getFirst().age(LocalDate.of(2026, 1, 1)));
+        assertTrue(snapshot.getHousehold("644 Gershwin Cir").getMembers().isEmpty());
+        assertNull(snapshot.getHousehold("Unknown address"));
+    }
+
+    /**
+     * Testing the view of the next snapshot
+     * - Given a person moved to another address
+     * - Then both households are rebuilt, the others are shared
+     */
+    @Test
+    public void givenMovedPerson_whenWithPersons_thenOnlyChangedHouseholdsRebuilt() {
+        // Given
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.set(2, new Person("Tessa", "Carman", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com"));
+
+        // When
+        DataSnapshot next = snapshot.withPersons(persons);
+
+        // Then
+        assertNull(next.getHousehold("834 Binoc Ave"));
+        assertEquals(3, next.getHousehold("1509 Culver St").getMembers().size());
+        assertSame(snapshot.getHousehold("644 Gershwin Cir"), next.getHousehold("644 Gershwin Cir"));
+    }
+
+    /**
+     * Testing the view of the next snapshot
+     * - Given a fire station mapping updated
+     * - Then the household of the address gets the new fire station
+     */
+    @Test
+    public void givenUpdatedFirestation_whenWithFirestations_thenHouseholdHasNewFirestation() {
+        // When
+        DataSnapshot next = snapshot.withFirestations(List.of(
+                new Firestation("1509 Culver St", 2),
+                snapshot.getFirestations().get(1)));
+
+        // Then
+        assertEquals(2, next.getHousehold("1509 Culver St").getFirestation().getStation());
+        assertSame(snapshot.getHousehold("834 Binoc Ave"), next.getHousehold("834 Binoc Ave"));
+        assertSame(snapshot.getHousehold("644 Gershwin Cir"), next.getHousehold("644 Gershwin Cir"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.exceptions.BadRequestException;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Pagination
+ */
+public class PaginationTest {
+
+    private static final Map<String, Function<Firestation, List<String>>> SORT_KEYS = Map.of(
+            "address", f -> Pagination.key(f.getAddress()));
+
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        snapshot = DataSnapshot.of(
+                List.of(),
+                List.of(
+                        new Firestation("E", 1),
+                        new Firestation("B", 2),
+                        new Firestation("D", 1),
+                        new Firestation("A", 3),
+                        new Firestation("C", 2)
+                ),
+                List.of()
+        );
+    }
+
+    /**
+     * Testing the pages of a snapshot
+     * - Given a snapshot and a limit of 2
+     * - Then the pages follow the sort, share the sorted view and the last page has no cursor
+     */
+    @Test
+    public void givenLimit_whenPage_thenReturnSortedPagesUntilLastPage() {
+        // When
+        Page<Firestation> first = page(2, null, "address");
+        Page<Firestation> second = page(2, first.nextCursor(), "address");
+        Page<Firestation> last = page(2, second.nextCursor(), "address");
+        Page<Firestation> descending = page(5, null, "-address");
+
+        // Then
+        assertEquals(List.of("A", "B"), addresses(first));
+        assertEquals(List.of("C", "D"), addresses(second));
+        assertEquals(List.of("E"), addresses(last));
+        assertNull(last.nextCursor());
+        assertEquals(List.of("E", "D", "C", "B", "A"), addresses(descending));
+        assertSame(page(5, null, "address").items().get(0), first.items().get(0));
+    }
+
+    /**
+     * Testing a cursor after a write
+     * - Given a cursor of the first page, then fire stations added before and after it
+     * - Then the next page starts after the last fire station sent, in the new snapshot
+     */
+    @Test
+    public void givenCursorAndWrite_whenPage_thenResumeAfterLastKey() {
+        // Given
+        Page<Firestation> first = page(2, null, null);
+        List<Firestation> firestations = new ArrayList<>(snapshot.getFirestations());
+        firestations.add(new Firestation("AA", 1));
+        firestations.add(new Firestation("BB", 1));
+        snapshot = snapshot.withFirestations(firestations);
+
+        // When
+        Page<Firestation> second = page(2, first.nextCursor(), null);
+
+        // Then
+        assertEquals(List.of("A", "B"), addresses(first));
+        assertEquals(List.of("BB", "C"), addresses(second));
+        assertEquals(snapshot.getVersion(), second.version());
+    }
+
+    /**
+     * Testing a cursor issued by another process
+     * - Given a cursor with the version of the snapshot but another epoch, and an offset which does not match its key
+     * - Then the next page starts after the last key sent, not at the offset
+     */
+    @Test
+    public void givenCursorOfAnotherEpoch_whenPage_thenResumeAfterLastKey() {
+        // Given
+        String cursor = new Pagination.Cursor("previous", snapshot.getVersion(), 4, "firestations:address", List.of("B")).encode();
+
+        // When
+        Page<Firestation> next = page(2, cursor, "address");
+
+        // Then
+        assertEquals(List.of("C", "D"), addresses(next));
+    }
+
+    /**
+     * Testing invalid requests
+     * - Given an invalid limit, sort or cursor
+     * - Then BadRequestException
+     */
+    @Test
+    public void givenInvalidRequest_whenPage_thenThrowBadRequestException() {
+        // Given
+        String cursor = page(2, null, "address").nextCursor();
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> page(0, null, null));
+        assertThrows(BadRequestException.class, () -> page(Pagination.MAX_LIMIT + 1, null, null));
+        assertThrows(BadRequestException.class, () -> page(2, null, "station"));
+        assertThrows(BadRequestException.class, () -> page(2, "not a cursor", null));
+        assertThrows(BadRequestException.class, () -> page(2, cursor, "-address"));
+    }
+
+    private Page<Firestation> page(int limit, String cursor, String sort) {
+        return Pagination.page(snapshot, "firestations", snapshot.getFirestations(), SORT_KEYS, "address", limit, cursor, sort);
+    }
+
+    private static List<String> addresses(Page<Firestation> page) {
+        return page.items().stream().map(Firestation::getAddress).toList();
+    }
+}
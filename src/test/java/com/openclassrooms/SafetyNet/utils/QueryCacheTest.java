@@ -0,0 +1,159 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.dto.PersonWithMedicalAndEmailDTO;
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import com.openclassrooms.SafetyNet.utils.QueryCache.Key;
+import com.openclassrooms.SafetyNet.utils.QueryCache.Scope;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for QueryCache
+ */
+public class QueryCacheTest {
+
+    private QueryCache queryCache;
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        queryCache = new QueryCache(3);
+        snapshot = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Paris", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(
+                        new Firestation("1509 Culver St", 3),
+                        new Firestation("834 Binoc Ave", 2)
+                ),
+                List.of(
+                        new MedicalRecord("John", "Boyd", "03/06/1984", List.of(), List.of())
+                )
+        );
+    }
+
+    /**
+     * Testing the invalidation
+     * - Given cached results and a medical record updated at an address of station 3
+     * - Then only the results touching the address, its station and the last name are evicted
+     */
+    @Test
+    public void givenUpdatedMedicalRecord_whenGet_thenOnlyTouchedResultsEvicted() {
+        // Given
+        queryCache.get(snapshot, Key.of("firestation", Scope.STATION, 3), () -> "station 3");
+        queryCache.get(snapshot, Key.of("firestation", Scope.STATION, 2), () -> "station 2");
+        queryCache.get(snapshot, Key.of("personInfo", Scope.LAST_NAME, "Boyd"), () -> "Boyd");
+        DataSnapshot next = snapshot.withMedicalRecords(List.of(
+                new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of())));
+
+        // When
+        String station3 = queryCache.get(next, Key.of("firestation", Scope.STATION, 3), () -> "station 3 updated");
+        String station2 = queryCache.get(next, Key.of("firestation", Scope.STATION, 2), () -> "station 2 updated");
+        String boyd = queryCache.get(next, Key.of("personInfo", Scope.LAST_NAME, "Boyd"), () -> "Boyd updated");
+
+        // Then
+        assertEquals("station 3 updated", station3);
+        assertEquals("station 2", station2);
+        assertEquals("Boyd updated", boyd);
+        assertEquals(1, queryCache.getHits());
+    }
+
+    /**
+     * Testing the change between two snapshots
+     * - Given a person moved to another city and address
+     * - Then both addresses, both stations, both cities and the last name are touched
+     */
+    @Test
+    public void givenMovedPerson_whenSnapshotChangeBetween_thenBothSidesTouched() {
+        // Given
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.set(1, new Person("Tessa", "Carman", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com"));
+
+        // When
+        SnapshotChange change = SnapshotChange.between(snapshot, snapshot.withPersons(persons));
+
+        // Then
+        assertEquals(Set.of("834 Binoc Ave", "1509 Culver St"), change.addresses());
+        assertEquals(Set.of(2, 3), change.stations());
+        assertEquals(Set.of("Paris", "Culver"), change.cities());
+        assertEquals(Set.of("Carman"), change.lastNames());
+        assertTrue(SnapshotChange.between(snapshot, snapshot).isEmpty());
+    }
+
+    /**
+     * Testing the size of the cache
+     * - Given more results than the size of the cache
+     * - Then the least recently used result is evicted
+     */
+    @Test
+    public void givenFullCache_whenGet_thenLeastRecentlyUsedEvicted() {
+        // Given
+        queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "a"), () -> "a");
+        queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "b"), () -> "b");
+        queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "c"), () -> "c");
+        queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "a"), () -> "a reloaded");
+
+        // When
+        queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "d"), () -> "d");
+
+        // Then
+        assertEquals(3, queryCache.size());
+        assertEquals("a", queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "a"), () -> "a reloaded"));
+        assertEquals("b reloaded", queryCache.get(snapshot, Key.of("childAlert", Scope.ADDRESS, "b"), () -> "b reloaded"));
+    }
+
+    /**
+     * Testing a read of an older snapshot
+     * - Given a result cached for the next snapshot, then a query still reading the previous snapshot
+     * - Then the older query is computed and not cached, the cache stays on the next snapshot
+     */
+    @Test
+    public void givenOlderSnapshot_whenGet_thenComputedAndCacheNotMovedBack() {
+        // Given
+        DataSnapshot next = snapshot.withMedicalRecords(List.of());
+        queryCache.get(next, Key.of("firestation", Scope.STATION, 3), () -> "station 3 next");
+
+        // When
+        String older = queryCache.get(snapshot, Key.of("firestation", Scope.STATION, 3), () -> "station 3 previous");
+        String olderAgain = queryCache.get(snapshot, Key.of("firestation", Scope.STATION, 3), () -> "station 3 previous");
+
+        // Then
+        assertEquals("station 3 previous", older);
+        assertEquals("station 3 previous", olderAgain);
+        assertEquals("station 3 next", queryCache.get(next, Key.of("firestation", Scope.STATION, 3), () -> "reloaded"));
+        assertEquals(1, queryCache.getHits());
+        assertEquals(1, queryCache.size());
+    }
+
+    /**
+     * Testing the sharing of the results
+     * - Given a cached immutable result
+     * - Then the next caller gets the same instance, without copy
+     */
+    @Test
+    public void givenCachedResult_whenGet_thenSameInstanceReturned() {
+        // Given
+        Key key = Key.of("personInfo", Scope.LAST_NAME, "Boyd");
+        List<PersonWithMedicalAndEmailDTO> first = queryCache.get(snapshot, key, () -> List.of(
+                new PersonWithMedicalAndEmailDTO("John", "Boyd", 40, "jaboyd@email.com", List.of("aznol:350mg"), List.of())));
+
+        // When
+        List<PersonWithMedicalAndEmailDTO> second = queryCache.get(snapshot, key, List::of);
+
+        // Then
+        assertEquals(1, queryCache.getHits());
+        assertSame(first, second);
+    }
+}
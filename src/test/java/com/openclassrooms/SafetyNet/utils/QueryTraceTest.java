@@ -0,0 +1,93 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for QueryTrace
+ */
+public class QueryTraceTest {
+
+    /**
+     * Clean up after each test
+     */
+    @AfterEach
+    public void tearDownPerTest() {
+        QueryTrace.stop();
+    }
+
+    /**
+     * Testing a stage outside explain mode
+     * - Given no trace
+     * - Then the work is run and nothing is recorded
+     */
+    @Test
+    public void givenNoTrace_whenStage_thenRunWorkOnly() {
+        // When
+        List<String> result = QueryTrace.stage("scan", "full scan", () -> List.of("a", "b"), List::size);
+
+        // Then
+        assertEquals(List.of("a", "b"), result);
+        assertNull(QueryTrace.current());
+        assertSame(Function.identity(), QueryTrace.propagate(Function.identity()));
+    }
+
+    /**
+     * Testing stages in explain mode
+     * - Given a trace, a stage on the request thread and the same stage on two other threads
+     * - Then the stages are recorded in order, the stages of the other threads are summed
+     */
+    @Test
+    public void givenTrace_whenStagesOnSeveralThreads_thenRecordAndSumStages() {
+        // Given
+        QueryTrace trace = QueryTrace.start();
+        Function<Integer, List<Integer>> chunk = QueryTrace.propagate(size ->
+                QueryTrace.stage("join", "index", () -> List.of(size, size), List::size));
+
+        // When
+        QueryTrace.stage("lookup", "index", () -> List.of(1, 2, 3), List::size);
+        CompletableFuture.supplyAsync(() -> chunk.apply(1)).join();
+        CompletableFuture.supplyAsync(() -> chunk.apply(2)).join();
+
+        // Then
+        QueryTrace.Plan plan = trace.plan();
+        assertEquals(List.of("lookup", "join"), plan.stages().stream().map(QueryTrace.Stage::name).toList());
+        assertEquals(3, plan.stages().get(0).rows());
+        assertEquals(4, plan.stages().get(1).rows());
+        assertTrue(plan.totalNanos() >= plan.stages().get(0).nanos());
+    }
+
+    /**
+     * Testing the query cache in explain mode
+     * - Given a cached result, then a trace
+     * - Then the query is run again, the cache lookup is recorded and the cache is left as is
+     */
+    @Test
+    public void givenCachedResult_whenGetInExplainMode_thenRunQueryAndRecordCacheLookup() {
+        // Given
+        QueryCache queryCache = new QueryCache();
+        DataSnapshot snapshot = DataSnapshot.of(List.of(), List.of(new Firestation("1509 Culver St", 1)), List.of());
+        QueryCache.Key key = QueryCache.Key.of("phoneAlert", QueryCache.Scope.STATION, 1);
+        queryCache.get(snapshot, key, () -> "cached");
+        QueryTrace trace = QueryTrace.start();
+
+        // When
+        String result = queryCache.get(snapshot, key, () -> "computed");
+
+        // Then
+        assertEquals("computed", result);
+        assertEquals("phoneAlert", trace.plan().query());
+        assertEquals(snapshot.getVersion(), trace.plan().snapshotVersion());
+        assertEquals(1, trace.plan().stages().getFirst().rows());
+        assertEquals(0, queryCache.getHits());
+        QueryTrace.stop();
+        assertEquals("cached", queryCache.get(snapshot, key, () -> "computed"));
+    }
+}
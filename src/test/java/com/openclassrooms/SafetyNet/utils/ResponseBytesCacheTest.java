@@ -0,0 +1,105 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.SafetyNet.config.JacksonConfiguration;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ResponseBytesCache
+ */
+public class ResponseBytesCacheTest {
+
+    private ObjectMapper objectMapper;
+    private ResponseBytesCache responseBytesCache;
+    private List<Person> persons;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().fieldSelectionCustomizer().customize(builder);
+        objectMapper = builder.build();
+        responseBytesCache = new ResponseBytesCache(objectMapper);
+        persons = List.of(
+                new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                new Person("Tony", "Cooper", "112 Steppes Pl", "Culver", "97451", "841-874-6874", "tcoop@ymail.com"));
+    }
+
+    /**
+     * Testing get with the same list
+     * - Given a list already serialized
+     * - Then the same bytes, written once
+     */
+    @Test
+    public void givenSameList_whenGet_thenBytesServedFromCache() throws Exception {
+        // Given
+        byte[] first = responseBytesCache.get("persons", persons).json();
+
+        // When
+        byte[] second = responseBytesCache.get("persons", persons).json();
+
+        // Then
+        assertSame(first, second);
+        assertArrayEquals(objectMapper.writeValueAsBytes(persons), second);
+        assertEquals(1, responseBytesCache.getMisses());
+        assertEquals(1, responseBytesCache.getHits());
+    }
+
+    /**
+     * Testing get after a write
+     * - Given a new list published for the view, with the same content
+     * - Then the list is serialized again
+     */
+    @Test
+    public void givenNewList_whenGet_thenSerializedAgain() throws Exception {
+        // Given
+        responseBytesCache.get("persons", persons);
+        List<Person> updated = new ArrayList<>(persons);
+        updated.add(new Person("Eric", "Cadigan", "951 LoneTree Rd", "Culver", "97451", "841-874-7458", "gramps@email.com"));
+
+        // When
+        byte[] json = responseBytesCache.get("persons", updated).json();
+
+        // Then
+        assertArrayEquals(objectMapper.writeValueAsBytes(updated), json);
+        assertEquals(2, responseBytesCache.getMisses());
+        assertEquals(0, responseBytesCache.getHits());
+    }
+
+    /**
+     * Testing response with an Accept-Encoding header
+     * - Given a client accepting gzip, then a client refusing it
+     * - Then the compressed Json with its Content-Encoding, then the Json
+     */
+    @Test
+    public void givenAcceptEncoding_whenResponse_thenGzipOnlyIfAccepted() throws Exception {
+        // When
+        ResponseEntity<byte[]> compressed = responseBytesCache.response("persons", persons, "deflate, gzip;q=0.8");
+        ResponseEntity<byte[]> plain = responseBytesCache.response("persons", persons, "gzip;q=0, identity");
+
+        // Then
+        assertEquals("gzip", compressed.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.getBody()))) {
+            assertArrayEquals(plain.getBody(), gzip.readAllBytes());
+        }
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, plain.getHeaders().getFirst(HttpHeaders.VARY));
+        assertTrue(ResponseBytesCache.acceptsGzip("*"));
+        assertFalse(ResponseBytesCache.acceptsGzip(null));
+        assertFalse(ResponseBytesCache.acceptsGzip("br, deflate"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SnapshotJoin
+ */
+public class SnapshotJoinTest {
+
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        snapshot = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                        new Person("Jacob", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6513", "drk@email.com"),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(
+                        new Firestation("1509 Culver St", 3),
+                        new Firestation("834 Binoc Ave", 3),
+                        new Firestation("1509 Culver St", 3)
+                ),
+                List.of(
+                        new MedicalRecord("John", "Boyd", "03/06/1984", List.of("aznol:350mg"), List.of("nillacilan")),
+                        new MedicalRecord("Tessa", "Carman", "02/18/2012", List.of(), List.of())
+                )
+        );
+    }
+
+    /**
+     * Testing method byStations
+     * - Given a station with an address mapped twice
+     * - Then each person is joined once, with its medical record and fire station
+     */
+    @Test
+    public void givenStationWithDuplicateAddress_whenByStations_thenEachPersonJoinedOnce() {
+        // When
+        List<SnapshotJoin.Row> rows = SnapshotJoin.byStations(snapshot, List.of(3));
+
+        // Then
+        assertEquals(3, rows.size());
+        assertEquals("John", rows.get(0).person().getFirstName());
+        assertEquals("03/06/1984", rows.get(0).birthdate());
+        assertEquals(3, rows.get(0).firestation().getStation());
+        assertNull(rows.get(1).medicalRecord());
+        assertNull(rows.get(1).birthdate());
+        assertEquals("Tessa", rows.get(2).person().getFirstName());
+    }
+
+    /**
+     * Testing method byAddress and byLastName
+     * - Given an unknown address and an existing last name
+     * - Then no row for the address, a row per person for the last name
+     */
+    @Test
+    public void givenAddressAndLastName_whenByAddressAndByLastName_thenReturnJoinedRows() {
+        // When
+        List<SnapshotJoin.Row> byAddress = SnapshotJoin.byAddress(snapshot, "Unknown address");
+        List<SnapshotJoin.Row> byLastName = SnapshotJoin.byLastName(snapshot, "Boyd");
+
+        // Then
+        assertTrue(byAddress.isEmpty());
+        assertEquals(2, byLastName.size());
+        assertEquals("1509 Culver St", byLastName.get(1).firestation().getAddress());
+    }
+
+    /**
+     * Testing method join
+     * - Given lists of persons and medical records
+     * - Then each person is joined with the medical record of the same name
+     */
+    @Test
+    public void givenPersonsAndMedicalRecords_whenJoin_thenReturnRowsWithMedicalRecords() {
+        // When
+        List<SnapshotJoin.Row> rows = SnapshotJoin.join(snapshot.getPersons(), snapshot.getMedicalRecords());
+
+        // Then
+        assertEquals(3, rows.size());
+        assertEquals("03/06/1984", rows.get(0).birthdate());
+        assertNull(rows.get(1).medicalRecord());
+        assertEquals("02/18/2012", rows.get(2).birthdate());
+        assertNull(rows.get(2).firestation());
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SpatialIndex
+ */
+public class SpatialIndexTest {
+
+    /**
+     * Testing nearest and withinRadius against a scan of all the points
+     * - Given 20000 random points around a city, and points without coordinates
+     * - Then the same points as the scan, nearest first, the points without coordinates are not indexed
+     */
+    @Test
+    public void givenRandomPoints_whenQuery_thenSameResultAsScan() {
+        // Given
+        Random random = new Random(42);
+        List<Firestation> firestations = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            firestations.add(new Firestation("address " + i, i % 50,
+                    33.9 + random.nextDouble() * 0.2, -118.5 + random.nextDouble() * 0.2));
+        }
+        firestations.add(new Firestation("not geocoded", 1));
+        SpatialIndex<Firestation> index = SpatialIndex.build(firestations, Firestation::getLatitude, Firestation::getLongitude);
+
+        for (int q = 0; q < 20; q++) {
+            double latitude = 33.9 + random.nextDouble() * 0.2;
+            double longitude = -118.5 + random.nextDouble() * 0.2;
+            List<Firestation> byDistance = new ArrayList<>(firestations.subList(0, 20_000));
+            byDistance.sort(Comparator.comparingDouble(f -> SpatialIndex.distance(latitude, longitude, f.getLatitude(), f.getLongitude())));
+            List<Firestation> inRadius = byDistance.stream()
+                    .filter(f -> SpatialIndex.distance(latitude, longitude, f.getLatitude(), f.getLongitude()) <= 500)
+                    .toList();
+
+            // When
+            List<SpatialIndex.Hit<Firestation>> nearest = index.nearest(latitude, longitude, 10);
+            List<SpatialIndex.Hit<Firestation>> within = index.withinRadius(latitude, longitude, 500);
+
+            // Then
+            assertEquals(byDistance.subList(0, 10), nearest.stream().map(SpatialIndex.Hit::item).toList());
+            assertEquals(inRadius, within.stream().map(SpatialIndex.Hit::item).toList());
+        }
+        assertEquals(20_000, index.size());
+    }
+
+    /**
+     * Testing nearest across the antimeridian
+     * - Given a point just east of the antimeridian and a point far to the west
+     * - Then the point across the antimeridian is the nearest, at about 22 km
+     */
+    @Test
+    public void givenPointsAcrossAntimeridian_whenNearest_thenNearestAcrossAntimeridian() {
+        // Given
+        List<Firestation> firestations = List.of(
+                new Firestation("east", 1, 0.0, 179.9),
+                new Firestation("west", 2, 0.0, 170.0));
+        SpatialIndex<Firestation> index = SpatialIndex.build(firestations, Firestation::getLatitude, Firestation::getLongitude);
+
+        // When
+        List<SpatialIndex.Hit<Firestation>> nearest = index.nearest(0.0, -179.9, 1);
+
+        // Then
+        assertEquals("east", nearest.getFirst().item().getAddress());
+        assertEquals(22_239, nearest.getFirst().distance(), 10);
+    }
+
+    /**
+     * Testing queries on an empty index
+     * - Given no point with coordinates
+     * - Then empty results
+     */
+    @Test
+    public void givenNoGeocodedPoint_whenQuery_thenEmpty() {
+        // Given
+        SpatialIndex<Firestation> index = SpatialIndex.build(List.of(new Firestation("1509 Culver St", 3)),
+                Firestation::getLatitude, Firestation::getLongitude);
+
+        // When && Then
+        assertTrue(index.nearest(33.97, -118.39, 3).isEmpty());
+        assertTrue(index.withinRadius(33.97, -118.39, 1000).isEmpty());
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import com.openclassrooms.SafetyNet.model.Firestation;
+import com.openclassrooms.SafetyNet.model.MedicalRecord;
+import com.openclassrooms.SafetyNet.model.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StationView
+ */
+public class StationViewTest {
+
+    private DataSnapshot snapshot;
+
+    /**
+     * Set up before each test
+     */
+    @BeforeEach
+    public void setUpPerTest() {
+        snapshot = DataSnapshot.of(
+                List.of(
+                        new Person("John", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "jaboyd@email.com"),
+                        new Person("Tenley", "Boyd", "1509 Culver St", "Culver", "97451", "841-874-6512", "tenz@email.com"),
+                        new Person("Tessa", "Carman", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "tenz@email.com")
+                ),
+                List.of(
+                        new Firestation("1509 Culver St", 3),
+                        new Firestation("834 Binoc Ave", 2)
+                ),
+                List.of(
+                        new MedicalRecord("John", "Boyd", "03/06/1984", List.of(), List.of()),
+                        new MedicalRecord("Tenley", "Boyd", "02/18/2012", List.of(), List.of()),
+                        new MedicalRecord("Tessa", "Carman", "02/18/2012", List.of(), List.of())
+                )
+        );
+    }
+
+    /**
+     * Testing the view built with the first snapshot
+     * - Given a snapshot
+     * - Then each station has its residents, adults and children
+     */
+    @Test
+    public void givenSnapshot_whenGetStationCoverage_thenReturnResidentsAndCounters() {
+        // When
+        StationView.Coverage coverage = snapshot.getStationCoverage(3);
+
+        // Then
+        assertEquals(2, coverage.getResidents().size());
+        assertEquals(1, coverage.countAdults(LocalDate.of(2026, 1, 1)));
+        assertEquals(1, coverage.countChildren(LocalDate.of(2026, 1, 1)));
+        assertEquals(2, coverage.countAdults(LocalDate.of(2030, 2, 18)));
+        assertEquals(0, coverage.countChildren(LocalDate.of(2030, 2, 18)));
+        assertNull(snapshot.getStationCoverage(99));
+    }
+
+    /**
+     * Testing the view of the next snapshot
+     * - Given a medical record updated at an address of station 3
+     * - Then the coverage of station 3 is rebuilt, the coverage of station 2 is shared
+     */
+    @Test
+    public void givenUpdatedMedicalRecord_whenWithMedicalRecords_thenOnlyAffectedStationRebuilt() {
+        // Given
+        List<MedicalRecord> medicalRecords = new ArrayList<>(snapshot.getMedicalRecords());
+        medicalRecords.set(1, new MedicalRecord("Tenley", "Boyd", "02/18/1990", List.of(), List.of()));
+
+        // When
+        DataSnapshot next = snapshot.withMedicalRecords(medicalRecords);
+
+        // Then
+        assertNotSame(snapshot.getStationCoverage(3), next.getStationCoverage(3));
+        assertSame(snapshot.getStationCoverage(2), next.getStationCoverage(2));
+        assertEquals(2, next.getStationCoverage(3).countAdults(LocalDate.of(2026, 1, 1)));
+        assertEquals(1, snapshot.getStationCoverage(3).countAdults(LocalDate.of(2026, 1, 1)));
+    }
+
+    /**
+     * Testing the view of the next snapshot
+     * - Given a person moved to an address of another station, and a mapping moved to a new station
+     * - Then both stations are rebuilt, a station without address has no coverage
+     */
+    @Test
+    public void givenMovedPersonAndMapping_whenWithPersonsAndFirestations_thenStationsRebuilt() {
+        // Given
+        List<Person> persons = new ArrayList<>(snapshot.getPersons());
+        persons.set(0, new Person("John", "Boyd", "834 Binoc Ave", "Culver", "97451", "841-874-6512", "jaboyd@email.com"));
+
+        // When
+        DataSnapshot moved = snapshot.withPersons(persons);
+        DataSnapshot remapped = moved.withFirestations(List.of(
+                new Firestation("1509 Culver St", 3),
+                new Firestation("834 Binoc Ave", 4)));
+
+        // Then
+        assertEquals(1, moved.getStationCoverage(3).getResidents().size());
+        assertEquals(2, moved.getStationCoverage(2).getResidents().size());
+        assertNull(remapped.getStationCoverage(2));
+        assertEquals(2, remapped.getStationCoverage(4).getResidents().size());
+        assertSame(moved.getStationCoverage(3), remapped.getStationCoverage(3));
+    }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.SafetyNet.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StripedLock
+ */
+public class StripedLockTest {
+
+    /**
+     * Testing lock
+     * - Given a key locked by a thread
+     * - Then another thread waits for the same key until the stripe is released
+     */
+    @Test
+    public void givenLockedKey_whenLockSameKeyFromOtherThread_thenWaitUntilReleased() throws Exception {
+        // Given
+        StripedLock stripedLock = new StripedLock(16);
+        StripedLock.Guard guard = stripedLock.lock("1509 Culver St");
+
+        // When
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            try (StripedLock.Guard ignored = stripedLock.lock("834 Binoc Ave", "1509 Culver St")) {
+                // locked
+            }
+        });
+
+        // Then
+        assertThrows(TimeoutException.class, () -> other.get(200, TimeUnit.MILLISECONDS));
+        guard.close();
+        other.get(5, TimeUnit.SECONDS);
+        assertTrue(other.isDone());
+    }
+
+    /**
+     * Testing lock
+     * - Given keys on different stripes
+     * - Then they are locked by different threads at the same time
+     */
+    @Test
+    public void givenDifferentStripes_whenLockFromOtherThread_thenNotBlocked() throws Exception {
+        // Given
+        StripedLock stripedLock = new StripedLock(2);
+        StripedLock.Guard guard = stripedLock.lock(0);
+
+        // When
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+            try (StripedLock.Guard ignored = stripedLock.lock(1)) {
+                // locked
+            }
+        });
+
+        // Then
+        other.get(5, TimeUnit.SECONDS);
+        assertTrue(other.isDone());
+        guard.close();
+    }
+
+    /**
+     * Testing close
+     * - Given a guard closed twice
+     * - Then the stripes are released once
+     */
+    @Test
+    public void givenGuard_whenCloseTwice_thenNoException() {
+        // Given
+        StripedLock stripedLock = new StripedLock(4);
+        StripedLock.Guard guard = stripedLock.lock("a", null, "b");
+
+        // When & Then
+        guard.close();
+        assertDoesNotThrow(guard::close);
+    }
+}